@@ -2,7 +2,7 @@ package org.johnnei.javatorrent.ut.metadata.protocol.messages;
 
 import java.util.Optional;
 
-import org.johnnei.javatorrent.disk.DiskJobReadBlock;
+import org.johnnei.javatorrent.network.BlockBuffer;
 import org.johnnei.javatorrent.ut.metadata.protocol.UTMetadata;
 import org.johnnei.javatorrent.protocol.extension.PeerExtensions;
 import org.johnnei.javatorrent.protocol.messages.extension.MessageExtension;
@@ -37,22 +37,47 @@ public class MessageRequest extends AbstractMessage {
 				return;
 			}
 
-			MessageReject mr = new MessageReject(blockIndex);
-			MessageExtension extendedMessage = new MessageExtension(peerExtensions.get().getExtensionId(UTMetadata.NAME), mr);
-			peer.getBitTorrentSocket().enqueueMessage(extendedMessage);
+			reject(peer, peerExtensions.get(), blockIndex);
 		} else {
 			Piece piece = peer.getTorrent().getMetadata().getFileSet().get().getPiece(0);
 
-			peer.getTorrent().addDiskJob(new DiskJobReadBlock(
+			peer.getTorrent().getDisk().read(
 					piece,
 					blockIndex * MetadataFileSet.BLOCK_SIZE,
 					piece.getBlockSize(blockIndex),
-					diskJob -> onReadMetadataBlockCompleted(peer, diskJob)));
+					peer.getIoExecutor()
+			).whenComplete((blockBuffer, failure) -> {
+				if (failure != null) {
+					onReadMetadataBlockFailed(peer, blockIndex, failure);
+				} else {
+					onReadMetadataBlockCompleted(peer, blockIndex, blockBuffer);
+				}
+			});
 		}
 	}
 
-	private void onReadMetadataBlockCompleted(Peer peer, DiskJobReadBlock readJob) {
-		int blockIndex = readJob.getOffset() / MetadataFileSet.BLOCK_SIZE;
+	private void onReadMetadataBlockFailed(Peer peer, int blockIndex, Throwable failure) {
+		LOGGER.warn("Failed to read Metadata block {} requested by {}.", blockIndex, peer, failure);
+
+		Optional<PeerExtensions> peerExtensions = peer.getModuleInfo(PeerExtensions.class);
+		if (!peerExtensions.isPresent() || !peerExtensions.get().hasExtension(UTMetadata.NAME)) {
+			peer.getBitTorrentSocket().close();
+			return;
+		}
+
+		reject(peer, peerExtensions.get(), blockIndex);
+	}
+
+	private static void reject(Peer peer, PeerExtensions peerExtensions, int blockIndex) {
+		MessageReject mr = new MessageReject(blockIndex);
+		MessageExtension extendedMessage = new MessageExtension(peerExtensions.getExtensionId(UTMetadata.NAME), mr);
+		peer.getBitTorrentSocket().enqueueMessage(extendedMessage);
+	}
+
+	private void onReadMetadataBlockCompleted(Peer peer, int blockIndex, BlockBuffer blockBuffer) {
+		byte[] blockData = blockBuffer.toByteArray();
+		blockBuffer.release();
+
 		Optional<PeerExtensions> peerExtensions = peer.getModuleInfo(PeerExtensions.class);
 		if (!peerExtensions.isPresent() || !peerExtensions.get().hasExtension(UTMetadata.NAME)) {
 			LOGGER.warn("Can't satisfy request to send Metadata block {} to {}. Missing ut_metadata id assignment for peer.", blockIndex, peer);
@@ -60,7 +85,7 @@ public class MessageRequest extends AbstractMessage {
 			return;
 		}
 
-		MessageData mData = new MessageData(blockIndex, readJob.getBlockData());
+		MessageData mData = new MessageData(blockIndex, blockData);
 		MessageExtension extendedMessage = new MessageExtension(peerExtensions.get().getExtensionId(UTMetadata.NAME), mData);
 		peer.getBitTorrentSocket().enqueueMessage(extendedMessage);
 	}
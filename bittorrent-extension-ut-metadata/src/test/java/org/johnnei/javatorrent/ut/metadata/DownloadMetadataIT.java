@@ -148,12 +148,20 @@ public class DownloadMetadataIT {
 				.build();
 	}
 
+	/**
+	 * Creates the connection degradation which defines the sockets used for the outgoing connections.
+	 * @return The connection degradation.
+	 */
+	protected ConnectionDegradation createConnectionDegradation() {
+		return new ConnectionDegradation.Builder()
+				.registerDefaultConnectionType(TcpSocket.class, TcpSocket::new)
+				.build();
+	}
+
 	private TorrentClient.Builder prepareTorrentClient(File torrentFileFolder, File downloadFolder) throws Exception {
 		return new TorrentClient.Builder()
 				.acceptIncomingConnections(true)
-				.setConnectionDegradation(new ConnectionDegradation.Builder()
-						.registerDefaultConnectionType(TcpSocket.class, TcpSocket::new)
-						.build())
+				.setConnectionDegradation(createConnectionDegradation())
 				.setDownloadPort(DummyEntity.findAvailableTcpPort())
 				.setExecutorService(Executors.newScheduledThreadPool(2))
 				.setPeerConnector(PeerConnector::new)
@@ -0,0 +1,18 @@
+package org.johnnei.javatorrent.ut.metadata;
+
+import org.johnnei.javatorrent.internal.network.socket.NioTcpSocket;
+import org.johnnei.javatorrent.network.ConnectionDegradation;
+
+/**
+ * Tests the download of a torrent metadata file when the outgoing connections are multiplexed on the selector of the peer IO reactor.
+ */
+public class DownloadMetadataWithNioIT extends DownloadMetadataIT {
+
+	@Override
+	protected ConnectionDegradation createConnectionDegradation() {
+		return new ConnectionDegradation.Builder()
+				.registerDefaultConnectionType(NioTcpSocket.class, NioTcpSocket::new)
+				.build();
+	}
+
+}
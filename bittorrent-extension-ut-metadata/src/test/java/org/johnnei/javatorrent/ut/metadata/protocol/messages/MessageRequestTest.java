@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Optional;
 
+import org.johnnei.javatorrent.disk.AsyncDisk;
 import org.johnnei.javatorrent.disk.DiskJobReadBlock;
 import org.johnnei.javatorrent.disk.IDiskJob;
 import org.johnnei.javatorrent.network.BitTorrentSocket;
@@ -69,6 +70,7 @@ public class MessageRequestTest extends EasyMockSupport {
 		metadataFileSetMock = createNiceMock(MetadataFileSet.class);
 
 		expect(peerMock.getTorrent()).andStubReturn(torrentMock);
+		expect(torrentMock.getDisk()).andStubReturn(new AsyncDisk(torrentMock::addDiskJob));
 		expect(torrentMock.getMetadata()).andReturn(metadataMock);
 		expect(metadataMock.getFileSet()).andReturn(Optional.of(metadataFileSetMock));
 		expect(metadataFileSetMock.getPiece(0)).andReturn(pieceMock);
@@ -157,6 +159,32 @@ public class MessageRequestTest extends EasyMockSupport {
 		verifyAll();
 	}
 
+	@Test
+	public void testOnReadMetadataBlockFailed() throws IOException {
+		prepareSuccessfulRead();
+		PeerExtensions extensionsMock = createNiceMock(PeerExtensions.class);
+		BitTorrentSocket socketMock = createNiceMock(BitTorrentSocket.class);
+
+		Capture<IDiskJob> diskJobCapture = EasyMock.newCapture();
+		torrentMock.addDiskJob(and(isA(DiskJobReadBlock.class), capture(diskJobCapture)));
+
+		expect(peerMock.getModuleInfo(PeerExtensions.class)).andReturn(Optional.of(extensionsMock));
+		expect(peerMock.getBitTorrentSocket()).andReturn(socketMock);
+		expect(extensionsMock.hasExtension(eq("ut_metadata"))).andReturn(true);
+		expect(extensionsMock.getExtensionId(eq("ut_metadata"))).andReturn(3);
+		socketMock.enqueueMessage(isA(MessageExtension.class));
+
+		replayAll();
+
+		cut.read(inStream);
+		cut.process(peerMock);
+
+		// The request must be rejected as the block can't be read.
+		diskJobCapture.getValue().onFailure(new IOException("Stubbed IO Exception"));
+
+		verifyAll();
+	}
+
 	@Test
 	public void testReadAndProcessDownloadingMetadata() {
 		MessageRequest cut = new MessageRequest(5);
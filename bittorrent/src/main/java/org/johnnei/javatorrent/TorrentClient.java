@@ -1,5 +1,8 @@
 package org.johnnei.javatorrent;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -9,26 +12,41 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-import org.johnnei.javatorrent.async.LoopingRunnable;
 import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
 import org.johnnei.javatorrent.bittorrent.tracker.ITracker;
 import org.johnnei.javatorrent.bittorrent.tracker.TrackerException;
 import org.johnnei.javatorrent.bittorrent.tracker.TrackerFactory;
+import org.johnnei.javatorrent.disk.DiskAffinity;
+import org.johnnei.javatorrent.disk.DiskBackpressure;
+import org.johnnei.javatorrent.disk.DiskJobCheckHash;
+import org.johnnei.javatorrent.disk.FileHandleCache;
+import org.johnnei.javatorrent.disk.HashVerificationPool;
 import org.johnnei.javatorrent.disk.IDiskJob;
+import org.johnnei.javatorrent.disk.PieceCache;
+import org.johnnei.javatorrent.disk.ReadCache;
+import org.johnnei.javatorrent.disk.RecheckEngine;
 import org.johnnei.javatorrent.internal.disk.IOManager;
 import org.johnnei.javatorrent.internal.torrent.TorrentManager;
 import org.johnnei.javatorrent.internal.tracker.TrackerManager;
 import org.johnnei.javatorrent.module.IModule;
+import org.johnnei.javatorrent.network.BlockBufferPool;
 import org.johnnei.javatorrent.network.ConnectionDegradation;
+import org.johnnei.javatorrent.network.bandwidth.RateMeter;
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
 import org.johnnei.javatorrent.phases.PhaseRegulator;
 import org.johnnei.javatorrent.torrent.Torrent;
+import org.johnnei.javatorrent.torrent.TorrentFileSet;
+import org.johnnei.javatorrent.torrent.peer.Peer;
 import org.johnnei.javatorrent.tracker.IPeerConnector;
 import org.johnnei.javatorrent.tracker.IPeerDistributor;
+import org.johnnei.javatorrent.tracker.ThreadPerPeerConnector;
 import org.johnnei.javatorrent.utils.Argument;
 import org.johnnei.javatorrent.utils.CheckedBiFunction;
 
@@ -43,10 +61,80 @@ public class TorrentClient {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentClient.class);
 
+	/**
+	 * The default maximum amount of unused block buffers which are kept for reuse (16 MiB).
+	 */
+	private static final int DEFAULT_POOLED_BLOCKS = 1024;
+
+	/**
+	 * The interval in seconds at which the fast-resume records are written.
+	 */
+	private static final long RESUME_SAVE_INTERVAL = 60;
+
+	/**
+	 * The default amount of pieces which are read concurrently to verify the data on disk.
+	 */
+	private static final int DEFAULT_RECHECK_CONCURRENCY = 2;
+
+	/**
+	 * The default amount of memory which is used to assemble pieces before they are verified and written (32 MiB).
+	 */
+	private static final long DEFAULT_PIECE_CACHE_SIZE = 32L << 20;
+
+	/**
+	 * The default amount of memory which is used to cache the blocks which are read for peers (16 MiB).
+	 */
+	private static final long DEFAULT_READ_CACHE_SIZE = 16L << 20;
+
+	/**
+	 * The default amount of bytes which are read after the requested block when it isn't cached (64 KiB).
+	 */
+	private static final int DEFAULT_READ_AHEAD_SIZE = 64 << 10;
+
+	/**
+	 * The default maximum amount of files of all torrents which are kept open at the same time.
+	 */
+	private static final int DEFAULT_MAX_OPEN_FILES = 512;
+
+	/**
+	 * The maximum amount of completed pieces which are waiting to be verified before the thread which completes them verifies them itself.
+	 */
+	private static final int HASH_QUEUE_SIZE = 256;
+
+	/**
+	 * The time in seconds to wait for the queued pieces to be verified on shutdown.
+	 */
+	private static final long HASH_SHUTDOWN_TIMEOUT = 10;
+
+	/**
+	 * The time in seconds to wait for the disk workers and the executor to complete their jobs on shutdown.
+	 */
+	private static final long DISK_SHUTDOWN_TIMEOUT = 10;
+
+	/**
+	 * The default amount of queued writes below which blocks are requested at full speed (32 MiB).
+	 */
+	private static final long DEFAULT_WRITE_LOW_WATERMARK = 32L << 20;
+
+	/**
+	 * The default amount of queued writes above which no more blocks are requested (64 MiB).
+	 */
+	private static final long DEFAULT_WRITE_HIGH_WATERMARK = 64L << 20;
+
 	private ConnectionDegradation connectionDegradation;
 
 	private MessageFactory messageFactory;
 
+	private BlockBufferPool blockBufferPool;
+
+	private TokenBucket downloadLimiter;
+
+	private TokenBucket uploadLimiter;
+
+	private RateMeter downloadMeter;
+
+	private RateMeter uploadMeter;
+
 	private TorrentManager torrentManager;
 
 	private TrackerManager trackerManager;
@@ -61,7 +149,19 @@ public class TorrentClient {
 
 	private IOManager ioManager;
 
-	private LoopingRunnable ioManagerRunner;
+	private PieceCache pieceCache;
+
+	private ReadCache readCache;
+
+	private FileHandleCache fileHandleCache;
+
+	private HashVerificationPool hashVerificationPool;
+
+	private DiskBackpressure diskBackpressure;
+
+	private RecheckEngine recheckEngine;
+
+	private File resumeDirectory;
 
 	private int downloadPort;
 
@@ -77,19 +177,30 @@ public class TorrentClient {
 		peerDistributor = Objects.requireNonNull(builder.peerDistributor.apply(this), "Peer distributor is invalid.");
 		connectionDegradation = Objects.requireNonNull(builder.connectionDegradation, "Connection degradation is required to setup connections with peers.");
 		LOGGER.info(String.format("Configured connection types: %s", connectionDegradation));
-		messageFactory = builder.messageFactoryBuilder.build();
+		blockBufferPool = builder.blockBufferPool != null ? builder.blockBufferPool : new BlockBufferPool(TorrentFileSet.BLOCK_SIZE, DEFAULT_POOLED_BLOCKS);
+		messageFactory = builder.messageFactoryBuilder.setBlockBufferPool(blockBufferPool).build();
+		downloadLimiter = new TokenBucket(null);
+		downloadLimiter.setRate(builder.downloadRateLimit);
+		uploadLimiter = new TokenBucket(null);
+		uploadLimiter.setRate(builder.uploadRateLimit);
+		downloadMeter = new RateMeter(null);
+		uploadMeter = new RateMeter(null);
 		phaseRegulator = Objects.requireNonNull(builder.phaseRegulator, "Phase regulator is required to regulate the download/seed phases of a torrent.");
 		LOGGER.info(String.format("Configured phases: %s", phaseRegulator));
 		executorService = Objects.requireNonNull(builder.executorService, "Executor service is required to process torrent tasks.");
 
-		peerConnector = Objects.requireNonNull(builder.peerConnector, "Peer connector required to allow external connections").apply(this);
+		if (builder.peerConnector == null && builder.peerThreadFactory != null) {
+			peerConnector = new ThreadPerPeerConnector(this, builder.peerThreadFactory);
+		} else {
+			peerConnector = Objects.requireNonNull(builder.peerConnector, "Peer connector required to allow external connections").apply(this);
+		}
 		LOGGER.info(String.format("Configured %s as Peer Connector", peerConnector));
 
 		Objects.requireNonNull(builder.trackerFactoryBuilder, "At least one tracker protocol must be configured.");
 		TrackerFactory trackerFactory = builder.trackerFactoryBuilder.setTorrentClient(this).build();
 
 		trackerManager = new TrackerManager(peerConnector, trackerFactory);
-		torrentManager = new TorrentManager(trackerManager);
+		torrentManager = new TorrentManager(trackerManager, builder.peerIoThreads, builder.peerThreadFactory);
 		LOGGER.info(String.format("Configured trackers: %s", trackerFactory));
 
 		modules = builder.modules;
@@ -101,13 +212,30 @@ public class TorrentClient {
 		extensionBytes = builder.extensionBytes;
 		peerId = createPeerId();
 		transactionId = new AtomicInteger(new Random().nextInt());
-		ioManager = new IOManager();
-		ioManagerRunner = new LoopingRunnable(ioManager);
-		Thread ioManagerThread = new Thread(ioManagerRunner, "Disk Manager");
-		ioManagerThread.setDaemon(true);
-		ioManagerThread.start();
+		if (builder.writeHighWatermark > 0) {
+			diskBackpressure = new DiskBackpressure(builder.writeLowWatermark, builder.writeHighWatermark);
+		}
+		ioManager = new IOManager(builder.diskThreads, builder.diskAffinity, builder.writeBatchWindow, diskBackpressure);
+		ioManager.start();
+		if (builder.pieceCacheSize > 0) {
+			pieceCache = new PieceCache(builder.pieceCacheSize);
+		}
+		if (builder.readCacheSize > 0) {
+			readCache = new ReadCache(builder.readCacheSize, builder.readAheadSize);
+		}
+		if (builder.maxOpenFiles > 0) {
+			fileHandleCache = new FileHandleCache(builder.maxOpenFiles);
+		}
+		if (builder.hashThreads > 0) {
+			hashVerificationPool = new HashVerificationPool(builder.hashThreads, HASH_QUEUE_SIZE, ioManager::addTask);
+		}
+		recheckEngine = new RecheckEngine(builder.recheckConcurrency, builder.recheckRateLimit);
+		resumeDirectory = builder.resumeDirectory;
 
 		torrentManager.start(this);
+		if (resumeDirectory != null) {
+			executorService.scheduleWithFixedDelay(this::saveResumeData, RESUME_SAVE_INTERVAL, RESUME_SAVE_INTERVAL, TimeUnit.SECONDS);
+		}
 		if (builder.acceptIncomingConnections) {
 			torrentManager.enableConnectionAcceptor();
 		}
@@ -156,24 +284,124 @@ public class TorrentClient {
 	 */
 	public void shutdown() {
 		torrentManager.stop();
-		ioManagerRunner.stop();
-		executorService.shutdown();
+		recheckEngine.shutdown();
+		// The verifications queue the writes of cached pieces on the disk workers, the results of those writes are handled on the executor. Each stage must
+		// have completed before the resume data is saved, otherwise pieces which have been written are recorded as missing.
+		stopHashVerificationPool();
+		stopDiskWorkers();
+		stopExecutorService();
+		flushPieceCache();
+		saveResumeData();
+		closeStorage();
 		peerConnector.stop();
 		modules.stream().forEach(IModule::onShutdown);
 	}
 
+	private void stopHashVerificationPool() {
+		if (hashVerificationPool == null) {
+			return;
+		}
+
+		hashVerificationPool.shutdown();
+		try {
+			if (!hashVerificationPool.awaitTermination(HASH_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+				LOGGER.warn("Hash verification didn't complete within {} seconds, the remaining pieces will be verified on the next start.", HASH_SHUTDOWN_TIMEOUT);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void stopDiskWorkers() {
+		ioManager.stop();
+		try {
+			if (!ioManager.awaitTermination(DISK_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+				LOGGER.warn("Disk workers didn't stop within {} seconds, queued disk jobs will not be processed.", DISK_SHUTDOWN_TIMEOUT);
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		// Process the jobs which have been queued after the workers completed their last cycle.
+		ioManager.run();
+	}
+
+	private void stopExecutorService() {
+		executorService.shutdown();
+		try {
+			if (!executorService.awaitTermination(DISK_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+				LOGGER.warn("Executor didn't stop within {} seconds, the results of disk jobs might not be recorded.", DISK_SHUTDOWN_TIMEOUT);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void flushPieceCache() {
+		if (pieceCache == null) {
+			return;
+		}
+
+		try {
+			pieceCache.flush();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to write the pieces which were being assembled.", e);
+		}
+	}
+
+	private void saveResumeData() {
+		for (Torrent torrent : torrentManager.getTorrents()) {
+			try {
+				torrent.saveResumeData();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to write the fast-resume record of {}.", torrent, e);
+			}
+		}
+	}
+
+	private void closeStorage() {
+		for (Torrent torrent : torrentManager.getTorrents()) {
+			TorrentFileSet fileSet = torrent.getFileSet();
+			if (fileSet == null) {
+				continue;
+			}
+
+			try {
+				fileSet.getStorage().close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close the storage of {}.", torrent, e);
+			}
+		}
+	}
+
 	public int createUniqueTransactionId() {
 		return transactionId.incrementAndGet();
 	}
 
 	/**
-	 * Submits the disk job to be processed by the IO manager.
+	 * Submits the disk job to be processed by the IO manager. Jobs which verify the hash of a piece are processed by the hash verification pool when it is
+	 * enabled.
 	 * @param task The disk job to execute.
 	 */
 	public void addDiskJob(IDiskJob task) {
+		if (hashVerificationPool != null && task instanceof DiskJobCheckHash) {
+			hashVerificationPool.submit((DiskJobCheckHash) task);
+			return;
+		}
+
 		ioManager.addTask(task);
 	}
 
+	/**
+	 * Registers the peer to the peer IO engine so that its messages get read and written.
+	 * @param peer The peer which has passed the handshake.
+	 */
+	public void registerPeer(Peer peer) {
+		torrentManager.registerPeer(peer);
+	}
+
 	/**
 	 * Calculates how many connections are assigned to the torrent but haven't passed the BitTorrent handshake yet.
 	 * @param torrent The torrent for which connections must be counted.
@@ -216,6 +444,128 @@ public class TorrentClient {
 		return phaseRegulator;
 	}
 
+	/**
+	 * Gets the pool from which the buffers for blocks are allocated.
+	 * @return The block buffer pool.
+	 */
+	public BlockBufferPool getBlockBufferPool() {
+		return blockBufferPool;
+	}
+
+	/**
+	 * Gets the directory in which the fast-resume records of the torrents are stored.
+	 * @return The directory or <code>null</code> when fast-resume is disabled.
+	 */
+	public File getResumeDirectory() {
+		return resumeDirectory;
+	}
+
+	/**
+	 * Gets the engine which verifies the pieces of the torrents which are on disk.
+	 * @return The recheck engine.
+	 */
+	public RecheckEngine getRecheckEngine() {
+		return recheckEngine;
+	}
+
+	/**
+	 * Gets the cache in which the received pieces are assembled before they are verified and written.
+	 * @return The piece cache or <code>null</code> when the cache is disabled.
+	 */
+	public PieceCache getPieceCache() {
+		return pieceCache;
+	}
+
+	/**
+	 * Gets the cache through which the blocks requested by peers are read.
+	 * @return The read cache or <code>null</code> when blocks are read from the files directly.
+	 */
+	public ReadCache getReadCache() {
+		return readCache;
+	}
+
+	/**
+	 * Gets the cache which manages the open handles to the files of all torrents.
+	 * @return The file handle cache or <code>null</code> when files are kept open once they have been opened.
+	 */
+	public FileHandleCache getFileHandleCache() {
+		return fileHandleCache;
+	}
+
+	/**
+	 * Gets the pool which verifies the hashes of completed pieces.
+	 * @return The hash verification pool or <code>null</code> when pieces are verified on the disk threads.
+	 */
+	public HashVerificationPool getHashVerificationPool() {
+		return hashVerificationPool;
+	}
+
+	/**
+	 * Gets the flow control which throttles the requesting of blocks while the received blocks are waiting to be written.
+	 * @return The disk backpressure or <code>null</code> when blocks are requested regardless of the queued writes.
+	 */
+	public DiskBackpressure getDiskBackpressure() {
+		return diskBackpressure;
+	}
+
+	/**
+	 * Gets the amount of disk jobs which are waiting to be processed by the disk threads.
+	 * @return The depth of the disk queues.
+	 */
+	public int getDiskQueueSize() {
+		return ioManager.getQueueSize();
+	}
+
+	/**
+	 * Changes the maximum download rate of all torrents combined. This takes effect immediately.
+	 * @param bytesPerSecond The amount of bytes per second or {@link TokenBucket#UNLIMITED}.
+	 */
+	public void setDownloadRateLimit(long bytesPerSecond) {
+		downloadLimiter.setRate(bytesPerSecond);
+	}
+
+	/**
+	 * Changes the maximum upload rate of all torrents combined. This takes effect immediately.
+	 * @param bytesPerSecond The amount of bytes per second or {@link TokenBucket#UNLIMITED}.
+	 */
+	public void setUploadRateLimit(long bytesPerSecond) {
+		uploadLimiter.setRate(bytesPerSecond);
+	}
+
+	/**
+	 * Gets the root bucket which limits the download rate of all torrents. The limiters of the torrents (see {@link Torrent#getDownloadLimiter()}) are
+	 * children of this bucket.
+	 * @return The global download limiter.
+	 */
+	public TokenBucket getDownloadLimiter() {
+		return downloadLimiter;
+	}
+
+	/**
+	 * Gets the root bucket which limits the upload rate of all torrents. The limiters of the torrents (see {@link Torrent#getUploadLimiter()}) are children
+	 * of this bucket.
+	 * @return The global upload limiter.
+	 */
+	public TokenBucket getUploadLimiter() {
+		return uploadLimiter;
+	}
+
+	/**
+	 * Gets the meter which measures the download rate of all torrents combined.
+	 * @return The global download meter.
+	 */
+	public RateMeter getDownloadMeter() {
+		return downloadMeter;
+	}
+
+	/**
+	 * Gets the meter which measures the upload rate of all torrents combined.
+	 * @return The global upload meter.
+	 */
+	public RateMeter getUploadMeter() {
+		return uploadMeter;
+	}
+
 	/**
 	 * Gets the {@link ScheduledExecutorService} which will execute the small tasks
 	 * @return The executor service implementation
@@ -321,6 +671,42 @@ public class TorrentClient {
 
 		private int downloadPort;
 
+		private int peerIoThreads;
+
+		private int diskThreads;
+
+		private DiskAffinity diskAffinity;
+
+		private Duration writeBatchWindow;
+
+		private long writeLowWatermark;
+
+		private long writeHighWatermark;
+
+		private long pieceCacheSize;
+
+		private long readCacheSize;
+
+		private int readAheadSize;
+
+		private int maxOpenFiles;
+
+		private int hashThreads;
+
+		private int recheckConcurrency;
+
+		private long recheckRateLimit;
+
+		private File resumeDirectory;
+
+		private ThreadFactory peerThreadFactory;
+
+		private BlockBufferPool blockBufferPool;
+
+		private long downloadRateLimit;
+
+		private long uploadRateLimit;
+
 		private byte[] extensionBytes;
 
 		public Builder() {
@@ -328,6 +714,18 @@ public class TorrentClient {
 			trackerFactoryBuilder = new TrackerFactory.Builder();
 			modules = new ArrayList<>();
 			extensionBytes = new byte[8];
+			peerIoThreads = 1;
+			diskThreads = 1;
+			diskAffinity = DiskAffinity.File;
+			writeBatchWindow = Duration.ZERO;
+			writeLowWatermark = DEFAULT_WRITE_LOW_WATERMARK;
+			writeHighWatermark = DEFAULT_WRITE_HIGH_WATERMARK;
+			pieceCacheSize = DEFAULT_PIECE_CACHE_SIZE;
+			readCacheSize = DEFAULT_READ_CACHE_SIZE;
+			readAheadSize = DEFAULT_READ_AHEAD_SIZE;
+			maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+			hashThreads = Runtime.getRuntime().availableProcessors();
+			recheckConcurrency = DEFAULT_RECHECK_CONCURRENCY;
 		}
 
 		public Builder registerModule(IModule module) {
@@ -407,6 +805,222 @@ public class TorrentClient {
 			return this;
 		}
 
+		/**
+		 * Sets the amount of threads which handle the peer connections. Each peer is pinned to one of the threads for its entire lifetime.
+		 * By default a single thread is used.
+		 * @param peerIoThreads The amount of threads (at least 1).
+		 * @return The modified instance
+		 */
+		public Builder setPeerIoThreads(int peerIoThreads) {
+			Argument.requireWithinBounds(peerIoThreads, 1, Integer.MAX_VALUE, "At least one peer IO thread is required.");
+			this.peerIoThreads = peerIoThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the amount of threads which process the disk jobs. By default a single thread is used.
+		 * @param diskThreads The amount of threads (at least 1).
+		 * @return The modified instance
+		 *
+		 * @see #setDiskAffinity(DiskAffinity)
+		 */
+		public Builder setDiskThreads(int diskThreads) {
+			Argument.requireWithinBounds(diskThreads, 1, Integer.MAX_VALUE, "At least one disk thread is required.");
+			this.diskThreads = diskThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the policy which assigns the disk jobs to the disk threads. By default each file is assigned to a thread.
+		 * @param diskAffinity The affinity policy.
+		 * @return The modified instance
+		 */
+		public Builder setDiskAffinity(DiskAffinity diskAffinity) {
+			this.diskAffinity = Argument.requireNonNull(diskAffinity, "Disk affinity can not be null.");
+			return this;
+		}
+
+		/**
+		 * Sets the time a disk thread waits for more received blocks before the pending blocks are written. Pending blocks are written in order of their
+		 * offset and consecutive blocks are merged into a single write, a longer window results in more sequential writes at the cost of latency. This
+		 * applies to the blocks which are not assembled in the {@link #setPieceCacheSize(long) piece cache}. By default pending blocks are written
+		 * without waiting.
+		 * @param window The batching window.
+		 * @return The modified instance
+		 */
+		public Builder setWriteBatchWindow(Duration window) {
+			Argument.requireNonNull(window, "Write batch window can not be null.");
+			if (window.isNegative()) {
+				throw new IllegalArgumentException("Write batch window can not be negative.");
+			}
+			this.writeBatchWindow = window;
+			return this;
+		}
+
+		/**
+		 * Sets the watermarks of the received blocks which are waiting to be written. Requesting blocks slows down once the queued writes exceed the low
+		 * watermark and pauses once they exceed the high watermark, until they have dropped below the low watermark again. This prevents a slow disk from
+		 * exhausting the memory with received blocks. By default requesting slows down at 32 MiB and pauses at 64 MiB.
+		 * @param lowWatermark The amount of bytes at which requesting resumes.
+		 * @param highWatermark The amount of bytes at which requesting pauses or 0 to request regardless of the queued writes.
+		 * @return The modified instance
+		 */
+		public Builder setWriteWatermarks(long lowWatermark, long highWatermark) {
+			Argument.requirePositive(lowWatermark, "Low watermark can not be negative.");
+			Argument.requirePositive(highWatermark, "High watermark can not be negative.");
+			if (highWatermark > 0 && lowWatermark >= highWatermark) {
+				throw new IllegalArgumentException("Low watermark must be lower than the high watermark.");
+			}
+			this.writeLowWatermark = lowWatermark;
+			this.writeHighWatermark = highWatermark;
+			return this;
+		}
+
+		/**
+		 * Sets the amount of memory which is used to assemble received pieces. Assembled pieces are verified before they are written in a single write, so
+		 * the received data isn't read back from the files. By default 32 MiB is used.
+		 * @param bytes The amount of bytes or 0 to write every block directly.
+		 * @return The modified instance
+		 */
+		public Builder setPieceCacheSize(long bytes) {
+			Argument.requirePositive(bytes, "Piece cache size can not be negative.");
+			this.pieceCacheSize = bytes;
+			return this;
+		}
+
+		/**
+		 * Sets the amount of memory which is used to cache the blocks which are read to serve the requests of peers. The least recently used blocks are
+		 * evicted, so the popular pieces stay in memory. By default 16 MiB is used.
+		 * @param bytes The amount of bytes or 0 to read every request from the files.
+		 * @return The modified instance
+		 */
+		public Builder setReadCacheSize(long bytes) {
+			Argument.requirePositive(bytes, "Read cache size can not be negative.");
+			this.readCacheSize = bytes;
+			return this;
+		}
+
+		/**
+		 * Sets the amount of bytes which are read after the requested section when it isn't cached yet. Peers usually request the following blocks of a
+		 * piece next, which are then served from the read cache. By default 64 KiB is read ahead.
+		 * @param bytes The amount of bytes or 0 to disable read-ahead.
+		 * @return The modified instance
+		 */
+		public Builder setReadAheadSize(int bytes) {
+			Argument.requirePositive(bytes, "Read-ahead size can not be negative.");
+			this.readAheadSize = bytes;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum amount of files of all torrents which are kept open at the same time. Files are opened when they are first accessed and the
+		 * least recently used files are closed when the limit is reached. By default 512 files are kept open.
+		 * @param maxOpenFiles The amount of files or 0 to keep every file open once it has been opened.
+		 * @return The modified instance
+		 */
+		public Builder setMaxOpenFiles(int maxOpenFiles) {
+			Argument.requirePositive(maxOpenFiles, "Maximum amount of open files can not be negative.");
+			this.maxOpenFiles = maxOpenFiles;
+			return this;
+		}
+
+		/**
+		 * Sets the amount of threads which verify the hashes of completed pieces, separate from the disk threads so that the hashing doesn't stall the
+		 * reads and writes. By default one thread per available processor is used.
+		 * @param hashThreads The amount of threads or 0 to verify the pieces on the disk threads.
+		 * @return The modified instance
+		 */
+		public Builder setHashThreads(int hashThreads) {
+			Argument.requirePositive(hashThreads, "Amount of hash threads can not be negative.");
+			this.hashThreads = hashThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the amount of pieces which are read concurrently when the data of a torrent on disk is verified. By default 2 pieces are read at a time.
+		 * @param concurrency The amount of pieces (at least 1).
+		 * @return The modified instance
+		 */
+		public Builder setRecheckConcurrency(int concurrency) {
+			Argument.requireWithinBounds(concurrency, 1, Integer.MAX_VALUE, "At least one piece must be allowed to be checked at a time.");
+			this.recheckConcurrency = concurrency;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum rate at which the data of torrents on disk is read to be verified. By default the rate is not limited.
+		 * @param bytesPerSecond The amount of bytes per second or {@link TokenBucket#UNLIMITED}.
+		 * @return The modified instance
+		 */
+		public Builder setRecheckRateLimit(long bytesPerSecond) {
+			Argument.requirePositive(bytesPerSecond, "Rate limit can not be negative.");
+			this.recheckRateLimit = bytesPerSecond;
+			return this;
+		}
+
+		/**
+		 * Enables fast-resume. A record of the verified pieces and the state of the files of each torrent is written to the directory every minute and on
+		 * shutdown. When a torrent is started again only the pieces in files which changed since the record was written are verified. The blocks which have
+		 * been written for incomplete pieces are journaled in the same directory, so partially downloaded pieces continue where they left off.
+		 * @param resumeDirectory The directory to store the records in.
+		 * @return The modified instance
+		 */
+		public Builder setResumeDirectory(File resumeDirectory) {
+			this.resumeDirectory = Argument.requireNonNull(resumeDirectory, "Resume directory can not be null.");
+			return this;
+		}
+
+		/**
+		 * Enables the thread-per-peer mode. In this mode every peer connection, outbound connection attempt and inbound handshake runs on its own thread
+		 * created by the given factory and uses plain blocking IO. This replaces the shared peer IO threads configured by {@link #setPeerIoThreads(int)}.
+		 * <p>
+		 * This mode is intended for lightweight threads. On Java 21+ pass <code>Thread.ofVirtual().factory()</code> to run every peer on a virtual thread.
+		 * When no peer connector is configured a {@link ThreadPerPeerConnector} is used.
+		 * @param peerThreadFactory The factory to create the peer threads with.
+		 * @return The modified instance
+		 */
+		public Builder setPeerThreadFactory(ThreadFactory peerThreadFactory) {
+			this.peerThreadFactory = Argument.requireNonNull(peerThreadFactory, "Thread factory can not be null.");
+			return this;
+		}
+
+		/**
+		 * Sets the pool from which the buffers for the blocks which are received and sent are allocated. By default a heap pool which keeps up to 1024
+		 * unused blocks is used.
+		 * @param blockBufferPool The pool to use.
+		 * @return The modified instance
+		 */
+		public Builder setBlockBufferPool(BlockBufferPool blockBufferPool) {
+			this.blockBufferPool = Argument.requireNonNull(blockBufferPool, "Block buffer pool can not be null.");
+			return this;
+		}
+
+		/**
+		 * Sets the initial maximum download rate of all torrents combined. By default the rate is not limited.
+		 * @param bytesPerSecond The amount of bytes per second or {@link TokenBucket#UNLIMITED}.
+		 * @return The modified instance
+		 *
+		 * @see TorrentClient#setDownloadRateLimit(long)
+		 */
+		public Builder setDownloadRateLimit(long bytesPerSecond) {
+			Argument.requirePositive(bytesPerSecond, "Download rate limit can not be negative.");
+			this.downloadRateLimit = bytesPerSecond;
+			return this;
+		}
+
+		/**
+		 * Sets the initial maximum upload rate of all torrents combined. By default the rate is not limited.
+		 * @param bytesPerSecond The amount of bytes per second or {@link TokenBucket#UNLIMITED}.
+		 * @return The modified instance
+		 *
+		 * @see TorrentClient#setUploadRateLimit(long)
+		 */
+		public Builder setUploadRateLimit(long bytesPerSecond) {
+			Argument.requirePositive(bytesPerSecond, "Upload rate limit can not be negative.");
+			this.uploadRateLimit = bytesPerSecond;
+			return this;
+		}
+
 		/**
 		 * Sets the peer distributor which is being used by the {@link IPeerConnector} implementation.
 		 * @param peerDistributor The peer distributor.
@@ -14,10 +14,29 @@ public class LoopingRunnable implements Runnable {
 
 	private final Runnable runnable;
 
-	private boolean keepRunning;
+	/**
+	 * If the thread should sleep between cycles to prevent busy waiting.
+	 */
+	private final boolean sleepBetweenCycles;
+
+	private volatile boolean keepRunning;
 
+	/**
+	 * Creates a new looping runnable which sleeps for a short while between each cycle.
+	 * @param runnable The runnable to invoke each cycle.
+	 */
 	public LoopingRunnable(Runnable runnable) {
+		this(runnable, true);
+	}
+
+	/**
+	 * Creates a new looping runnable.
+	 * @param runnable The runnable to invoke each cycle.
+	 * @param sleepBetweenCycles <code>false</code> when the runnable blocks on its own while it has no work.
+	 */
+	public LoopingRunnable(Runnable runnable, boolean sleepBetweenCycles) {
 		this.runnable = Argument.requireNonNull(runnable, "Runnable not cannot be null");
+		this.sleepBetweenCycles = sleepBetweenCycles;
 		keepRunning = true;
 	}
 
@@ -33,6 +52,10 @@ public class LoopingRunnable implements Runnable {
 		while (keepRunning) {
 			runnable.run();
 
+			if (!sleepBetweenCycles) {
+				continue;
+			}
+
 			try {
 				Thread.sleep(5);
 			} catch (InterruptedException e) {
@@ -2,9 +2,21 @@ package org.johnnei.javatorrent.bittorrent.encoding;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SHA1 {
 
+	/**
+	 * The maximum amount of unused digests which are kept for reuse.
+	 */
+	private static final int MAX_POOLED_DIGESTS = 64;
+
+	private static final Queue<MessageDigest> POOL = new ConcurrentLinkedQueue<>();
+
+	private static final AtomicInteger POOL_SIZE = new AtomicInteger();
+
 	private SHA1() {
 		/* No SHA1 instances for you */
 	}
@@ -16,13 +28,62 @@ public class SHA1 {
 	 * @return The 20-byte hash
 	 */
 	public static byte[] hash(byte[] data) {
+		return hash(data, 0, data.length);
+	}
+
+	/**
+	 * Hashes the given section of the data into SHA-1 Hashing
+	 *
+	 * @param data The array containing the bytes to hash
+	 * @param offset The offset of the first byte to hash
+	 * @param length The amount of bytes to hash
+	 * @return The 20-byte hash
+	 */
+	public static byte[] hash(byte[] data, int offset, int length) {
+		MessageDigest digest = acquireDigest();
 		try {
-			MessageDigest md = MessageDigest.getInstance("SHA-1");
-			return md.digest(data);
+			digest.update(data, offset, length);
+			return digest.digest();
+		} finally {
+			releaseDigest(digest);
+		}
+	}
+
+	/**
+	 * Takes a SHA-1 digest from the pool or creates a new one when the pool is empty. This allows a hash to be calculated incrementally without creating a
+	 * digest for every hash.
+	 *
+	 * @return A digest in its initial state.
+	 * @see #releaseDigest(MessageDigest)
+	 */
+	public static MessageDigest acquireDigest() {
+		MessageDigest digest = POOL.poll();
+		if (digest != null) {
+			POOL_SIZE.decrementAndGet();
+			return digest;
+		}
+
+		try {
+			return MessageDigest.getInstance("SHA-1");
 		} catch (NoSuchAlgorithmException e) {
 			// SHA-1 is mandatory by the Java spec so this should never be thrown.
 			throw new UnsupportedOperationException("SHA-1 implementation is missing. Can't verify downloads", e);
 		}
 	}
 
+	/**
+	 * Resets the digest and returns it to the pool. The digest must no longer be used by the caller.
+	 *
+	 * @param digest The digest which has been acquired with {@link #acquireDigest()}.
+	 */
+	public static void releaseDigest(MessageDigest digest) {
+		digest.reset();
+		if (POOL_SIZE.incrementAndGet() > MAX_POOLED_DIGESTS) {
+			POOL_SIZE.decrementAndGet();
+			return;
+		}
+
+		POOL.offer(digest);
+	}
+
 }
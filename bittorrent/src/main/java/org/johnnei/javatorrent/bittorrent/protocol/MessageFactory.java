@@ -1,7 +1,5 @@
 package org.johnnei.javatorrent.bittorrent.protocol;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Supplier;
 
 import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
@@ -14,17 +12,25 @@ import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageInterested;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageRequest;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUnchoke;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUninterested;
+import org.johnnei.javatorrent.network.BlockBufferPool;
 
 /**
  * The factory which maps the message IDs to the {@link IMessage} instances.
  *
+ * Message IDs are a single byte on the wire, so the suppliers are stored in an array indexed by the ID. Messages without payload are stateless and are
+ * served as shared instances instead of creating a new one for each received message.
  */
 public class MessageFactory {
 
-	private final Map<Integer, Supplier<IMessage>> messageSuppliers;
+	/**
+	 * The amount of distinct message IDs which fit in the single byte ID of the protocol.
+	 */
+	private static final int MESSAGE_ID_COUNT = 256;
+
+	private final Supplier<IMessage>[] messageSuppliers;
 
 	private MessageFactory(Builder builder) {
-		messageSuppliers = builder.messageSuppliers;
+		messageSuppliers = builder.messageSuppliers.clone();
 	}
 
 	/**
@@ -33,38 +39,54 @@ public class MessageFactory {
 	 * @return New instance of the associated message
 	 */
 	public IMessage createById(int id) {
-		if (!messageSuppliers.containsKey(id)) {
+		Supplier<IMessage> messageSupplier = (id >= 0 && id < MESSAGE_ID_COUNT) ? messageSuppliers[id] : null;
+		if (messageSupplier == null) {
 			throw new IllegalArgumentException(String.format("Message %d is not known.", id));
 		}
 
-		return messageSuppliers.get(id).get();
+		return messageSupplier.get();
 	}
 
 	public static class Builder {
 
-		private Map<Integer, Supplier<IMessage>> messageSuppliers;
+		private Supplier<IMessage>[] messageSuppliers;
 
+		@SuppressWarnings("unchecked")
 		public Builder() {
-			messageSuppliers = new HashMap<>();
+			messageSuppliers = (Supplier<IMessage>[]) new Supplier<?>[MESSAGE_ID_COUNT];
 
 			// Register BitTorrent messages
 			registerMessage(BitTorrent.MESSAGE_BITFIELD, MessageBitfield::new);
 			registerMessage(BitTorrent.MESSAGE_CANCEL, MessageCancel::new);
-			registerMessage(BitTorrent.MESSAGE_CHOKE, MessageChoke::new);
+			registerMessage(BitTorrent.MESSAGE_CHOKE, () -> MessageChoke.INSTANCE);
 			registerMessage(BitTorrent.MESSAGE_HAVE, MessageHave::new);
-			registerMessage(BitTorrent.MESSAGE_INTERESTED, MessageInterested::new);
+			registerMessage(BitTorrent.MESSAGE_INTERESTED, () -> MessageInterested.INSTANCE);
 			registerMessage(BitTorrent.MESSAGE_PIECE, MessageBlock::new);
 			registerMessage(BitTorrent.MESSAGE_REQUEST, MessageRequest::new);
-			registerMessage(BitTorrent.MESSAGE_UNCHOKE, MessageUnchoke::new);
-			registerMessage(BitTorrent.MESSAGE_UNINTERESTED, MessageUninterested::new);
+			registerMessage(BitTorrent.MESSAGE_UNCHOKE, () -> MessageUnchoke.INSTANCE);
+			registerMessage(BitTorrent.MESSAGE_UNINTERESTED, () -> MessageUninterested.INSTANCE);
 		}
 
 		public Builder registerMessage(int id, Supplier<IMessage> messageSupplier) {
-			if (messageSuppliers.containsKey(id)) {
+			if (id < 0 || id >= MESSAGE_ID_COUNT) {
+				throw new IllegalArgumentException(String.format("Failed to add message with id %d: Message IDs must be within 0 and 255.", id));
+			}
+
+			if (messageSuppliers[id] != null) {
 				throw new IllegalStateException(String.format("Failed to add message with id %d: Already taken.", id));
 			}
 
-			messageSuppliers.put(id, messageSupplier);
+			messageSuppliers[id] = messageSupplier;
+			return this;
+		}
+
+		/**
+		 * Configures the pool from which the received {@link MessageBlock} messages allocate their buffers.
+		 * @param blockBufferPool The pool to use.
+		 * @return The adjusted builder.
+		 */
+		public Builder setBlockBufferPool(BlockBufferPool blockBufferPool) {
+			messageSuppliers[BitTorrent.MESSAGE_PIECE] = () -> new MessageBlock(blockBufferPool);
 			return this;
 		}
 
@@ -3,6 +3,8 @@ package org.johnnei.javatorrent.bittorrent.protocol.messages;
 import java.time.Duration;
 
 import org.johnnei.javatorrent.bittorrent.protocol.BitTorrent;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
 import org.johnnei.javatorrent.network.InStream;
 import org.johnnei.javatorrent.network.OutStream;
 import org.johnnei.javatorrent.torrent.TorrentFileSet;
@@ -12,15 +14,39 @@ public class MessageBlock implements IMessage {
 
 	private int index;
 	private int offset;
-	private byte[] data;
+	private BlockBuffer data;
 
 	private Duration readDuration;
 
+	/**
+	 * The pool from which the buffer for a read block is allocated or <code>null</code> to use an unpooled buffer.
+	 */
+	private BlockBufferPool bufferPool;
+
 	public MessageBlock() {
 		/* Default constructor for reading */
 	}
 
+	/**
+	 * Creates a new message for reading which stores the received block in a buffer from the given pool.
+	 * @param bufferPool The pool to allocate the buffer from.
+	 */
+	public MessageBlock(BlockBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
 	public MessageBlock(int index, int offset, byte[] data) {
+		this(index, offset, BlockBuffer.wrap(data));
+	}
+
+	/**
+	 * Creates a new message to send the block in the given buffer. The reference to the buffer is owned by this message and released once the message has
+	 * been written.
+	 * @param index The index of the piece.
+	 * @param offset The offset of the block within the piece.
+	 * @param data The buffer containing the block.
+	 */
+	public MessageBlock(int index, int offset, BlockBuffer data) {
 		this.index = index;
 		this.offset = offset;
 		this.data = data;
@@ -30,27 +56,38 @@ public class MessageBlock implements IMessage {
 	public void write(OutStream outStream) {
 		outStream.writeInt(index);
 		outStream.writeInt(offset);
-		outStream.write(data);
+		outStream.write(data.getArray(), 0, data.getLength());
 	}
 
 	@Override
 	public void read(InStream inStream) {
 		index = inStream.readInt();
 		offset = inStream.readInt();
-		data = inStream.readFully(inStream.available());
+		int length = inStream.available();
+		data = bufferPool != null ? bufferPool.allocate(length) : BlockBuffer.wrap(new byte[length]);
+		inStream.readFully(data.getArray(), 0, length);
 		readDuration = inStream.getReadDuration().orElse(Duration.ofSeconds(1));
 	}
 
+	/**
+	 * Releases the reference to the block buffer which is held by this message. This must be called when the message will no longer be written or processed.
+	 */
+	public void release() {
+		data.release();
+	}
+
 	@Override
 	public void process(Peer peer) {
 		TorrentFileSet torrentFileSet = peer.getTorrent().getFileSet();
 
 		peer.onReceivedBlock(torrentFileSet.getPiece(index), offset);
-		if (data.length <= 0) {
+		if (data.getLength() <= 0) {
+			data.release();
 			peer.addStrike(1);
 			return;
 		}
 
+		// The torrent takes over the reference to the buffer.
 		peer.getTorrent().onReceivedBlock(torrentFileSet, index, offset, data);
 
 		peer.addStrike(-1);
@@ -64,7 +101,7 @@ public class MessageBlock implements IMessage {
 
 	@Override
 	public int getLength() {
-		return 9 + data.length;
+		return 9 + data.getLength();
 	}
 
 	@Override
@@ -74,7 +111,7 @@ public class MessageBlock implements IMessage {
 
 	@Override
 	public String toString() {
-		return String.format("MessageBlock[index=%d, offset=%d, length=%d]", index, offset, data != null ? data.length : -1);
+		return String.format("MessageBlock[index=%d, offset=%d, length=%d]", index, offset, data != null ? data.getLength() : -1);
 	}
 
 }
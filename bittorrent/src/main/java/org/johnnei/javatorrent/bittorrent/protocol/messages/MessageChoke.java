@@ -8,6 +8,11 @@ import org.johnnei.javatorrent.torrent.peer.PeerDirection;
 
 public class MessageChoke implements IMessage {
 
+	/**
+	 * The shared instance of this message. The message has no state, so there is no need to create new instances of it.
+	 */
+	public static final MessageChoke INSTANCE = new MessageChoke();
+
 	@Override
 	public void write(OutStream outStream) {
 		/* Choke message has no payload */
@@ -0,0 +1,93 @@
+package org.johnnei.javatorrent.bittorrent.protocol.messages;
+
+import org.johnnei.javatorrent.bittorrent.protocol.BitTorrent;
+import org.johnnei.javatorrent.network.InStream;
+import org.johnnei.javatorrent.network.OutStream;
+import org.johnnei.javatorrent.torrent.files.Piece;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+
+/**
+ * A PIECE message of which the block is sent directly from the files of the torrent instead of being loaded into memory first.
+ *
+ * {@link #write(OutStream)} only writes the header of the message, the socket is responsible to transfer the block itself with
+ * {@link Piece#visitFileRegions(int, int, org.johnnei.javatorrent.torrent.files.IFileRegionVisitor)}. Received PIECE messages are always read as
+ * {@link MessageBlock}.
+ *
+ * @see org.johnnei.javatorrent.network.BitTorrentSocket#supportsFileTransfer()
+ */
+public class MessageFileBlock implements IMessage {
+
+	private final Piece piece;
+
+	private final int offset;
+
+	private final int length;
+
+	/**
+	 * Creates a new message to send a block straight from the files.
+	 * @param piece The piece which contains the block.
+	 * @param offset The offset of the block within the piece.
+	 * @param length The size of the block.
+	 */
+	public MessageFileBlock(Piece piece, int offset, int length) {
+		this.piece = piece;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public void write(OutStream outStream) {
+		outStream.writeInt(piece.getIndex());
+		outStream.writeInt(offset);
+	}
+
+	@Override
+	public void read(InStream inStream) {
+		throw new UnsupportedOperationException("File blocks are only sent, received blocks are read as MessageBlock.");
+	}
+
+	@Override
+	public void process(Peer peer) {
+		throw new UnsupportedOperationException("File blocks are only sent, received blocks are read as MessageBlock.");
+	}
+
+	/**
+	 * Gets the piece which contains the block.
+	 * @return The piece.
+	 */
+	public Piece getPiece() {
+		return piece;
+	}
+
+	/**
+	 * Gets the offset of the block within the piece.
+	 * @return The offset in bytes.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the size of the block which is sent after the header.
+	 * @return The size in bytes.
+	 */
+	public int getBlockLength() {
+		return length;
+	}
+
+	@Override
+	public int getLength() {
+		return 9 + length;
+	}
+
+	@Override
+	public int getId() {
+		return BitTorrent.MESSAGE_PIECE;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MessageFileBlock[index=%d, offset=%d, length=%d]", piece.getIndex(), offset, length);
+	}
+
+}
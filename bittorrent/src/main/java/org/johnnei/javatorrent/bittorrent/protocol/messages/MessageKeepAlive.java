@@ -9,6 +9,11 @@ import org.johnnei.javatorrent.torrent.peer.Peer;
  */
 public class MessageKeepAlive implements IMessage {
 
+	/**
+	 * The shared instance of this message. The message has no state, so there is no need to create new instances of it.
+	 */
+	public static final MessageKeepAlive INSTANCE = new MessageKeepAlive();
+
 	@Override
 	public void write(OutStream outStream) {
 		/* No payload information to write */
@@ -8,6 +8,11 @@ import org.johnnei.javatorrent.torrent.peer.PeerDirection;
 
 public class MessageUninterested implements IMessage {
 
+	/**
+	 * The shared instance of this message. The message has no state, so there is no need to create new instances of it.
+	 */
+	public static final MessageUninterested INSTANCE = new MessageUninterested();
+
 	@Override
 	public void write(OutStream outStream) {
 		/* Uninterested message has no payload */
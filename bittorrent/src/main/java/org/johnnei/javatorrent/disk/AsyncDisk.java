@@ -0,0 +1,156 @@
+package org.johnnei.javatorrent.disk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
+import org.johnnei.javatorrent.torrent.files.Piece;
+import org.johnnei.javatorrent.utils.Argument;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Submits reads, writes and hash checks to the disk and exposes their results as {@link CompletableFuture}s.
+ *
+ * The futures are completed on the executor which is given by the caller (ex. the IO thread of the peer which requested a block) instead of on the
+ * disk thread, so the disk threads only perform IO and the work reacting on the results (queueing messages or further jobs) doesn't stall the jobs
+ * queued behind it. The operations are processed as the regular {@link IDiskJob} implementations, whose callbacks are adapted to the futures.
+ *
+ * Jobs which fail on all of their attempts complete their future exceptionally with the {@link java.io.IOException} of the last attempt, consumers must
+ * therefore handle the failure (ex. with {@link CompletableFuture#whenComplete(java.util.function.BiConsumer)}) to not wait forever.
+ */
+public class AsyncDisk {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncDisk.class);
+
+	private final Consumer<IDiskJob> jobSink;
+
+	/**
+	 * Creates a new asynchronous view on the disk.
+	 * @param jobSink The consumer which queues the jobs to be processed (ex. {@link org.johnnei.javatorrent.TorrentClient#addDiskJob(IDiskJob)}).
+	 */
+	public AsyncDisk(Consumer<IDiskJob> jobSink) {
+		this.jobSink = Argument.requireNonNull(jobSink, "Job sink can not be null.");
+	}
+
+	/**
+	 * Reads a section of a piece into an unpooled buffer.
+	 * @param piece The piece to read from.
+	 * @param offset The offset within the piece.
+	 * @param length The amount of bytes to read.
+	 * @param executor The executor on which the future gets completed or <code>null</code> to complete it on the disk thread.
+	 * @return The future which is completed with the read data or exceptionally when the data could not be read.
+	 * @see #read(Piece, int, int, BlockBufferPool, ReadCache, ReadCacheMetrics, Executor)
+	 */
+	public CompletableFuture<BlockBuffer> read(Piece piece, int offset, int length, Executor executor) {
+		return read(piece, offset, length, null, null, null, executor);
+	}
+
+	/**
+	 * Reads a section of a piece through the read cache into a buffer from the given pool. The reference to the buffer is owned by the consumer of the
+	 * future which must release it.
+	 * @param piece The piece to read from.
+	 * @param offset The offset within the piece.
+	 * @param length The amount of bytes to read.
+	 * @param bufferPool The pool to allocate the buffer from or <code>null</code> to use an unpooled buffer.
+	 * @param readCache The cache to read through or <code>null</code> to read from the files directly.
+	 * @param readCacheMetrics The metrics of the torrent which owns the piece or <code>null</code>.
+	 * @param executor The executor on which the future gets completed or <code>null</code> to complete it on the disk thread.
+	 * @return The future which is completed with the read data or exceptionally when the data could not be read.
+	 */
+	public CompletableFuture<BlockBuffer> read(
+			Piece piece,
+			int offset,
+			int length,
+			BlockBufferPool bufferPool,
+			ReadCache readCache,
+			ReadCacheMetrics readCacheMetrics,
+			Executor executor) {
+		CompletableFuture<BlockBuffer> future = new CompletableFuture<>();
+		jobSink.accept(new DiskJobReadBlock(
+				piece,
+				offset,
+				length,
+				bufferPool,
+				readCache,
+				readCacheMetrics,
+				job -> complete(future, job.getBlockData(), executor),
+				cause -> completeExceptionally(future, cause, executor)
+		));
+		return future;
+	}
+
+	/**
+	 * Stores a block of a piece. The reference to the buffer is taken over and released once the block has been stored.
+	 * @param piece The piece in which the block is found.
+	 * @param blockIndex The index of the block within the piece.
+	 * @param data The buffer containing the bytes of the block.
+	 * @param pieceCache The cache in which the piece is assembled or <code>null</code> to write the block directly.
+	 * @param executor The executor on which the future gets completed or <code>null</code> to complete it on the disk thread.
+	 * @return The future which is completed once the block has been stored or exceptionally when the block could not be stored.
+	 */
+	public CompletableFuture<Void> write(Piece piece, int blockIndex, BlockBuffer data, PieceCache pieceCache, Executor executor) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		jobSink.accept(new DiskJobWriteBlock(
+				piece,
+				blockIndex,
+				data,
+				pieceCache,
+				job -> complete(future, null, executor),
+				cause -> completeExceptionally(future, cause, executor)
+		));
+		return future;
+	}
+
+	/**
+	 * Verifies the hash of a piece.
+	 * @param piece The piece to verify.
+	 * @param pieceCache The cache in which the piece is assembled or <code>null</code> to verify the piece from the storage.
+	 * @param executor The executor on which the future gets completed or <code>null</code> to complete it on the verifying thread.
+	 * @return The future which is completed with <code>true</code> when the hash matched, otherwise <code>false</code>. The future is completed
+	 * exceptionally when the piece could not be read.
+	 */
+	public CompletableFuture<Boolean> checkHash(Piece piece, PieceCache pieceCache, Executor executor) {
+		CompletableFuture<Boolean> future = new CompletableFuture<>();
+		jobSink.accept(new DiskJobCheckHash(
+				piece,
+				pieceCache,
+				job -> complete(future, job.isMatchingHash(), executor),
+				cause -> completeExceptionally(future, cause, executor)
+		));
+		return future;
+	}
+
+	private static <T> void complete(CompletableFuture<T> future, T result, Executor executor) {
+		if (executor == null) {
+			future.complete(result);
+			return;
+		}
+
+		try {
+			executor.execute(() -> future.complete(result));
+		} catch (RejectedExecutionException e) {
+			// The result must still be delivered as it might own resources (ex. a pooled buffer).
+			LOGGER.debug("Completion executor rejected the result, completing on the disk thread.", e);
+			future.complete(result);
+		}
+	}
+
+	private static void completeExceptionally(CompletableFuture<?> future, Throwable cause, Executor executor) {
+		if (executor == null) {
+			future.completeExceptionally(cause);
+			return;
+		}
+
+		try {
+			executor.execute(() -> future.completeExceptionally(cause));
+		} catch (RejectedExecutionException e) {
+			LOGGER.debug("Completion executor rejected the failure, completing on the disk thread.", e);
+			future.completeExceptionally(cause);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package org.johnnei.javatorrent.disk;
+
+/**
+ * The policies by which disk jobs are assigned to the disk worker threads. Jobs which are assigned to the same worker are processed in the order in which
+ * they have been added, so writes to a file never overtake each other.
+ */
+public enum DiskAffinity {
+
+	/**
+	 * Each file is assigned to a worker. Different files are processed in parallel, which suits SSD and NVMe drives.
+	 */
+	File,
+	/**
+	 * Each storage device is assigned to a worker. Files on the same device are processed sequentially, which prevents seek storms on spinning disks
+	 * while different devices are still processed in parallel.
+	 */
+	Device
+
+}
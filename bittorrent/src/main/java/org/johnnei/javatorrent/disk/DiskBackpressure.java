@@ -0,0 +1,142 @@
+package org.johnnei.javatorrent.disk;
+
+/**
+ * The flow control between the disk and the requesting of blocks. Received blocks are queued to be written faster than a slow disk can store them, without
+ * flow control the queued blocks would grow until the heap is exhausted.
+ *
+ * Requesting slows down linearly once the bytes of the queued writes exceed the low watermark and pauses when they exceed the high watermark. Once paused,
+ * requesting only resumes when the queued writes have dropped below the low watermark again, which prevents toggling between both states on every write.
+ */
+public class DiskBackpressure {
+
+	private final long lowWatermark;
+
+	private final long highWatermark;
+
+	/**
+	 * The amount of bytes of the writes which have been queued but not yet stored. Guarded by <code>this</code>.
+	 */
+	private long pendingWriteBytes;
+
+	/**
+	 * The amount of writes which have been queued but not yet stored. Guarded by <code>this</code>.
+	 */
+	private int pendingWrites;
+
+	private volatile boolean paused;
+
+	/**
+	 * Creates a new flow control.
+	 * @param lowWatermark The amount of queued bytes below which requesting proceeds at full speed and resumes after a pause.
+	 * @param highWatermark The amount of queued bytes above which requesting pauses.
+	 */
+	public DiskBackpressure(long lowWatermark, long highWatermark) {
+		if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+			throw new IllegalArgumentException(String.format(
+					"The low watermark (%d) must be positive and lower than the high watermark (%d).",
+					lowWatermark,
+					highWatermark));
+		}
+
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+	}
+
+	/**
+	 * Records that a write has been queued.
+	 * @param bytes The amount of bytes to write.
+	 */
+	public synchronized void onWriteQueued(int bytes) {
+		pendingWriteBytes += bytes;
+		pendingWrites++;
+		if (pendingWriteBytes > highWatermark) {
+			paused = true;
+		}
+	}
+
+	/**
+	 * Records that a queued write has been stored.
+	 * @param bytes The amount of bytes which have been written.
+	 */
+	public synchronized void onWriteCompleted(int bytes) {
+		pendingWriteBytes -= bytes;
+		pendingWrites--;
+		if (pendingWriteBytes <= lowWatermark) {
+			paused = false;
+		}
+	}
+
+	/**
+	 * Calculates how many of the requests which a peer is able to accept may be made given the amount of queued writes.
+	 * @param requests The amount of requests which could be made without flow control.
+	 * @return The amount of requests which may be made.
+	 */
+	public int getAllowedRequests(int requests) {
+		long pending;
+		synchronized (this) {
+			if (paused) {
+				return 0;
+			}
+			pending = pendingWriteBytes;
+		}
+
+		if (pending <= lowWatermark || requests <= 0) {
+			return requests;
+		}
+
+		// Scale down linearly towards the high watermark, but keep requesting at least a single block until paused.
+		long remaining = Math.max(0, highWatermark - pending);
+		return (int) Math.max(1, (requests * remaining + (highWatermark - lowWatermark) - 1) / (highWatermark - lowWatermark));
+	}
+
+	/**
+	 * Tests if requesting has been paused because the queued writes exceeded the high watermark.
+	 * @return <code>true</code> when no blocks may be requested.
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Gets the amount of bytes of the writes which are waiting to be stored.
+	 * @return The amount of queued bytes.
+	 */
+	public synchronized long getPendingWriteBytes() {
+		return pendingWriteBytes;
+	}
+
+	/**
+	 * Gets the amount of writes which are waiting to be stored.
+	 * @return The amount of queued writes.
+	 */
+	public synchronized int getPendingWrites() {
+		return pendingWrites;
+	}
+
+	/**
+	 * Gets the amount of queued bytes below which requesting proceeds at full speed.
+	 * @return The low watermark in bytes.
+	 */
+	public long getLowWatermark() {
+		return lowWatermark;
+	}
+
+	/**
+	 * Gets the amount of queued bytes above which requesting pauses.
+	 * @return The high watermark in bytes.
+	 */
+	public long getHighWatermark() {
+		return highWatermark;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"DiskBackpressure[pendingWriteBytes=%d, pendingWrites=%d, paused=%s, lowWatermark=%d, highWatermark=%d]",
+				getPendingWriteBytes(),
+				getPendingWrites(),
+				paused,
+				lowWatermark,
+				highWatermark);
+	}
+}
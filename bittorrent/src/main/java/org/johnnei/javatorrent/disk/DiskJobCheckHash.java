@@ -21,19 +21,61 @@ public class DiskJobCheckHash implements IDiskJob {
 
 	private final Consumer<DiskJobCheckHash> callback;
 
+	private final Consumer<IOException> failureCallback;
+
+	private final PieceCache pieceCache;
+
 	private boolean matchingHash;
 
 	public DiskJobCheckHash(Piece piece, Consumer<DiskJobCheckHash> callback) {
+		this(piece, null, callback);
+	}
+
+	/**
+	 * Creates a new job to check the hash of a piece which may have been assembled in the piece cache.
+	 * @param piece The piece to check.
+	 * @param pieceCache The cache in which the piece is assembled or <code>null</code> to verify the piece from the files.
+	 * @param callback The callback which gets called on completion of this job
+	 */
+	public DiskJobCheckHash(Piece piece, PieceCache pieceCache, Consumer<DiskJobCheckHash> callback) {
+		this(piece, pieceCache, callback, null);
+	}
+
+	/**
+	 * Creates a new job to check the hash of a piece which may have been assembled in the piece cache.
+	 * @param piece The piece to check.
+	 * @param pieceCache The cache in which the piece is assembled or <code>null</code> to verify the piece from the files.
+	 * @param callback The callback which gets called on completion of this job
+	 * @param failureCallback The callback which gets called when the job has failed on all attempts or <code>null</code>.
+	 */
+	public DiskJobCheckHash(Piece piece, PieceCache pieceCache, Consumer<DiskJobCheckHash> callback, Consumer<IOException> failureCallback) {
 		this.callback = callback;
+		this.failureCallback = failureCallback;
 		this.piece = piece;
+		this.pieceCache = pieceCache;
 	}
 
 	@Override
 	public void process() throws IOException {
-		matchingHash = piece.checkHash();
+		complete(pieceCache != null ? pieceCache.checkHash(piece) : piece.checkHash());
+	}
+
+	/**
+	 * Completes this job with the result of a verification which has been performed outside of {@link #process()}.
+	 * @param matchingHash <code>true</code> when the hash matched, otherwise <code>false</code>.
+	 */
+	void complete(boolean matchingHash) {
+		this.matchingHash = matchingHash;
 		callback.accept(this);
 	}
 
+	@Override
+	public void onFailure(IOException cause) {
+		if (failureCallback != null) {
+			failureCallback.accept(cause);
+		}
+	}
+
 	@Override
 	public int getPriority() {
 		return DiskJobPriority.LOCAL_ACTION.getPriority();
@@ -49,6 +91,14 @@ public class DiskJobCheckHash implements IDiskJob {
 		return matchingHash;
 	}
 
+	/**
+	 * Gets the cache in which the piece is assembled.
+	 * @return The piece cache or <code>null</code> when the piece is verified from the files.
+	 */
+	PieceCache getPieceCache() {
+		return pieceCache;
+	}
+
 	/**
 	 * Gets the piece for which the hash has been verified.
 	 * @return The piece which is affected by this job.
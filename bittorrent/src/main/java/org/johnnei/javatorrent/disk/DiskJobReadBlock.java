@@ -4,23 +4,99 @@ import java.io.IOException;
 import java.util.function.Consumer;
 
 import org.johnnei.javatorrent.internal.disk.DiskJobPriority;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
 import org.johnnei.javatorrent.torrent.files.Piece;
 
 public class DiskJobReadBlock implements IDiskJob {
 
 	private final Consumer<DiskJobReadBlock> callback;
+	private final Consumer<IOException> failureCallback;
 	private final Piece piece;
 	private final int offset;
 
 	private final int length;
 
-	private byte[] blockData;
+	private final BlockBufferPool bufferPool;
 
+	private final ReadCache readCache;
+
+	private final ReadCacheMetrics readCacheMetrics;
+
+	private BlockBuffer blockData;
+
+	/**
+	 * Creates a new job to read a block of a piece into an unpooled buffer.
+	 * @param piece The piece to read from.
+	 * @param offset The offset within the piece.
+	 * @param length The amount of bytes to read.
+	 * @param callback The callback which gets called on completion of this job
+	 */
 	public DiskJobReadBlock(Piece piece, int offset, int length, Consumer<DiskJobReadBlock> callback) {
+		this(piece, offset, length, null, callback);
+	}
+
+	/**
+	 * Creates a new job to read a block of a piece into a buffer from the given pool.
+	 * @param piece The piece to read from.
+	 * @param offset The offset within the piece.
+	 * @param length The amount of bytes to read.
+	 * @param bufferPool The pool to allocate the buffer from or <code>null</code> to use an unpooled buffer.
+	 * @param callback The callback which gets called on completion of this job
+	 */
+	public DiskJobReadBlock(Piece piece, int offset, int length, BlockBufferPool bufferPool, Consumer<DiskJobReadBlock> callback) {
+		this(piece, offset, length, bufferPool, null, null, callback);
+	}
+
+	/**
+	 * Creates a new job to read a block of a piece through the read cache into a buffer from the given pool.
+	 * @param piece The piece to read from.
+	 * @param offset The offset within the piece.
+	 * @param length The amount of bytes to read.
+	 * @param bufferPool The pool to allocate the buffer from or <code>null</code> to use an unpooled buffer.
+	 * @param readCache The cache to read through or <code>null</code> to read from the files directly.
+	 * @param readCacheMetrics The metrics of the torrent which owns the piece or <code>null</code>.
+	 * @param callback The callback which gets called on completion of this job
+	 */
+	public DiskJobReadBlock(
+			Piece piece,
+			int offset,
+			int length,
+			BlockBufferPool bufferPool,
+			ReadCache readCache,
+			ReadCacheMetrics readCacheMetrics,
+			Consumer<DiskJobReadBlock> callback) {
+		this(piece, offset, length, bufferPool, readCache, readCacheMetrics, callback, null);
+	}
+
+	/**
+	 * Creates a new job to read a block of a piece through the read cache into a buffer from the given pool.
+	 * @param piece The piece to read from.
+	 * @param offset The offset within the piece.
+	 * @param length The amount of bytes to read.
+	 * @param bufferPool The pool to allocate the buffer from or <code>null</code> to use an unpooled buffer.
+	 * @param readCache The cache to read through or <code>null</code> to read from the files directly.
+	 * @param readCacheMetrics The metrics of the torrent which owns the piece or <code>null</code>.
+	 * @param callback The callback which gets called on completion of this job
+	 * @param failureCallback The callback which gets called when the job has failed on all attempts or <code>null</code>.
+	 */
+	public DiskJobReadBlock(
+			Piece piece,
+			int offset,
+			int length,
+			BlockBufferPool bufferPool,
+			ReadCache readCache,
+			ReadCacheMetrics readCacheMetrics,
+			Consumer<DiskJobReadBlock> callback,
+			Consumer<IOException> failureCallback) {
 		this.callback = callback;
+		this.failureCallback = failureCallback;
 		this.piece = piece;
 		this.offset = offset;
 		this.length = length;
+		this.bufferPool = bufferPool;
+		this.readCache = readCache;
+		this.readCacheMetrics = readCacheMetrics;
 	}
 
 	/**
@@ -28,10 +104,34 @@ public class DiskJobReadBlock implements IDiskJob {
 	 */
 	@Override
 	public void process() throws IOException {
-		blockData = piece.loadPiece(offset, length);
+		BlockBuffer buffer = bufferPool != null ? bufferPool.allocate(length) : BlockBuffer.wrap(new byte[length]);
+		try {
+			if (readCache != null) {
+				readCache.read(piece, offset, buffer, readCacheMetrics);
+			} else {
+				piece.loadPiece(offset, buffer);
+			}
+		} catch (IOException e) {
+			// The job will be retried with a new buffer.
+			buffer.release();
+			throw e;
+		}
+
+		blockData = buffer;
 		callback.accept(this);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onFailure(IOException cause) {
+		// The buffer of the failed attempt has already been released.
+		if (failureCallback != null) {
+			failureCallback.accept(cause);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -41,11 +141,11 @@ public class DiskJobReadBlock implements IDiskJob {
 	}
 
 	/**
-	 * The read data from the piece
-	 * @return The read data
+	 * The read data from the piece. The reference to the buffer is owned by the receiver of the callback which must release it.
+	 * @return The buffer containing the read data
 	 * @see #getPiece()
 	 */
-	public byte[] getBlockData() {
+	public BlockBuffer getBlockData() {
 		return blockData;
 	}
 
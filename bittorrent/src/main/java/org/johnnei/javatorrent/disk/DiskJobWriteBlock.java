@@ -1,17 +1,21 @@
 package org.johnnei.javatorrent.disk;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.function.Consumer;
 
 import org.johnnei.javatorrent.internal.disk.DiskJobPriority;
+import org.johnnei.javatorrent.network.BlockBuffer;
 import org.johnnei.javatorrent.torrent.files.Piece;
 
 public class DiskJobWriteBlock implements IDiskJob {
 
 	private final Consumer<DiskJobWriteBlock> callback;
+	private final Consumer<IOException> failureCallback;
 	private final Piece piece;
 	private final int blockIndex;
-	private final byte[] data;
+	private final BlockBuffer data;
+	private final PieceCache pieceCache;
 
 	/**
 	 * Creates a new job to store a block of a piece.
@@ -21,7 +25,53 @@ public class DiskJobWriteBlock implements IDiskJob {
 	 * @param callback The callback which gets called on completion of this job
 	 */
 	public DiskJobWriteBlock(Piece piece, int blockIndex, byte[] data, Consumer<DiskJobWriteBlock> callback) {
+		this(piece, blockIndex, BlockBuffer.wrap(data), callback);
+	}
+
+	/**
+	 * Creates a new job to store a block of a piece. The job takes over the reference to the buffer and releases it once the block has been stored.
+	 * @param piece The piece in which this block is found
+	 * @param blockIndex The index of the block within the given piece.
+	 * @param data The buffer containing the bytes to write for the block
+	 * @param callback The callback which gets called on completion of this job
+	 */
+	public DiskJobWriteBlock(Piece piece, int blockIndex, BlockBuffer data, Consumer<DiskJobWriteBlock> callback) {
+		this(piece, blockIndex, data, null, callback);
+	}
+
+	/**
+	 * Creates a new job to store a block of a piece in the piece cache. The job takes over the reference to the buffer and releases it once the block has
+	 * been stored.
+	 * @param piece The piece in which this block is found
+	 * @param blockIndex The index of the block within the given piece.
+	 * @param data The buffer containing the bytes to write for the block
+	 * @param pieceCache The cache in which the piece is assembled or <code>null</code> to write the block directly.
+	 * @param callback The callback which gets called on completion of this job
+	 */
+	public DiskJobWriteBlock(Piece piece, int blockIndex, BlockBuffer data, PieceCache pieceCache, Consumer<DiskJobWriteBlock> callback) {
+		this(piece, blockIndex, data, pieceCache, callback, null);
+	}
+
+	/**
+	 * Creates a new job to store a block of a piece in the piece cache. The job takes over the reference to the buffer and releases it once the block has
+	 * been stored or the job has failed on all attempts.
+	 * @param piece The piece in which this block is found
+	 * @param blockIndex The index of the block within the given piece.
+	 * @param data The buffer containing the bytes to write for the block
+	 * @param pieceCache The cache in which the piece is assembled or <code>null</code> to write the block directly.
+	 * @param callback The callback which gets called on completion of this job
+	 * @param failureCallback The callback which gets called when the job has failed on all attempts or <code>null</code>.
+	 */
+	public DiskJobWriteBlock(
+			Piece piece,
+			int blockIndex,
+			BlockBuffer data,
+			PieceCache pieceCache,
+			Consumer<DiskJobWriteBlock> callback,
+			Consumer<IOException> failureCallback) {
 		this.callback = callback;
+		this.failureCallback = failureCallback;
+		this.pieceCache = pieceCache;
 		this.piece = piece;
 		this.blockIndex = blockIndex;
 		this.data = data;
@@ -29,10 +79,63 @@ public class DiskJobWriteBlock implements IDiskJob {
 
 	@Override
 	public void process() throws IOException {
-		piece.storeBlock(blockIndex, data);
+		if (pieceCache != null) {
+			pieceCache.storeBlock(piece, blockIndex, data);
+		} else {
+			piece.storeBlock(blockIndex, data);
+		}
+		// Only release on success, failed jobs are retried.
+		data.release();
 		callback.accept(this);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onFailure(IOException cause) {
+		// The block will never be stored, return the buffer to the pool.
+		data.release();
+		if (failureCallback != null) {
+			failureCallback.accept(cause);
+		}
+	}
+
+	/**
+	 * Stores the blocks of the given jobs with a single write and completes the jobs. The jobs must store consecutive blocks of the same piece directly,
+	 * in order. When the write fails none of the jobs have been completed.
+	 * @param jobs The jobs to process.
+	 * @throws IOException When the write fails.
+	 * @see #canBeCoalesced()
+	 */
+	public static void processCoalesced(List<DiskJobWriteBlock> jobs) throws IOException {
+		DiskJobWriteBlock firstJob = jobs.get(0);
+		BlockBuffer[] blockData = new BlockBuffer[jobs.size()];
+		for (int i = 0; i < jobs.size(); i++) {
+			DiskJobWriteBlock job = jobs.get(i);
+			if (!job.canBeCoalesced() || job.piece != firstJob.piece || job.blockIndex != firstJob.blockIndex + i) {
+				throw new IllegalArgumentException(String.format("%s does not directly follow the previous block of %s.", job, firstJob.piece));
+			}
+			blockData[i] = job.data;
+		}
+
+		firstJob.piece.storeBlocks(firstJob.blockIndex, blockData);
+
+		for (DiskJobWriteBlock job : jobs) {
+			job.data.release();
+			job.callback.accept(job);
+		}
+	}
+
+	/**
+	 * Tests if this job writes the block directly to the piece, only those jobs can be merged with the jobs of adjacent blocks.
+	 * @return <code>true</code> when the block is not stored in the piece cache.
+	 * @see #processCoalesced(List)
+	 */
+	public boolean canBeCoalesced() {
+		return pieceCache == null;
+	}
+
 	/**
 	 * Gets the piece for which this store task is being used.
 	 * @return The piece for which a block is/was being written.
@@ -51,6 +154,14 @@ public class DiskJobWriteBlock implements IDiskJob {
 		return blockIndex;
 	}
 
+	/**
+	 * Gets the amount of bytes which are written by this job.
+	 * @return The length of the block.
+	 */
+	public int getLength() {
+		return data.getLength();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,72 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.johnnei.javatorrent.internal.disk.DiskJobPriority;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+/**
+ * A job to write the blocks of a piece which have been assembled in the {@link PieceCache}. This allows the hash of a piece to be verified outside of the
+ * disk workers while the write itself is still processed by the worker to which the piece is assigned.
+ */
+public class DiskJobWritePiece implements IDiskJob {
+
+	private final Piece piece;
+
+	private final PieceCache pieceCache;
+
+	private final Consumer<DiskJobWritePiece> callback;
+
+	private final Consumer<IOException> failureCallback;
+
+	/**
+	 * Creates a new job to write the cached blocks of a piece.
+	 * @param piece The piece to write.
+	 * @param pieceCache The cache in which the piece is assembled.
+	 * @param callback The callback which gets called on completion of this job
+	 * @param failureCallback The callback which gets called when the job has failed on all attempts or <code>null</code>.
+	 */
+	public DiskJobWritePiece(Piece piece, PieceCache pieceCache, Consumer<DiskJobWritePiece> callback, Consumer<IOException> failureCallback) {
+		this.piece = piece;
+		this.pieceCache = pieceCache;
+		this.callback = callback;
+		this.failureCallback = failureCallback;
+	}
+
+	@Override
+	public void process() throws IOException {
+		pieceCache.write(piece);
+		callback.accept(this);
+	}
+
+	@Override
+	public void onFailure(IOException cause) {
+		if (pieceCache != null) {
+			// The blocks which could not be written must not remain in the cache.
+			pieceCache.discard(piece);
+		}
+
+		if (failureCallback != null) {
+			failureCallback.accept(cause);
+		}
+	}
+
+	@Override
+	public int getPriority() {
+		return DiskJobPriority.RECEIVED_DATA.getPriority();
+	}
+
+	@Override
+	public Piece getPiece() {
+		return piece;
+	}
+
+	/**
+	 * Gets the amount of bytes which are written at most by this job.
+	 * @return The size of the piece.
+	 */
+	public int getLength() {
+		return piece.getSize();
+	}
+}
@@ -0,0 +1,300 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.utils.Argument;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of the open handles to the files of all torrents.
+ *
+ * Files are opened on first access and the least recently used handles are closed once more than the configured amount of files are open, which allows
+ * torrents with many files to be seeded without running out of file descriptors. Handles are leased by {@link #acquire(FileInfo, boolean)} and only
+ * closed once all leases have been {@link #release(FileInfo) released}, when all handles are in use the limit is temporarily exceeded. As there is at most
+ * one handle per file, a lease always belongs to the handle which is in the cache.
+ */
+public class FileHandleCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileHandleCache.class);
+
+	private final int maxOpenFiles;
+
+	/**
+	 * The open handles in least recently used order. Guarded by <code>this</code>.
+	 */
+	private final LinkedHashMap<FileKey, Handle> handles;
+
+	private final FileHandleCacheMetrics metrics;
+
+	/**
+	 * Creates a new cache.
+	 * @param maxOpenFiles The maximum amount of files which are kept open.
+	 */
+	public FileHandleCache(int maxOpenFiles) {
+		Argument.requireWithinBounds(maxOpenFiles, 1, Integer.MAX_VALUE, "At least one file must be allowed to be open.");
+		this.maxOpenFiles = maxOpenFiles;
+		handles = new LinkedHashMap<>(16, 0.75f, true);
+		metrics = new FileHandleCacheMetrics();
+	}
+
+	/**
+	 * Leases the channel of the handle to the file, the file is opened when it isn't open yet. Each lease must be followed by {@link #release(FileInfo)}.
+	 * @param file The file to access.
+	 * @param create <code>true</code> to create the file when it doesn't exist yet.
+	 * @return The channel of the file.
+	 * @throws EOFException When the file doesn't exist and <code>create</code> is <code>false</code>.
+	 * @throws IOException When the file could not be opened.
+	 */
+	public FileChannel acquire(FileInfo file, boolean create) throws IOException {
+		FileKey key = new FileKey(file);
+		synchronized (this) {
+			Handle handle = handles.get(key);
+			if (handle != null) {
+				metrics.onHit();
+				handle.users++;
+				return handle.access.getChannel();
+			}
+		}
+
+		// Opening the file (and creating its folders) can block, so it's done without holding the lock which all file access goes through.
+		RandomAccessFile access = openFile(file.getFile(), create);
+		RandomAccessFile duplicateAccess = null;
+
+		List<Handle> evictedHandles;
+		FileChannel channel;
+		synchronized (this) {
+			Handle handle = handles.get(key);
+			if (handle != null) {
+				// Another thread opened the file in the meanwhile, share its handle to keep a single handle per file.
+				metrics.onHit();
+				duplicateAccess = access;
+			} else {
+				handle = new Handle(access);
+				handles.put(key, handle);
+				metrics.onOpen();
+			}
+
+			handle.users++;
+			channel = handle.access.getChannel();
+			evictedHandles = evict();
+		}
+
+		if (duplicateAccess != null) {
+			try {
+				duplicateAccess.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close duplicate file handle of {}.", file, e);
+			}
+		}
+		closeAll(evictedHandles);
+		return channel;
+	}
+
+	/**
+	 * Ends a lease which has been started by {@link #acquire(FileInfo, boolean)}.
+	 * @param file The file which has been accessed.
+	 */
+	public void release(FileInfo file) {
+		List<Handle> evictedHandles;
+		Handle closedHandle = null;
+		synchronized (this) {
+			FileKey key = new FileKey(file);
+			Handle handle = handles.get(key);
+			if (handle == null || handle.users == 0) {
+				throw new IllegalStateException(String.format("%s has not been acquired.", file));
+			}
+
+			handle.users--;
+			if (handle.users == 0 && handle.closed) {
+				handles.remove(key);
+				closedHandle = handle;
+			}
+			evictedHandles = evict();
+		}
+
+		if (closedHandle != null) {
+			try {
+				closedHandle.access.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close file handle of {}.", file, e);
+			}
+		}
+		closeAll(evictedHandles);
+	}
+
+	/**
+	 * Closes the handle to the file when it is open. When the handle is leased it is closed once the last lease has been released instead, the leases which
+	 * are acquired until then share the handle.
+	 * @param file The file to close.
+	 * @throws IOException When the handle could not be closed.
+	 */
+	public void close(FileInfo file) throws IOException {
+		Handle handle;
+		synchronized (this) {
+			FileKey key = new FileKey(file);
+			handle = handles.get(key);
+			if (handle == null) {
+				return;
+			}
+
+			if (handle.users > 0) {
+				// Closing the channel would fail the reads and writes which are in progress.
+				handle.closed = true;
+				return;
+			}
+
+			handles.remove(key);
+		}
+
+		handle.access.close();
+	}
+
+	/**
+	 * Removes the least recently used idle handles until the limit is met.
+	 * @return The removed handles which must be closed.
+	 */
+	private List<Handle> evict() {
+		if (handles.size() <= maxOpenFiles) {
+			return null;
+		}
+
+		List<Handle> evictedHandles = new ArrayList<>();
+		Iterator<Handle> iterator = handles.values().iterator();
+		while (handles.size() > maxOpenFiles && iterator.hasNext()) {
+			Handle handle = iterator.next();
+			if (handle.users > 0) {
+				continue;
+			}
+
+			iterator.remove();
+			evictedHandles.add(handle);
+		}
+
+		return evictedHandles;
+	}
+
+	private void closeAll(List<Handle> evictedHandles) {
+		if (evictedHandles == null) {
+			return;
+		}
+
+		for (Handle handle : evictedHandles) {
+			metrics.onEviction();
+			try {
+				handle.access.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close evicted file handle.", e);
+			}
+		}
+	}
+
+	/**
+	 * Opens a read/write handle to the file.
+	 * @param file The file to open.
+	 * @param create <code>true</code> to create the file (and the folders containing it) when it doesn't exist yet.
+	 * @return The opened handle.
+	 * @throws EOFException When the file doesn't exist and <code>create</code> is <code>false</code>.
+	 * @throws IOException When the file could not be opened.
+	 */
+	public static RandomAccessFile openFile(File file, boolean create) throws IOException {
+		if (!file.exists()) {
+			if (!create) {
+				throw new EOFException(String.format("%s has not been written yet.", file.getName()));
+			}
+
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		}
+
+		return new RandomAccessFile(file, "rw");
+	}
+
+	/**
+	 * Gets the maximum amount of files which are kept open.
+	 * @return The maximum amount of open files.
+	 */
+	public int getMaxOpenFiles() {
+		return maxOpenFiles;
+	}
+
+	/**
+	 * Gets the amount of files which are currently open.
+	 * @return The amount of open files.
+	 */
+	public synchronized int getOpenFiles() {
+		return handles.size();
+	}
+
+	/**
+	 * Gets the metrics of the handles which have been accessed through this cache.
+	 * @return The metrics.
+	 */
+	public FileHandleCacheMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Tests if the handle to the file is currently open.
+	 * @param file The file to test.
+	 * @return <code>true</code> when the file is open.
+	 */
+	public synchronized boolean isOpen(FileInfo file) {
+		return handles.containsKey(new FileKey(file));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FileHandleCache[maxOpenFiles=%d, metrics=%s]", maxOpenFiles, metrics);
+	}
+
+	private static final class Handle {
+
+		private final RandomAccessFile access;
+
+		/**
+		 * The amount of outstanding leases. Guarded by the cache.
+		 */
+		private int users;
+
+		/**
+		 * If the handle must be closed once the last lease has been released. Guarded by the cache.
+		 */
+		private boolean closed;
+
+		Handle(RandomAccessFile access) {
+			this.access = access;
+		}
+	}
+
+	/**
+	 * Identifies a file by its instance as files of different torrents are equal when they have the same name, size and offset.
+	 */
+	private static final class FileKey {
+
+		private final FileInfo file;
+
+		FileKey(FileInfo file) {
+			this.file = file;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof FileKey && ((FileKey) o).file == file;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(file);
+		}
+	}
+}
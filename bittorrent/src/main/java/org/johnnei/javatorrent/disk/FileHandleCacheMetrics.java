@@ -0,0 +1,67 @@
+package org.johnnei.javatorrent.disk;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of the handles which have been accessed through a {@link FileHandleCache}. A high amount of opens and evictions compared to the hits
+ * indicates that the limit of open files is too low for the accessed files.
+ */
+public class FileHandleCacheMetrics {
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder opens = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	void onHit() {
+		hits.increment();
+	}
+
+	void onOpen() {
+		opens.increment();
+	}
+
+	void onEviction() {
+		evictions.increment();
+	}
+
+	/**
+	 * Gets the amount of accesses which used a handle which was already open.
+	 * @return The amount of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the amount of accesses which had to open the file.
+	 * @return The amount of opened handles.
+	 */
+	public long getOpens() {
+		return opens.sum();
+	}
+
+	/**
+	 * Gets the amount of handles which have been closed to stay within the limit of open files.
+	 * @return The amount of evicted handles.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Gets the fraction of the accesses which used a handle which was already open.
+	 * @return The hit rate between 0 and 1, or 0 when no file has been accessed yet.
+	 */
+	public double getHitRate() {
+		long hitCount = getHits();
+		long total = hitCount + getOpens();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FileHandleCacheMetrics[hits=%d, opens=%d, evictions=%d]", getHits(), getOpens(), getEvictions());
+	}
+}
@@ -0,0 +1,160 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileRegionVisitor;
+
+/**
+ * The default storage which stores the data in the {@link FileInfo files} of the file set. Each section is split into the sections of the files which
+ * contain it, which are accessed with positional reads and writes (or the mapped windows of the file).
+ */
+public class FileTorrentStorage implements ITorrentStorage {
+
+	private final AbstractFileSet fileSet;
+
+	/**
+	 * Creates a new storage on the files of the file set.
+	 * @param fileSet The file set which defines the files.
+	 */
+	public FileTorrentStorage(AbstractFileSet fileSet) {
+		this.fileSet = fileSet;
+	}
+
+	@Override
+	public void read(long offset, ByteBuffer buffer) throws IOException {
+		ByteBuffer target = buffer.duplicate();
+		int start = buffer.position();
+		visitFileRegions(fileSet, offset, buffer.remaining(), (file, offsetInFile, regionOffset, regionLength) -> {
+			target.limit(start + regionOffset + regionLength);
+			target.position(start + regionOffset);
+			file.read(target, offsetInFile);
+		});
+		buffer.position(buffer.limit());
+	}
+
+	@Override
+	public void write(long offset, ByteBuffer... buffers) throws IOException {
+		int length = 0;
+		for (ByteBuffer buffer : buffers) {
+			length += buffer.remaining();
+		}
+
+		visitFileRegions(fileSet, offset, length, (file, offsetInFile, regionOffset, regionLength) -> {
+			long position = offsetInFile;
+			int remainingBytes = regionLength;
+			for (ByteBuffer buffer : buffers) {
+				if (remainingBytes == 0) {
+					break;
+				}
+
+				int sliceLength = Math.min(remainingBytes, buffer.remaining());
+				if (sliceLength == 0) {
+					continue;
+				}
+
+				// Write the part of the buffer which belongs to this file, the remainder belongs to the next file.
+				ByteBuffer slice = buffer.duplicate();
+				slice.limit(slice.position() + sliceLength);
+				file.write(slice, position);
+				buffer.position(slice.limit());
+
+				position += sliceLength;
+				remainingBytes -= sliceLength;
+			}
+		});
+	}
+
+	@Override
+	public boolean isAvailable(long offset, int length) throws IOException {
+		long position = offset;
+		long end = offset + length;
+		while (position < end) {
+			FileInfo file = getFileAt(fileSet, position);
+			long offsetInFile = position - file.getFirstByteOffset();
+			long regionEnd = Math.min(end - position, file.getSize() - offsetInFile) + offsetInFile;
+			if (offsetInFile < 0 || regionEnd <= offsetInFile || file.length() < regionEnd) {
+				return false;
+			}
+
+			position += regionEnd - offsetInFile;
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean isFileBacked() {
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for (FileInfo file : fileSet.getFiles()) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Splits the given section of the torrent into the sections of the files which contain it and passes them to the visitor in order.
+	 *
+	 * @param fileSet The file set which defines the files.
+	 * @param offset The offset within the torrent.
+	 * @param length The amount of bytes in the section.
+	 * @param visitor The visitor to pass each file section to.
+	 * @throws IOException When the section can not be mapped onto the files or the visitor fails.
+	 */
+	public static void visitFileRegions(AbstractFileSet fileSet, long offset, int length, IFileRegionVisitor visitor) throws IOException {
+		int visitedBytes = 0;
+		while (visitedBytes < length) {
+			long position = offset + visitedBytes;
+
+			FileInfo file = getFileAt(fileSet, position);
+
+			// Calculate the offset within the file
+			long offsetInFile = position - file.getFirstByteOffset();
+
+			// Check if we don't read outside the file
+			if (offsetInFile < 0) {
+				throw new IOException("Cannot seek to position: " + offsetInFile);
+			}
+
+			// Calculate how many bytes we want/can access in the file
+			int regionLength = (int) Math.min(length - visitedBytes, file.getSize() - offsetInFile);
+			if (regionLength <= 0) {
+				throw new IOException(String.format("Position %d is outside of %s.", position, file.getFileName()));
+			}
+
+			visitor.visit(file, offsetInFile, visitedBytes, regionLength);
+			visitedBytes += regionLength;
+		}
+	}
+
+	private static FileInfo getFileAt(AbstractFileSet fileSet, long position) {
+		// A file set of which the piece size isn't known (yet) consists of a single piece.
+		long pieceSize = fileSet.getPieceSize();
+		int pieceIndex = pieceSize > 0 ? (int) (position / pieceSize) : 0;
+		int offsetInPiece = (int) (position - pieceIndex * pieceSize);
+		return fileSet.getFileForBytes(pieceIndex, offsetInPiece / fileSet.getBlockSize(), offsetInPiece % fileSet.getBlockSize());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FileTorrentStorage[files=%d]", fileSet.getFiles().size());
+	}
+}
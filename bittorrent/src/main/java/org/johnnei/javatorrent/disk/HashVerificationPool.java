@@ -0,0 +1,263 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.johnnei.javatorrent.torrent.files.Piece;
+import org.johnnei.javatorrent.utils.Argument;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of threads which verify the hashes of completed pieces. Hashing a large piece is CPU bound and would otherwise stall the reads and
+ * writes which are queued behind it on the disk threads, so pieces are verified on these threads instead and the verification of many pieces scales with
+ * the amount of cores.
+ *
+ * Pieces are never verified on the submitting thread. When the queue is full {@link #submit(DiskJobCheckHash)} blocks until a verification has completed,
+ * which slows down the thread which completes pieces faster than they can be verified. The result is delivered through the callback of the
+ * {@link DiskJobCheckHash} on the verifying thread.
+ *
+ * When a disk job sink is set, pieces which have been assembled in the {@link PieceCache} are only verified on these threads and the writes of the cached
+ * blocks are submitted as {@link DiskJobWritePiece} to the disk workers. A matching piece is reported once it has been written, a partially cached piece is
+ * verified again once its cached blocks have been written. That verification is queued from the disk worker, which must not wait for this pool, so it is
+ * put in an unbounded overflow queue when the queue is full. The overflow is drained by the threads of this pool.
+ *
+ * A verification which fails is retried on the same thread after a short delay. Once it failed {@link #MAX_ATTEMPTS} times, or when the pool has been
+ * shut down before the job got verified, the job is failed through {@link DiskJobCheckHash#onFailure(IOException)}.
+ */
+public class HashVerificationPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HashVerificationPool.class);
+
+	/**
+	 * The amount of times a piece is verified before the job is failed.
+	 */
+	static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * The delay before the first retry, each following retry waits this much longer.
+	 */
+	static final long RETRY_DELAY_MILLIS = 100;
+
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder verifiedPieces;
+
+	private final Consumer<IDiskJob> diskJobSink;
+
+	/**
+	 * The verifications which have been queued from the disk workers while the queue was full.
+	 */
+	private final Queue<DiskJobCheckHash> overflow;
+
+	/**
+	 * Creates a new pool without a disk job sink. Pieces which have been assembled in the {@link PieceCache} are verified and written by
+	 * {@link PieceCache#checkHash(Piece)} on the verifying threads.
+	 * @param threadCount The amount of threads which verify pieces concurrently.
+	 * @param queueSize The maximum amount of pieces which are waiting to be verified.
+	 */
+	public HashVerificationPool(int threadCount, int queueSize) {
+		this(threadCount, queueSize, null);
+	}
+
+	/**
+	 * Creates a new pool.
+	 * @param threadCount The amount of threads which verify pieces concurrently.
+	 * @param queueSize The maximum amount of pieces which are waiting to be verified.
+	 * @param diskJobSink The consumer which queues the writes of cached pieces on the disk workers (ex. {@link org.johnnei.javatorrent.TorrentClient#addDiskJob(IDiskJob)}) or
+	 * <code>null</code> to write them on the verifying threads.
+	 */
+	public HashVerificationPool(int threadCount, int queueSize, Consumer<IDiskJob> diskJobSink) {
+		Argument.requireWithinBounds(threadCount, 1, Integer.MAX_VALUE, "At least one hash thread is required.");
+		Argument.requireWithinBounds(queueSize, 1, Integer.MAX_VALUE, "At least one piece must be allowed to be queued.");
+		AtomicInteger threadIndex = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+			Thread thread = new Thread(runnable, String.format("Hash Verifier #%d", threadIndex.getAndIncrement()));
+			thread.setDaemon(true);
+			return thread;
+		}, this::onRejected);
+		verifiedPieces = new LongAdder();
+		overflow = new ConcurrentLinkedQueue<>();
+		this.diskJobSink = diskJobSink;
+	}
+
+	/**
+	 * Queues the job to be processed by one of the threads of this pool. When the queue is full this blocks until there is room in the queue.
+	 * @param job The job to process.
+	 */
+	public void submit(DiskJobCheckHash job) {
+		executor.execute(new VerificationTask(job, true));
+	}
+
+	/**
+	 * Queues the job to be processed by one of the threads of this pool without blocking.
+	 * @param job The job to process.
+	 */
+	private void resubmit(DiskJobCheckHash job) {
+		executor.execute(new VerificationTask(job, false));
+	}
+
+	private void verify(DiskJobCheckHash job) throws IOException {
+		PieceCache pieceCache = job.getPieceCache();
+		if (pieceCache == null || diskJobSink == null) {
+			job.process();
+			verifiedPieces.increment();
+			return;
+		}
+
+		Piece piece = job.getPiece();
+		PieceCache.Verification verification = pieceCache.verify(piece);
+		switch (verification) {
+			case MatchedNotWritten:
+				diskJobSink.accept(new DiskJobWritePiece(piece, pieceCache, written -> {
+					verifiedPieces.increment();
+					job.complete(true);
+				}, job::onFailure));
+				break;
+			case NotWritten:
+				// Verify the piece again once the cached blocks are in the files.
+				diskJobSink.accept(new DiskJobWritePiece(piece, pieceCache, written -> resubmit(job), job::onFailure));
+				break;
+			default:
+				verifiedPieces.increment();
+				job.complete(verification == PieceCache.Verification.Matched);
+		}
+	}
+
+	private void onRejected(Runnable runnable, ThreadPoolExecutor executor) {
+		VerificationTask task = (VerificationTask) runnable;
+		if (executor.isShutdown()) {
+			failRejected(task.job);
+			return;
+		}
+
+		if (!task.blocking) {
+			// The queued tasks have not started yet, so one of them will drain the overflow once it has verified its own piece.
+			overflow.add(task.job);
+			return;
+		}
+
+		// The queue is full, slow down the submitting thread by waiting for room in the queue.
+		try {
+			executor.getQueue().put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			task.job.onFailure(new IOException(String.format("Interrupted while waiting to queue the verification of %s.", task.job.getPiece()), e));
+			return;
+		}
+
+		if (executor.isShutdown() && executor.getQueue().remove(task)) {
+			// The pool got shut down while waiting, the threads might have stopped before the task got queued.
+			failRejected(task.job);
+		}
+	}
+
+	private static void failRejected(DiskJobCheckHash job) {
+		job.onFailure(new IOException(String.format("Hash verification of %s was rejected as the pool has been shut down.", job.getPiece())));
+	}
+
+	/**
+	 * Stops the threads once the queued pieces have been verified.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Waits for the threads of this pool to stop.
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return <code>true</code> when the threads have stopped.
+	 * @throws InterruptedException When the thread got interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Gets the amount of threads which verify pieces.
+	 * @return The amount of threads.
+	 */
+	public int getThreadCount() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Gets the amount of pieces which are waiting to be verified.
+	 * @return The amount of queued pieces.
+	 */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Gets the amount of pieces which have been verified, regardless of the result.
+	 * @return The amount of verified pieces.
+	 */
+	public long getVerifiedPieces() {
+		return verifiedPieces.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("HashVerificationPool[threads=%d, queued=%d]", getThreadCount(), getQueueSize());
+	}
+
+	private final class VerificationTask implements Runnable {
+
+		private final DiskJobCheckHash job;
+
+		/**
+		 * If the submitting thread waits for room in the queue when it is full, otherwise the job is added to the overflow.
+		 */
+		private final boolean blocking;
+
+		VerificationTask(DiskJobCheckHash job, boolean blocking) {
+			this.job = job;
+			this.blocking = blocking;
+		}
+
+		@Override
+		public void run() {
+			verifyWithRetries(job);
+
+			DiskJobCheckHash overflowJob;
+			while ((overflowJob = overflow.poll()) != null) {
+				verifyWithRetries(overflowJob);
+			}
+		}
+
+		private void verifyWithRetries(DiskJobCheckHash job) {
+			for (int attempt = 1; ; attempt++) {
+				try {
+					verify(job);
+					return;
+				} catch (IOException e) {
+					if (attempt >= MAX_ATTEMPTS) {
+						LOGGER.error("Failed to verify {} on all {} attempts.", job.getPiece(), MAX_ATTEMPTS, e);
+						job.onFailure(e);
+						return;
+					}
+
+					LOGGER.warn("Failed to verify {}. (Attempt: {})", job.getPiece(), attempt, e);
+				}
+
+				try {
+					Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					job.onFailure(new IOException(String.format("Interrupted while waiting to retry the verification of %s.", job.getPiece()), e));
+					return;
+				}
+			}
+		}
+	}
+}
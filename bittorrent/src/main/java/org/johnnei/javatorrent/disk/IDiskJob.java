@@ -2,6 +2,8 @@ package org.johnnei.javatorrent.disk;
 
 import java.io.IOException;
 
+import org.johnnei.javatorrent.torrent.files.Piece;
+
 public interface IDiskJob {
 
 	/**
@@ -16,4 +18,24 @@ public interface IDiskJob {
 	 */
 	int getPriority();
 
+	/**
+	 * The piece on which this job operates. Jobs on pieces which start in the same file are processed in the order in which they have been added (within
+	 * their priority).
+	 *
+	 * @return The piece or <code>null</code> when this job may be processed by any disk worker.
+	 */
+	default Piece getPiece() {
+		return null;
+	}
+
+	/**
+	 * Informs the job that it has failed on all of its attempts and will not be processed again. Implementations must release the resources which they
+	 * own and notify the party waiting for the result.
+	 *
+	 * @param cause The failure of the last attempt.
+	 */
+	default void onFailure(IOException cause) {
+		// Jobs without resources or waiting parties have nothing to clean up.
+	}
+
 }
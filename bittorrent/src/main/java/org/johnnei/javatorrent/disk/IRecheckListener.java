@@ -0,0 +1,26 @@
+package org.johnnei.javatorrent.disk;
+
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+/**
+ * Receives the progress events of a {@link Recheck}. The events are invoked on the recheck threads, multiple pieces can be reported concurrently.
+ */
+public interface IRecheckListener {
+
+	/**
+	 * Called when the hash of a piece has been verified.
+	 * @param recheck The recheck which verified the piece.
+	 * @param piece The verified piece.
+	 * @param matchingHash <code>true</code> when the data on disk matched the hash.
+	 */
+	void onPieceChecked(Recheck recheck, Piece piece, boolean matchingHash);
+
+	/**
+	 * Called once all pieces have been verified or the recheck has been cancelled.
+	 * @param recheck The completed recheck.
+	 */
+	default void onRecheckCompleted(Recheck recheck) {
+		// Optional event
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * The storage of the data of a torrent. All offsets are relative to the start of the torrent as if all files of the torrent are concatenated into a single
+ * file, mapping the data onto the actual files (if any) is up to the implementation.
+ *
+ * Implementations must allow concurrent reads and writes of different sections.
+ *
+ * @see FileTorrentStorage
+ * @see MemoryTorrentStorage
+ */
+public interface ITorrentStorage extends Closeable {
+
+	/**
+	 * Reads bytes starting at the given offset until the buffer is full.
+	 * @param offset The offset within the torrent.
+	 * @param buffer The buffer to read into.
+	 * @throws java.io.EOFException When the section is not within the torrent or has not been stored.
+	 * @throws IOException When the read fails.
+	 */
+	void read(long offset, ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Writes the remaining bytes of the buffers as one contiguous section starting at the given offset.
+	 * @param offset The offset within the torrent.
+	 * @param buffers The buffers of which the remaining bytes form the section, in order. Their positions are advanced by the written bytes.
+	 * @throws IOException When the write fails.
+	 */
+	void write(long offset, ByteBuffer... buffers) throws IOException;
+
+	/**
+	 * Feeds the bytes of the given section to the digest.
+	 * @param offset The offset within the torrent.
+	 * @param length The amount of bytes to hash.
+	 * @param digest The digest to update.
+	 * @param buffer The buffer which may be used to read the section in chunks or <code>null</code> to let the storage allocate one when needed.
+	 * @throws IOException When the section could not be read.
+	 */
+	default void hash(long offset, int length, MessageDigest digest, byte[] buffer) throws IOException {
+		// Read in chunks of at most 1 MiB to not allocate a buffer for the entire section.
+		byte[] readBuffer = buffer != null ? buffer : new byte[Math.max(1, Math.min(1 << 20, length))];
+		int hashedBytes = 0;
+		while (hashedBytes < length) {
+			int chunkLength = Math.min(readBuffer.length, length - hashedBytes);
+			read(offset + hashedBytes, ByteBuffer.wrap(readBuffer, 0, chunkLength));
+			digest.update(readBuffer, 0, chunkLength);
+			hashedBytes += chunkLength;
+		}
+	}
+
+	/**
+	 * Tests if all bytes of the given section have been stored and can therefore be read.
+	 * @param offset The offset within the torrent.
+	 * @param length The amount of bytes in the section.
+	 * @return <code>true</code> when the section can be read.
+	 * @throws IOException When the state of the storage could not be determined.
+	 */
+	boolean isAvailable(long offset, int length) throws IOException;
+
+	/**
+	 * Tests if the data is stored in the {@link org.johnnei.javatorrent.torrent.FileInfo files} of the file set. Only then blocks can be transferred from
+	 * the files to a socket by the kernel.
+	 * @return <code>true</code> when the data is stored in the files.
+	 */
+	default boolean isFileBacked() {
+		return false;
+	}
+
+	/**
+	 * Releases the resources held by this storage. Data which has been written must have been handed to the underlying storage.
+	 * @throws IOException When the storage could not be closed.
+	 */
+	@Override
+	void close() throws IOException;
+}
@@ -0,0 +1,220 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.utils.Argument;
+
+/**
+ * A storage which keeps all data of the torrent in memory and never touches the files. This is intended for short lived nodes which only relay data and
+ * for benchmarks which must not be influenced by the harddrive.
+ *
+ * The data is stored in segments which are allocated once the first byte of the segment is written, a torrent of which little has been downloaded
+ * therefore only uses little memory. Each segment tracks the ranges which have been written, just like reading beyond the end of a file, reading or hashing
+ * a section which has not been written fails with an {@link EOFException} and such a section is not {@link #isAvailable(long, int) available}.
+ */
+public class MemoryTorrentStorage implements ITorrentStorage {
+
+	/**
+	 * The size of the segments in which the memory is allocated.
+	 */
+	static final int SEGMENT_SIZE = 1 << 20;
+
+	private final long size;
+
+	private final AtomicReferenceArray<Segment> segments;
+
+	/**
+	 * Creates a new storage for all files of the file set.
+	 * @param fileSet The file set which defines the size of the torrent.
+	 */
+	public MemoryTorrentStorage(AbstractFileSet fileSet) {
+		this(fileSet.getTotalFileSize());
+	}
+
+	/**
+	 * Creates a new storage.
+	 * @param size The amount of bytes in the torrent.
+	 */
+	public MemoryTorrentStorage(long size) {
+		Argument.requirePositive(size, "Size can not be negative.");
+		this.size = size;
+		segments = new AtomicReferenceArray<>((int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE));
+	}
+
+	@Override
+	public void read(long offset, ByteBuffer buffer) throws IOException {
+		checkBounds(offset, buffer.remaining());
+		long position = offset;
+		while (buffer.hasRemaining()) {
+			int offsetInSegment = (int) (position % SEGMENT_SIZE);
+			int length = Math.min(buffer.remaining(), SEGMENT_SIZE - offsetInSegment);
+			buffer.put(getWrittenSegment(position, length), offsetInSegment, length);
+			position += length;
+		}
+	}
+
+	@Override
+	public void write(long offset, ByteBuffer... buffers) throws IOException {
+		long position = offset;
+		for (ByteBuffer buffer : buffers) {
+			checkBounds(position, buffer.remaining());
+			while (buffer.hasRemaining()) {
+				int offsetInSegment = (int) (position % SEGMENT_SIZE);
+				int length = Math.min(buffer.remaining(), SEGMENT_SIZE - offsetInSegment);
+				Segment segment = getOrAllocateSegment((int) (position / SEGMENT_SIZE));
+				buffer.get(segment.data, offsetInSegment, length);
+				segment.markWritten(offsetInSegment, offsetInSegment + length);
+				position += length;
+			}
+		}
+	}
+
+	/**
+	 * Feeds the bytes directly from the segments to the digest, the buffer is never used.
+	 */
+	@Override
+	public void hash(long offset, int length, MessageDigest digest, byte[] buffer) throws IOException {
+		checkBounds(offset, length);
+		long position = offset;
+		long end = offset + length;
+		while (position < end) {
+			int offsetInSegment = (int) (position % SEGMENT_SIZE);
+			int chunkLength = (int) Math.min(end - position, SEGMENT_SIZE - offsetInSegment);
+			digest.update(getWrittenSegment(position, chunkLength), offsetInSegment, chunkLength);
+			position += chunkLength;
+		}
+	}
+
+	@Override
+	public boolean isAvailable(long offset, int length) {
+		if (offset < 0 || offset + length > size) {
+			return false;
+		}
+
+		long position = offset;
+		long end = offset + length;
+		while (position < end) {
+			int offsetInSegment = (int) (position % SEGMENT_SIZE);
+			int chunkLength = (int) Math.min(end - position, SEGMENT_SIZE - offsetInSegment);
+			Segment segment = segments.get((int) (position / SEGMENT_SIZE));
+			if (segment == null || !segment.isWritten(offsetInSegment, offsetInSegment + chunkLength)) {
+				return false;
+			}
+			position += chunkLength;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets the data of the segment which contains the given section.
+	 * @param position The position of the section within the torrent.
+	 * @param length The length of the section, which must not cross the end of the segment.
+	 * @return The data of the segment.
+	 * @throws EOFException When the section has not been written.
+	 */
+	private byte[] getWrittenSegment(long position, int length) throws EOFException {
+		Segment segment = segments.get((int) (position / SEGMENT_SIZE));
+		int offsetInSegment = (int) (position % SEGMENT_SIZE);
+		if (segment == null || !segment.isWritten(offsetInSegment, offsetInSegment + length)) {
+			throw new EOFException(String.format("Section %d-%d has not been written yet.", position, position + length));
+		}
+
+		return segment.data;
+	}
+
+	private Segment getOrAllocateSegment(int index) {
+		Segment segment = segments.get(index);
+		if (segment != null) {
+			return segment;
+		}
+
+		int segmentSize = (int) Math.min(SEGMENT_SIZE, size - (long) index * SEGMENT_SIZE);
+		segments.compareAndSet(index, null, new Segment(segmentSize));
+		return segments.get(index);
+	}
+
+	private void checkBounds(long offset, int length) throws EOFException {
+		if (offset < 0 || offset + length > size) {
+			throw new EOFException(String.format("Section %d-%d is outside of the %d bytes of the torrent.", offset, offset + length, size));
+		}
+	}
+
+	/**
+	 * Gets the amount of bytes which have been allocated to store the data.
+	 * @return The allocated bytes.
+	 */
+	public long getAllocatedBytes() {
+		long allocatedBytes = 0;
+		for (int i = 0; i < segments.length(); i++) {
+			Segment segment = segments.get(i);
+			if (segment != null) {
+				allocatedBytes += segment.data.length;
+			}
+		}
+		return allocatedBytes;
+	}
+
+	/**
+	 * Releases all data.
+	 */
+	@Override
+	public void close() {
+		for (int i = 0; i < segments.length(); i++) {
+			segments.set(i, null);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MemoryTorrentStorage[size=%d, allocated=%d]", size, getAllocatedBytes());
+	}
+
+	private static final class Segment {
+
+		private final byte[] data;
+
+		/**
+		 * The written ranges of the segment, mapping the start to the end (exclusive). Adjacent and overlapping ranges are merged, so the blocks of a
+		 * piece which are written in any order end up as a single range. Guarded by <code>this</code>.
+		 */
+		private final TreeMap<Integer, Integer> writtenRanges;
+
+		Segment(int size) {
+			data = new byte[size];
+			writtenRanges = new TreeMap<>();
+		}
+
+		synchronized void markWritten(int start, int end) {
+			int mergedStart = start;
+			int mergedEnd = end;
+
+			Map.Entry<Integer, Integer> previous = writtenRanges.floorEntry(start);
+			if (previous != null && previous.getValue() >= start) {
+				mergedStart = previous.getKey();
+				mergedEnd = Math.max(mergedEnd, previous.getValue());
+			}
+
+			// Absorb the ranges which start within or directly after the new range.
+			Map.Entry<Integer, Integer> next;
+			while ((next = writtenRanges.ceilingEntry(mergedStart)) != null && next.getKey() <= mergedEnd) {
+				mergedEnd = Math.max(mergedEnd, next.getValue());
+				writtenRanges.remove(next.getKey());
+			}
+
+			writtenRanges.put(mergedStart, mergedEnd);
+		}
+
+		synchronized boolean isWritten(int start, int end) {
+			Map.Entry<Integer, Integer> range = writtenRanges.floorEntry(start);
+			return range != null && range.getValue() >= end;
+		}
+	}
+}
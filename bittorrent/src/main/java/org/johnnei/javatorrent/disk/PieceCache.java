@@ -0,0 +1,546 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.torrent.files.BlockStatus;
+import org.johnnei.javatorrent.torrent.files.Piece;
+import org.johnnei.javatorrent.utils.Argument;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded write-back cache which assembles the received blocks of pieces in memory.
+ *
+ * Once all blocks of a piece have been received the hash is verified on the assembled data and the piece is written to the files in a single sequential
+ * write only if the hash matched. Data of a piece which failed the hash check is never written, the assembled piece is dropped and all of its blocks are
+ * marked as {@link BlockStatus#Needed} again as the cache can't tell which of them are corrupt.
+ *
+ * When the cache would exceed its capacity the least recently used pieces are evicted. The blocks of an evicted piece are written to the files and the hash
+ * of that piece will be verified from the files, just like when the piece didn't fit in the cache at all. When the blocks of an evicted piece can't be
+ * written they are marked as {@link BlockStatus#Needed} again so that they will be downloaded again.
+ *
+ * The cache is safe to be used by multiple disk workers as long as all jobs of a single piece are processed by the same worker.
+ */
+public class PieceCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PieceCache.class);
+
+	private final long capacity;
+
+	/**
+	 * The assembled pieces in least recently used order. Guarded by <code>this</code>.
+	 */
+	private final LinkedHashMap<PieceKey, Entry> entries;
+
+	/**
+	 * The evicted pieces of which the blocks are being written. They remain visible until the write has completed so that a hash check doesn't read the
+	 * files before all blocks have been written. Guarded by <code>this</code>.
+	 */
+	private final Map<PieceKey, Entry> evicting;
+
+	/**
+	 * The amount of bytes allocated by the {@link #entries}. Guarded by <code>this</code>.
+	 */
+	private long size;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder flushedPieces = new LongAdder();
+
+	private final LongAdder evictedPieces = new LongAdder();
+
+	private final LongAdder droppedPieces = new LongAdder();
+
+	private final LongAdder writtenBytes = new LongAdder();
+
+	/**
+	 * Creates a new cache.
+	 * @param capacity The maximum amount of bytes which are used to assemble pieces.
+	 */
+	public PieceCache(long capacity) {
+		Argument.requirePositive(capacity, "Capacity can not be negative.");
+		this.capacity = capacity;
+		entries = new LinkedHashMap<>(16, 0.75f, true);
+		evicting = new HashMap<>();
+	}
+
+	/**
+	 * Stores the block in the assembled piece. When the piece doesn't fit in the cache or has been evicted the block is written to the files instead.
+	 * @param piece The piece which contains the block.
+	 * @param blockIndex The index of the block within the piece.
+	 * @param data The buffer containing the data of the block.
+	 * @throws IOException When the block or an evicted piece could not be written.
+	 */
+	public void storeBlock(Piece piece, int blockIndex, BlockBuffer data) throws IOException {
+		Entry entry = getOrCreateEntry(piece);
+		if (entry == null || !entry.store(blockIndex, data)) {
+			piece.storeBlock(blockIndex, data);
+			writtenBytes.add(data.getLength());
+		}
+	}
+
+	/**
+	 * Verifies the hash of the piece. When the piece has been fully assembled in the cache the hash is verified without reading the files and the piece is
+	 * written once the hash matched. Otherwise any cached blocks, including those of an eviction which is still in progress, are written first and the hash
+	 * is verified from the files.
+	 * @param piece The piece to verify.
+	 * @return <code>true</code> when the hash matched, otherwise <code>false</code>.
+	 * @throws IOException When the piece could not be written or read.
+	 * @see #verify(Piece)
+	 * @see #write(Piece)
+	 */
+	public boolean checkHash(Piece piece) throws IOException {
+		switch (verify(piece)) {
+			case Matched:
+				return true;
+			case MatchedNotWritten:
+				write(piece);
+				return true;
+			case NotWritten:
+				write(piece);
+				misses.increment();
+				return piece.checkHash();
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Verifies the hash of the piece without writing to the files, which allows pieces to be verified outside of the disk workers. When the piece has been
+	 * fully assembled in the cache the hash is verified without reading the files. A matching piece remains in the cache, and will not be evicted, until it
+	 * has been written with {@link #write(Piece)}. When the cache only holds part of the piece the hash is not verified as the cached blocks must be written
+	 * first. When the cache doesn't hold any blocks of the piece the hash is verified from the files.
+	 * @param piece The piece to verify.
+	 * @return The result of the verification.
+	 * @throws IOException When the piece could not be read.
+	 */
+	public Verification verify(Piece piece) throws IOException {
+		PieceKey key = new PieceKey(piece);
+		Entry entry;
+		Entry evictedEntry;
+		synchronized (this) {
+			entry = entries.get(key);
+			evictedEntry = evicting.get(key);
+		}
+
+		if (evictedEntry != null) {
+			// Waits for the evicting thread to finish writing before testing if blocks remain to be written.
+			synchronized (evictedEntry) {
+				if (evictedEntry.hasUnwrittenBlocks()) {
+					return Verification.NotWritten;
+				}
+			}
+		}
+
+		if (entry == null) {
+			misses.increment();
+			return piece.checkHash() ? Verification.Matched : Verification.Mismatched;
+		}
+
+		synchronized (entry) {
+			if (entry.evicted || !entry.isComplete()) {
+				// Part of the piece was written before the entry got created or the entry got evicted after it was looked up.
+				return Verification.NotWritten;
+			}
+
+			hits.increment();
+			if (!piece.checkHash(entry.data)) {
+				// Forget the corrupt blocks so that they are neither reported as cached nor written by an eviction or a flush.
+				entry.discard();
+				remove(entry);
+				droppedPieces.increment();
+				LOGGER.debug("Dropped corrupt data of {} without writing it.", piece);
+				return Verification.Mismatched;
+			}
+
+			synchronized (this) {
+				if (entry.evicted) {
+					// The eviction is writing the verified data, it must have completed before the piece is reported as stored.
+					return Verification.NotWritten;
+				}
+				entry.verified = true;
+			}
+			return Verification.MatchedNotWritten;
+		}
+	}
+
+	/**
+	 * Writes the cached blocks of the piece, including those of an eviction which is still in progress, and removes the piece from the cache.
+	 * @param piece The piece to write.
+	 * @throws IOException When the blocks could not be written. The blocks which have not been written remain in the cache.
+	 */
+	public void write(Piece piece) throws IOException {
+		PieceKey key = new PieceKey(piece);
+		Entry entry;
+		Entry evictedEntry;
+		synchronized (this) {
+			entry = entries.get(key);
+			evictedEntry = evicting.get(key);
+		}
+
+		if (evictedEntry != null) {
+			// Either waits for the evicting thread to finish writing or writes the remaining blocks before the evicting thread gets to them.
+			synchronized (evictedEntry) {
+				evictedEntry.flush();
+			}
+		}
+
+		if (entry == null) {
+			return;
+		}
+
+		synchronized (entry) {
+			try {
+				entry.flush();
+			} catch (IOException e) {
+				synchronized (this) {
+					// A verified piece is never evicted, it must become evictable again so that a failing write doesn't pin it in the cache.
+					entry.verified = false;
+				}
+				throw e;
+			}
+			if (!entry.evicted) {
+				remove(entry);
+				if (entry.verified) {
+					flushedPieces.increment();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached blocks of the piece after they could not be written. The blocks which have not been written are marked as {@link BlockStatus#Needed}
+	 * again, so a persistent write failure doesn't keep a verified piece in the cache.
+	 * @param piece The piece to drop.
+	 */
+	public void discard(Piece piece) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(new PieceKey(piece));
+		}
+
+		if (entry == null) {
+			return;
+		}
+
+		synchronized (entry) {
+			if (!entry.evicted) {
+				entry.discard();
+				remove(entry);
+			}
+		}
+	}
+
+	/**
+	 * Writes all assembled blocks to the files and empties the cache.
+	 * @throws IOException When a piece could not be written. The pieces which have not been written remain in the cache.
+	 */
+	public void flush() throws IOException {
+		List<Entry> flushed;
+		synchronized (this) {
+			flushed = new ArrayList<>(entries.values());
+		}
+
+		for (Entry entry : flushed) {
+			synchronized (entry) {
+				if (!entry.evicted) {
+					entry.flush();
+					remove(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests if the block is being assembled in this cache and therefore has not been written to the files yet.
+	 * @param piece The piece which contains the block.
+	 * @param blockIndex The index of the block within the piece.
+	 * @return <code>true</code> when the block is only stored in the cache.
+	 */
+	public boolean isCached(Piece piece, int blockIndex) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(new PieceKey(piece));
+		}
+
+		if (entry == null) {
+			return false;
+		}
+
+		synchronized (entry) {
+			return entry.storedBlocks.get(blockIndex);
+		}
+	}
+
+	private Entry getOrCreateEntry(Piece piece) {
+		int pieceSize = piece.getSize();
+		if (pieceSize > capacity) {
+			return null;
+		}
+
+		List<Entry> evicted = new ArrayList<>();
+		Entry entry;
+		synchronized (this) {
+			PieceKey key = new PieceKey(piece);
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry(piece, pieceSize);
+				entries.put(key, entry);
+				size += pieceSize;
+				evict(entry, evicted);
+			}
+		}
+
+		for (Entry evictedEntry : evicted) {
+			synchronized (evictedEntry) {
+				evictedPieces.increment();
+				try {
+					evictedEntry.flush();
+				} catch (IOException e) {
+					// The failure doesn't belong to the block which is being stored, the lost blocks must be downloaded again instead.
+					LOGGER.warn("Failed to write the evicted blocks of {}, the blocks will be requested again.", evictedEntry.piece, e);
+					evictedEntry.discard();
+				}
+			}
+
+			synchronized (this) {
+				evicting.remove(new PieceKey(evictedEntry.piece), evictedEntry);
+			}
+		}
+
+		return entry;
+	}
+
+	private void evict(Entry newEntry, List<Entry> evicted) {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size > capacity && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry == newEntry || entry.verified) {
+				// Verified pieces are about to be written, evicting them would only write them twice.
+				continue;
+			}
+
+			iterator.remove();
+			size -= entry.data.length;
+			entry.evicted = true;
+			evicting.put(new PieceKey(entry.piece), entry);
+			evicted.add(entry);
+		}
+	}
+
+	private synchronized void remove(Entry entry) {
+		if (entries.remove(new PieceKey(entry.piece)) != null) {
+			size -= entry.data.length;
+		}
+		entry.evicted = true;
+	}
+
+	/**
+	 * Gets the maximum amount of bytes which are used to assemble pieces.
+	 * @return The capacity in bytes.
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the amount of bytes which are currently used to assemble pieces.
+	 * @return The size in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the amount of hash checks which have been verified from the cache.
+	 * @return The amount of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the amount of hash checks which had to be verified from the files.
+	 * @return The amount of misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the amount of verified pieces which have been written in a single write.
+	 * @return The amount of flushed pieces.
+	 */
+	public long getFlushedPieces() {
+		return flushedPieces.sum();
+	}
+
+	/**
+	 * Gets the amount of pieces which have been evicted before they were complete and have been written partially.
+	 * @return The amount of evicted pieces.
+	 */
+	public long getEvictedPieces() {
+		return evictedPieces.sum();
+	}
+
+	/**
+	 * Gets the amount of assembled pieces which failed the hash check and therefore have not been written.
+	 * @return The amount of dropped pieces.
+	 */
+	public long getDroppedPieces() {
+		return droppedPieces.sum();
+	}
+
+	/**
+	 * Gets the amount of bytes which have been written to the files through this cache.
+	 * @return The amount of written bytes.
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PieceCache[capacity=%d, hits=%d, misses=%d, flushed=%d, evicted=%d]",
+				capacity, getHits(), getMisses(), getFlushedPieces(), getEvictedPieces());
+	}
+
+	/**
+	 * Identifies a piece by instance as pieces of different file sets are equal when they have the same index.
+	 */
+	private static final class PieceKey {
+
+		private final Piece piece;
+
+		PieceKey(Piece piece) {
+			this.piece = piece;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof PieceKey && ((PieceKey) o).piece == piece;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(piece);
+		}
+	}
+
+	private final class Entry {
+
+		private final Piece piece;
+
+		private final byte[] data;
+
+		/**
+		 * The blocks which have been stored in {@link #data}. Guarded by <code>this</code>.
+		 */
+		private final BitSet storedBlocks;
+
+		/**
+		 * If this entry has been removed from the cache, blocks must be written to the files directly.
+		 */
+		private volatile boolean evicted;
+
+		/**
+		 * If the hash of the assembled piece matched and the piece is waiting to be written. Only set while holding the lock on the cache so that it can't
+		 * be evicted concurrently.
+		 */
+		private volatile boolean verified;
+
+		Entry(Piece piece, int pieceSize) {
+			this.piece = piece;
+			data = new byte[pieceSize];
+			storedBlocks = new BitSet(piece.getBlockCount());
+		}
+
+		synchronized boolean store(int blockIndex, BlockBuffer block) {
+			if (evicted) {
+				return false;
+			}
+
+			System.arraycopy(block.getArray(), 0, data, getOffset(blockIndex), block.getLength());
+			storedBlocks.set(blockIndex);
+			return true;
+		}
+
+		boolean isComplete() {
+			return storedBlocks.cardinality() == piece.getBlockCount();
+		}
+
+		boolean hasUnwrittenBlocks() {
+			return !storedBlocks.isEmpty();
+		}
+
+		void flush() throws IOException {
+			// Write each run of adjacent blocks in a single write.
+			int start = storedBlocks.nextSetBit(0);
+			while (start >= 0) {
+				int end = storedBlocks.nextClearBit(start);
+				int offset = getOffset(start);
+				int length = end == piece.getBlockCount() ? data.length - offset : getOffset(end) - offset;
+				piece.storeSection(offset, ByteBuffer.wrap(data, offset, length));
+				writtenBytes.add(length);
+				// Clear the written run immediately so that a failure on a later run leaves only the blocks which have not been written.
+				storedBlocks.clear(start, end);
+				start = storedBlocks.nextSetBit(end);
+			}
+		}
+
+		/**
+		 * Marks the blocks which have not been written as needed again and forgets them.
+		 */
+		void discard() {
+			synchronized (piece) {
+				for (int blockIndex = storedBlocks.nextSetBit(0); blockIndex >= 0; blockIndex = storedBlocks.nextSetBit(blockIndex + 1)) {
+					piece.setBlockStatus(blockIndex, BlockStatus.Needed);
+				}
+			}
+			storedBlocks.clear();
+		}
+
+		private int getOffset(int blockIndex) {
+			return blockIndex * piece.getFileSet().getBlockSize();
+		}
+	}
+
+	/**
+	 * The outcome of {@link #verify(Piece)}.
+	 */
+	public enum Verification {
+
+		/**
+		 * The hash matched the data in the files.
+		 */
+		Matched,
+
+		/**
+		 * The hash didn't match, the data in the cache has been dropped and its blocks must be downloaded again.
+		 */
+		Mismatched,
+
+		/**
+		 * The hash of the assembled piece matched, but the piece must be written with {@link #write(Piece)} before it is stored.
+		 */
+		MatchedNotWritten,
+
+		/**
+		 * The cache holds part of the piece, the hash can only be verified once the cached blocks have been written with {@link #write(Piece)}.
+		 */
+		NotWritten
+	}
+}
@@ -0,0 +1,217 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.torrent.files.Piece;
+import org.johnnei.javatorrent.utils.Argument;
+
+/**
+ * A bounded cache of the blocks which have been read to serve the requests of peers.
+ *
+ * Blocks are cached in least recently used order, popular pieces therefore stay in memory while many peers request them. When a read misses the cache the
+ * blocks are read from the files in a single sequential read which continues for the read-ahead size after the requested section (within the same piece),
+ * as peers usually request the following blocks of a piece next.
+ *
+ * Only the data of verified pieces should be read through the cache, cached blocks are never invalidated.
+ */
+public class ReadCache {
+
+	private final long capacity;
+
+	private final int readAheadSize;
+
+	/**
+	 * The cached blocks in least recently used order. Guarded by <code>this</code>.
+	 */
+	private final LinkedHashMap<BlockKey, byte[]> blocks;
+
+	/**
+	 * The amount of bytes cached in {@link #blocks}. Guarded by <code>this</code>.
+	 */
+	private long size;
+
+	private final ReadCacheMetrics metrics;
+
+	/**
+	 * Creates a new cache.
+	 * @param capacity The maximum amount of bytes which are cached.
+	 * @param readAheadSize The amount of bytes which are read after the requested section on a miss.
+	 */
+	public ReadCache(long capacity, int readAheadSize) {
+		Argument.requirePositive(capacity, "Capacity can not be negative.");
+		Argument.requirePositive(readAheadSize, "Read-ahead size can not be negative.");
+		this.capacity = capacity;
+		this.readAheadSize = readAheadSize;
+		blocks = new LinkedHashMap<>(16, 0.75f, true);
+		metrics = new ReadCacheMetrics();
+	}
+
+	/**
+	 * Reads {@link BlockBuffer#getLength()} bytes of the piece into the buffer.
+	 * @param piece The piece to read from.
+	 * @param offset The offset within the piece.
+	 * @param buffer The buffer to read into.
+	 * @param torrentMetrics The metrics of the torrent which owns the piece or <code>null</code>.
+	 * @throws IOException When the section had to be read from the files and the read failed.
+	 */
+	public void read(Piece piece, int offset, BlockBuffer buffer, ReadCacheMetrics torrentMetrics) throws IOException {
+		int length = buffer.getLength();
+		if (length == 0) {
+			return;
+		}
+
+		int blockSize = piece.getFileSet().getBlockSize();
+		int firstBlock = offset / blockSize;
+		int lastBlock = (offset + length - 1) / blockSize;
+
+		byte[][] cachedBlocks = new byte[lastBlock - firstBlock + 1][];
+		int missingBlock = -1;
+		synchronized (this) {
+			for (int i = 0; i < cachedBlocks.length; i++) {
+				cachedBlocks[i] = blocks.get(new BlockKey(piece, firstBlock + i));
+				if (cachedBlocks[i] == null && missingBlock < 0) {
+					missingBlock = firstBlock + i;
+				}
+			}
+		}
+
+		if (missingBlock >= 0) {
+			int readBytes = readBlocks(piece, missingBlock, offset + length, cachedBlocks, firstBlock);
+			metrics.onMiss(readBytes);
+			if (torrentMetrics != null) {
+				torrentMetrics.onMiss(readBytes);
+			}
+		} else {
+			metrics.onHit();
+			if (torrentMetrics != null) {
+				torrentMetrics.onHit();
+			}
+		}
+
+		// Copy the requested section out of the blocks.
+		byte[] target = buffer.getArray();
+		int copiedBytes = 0;
+		while (copiedBytes < length) {
+			int position = offset + copiedBytes;
+			int offsetInBlock = position % blockSize;
+			byte[] block = cachedBlocks[position / blockSize - firstBlock];
+			int copyLength = Math.min(length - copiedBytes, block.length - offsetInBlock);
+			System.arraycopy(block, offsetInBlock, target, copiedBytes, copyLength);
+			copiedBytes += copyLength;
+		}
+	}
+
+	/**
+	 * Reads the blocks starting at the given block until the end of the requested section plus the read-ahead in a single read and caches them.
+	 * @return The amount of bytes which have been read.
+	 */
+	private int readBlocks(Piece piece, int startBlock, int requestEnd, byte[][] cachedBlocks, int firstBlock) throws IOException {
+		int blockSize = piece.getFileSet().getBlockSize();
+		int start = startBlock * blockSize;
+		int end = Math.min(piece.getSize(), requestEnd + readAheadSize);
+		// Align the read-ahead on the end of a block.
+		end = Math.min(piece.getSize(), ((end + blockSize - 1) / blockSize) * blockSize);
+
+		byte[] data = piece.loadPiece(start, end - start);
+
+		synchronized (this) {
+			for (int blockStart = 0; blockStart < data.length; blockStart += blockSize) {
+				int blockIndex = startBlock + blockStart / blockSize;
+				byte[] block = Arrays.copyOfRange(data, blockStart, Math.min(data.length, blockStart + blockSize));
+				if (blockIndex - firstBlock < cachedBlocks.length) {
+					cachedBlocks[blockIndex - firstBlock] = block;
+				}
+
+				if (block.length > capacity) {
+					continue;
+				}
+
+				byte[] previous = blocks.put(new BlockKey(piece, blockIndex), block);
+				size += block.length - (previous != null ? previous.length : 0);
+			}
+			evict();
+		}
+
+		return data.length;
+	}
+
+	private void evict() {
+		Iterator<byte[]> iterator = blocks.values().iterator();
+		while (size > capacity && iterator.hasNext()) {
+			size -= iterator.next().length;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Gets the maximum amount of bytes which are cached.
+	 * @return The capacity in bytes.
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the amount of bytes which are read after the requested section on a miss.
+	 * @return The read-ahead size in bytes.
+	 */
+	public int getReadAheadSize() {
+		return readAheadSize;
+	}
+
+	/**
+	 * Gets the amount of bytes which are currently cached.
+	 * @return The size in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the metrics of all reads which have been served by this cache.
+	 * @return The total metrics.
+	 */
+	public ReadCacheMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ReadCache[capacity=%d, readAhead=%d, metrics=%s]", capacity, readAheadSize, metrics);
+	}
+
+	/**
+	 * Identifies a block by the instance of its piece as pieces of different file sets are equal when they have the same index.
+	 */
+	private static final class BlockKey {
+
+		private final Piece piece;
+
+		private final int blockIndex;
+
+		BlockKey(Piece piece, int blockIndex) {
+			this.piece = piece;
+			this.blockIndex = blockIndex;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof BlockKey)) {
+				return false;
+			}
+
+			BlockKey other = (BlockKey) o;
+			return other.piece == piece && other.blockIndex == blockIndex;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(piece), blockIndex);
+		}
+	}
+}
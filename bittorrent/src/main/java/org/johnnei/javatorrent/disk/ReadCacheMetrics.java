@@ -0,0 +1,94 @@
+package org.johnnei.javatorrent.disk;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of the reads which have been served by a {@link ReadCache}. Each torrent has its own metrics, the cache itself keeps the totals of all
+ * torrents.
+ */
+public class ReadCacheMetrics {
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder diskReads = new LongAdder();
+
+	private final LongAdder diskReadBytes = new LongAdder();
+
+	private final LongAdder mergedRequests = new LongAdder();
+
+	void onHit() {
+		hits.increment();
+	}
+
+	void onMiss(int readBytes) {
+		misses.increment();
+		diskReads.increment();
+		diskReadBytes.add(readBytes);
+	}
+
+	/**
+	 * Records that a request has been merged into the read of the preceding request.
+	 * @param requests The amount of merged requests.
+	 */
+	public void onMergedRequests(int requests) {
+		mergedRequests.add(requests);
+	}
+
+	/**
+	 * Gets the amount of reads which were served entirely from the cache.
+	 * @return The amount of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the amount of reads which had to read from the files.
+	 * @return The amount of misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the fraction of the reads which were served entirely from the cache.
+	 * @return The hit rate between 0 and 1, or 0 when nothing has been read yet.
+	 */
+	public double getHitRate() {
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * Gets the amount of reads on the files, including the read-ahead.
+	 * @return The amount of disk reads.
+	 */
+	public long getDiskReads() {
+		return diskReads.sum();
+	}
+
+	/**
+	 * Gets the amount of bytes which have been read from the files, including the read-ahead.
+	 * @return The amount of read bytes.
+	 */
+	public long getDiskReadBytes() {
+		return diskReadBytes.sum();
+	}
+
+	/**
+	 * Gets the amount of requests which have been served by the read of an adjacent request.
+	 * @return The amount of merged requests.
+	 */
+	public long getMergedRequests() {
+		return mergedRequests.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ReadCacheMetrics[hits=%d, misses=%d, diskReadBytes=%d, mergedRequests=%d]",
+				getHits(), getMisses(), getDiskReadBytes(), getMergedRequests());
+	}
+}
@@ -0,0 +1,127 @@
+package org.johnnei.javatorrent.disk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The progress of the verification of the pieces of a torrent by the {@link RecheckEngine}.
+ */
+public class Recheck {
+
+	private final int totalPieces;
+
+	private final long totalBytes;
+
+	private final AtomicInteger checkedPieces;
+
+	private final AtomicInteger matchingPieces;
+
+	private final LongAdder checkedBytes;
+
+	private final CompletableFuture<Recheck> completion;
+
+	private volatile boolean cancelled;
+
+	Recheck(int totalPieces, long totalBytes) {
+		this.totalPieces = totalPieces;
+		this.totalBytes = totalBytes;
+		checkedPieces = new AtomicInteger();
+		matchingPieces = new AtomicInteger();
+		checkedBytes = new LongAdder();
+		completion = new CompletableFuture<>();
+	}
+
+	void onPieceChecked(int pieceSize, boolean matchingHash) {
+		checkedBytes.add(pieceSize);
+		if (matchingHash) {
+			matchingPieces.incrementAndGet();
+		}
+		checkedPieces.incrementAndGet();
+	}
+
+	void complete() {
+		completion.complete(this);
+	}
+
+	void fail(Throwable cause) {
+		completion.completeExceptionally(cause);
+	}
+
+	/**
+	 * Stops the verification of the pieces which have not been started yet.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return <code>true</code> when the recheck has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return <code>true</code> when all pieces have been verified or the recheck has been cancelled and the pieces in progress have completed.
+	 */
+	public boolean isDone() {
+		return completion.isDone();
+	}
+
+	/**
+	 * Gets the future which completes when the recheck is done.
+	 * @return The completion of this recheck.
+	 */
+	public CompletableFuture<Recheck> getCompletion() {
+		return completion;
+	}
+
+	/**
+	 * @return The amount of pieces which will be verified.
+	 */
+	public int getTotalPieces() {
+		return totalPieces;
+	}
+
+	/**
+	 * @return The amount of pieces which have been verified.
+	 */
+	public int getCheckedPieces() {
+		return checkedPieces.get();
+	}
+
+	/**
+	 * @return The amount of verified pieces of which the data on disk matched the hash.
+	 */
+	public int getMatchingPieces() {
+		return matchingPieces.get();
+	}
+
+	/**
+	 * @return The amount of bytes which will be verified.
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return The amount of bytes which have been verified.
+	 */
+	public long getCheckedBytes() {
+		return checkedBytes.sum();
+	}
+
+	/**
+	 * Calculates the fraction of the bytes which have been verified.
+	 * @return The progress between 0 and 1.
+	 */
+	public double getProgress() {
+		return totalBytes == 0 ? 1 : getCheckedBytes() / (double) totalBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Recheck[checked=%d/%d, matching=%d, cancelled=%s]", getCheckedPieces(), totalPieces, getMatchingPieces(), cancelled);
+	}
+}
@@ -0,0 +1,201 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
+import org.johnnei.javatorrent.torrent.files.Piece;
+import org.johnnei.javatorrent.utils.Argument;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies the pieces of torrents in the background. The pieces are split with fork-join over a pool of which the parallelism bounds the amount of
+ * concurrent reads, the read rate can be limited to leave bandwidth for the other disk jobs.
+ *
+ * The data of each piece is streamed through a buffer which is reused by the thread instead of loading the entire piece in a new array. The listener of the
+ * recheck is informed of every verified piece as soon as it has been verified, so a torrent can serve the verified pieces while the recheck continues.
+ */
+public class RecheckEngine {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RecheckEngine.class);
+
+	/**
+	 * The size of the buffers through which the pieces are read.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * The time to wait when the rate limit has been reached.
+	 */
+	private static final long THROTTLE_WAIT_MILLIS = 10;
+
+	private final ForkJoinPool pool;
+
+	private final TokenBucket rateLimiter;
+
+	private final ThreadLocal<byte[]> buffers;
+
+	/**
+	 * Creates a new engine.
+	 * @param concurrency The maximum amount of pieces which are read concurrently.
+	 * @param bytesPerSecond The maximum read rate or {@link TokenBucket#UNLIMITED}.
+	 */
+	public RecheckEngine(int concurrency, long bytesPerSecond) {
+		Argument.requireWithinBounds(concurrency, 1, Integer.MAX_VALUE, "At least one piece must be allowed to be checked at a time.");
+		pool = new ForkJoinPool(concurrency, forkJoinPool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+			thread.setName("Recheck #" + thread.getPoolIndex());
+			return thread;
+		}, null, false);
+		rateLimiter = new TokenBucket(null);
+		rateLimiter.setRate(bytesPerSecond);
+		buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+	}
+
+	/**
+	 * Starts verifying the given pieces in the background.
+	 * @param pieces The pieces to verify.
+	 * @param listener The listener to inform of the progress.
+	 * @return The progress of the started recheck.
+	 */
+	public Recheck recheck(List<Piece> pieces, IRecheckListener listener) {
+		List<Piece> checkedPieces = new ArrayList<>(pieces);
+		Recheck recheck = new Recheck(checkedPieces.size(), checkedPieces.stream().mapToLong(Piece::getSize).sum());
+		pool.execute(() -> {
+			try {
+				new PieceRange(recheck, checkedPieces, listener, 0, checkedPieces.size()).invoke();
+				listener.onRecheckCompleted(recheck);
+				recheck.complete();
+			} catch (RuntimeException e) {
+				LOGGER.warn("Recheck failed.", e);
+				recheck.fail(e);
+			}
+		});
+		return recheck;
+	}
+
+	private void check(Recheck recheck, Piece piece, IRecheckListener listener) {
+		if (recheck.isCancelled()) {
+			return;
+		}
+
+		try {
+			awaitRate(piece.getSize());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			recheck.cancel();
+			return;
+		}
+
+		boolean matchingHash;
+		try {
+			matchingHash = piece.checkHashWithBuffer(buffers.get());
+		} catch (IOException e) {
+			LOGGER.warn("Failed hash check for piece {}.", piece.getIndex(), e);
+			matchingHash = false;
+		}
+
+		recheck.onPieceChecked(piece.getSize(), matchingHash);
+		listener.onPieceChecked(recheck, piece, matchingHash);
+	}
+
+	private void awaitRate(int bytes) throws InterruptedException {
+		while (rateLimiter.getAvailable() <= 0) {
+			Thread.sleep(THROTTLE_WAIT_MILLIS);
+		}
+		rateLimiter.consume(bytes);
+	}
+
+	/**
+	 * Changes the maximum read rate. This takes effect immediately.
+	 * @param bytesPerSecond The amount of bytes per second or {@link TokenBucket#UNLIMITED}.
+	 */
+	public void setRateLimit(long bytesPerSecond) {
+		rateLimiter.setRate(bytesPerSecond);
+	}
+
+	/**
+	 * Gets the maximum read rate.
+	 * @return The amount of bytes per second or {@link TokenBucket#UNLIMITED}.
+	 */
+	public long getRateLimit() {
+		return rateLimiter.getRate();
+	}
+
+	/**
+	 * Gets the maximum amount of pieces which are read concurrently.
+	 * @return The concurrency.
+	 */
+	public int getConcurrency() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Stops the threads of this engine. Rechecks which are in progress are abandoned.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Waits for the threads of this engine to stop.
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return <code>true</code> when the threads have stopped.
+	 * @throws InterruptedException When the thread got interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return pool.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RecheckEngine[concurrency=%d, rateLimit=%d]", getConcurrency(), getRateLimit());
+	}
+
+	private final class PieceRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Recheck recheck;
+
+		private final List<Piece> pieces;
+
+		private final IRecheckListener listener;
+
+		private final int start;
+
+		private final int end;
+
+		PieceRange(Recheck recheck, List<Piece> pieces, IRecheckListener listener, int start, int end) {
+			this.recheck = recheck;
+			this.pieces = pieces;
+			this.listener = listener;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= 1) {
+				if (start < end) {
+					check(recheck, pieces.get(start), listener);
+				}
+				return;
+			}
+
+			int middle = (start + end) >>> 1;
+			invokeAll(
+				new PieceRange(recheck, pieces, listener, start, middle),
+				new PieceRange(recheck, pieces, listener, middle, end)
+			);
+		}
+	}
+}
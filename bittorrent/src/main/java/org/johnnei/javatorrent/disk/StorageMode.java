@@ -0,0 +1,20 @@
+package org.johnnei.javatorrent.disk;
+
+/**
+ * The ways in which the pieces of a torrent are read from and written to the files on the harddrive.
+ */
+public enum StorageMode {
+
+	/**
+	 * Every read and write is a positional read or write system call on the file channel.
+	 */
+	Channel,
+	/**
+	 * The files are mapped into memory in windows. Reads and writes are plain memory copies from and into the page cache which avoids a system call
+	 * per block. The windows are unmapped again when the maximum amount of mapped windows is exceeded.
+	 *
+	 * @see org.johnnei.javatorrent.torrent.files.MappedRegionCache
+	 */
+	MemoryMapped
+
+}
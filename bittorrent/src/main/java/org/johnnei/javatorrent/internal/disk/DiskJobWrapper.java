@@ -1,49 +1,131 @@
 package org.johnnei.javatorrent.internal.disk;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.johnnei.javatorrent.disk.DiskJobWriteBlock;
 import org.johnnei.javatorrent.disk.IDiskJob;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A wrapper around the {@link IDiskJob} which records the amount of tries and defines the priority.
+ * A wrapper around the {@link IDiskJob} which records the amount of tries and defines the priority. Jobs which fail on {@link #MAX_ATTEMPTS} attempts are
+ * given up on and informed with {@link IDiskJob#onFailure(IOException)}.
  */
 class DiskJobWrapper implements Comparable<DiskJobWrapper> {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DiskJobWrapper.class);
 
+	private static final AtomicLong SEQUENCE = new AtomicLong();
+
+	/**
+	 * The amount of times a job is processed before it is considered to have failed.
+	 */
+	static final int MAX_ATTEMPTS = 3;
+
 	private final IDiskJob diskJob;
 
+	/**
+	 * The order in which the job has been added, this keeps jobs with equal priority in FIFO order.
+	 */
+	private final long sequence;
+
+	/**
+	 * The listener which is notified once the job has been completed or has failed or <code>null</code>.
+	 */
+	private final Runnable completionListener;
+
 	private int attempt;
 
 	DiskJobWrapper(IDiskJob diskJob) {
+		this(diskJob, null);
+	}
+
+	/**
+	 * Creates a new wrapper.
+	 * @param diskJob The job to wrap.
+	 * @param completionListener The listener which is notified once the job has been completed or has failed or <code>null</code>.
+	 */
+	DiskJobWrapper(IDiskJob diskJob, Runnable completionListener) {
 		this.diskJob = Objects.requireNonNull(diskJob, "Can't wrap a null-job");
+		this.completionListener = completionListener;
+		sequence = SEQUENCE.getAndIncrement();
+	}
+
+	/**
+	 * Gets the wrapped job.
+	 * @return The disk job.
+	 */
+	IDiskJob getDiskJob() {
+		return diskJob;
 	}
 
 	/**
 	 * Processes the wrapped diskjob.
-	 * @return <code>true</code> when this job has been completed, otherwise <code>false</code>
+	 * @return <code>true</code> when this job has been completed or has failed on all attempts, otherwise <code>false</code> and the job must be retried.
 	 */
 	public boolean process() {
 		try {
 			diskJob.process();
+			onCompleted();
 			return true;
 		} catch (IOException e) {
 			attempt++;
-			LOGGER.warn("Failed to process {}. (Attempt: {})", diskJob, attempt, e);
+			if (attempt < MAX_ATTEMPTS) {
+				LOGGER.warn("Failed to process {}. (Attempt: {})", diskJob, attempt, e);
+				return false;
+			}
+
+			LOGGER.error("Failed to process {} on all {} attempts, giving up.", diskJob, attempt, e);
+			diskJob.onFailure(e);
+			onCompleted();
+			return true;
+		}
+	}
+
+	/**
+	 * Processes the wrapped write jobs with a single write.
+	 * @param wrappers The wrappers of the write jobs of consecutive blocks of the same piece.
+	 * @return <code>true</code> when the jobs have been completed, otherwise <code>false</code> and the jobs must be processed individually.
+	 * @see DiskJobWriteBlock#processCoalesced(List)
+	 */
+	static boolean processCoalesced(List<DiskJobWrapper> wrappers) {
+		List<DiskJobWriteBlock> jobs = new ArrayList<>(wrappers.size());
+		for (DiskJobWrapper wrapper : wrappers) {
+			jobs.add((DiskJobWriteBlock) wrapper.diskJob);
+		}
+
+		try {
+			DiskJobWriteBlock.processCoalesced(jobs);
+			wrappers.forEach(DiskJobWrapper::onCompleted);
+			return true;
+		} catch (IOException e) {
+			LOGGER.warn("Failed to store {} coalesced blocks, storing them individually.", jobs.size(), e);
 			return false;
 		}
 	}
 
+	private void onCompleted() {
+		if (completionListener != null) {
+			completionListener.run();
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public int compareTo(DiskJobWrapper o) {
-		return diskJob.getPriority() - o.diskJob.getPriority();
+		int result = Integer.compare(diskJob.getPriority(), o.diskJob.getPriority());
+		if (result != 0) {
+			return result;
+		}
+
+		return Long.compare(sequence, o.sequence);
 	}
 
 	/**
@@ -0,0 +1,212 @@
+package org.johnnei.javatorrent.internal.disk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.disk.DiskJobWriteBlock;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single lane of the {@link IOManager}. Each cycle blocks until a job is available and then processes all pending jobs in order of their priority.
+ *
+ * Writes of received blocks have the highest priority and are therefore always at the head of the queue. All pending writes are taken from the queue at
+ * once, sorted by torrent and offset and the consecutive blocks of a piece are stored with a single write. The worker can wait for more writes to arrive
+ * within the batching window, trading latency for larger and more sequential writes.
+ */
+class DiskWorker implements Runnable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DiskWorker.class);
+
+	/**
+	 * The time in seconds to block for new jobs before the cycle ends, this allows the worker to observe that it has been stopped.
+	 */
+	private static final long IDLE_TIMEOUT = 1;
+
+	private final BlockingQueue<DiskJobWrapper> taskQueue;
+
+	/**
+	 * The time in nanoseconds to wait for more writes before the pending writes are stored.
+	 */
+	private final long writeBatchWindow;
+
+	DiskWorker() {
+		this(0);
+	}
+
+	/**
+	 * Creates a new worker.
+	 * @param writeBatchWindow The time in nanoseconds to wait for more writes before the pending writes are stored.
+	 */
+	DiskWorker(long writeBatchWindow) {
+		taskQueue = new PriorityBlockingQueue<>();
+		this.writeBatchWindow = writeBatchWindow;
+	}
+
+	/**
+	 * Adds a task to the queue of this worker. This method is safe to be called from any thread.
+	 * @param task The task to add.
+	 */
+	void addTask(DiskJobWrapper task) {
+		taskQueue.add(task);
+	}
+
+	/**
+	 * Gets the amount of jobs which are waiting to be processed by this worker.
+	 * @return The amount of jobs.
+	 */
+	int getQueueSize() {
+		return taskQueue.size();
+	}
+
+	/**
+	 * Waits for a job to become available and processes all pending jobs.
+	 */
+	@Override
+	public void run() {
+		DiskJobWrapper task;
+		try {
+			task = taskQueue.poll(IDLE_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.trace("Disk worker got interrupted while waiting for work.", e);
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		if (task == null) {
+			return;
+		}
+
+		do {
+			process(task, writeBatchWindow);
+		} while ((task = taskQueue.poll()) != null);
+	}
+
+	/**
+	 * Processes all pending jobs without waiting for new jobs.
+	 */
+	void processPending() {
+		DiskJobWrapper task;
+		while ((task = taskQueue.poll()) != null) {
+			process(task, 0);
+		}
+	}
+
+	private void process(DiskJobWrapper task, long batchWindow) {
+		if (!isCoalescable(task)) {
+			process(task);
+			return;
+		}
+
+		List<DiskJobWrapper> writes = new ArrayList<>();
+		writes.add(task);
+		collectWrites(writes, batchWindow);
+		processWrites(writes);
+	}
+
+	/**
+	 * Takes the writes at the head of the queue, waiting up to the batching window for more writes as long as no other job is pending.
+	 */
+	private void collectWrites(List<DiskJobWrapper> writes, long batchWindow) {
+		long deadline = System.nanoTime() + batchWindow;
+		while (true) {
+			DiskJobWrapper task;
+			while ((task = taskQueue.poll()) != null) {
+				if (!isCoalescable(task)) {
+					taskQueue.add(task);
+					return;
+				}
+				writes.add(task);
+			}
+
+			long remainingTime = deadline - System.nanoTime();
+			if (remainingTime <= 0) {
+				return;
+			}
+
+			try {
+				task = taskQueue.poll(remainingTime, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				LOGGER.trace("Disk worker got interrupted while batching writes.", e);
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if (task == null) {
+				return;
+			}
+
+			if (!isCoalescable(task)) {
+				taskQueue.add(task);
+				return;
+			}
+			writes.add(task);
+		}
+	}
+
+	/**
+	 * Stores the writes in the order of their offset within their torrent, consecutive blocks of a piece are stored with a single write.
+	 */
+	private void processWrites(List<DiskJobWrapper> writes) {
+		if (writes.size() == 1) {
+			process(writes.get(0));
+			return;
+		}
+
+		// Keep the torrents in order of their first write, the sort is stable so rewrites of the same block remain in FIFO order.
+		Map<AbstractFileSet, Integer> fileSetOrder = new IdentityHashMap<>();
+		for (DiskJobWrapper write : writes) {
+			fileSetOrder.putIfAbsent(getWriteJob(write).getPiece().getFileSet(), fileSetOrder.size());
+		}
+		writes.sort(Comparator
+				.comparingInt((DiskJobWrapper write) -> fileSetOrder.get(getWriteJob(write).getPiece().getFileSet()))
+				.thenComparingInt(write -> getWriteJob(write).getPiece().getIndex())
+				.thenComparingInt(write -> getWriteJob(write).getBlockIndex()));
+
+		int runStart = 0;
+		while (runStart < writes.size()) {
+			int runEnd = runStart + 1;
+			while (runEnd < writes.size() && isNextBlock(getWriteJob(writes.get(runEnd - 1)), getWriteJob(writes.get(runEnd)))) {
+				runEnd++;
+			}
+
+			List<DiskJobWrapper> run = writes.subList(runStart, runEnd);
+			if (run.size() == 1 || !DiskJobWrapper.processCoalesced(run)) {
+				run.forEach(this::process);
+			}
+			runStart = runEnd;
+		}
+	}
+
+	private static boolean isNextBlock(DiskJobWriteBlock previous, DiskJobWriteBlock next) {
+		return previous.getPiece() == next.getPiece() && previous.getBlockIndex() + 1 == next.getBlockIndex();
+	}
+
+	private static boolean isCoalescable(DiskJobWrapper task) {
+		return task.getDiskJob() instanceof DiskJobWriteBlock
+				&& ((DiskJobWriteBlock) task.getDiskJob()).canBeCoalesced()
+				&& task.getDiskJob().getPiece() != null
+				&& task.getDiskJob().getPiece().getFileSet() != null;
+	}
+
+	private static DiskJobWriteBlock getWriteJob(DiskJobWrapper task) {
+		return (DiskJobWriteBlock) task.getDiskJob();
+	}
+
+	private void process(DiskJobWrapper task) {
+		LOGGER.trace("Processing task: {}", task);
+
+		if (!task.process()) {
+			taskQueue.add(task);
+		}
+	}
+
+}
@@ -1,53 +1,252 @@
 package org.johnnei.javatorrent.internal.disk;
 
-import java.util.PriorityQueue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import org.johnnei.javatorrent.async.LoopingRunnable;
+import org.johnnei.javatorrent.disk.DiskAffinity;
+import org.johnnei.javatorrent.disk.DiskBackpressure;
+import org.johnnei.javatorrent.disk.DiskJobWriteBlock;
+import org.johnnei.javatorrent.disk.DiskJobWritePiece;
 import org.johnnei.javatorrent.disk.IDiskJob;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.Piece;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Processes the disk jobs on a fixed set of {@link DiskWorker} threads. Jobs are assigned to a worker by the {@link DiskAffinity} of the file in which their
+ * piece starts. As all jobs of a piece are therefore processed by the same worker in priority and FIFO order, the writes of a block are never overtaken by
+ * the hash check or upload of the same piece. Jobs which don't operate on a piece are assigned to the least loaded worker.
+ *
+ * Pending writes are stored in order of their offset and the consecutive blocks of a piece are merged into a single write, see {@link DiskWorker}. The
+ * queued writes are reported to the {@link DiskBackpressure} which throttles the requesting of new blocks.
+ */
 public class IOManager implements Runnable {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(IOManager.class);
 
-	private PriorityQueue<DiskJobWrapper> taskQueue;
+	private final DiskAffinity affinity;
 
+	private final List<DiskWorker> workers;
+
+	private final List<LoopingRunnable> runnables;
+
+	/**
+	 * The threads which run the {@link #runnables}, set once they have been started.
+	 */
+	private final List<Thread> threads;
+
+	/**
+	 * The device of each file, resolving the file store is a file system call and therefore cached.
+	 */
+	private final Map<FileInfo, Object> deviceKeys;
+
+	/**
+	 * The flow control which is informed about the queued writes or <code>null</code>.
+	 */
+	private final DiskBackpressure backpressure;
+
+	/**
+	 * Creates a new manager with a single worker.
+	 */
 	public IOManager() {
-		taskQueue = new PriorityQueue<>();
+		this(1, DiskAffinity.File);
+	}
+
+	/**
+	 * Creates a new manager.
+	 * @param workerCount The amount of worker threads.
+	 * @param affinity The policy to assign jobs to the workers.
+	 */
+	public IOManager(int workerCount, DiskAffinity affinity) {
+		this(workerCount, affinity, Duration.ZERO);
+	}
+
+	/**
+	 * Creates a new manager.
+	 * @param workerCount The amount of worker threads.
+	 * @param affinity The policy to assign jobs to the workers.
+	 * @param writeBatchWindow The time to wait for more writes before the pending writes are stored.
+	 */
+	public IOManager(int workerCount, DiskAffinity affinity, Duration writeBatchWindow) {
+		this(workerCount, affinity, writeBatchWindow, null);
+	}
+
+	/**
+	 * Creates a new manager.
+	 * @param workerCount The amount of worker threads.
+	 * @param affinity The policy to assign jobs to the workers.
+	 * @param writeBatchWindow The time to wait for more writes before the pending writes are stored.
+	 * @param backpressure The flow control which is informed about the queued writes or <code>null</code>.
+	 */
+	public IOManager(int workerCount, DiskAffinity affinity, Duration writeBatchWindow, DiskBackpressure backpressure) {
+		if (workerCount < 1) {
+			throw new IllegalArgumentException("At least one disk thread is required.");
+		}
+
+		this.affinity = affinity;
+		this.backpressure = backpressure;
+		deviceKeys = new ConcurrentHashMap<>();
+		workers = new ArrayList<>(workerCount);
+		runnables = new ArrayList<>(workerCount);
+		threads = new ArrayList<>(workerCount);
+		for (int i = 0; i < workerCount; i++) {
+			DiskWorker worker = new DiskWorker(writeBatchWindow.toNanos());
+			workers.add(worker);
+			// The worker blocks on its queue itself, so sleeping between cycles would only add latency.
+			runnables.add(new LoopingRunnable(worker, false));
+		}
+	}
+
+	/**
+	 * Starts a daemon thread for each of the workers.
+	 */
+	public void start() {
+		for (int i = 0; i < runnables.size(); i++) {
+			String name = runnables.size() == 1 ? "Disk Manager" : String.format("Disk Manager #%d", i);
+			Thread thread = new Thread(runnables.get(i), name);
+			thread.setDaemon(true);
+			thread.start();
+			threads.add(thread);
+		}
+	}
+
+	/**
+	 * Gracefully stops all workers once they have completed their current cycle. Jobs which are queued after that remain queued, see
+	 * {@link #awaitTermination(long, TimeUnit)}.
+	 */
+	public void stop() {
+		runnables.forEach(LoopingRunnable::stop);
 	}
 
 	/**
-	 * Adds a task to the queue
+	 * Waits for the threads of the workers to stop after {@link #stop()}. Once they have stopped the jobs which remain queued can be processed with
+	 * {@link #run()} without racing the workers.
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return <code>true</code> when the threads have stopped.
+	 * @throws InterruptedException When the thread got interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread thread : threads) {
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (remainingMillis <= 0) {
+				return threads.stream().noneMatch(Thread::isAlive);
+			}
+			thread.join(remainingMillis);
+		}
+
+		return threads.stream().noneMatch(Thread::isAlive);
+	}
+
+	/**
+	 * Adds a task to the queue of the worker to which it is assigned. This method is safe to be called from any thread.
 	 *
 	 * @param task The task to add
 	 */
 	public void addTask(IDiskJob task) {
-		synchronized (this) {
-			taskQueue.add(new DiskJobWrapper(task));
+		DiskJobWrapper wrapper;
+		int length = getWriteLength(task);
+		if (backpressure != null && length > 0) {
+			backpressure.onWriteQueued(length);
+			wrapper = new DiskJobWrapper(task, () -> backpressure.onWriteCompleted(length));
+		} else {
+			wrapper = new DiskJobWrapper(task);
 		}
+
+		workers.get(getWorkerIndex(task)).addTask(wrapper);
 	}
 
 	/**
-	 * Processes all pending tasks.
+	 * Processes all pending tasks on the calling thread.
 	 *
 	 */
 	@Override
 	public void run() {
-		while (!taskQueue.isEmpty()) {
-			DiskJobWrapper task;
-			synchronized (this) {
-				task = taskQueue.remove();
-			}
+		workers.forEach(DiskWorker::processPending);
+	}
+
+	/**
+	 * Gets the amount of jobs which are waiting to be processed by all workers.
+	 * @return The depth of the queues.
+	 */
+	public int getQueueSize() {
+		return workers.stream().mapToInt(DiskWorker::getQueueSize).sum();
+	}
+
+	/**
+	 * Gets the amount of worker threads.
+	 * @return The amount of workers.
+	 */
+	public int getWorkerCount() {
+		return workers.size();
+	}
 
-			LOGGER.trace("Processing task: {}", task);
+	private static int getWriteLength(IDiskJob task) {
+		if (task instanceof DiskJobWriteBlock) {
+			return ((DiskJobWriteBlock) task).getLength();
+		} else if (task instanceof DiskJobWritePiece) {
+			return ((DiskJobWritePiece) task).getLength();
+		} else {
+			return 0;
+		}
+	}
+
+	int getWorkerIndex(IDiskJob task) {
+		if (workers.size() == 1) {
+			return 0;
+		}
+
+		Object key = getAffinityKey(task.getPiece());
+		if (key == null) {
+			return getLeastLoadedWorker();
+		}
+
+		int hash = key.hashCode();
+		// Spread the higher bits as the hash codes of the keys are not guaranteed to be uniform in the lower bits.
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash, workers.size());
+	}
 
-			if (!task.process()) {
-				synchronized (this) {
-					taskQueue.add(task);
-				}
+	private int getLeastLoadedWorker() {
+		int index = 0;
+		for (int i = 1; i < workers.size(); i++) {
+			if (workers.get(i).getQueueSize() < workers.get(index).getQueueSize()) {
+				index = i;
 			}
 		}
+		return index;
+	}
+
+	private Object getAffinityKey(Piece piece) {
+		if (piece == null || piece.getFileSet() == null) {
+			return null;
+		}
+
+		FileInfo file = piece.getFileSet().getFileForBytes(piece.getIndex(), 0, 0);
+		if (affinity == DiskAffinity.File) {
+			return file;
+		}
+
+		return deviceKeys.computeIfAbsent(file, IOManager::getDevice);
+	}
+
+	private static Object getDevice(FileInfo file) {
+		try {
+			return Files.getFileStore(file.getFile().toPath());
+		} catch (IOException e) {
+			LOGGER.debug("Failed to resolve the device of {}, falling back to the file itself.", file, e);
+			return file;
+		}
 	}
 
 }
@@ -1,28 +1,21 @@
 package org.johnnei.javatorrent.internal.network;
 
 import java.io.DataInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ByteInputStream extends DataInputStream {
 
 	/**
-	 * The speed in bytes that this inputStream is being read
+	 * The stream which counts the bytes being read. All reads (including {@link #readFully(byte[])} and {@link #readInt()}) pass through it.
 	 */
-	private int speed;
+	private final CountingInputStream countingStream;
 
 	public ByteInputStream(InputStream in) {
-		super(in);
-		speed = 0;
-	}
-
-	@Override
-	public int read() throws IOException {
-		int b = super.read();
-		if (b != -1) {
-			++speed;
-		}
-		return b;
+		super(new CountingInputStream(in));
+		countingStream = (CountingInputStream) this.in;
 	}
 
 	public String readString(int length) throws IOException {
@@ -38,14 +31,63 @@ public class ByteInputStream extends DataInputStream {
 	public byte[] readByteArray(int length) throws IOException {
 		byte[] array = new byte[length];
 		readFully(array);
-		speed += length;
 		return array;
 	}
 
+	/**
+	 * Reads up to <code>len</code> bytes into the given section of the array. This method only blocks when the underlying stream would block on
+	 * {@link InputStream#read(byte[], int, int)}.
+	 * @param b The buffer to read into.
+	 * @param off The starting offset in the buffer.
+	 * @param len The maximum amount of bytes to read.
+	 * @return The amount of read bytes or <code>-1</code> when the end of the stream has been reached.
+	 * @throws IOException When the underlying stream fails to read.
+	 */
+	public int readBytes(byte[] b, int off, int len) throws IOException {
+		return in.read(b, off, len);
+	}
+
+	/**
+	 * Gets the amount of bytes which have been read since the last poll. This is safe to be called from any thread.
+	 * @return The amount of read bytes.
+	 */
 	public int pollSpeed() {
-		int polledSpeed = speed;
-		speed -= polledSpeed;
-		return polledSpeed;
+		return (int) countingStream.count.sumThenReset();
+	}
+
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private final LongAdder count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+			count = new LongAdder();
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b != -1) {
+				count.increment();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int readBytes = in.read(b, off, len);
+			if (readBytes > 0) {
+				count.add(readBytes);
+			}
+			return readBytes;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(n);
+			count.add(skipped);
+			return skipped;
+		}
 	}
 
 }
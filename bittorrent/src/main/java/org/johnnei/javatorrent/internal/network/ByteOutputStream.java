@@ -3,26 +3,44 @@ package org.johnnei.javatorrent.internal.network;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ByteOutputStream extends FilterOutputStream {
 
-	private int speed;
+	private final LongAdder speed;
 
 	public ByteOutputStream(OutputStream outStream) {
 		super(outStream);
-		speed = 0;
+		speed = new LongAdder();
 	}
 
 	@Override
 	public void write(int i) throws IOException {
-		speed++;
+		speed.increment();
 		super.write(i);
 	}
 
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		// FilterOutputStream would write the array byte by byte.
+		out.write(b, off, len);
+		speed.add(len);
+	}
+
+	/**
+	 * Counts bytes which have been sent on the underlying socket without passing through this stream.
+	 * @param count The amount of sent bytes.
+	 */
+	public void addTransferredBytes(int count) {
+		speed.add(count);
+	}
+
+	/**
+	 * Gets the amount of bytes which have been written since the last poll. This is safe to be called from any thread.
+	 * @return The amount of written bytes.
+	 */
 	public int pollSpeed() {
-		int polledSpeed = speed;
-		speed -= polledSpeed;
-		return polledSpeed;
+		return (int) speed.sumThenReset();
 	}
 
 	public void writeByte(int i) throws IOException {
@@ -0,0 +1,26 @@
+package org.johnnei.javatorrent.internal.network;
+
+import org.johnnei.javatorrent.torrent.peer.Peer;
+
+/**
+ * The engine which reads, processes and writes the messages of the connected peers.
+ */
+public interface IPeerIoEngine {
+
+	/**
+	 * Starts the threads which handle the peers.
+	 */
+	public void start();
+
+	/**
+	 * Gracefully stops the handling of the peers.
+	 */
+	public void stop();
+
+	/**
+	 * Registers the peer to be handled by this engine. This method is safe to be called from any thread.
+	 * @param peer The peer which has passed the handshake.
+	 */
+	public void registerPeer(Peer peer);
+
+}
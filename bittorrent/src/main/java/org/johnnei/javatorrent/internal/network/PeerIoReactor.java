@@ -0,0 +1,299 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+import org.johnnei.javatorrent.torrent.peer.PeerDirection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The peer IO engine which multiplexes the peer sockets on a {@link Selector}. Peers are only processed when their channel is readable or when they have
+ * messages queued for sending. Writes never block the reactor: the bytes which a full socket doesn't accept remain pending on the socket and are resumed
+ * once the channel reports that it is writable again. Peers whose socket doesn't expose a {@link SocketChannel} (ex. uTP) are polled on every cycle instead.
+ *
+ * Peers which exhausted their bandwidth limit get their interest in the throttled direction removed, so that a ready channel doesn't keep the selector spinning.
+ * They are retried every {@link #POLL_INTERVAL} until the limit allows transfers again.
+ *
+ * All state of the reactor is owned by the thread invoking {@link #run()}. Other threads interact with it by submitting tasks which get executed at the start
+ * of the next cycle.
+ */
+public class PeerIoReactor implements Runnable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerIoReactor.class);
+
+	/**
+	 * The time in milliseconds to wait for IO events when there are peers which must be polled.
+	 */
+	private static final long POLL_INTERVAL = 5;
+
+	/**
+	 * The time in milliseconds to wait for IO events when all peers are selectable.
+	 */
+	private static final long SELECT_TIMEOUT = 1000;
+
+	/**
+	 * The maximum amount of messages read for a single peer within one cycle. This prevents a single fast peer from starving the others.
+	 */
+	private static final int MAX_MESSAGES_PER_CYCLE = 32;
+
+	/**
+	 * The maximum amount of bytes written as a single batch to a peer within one cycle. This fits four block messages.
+	 */
+	static final int WRITE_BUDGET = 1 << 16;
+
+	private final Selector selector;
+
+	/**
+	 * The tasks which must be executed on the reactor thread.
+	 */
+	private final Queue<Runnable> pendingTasks;
+
+	/**
+	 * The peers which don't expose a selectable channel.
+	 */
+	private final List<Peer> polledPeers;
+
+	/**
+	 * The selectable peers which exhausted their read budget and might still have buffered messages.
+	 */
+	private List<SelectionKey> backloggedPeers;
+
+	/**
+	 * The selectable peers which have been postponed by their bandwidth limit.
+	 */
+	private List<SelectionKey> throttledPeers;
+
+	/**
+	 * Creates a new reactor with its own {@link Selector}.
+	 * @throws IOException When the selector can not be opened.
+	 */
+	public PeerIoReactor() throws IOException {
+		selector = Selector.open();
+		pendingTasks = new ConcurrentLinkedQueue<>();
+		polledPeers = new ArrayList<>();
+		backloggedPeers = new ArrayList<>();
+		throttledPeers = new ArrayList<>();
+	}
+
+	/**
+	 * Registers the peer to be processed by this reactor. This method is safe to be called from any thread. The results of the disk jobs of the peer are
+	 * handled on the reactor thread from now on.
+	 * @param peer The peer to register.
+	 */
+	public void registerPeer(Peer peer) {
+		peer.setIoExecutor(this::submit);
+		submit(() -> addPeer(peer));
+	}
+
+	/**
+	 * Wakes up the reactor thread in case it is waiting for IO events.
+	 */
+	public void wakeup() {
+		selector.wakeup();
+	}
+
+	private void submit(Runnable task) {
+		pendingTasks.add(task);
+		selector.wakeup();
+	}
+
+	private void addPeer(Peer peer) {
+		BitTorrentSocket socket = peer.getBitTorrentSocket();
+		Optional<SocketChannel> channel = socket.getChannel();
+		if (!channel.isPresent()) {
+			polledPeers.add(peer);
+			return;
+		}
+
+		try {
+			// Register with write interest as messages could have been queued before the listener got installed.
+			SelectionKey key = channel.get().register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, peer);
+			AtomicBoolean writeRequested = new AtomicBoolean();
+			socket.setMessageQueuedListener(() -> {
+				if (writeRequested.compareAndSet(false, true)) {
+					submit(() -> {
+						writeRequested.set(false);
+						enableWriteInterest(key);
+					});
+				}
+			});
+		} catch (ClosedChannelException e) {
+			LOGGER.debug("Peer {} disconnected before it got registered.", peer, e);
+		}
+	}
+
+	private static void enableWriteInterest(SelectionKey key) {
+		if (key.isValid()) {
+			key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+		}
+	}
+
+	@Override
+	public void run() {
+		runPendingTasks();
+
+		try {
+			select();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to select ready peers.", e);
+			return;
+		}
+
+		List<SelectionKey> previousBacklog = backloggedPeers;
+		backloggedPeers = new ArrayList<>();
+		List<SelectionKey> previousThrottled = throttledPeers;
+		throttledPeers = new ArrayList<>();
+
+		processSelectedPeers();
+		previousBacklog.stream().filter(SelectionKey::isValid).forEach(key -> processSelectedPeer(key, false, true));
+		previousThrottled.stream().filter(SelectionKey::isValid).forEach(key -> processSelectedPeer(key, true, true));
+		processPolledPeers();
+	}
+
+	private void runPendingTasks() {
+		Runnable task;
+		while ((task = pendingTasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	private void select() throws IOException {
+		if (!pendingTasks.isEmpty() || !backloggedPeers.isEmpty()) {
+			selector.selectNow();
+		} else if (!polledPeers.isEmpty() || !throttledPeers.isEmpty()) {
+			selector.select(POLL_INTERVAL);
+		} else {
+			selector.select(SELECT_TIMEOUT);
+		}
+	}
+
+	private void processSelectedPeers() {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+
+			if (!key.isValid()) {
+				continue;
+			}
+
+			processSelectedPeer(key, key.isWritable(), key.isReadable());
+		}
+	}
+
+	private void processSelectedPeer(SelectionKey key, boolean writable, boolean readable) {
+		Peer peer = (Peer) key.attachment();
+		BitTorrentSocket socket = peer.getBitTorrentSocket();
+
+		try {
+			if (writable) {
+				handleWrite(socket);
+			}
+
+			if (readable && handleRead(peer)) {
+				backloggedPeers.add(key);
+			}
+
+			if (!key.isValid() || socket.closed()) {
+				// A handler (ex. a request for a missing piece) or another thread closed the socket.
+				key.cancel();
+				return;
+			}
+
+			queueNextUpload(peer);
+			updateInterest(key, socket);
+		} catch (IOException e) {
+			LOGGER.error(String.format("IO Error for peer: %s", peer), e);
+			key.cancel();
+			socket.close();
+		} catch (CancelledKeyException e) {
+			// Another thread closed the socket after the check, only this peer is affected.
+			LOGGER.debug("Peer {} disconnected while it was being processed.", peer, e);
+			socket.close();
+		}
+	}
+
+	private void updateInterest(SelectionKey key, BitTorrentSocket socket) {
+		boolean readThrottled = socket.isReadThrottled();
+		boolean writeThrottled = socket.isWriteThrottled();
+
+		int interestOps = readThrottled ? 0 : SelectionKey.OP_READ;
+		if ((socket.hasOutboundMessages() || socket.hasPendingWrites()) && !writeThrottled) {
+			interestOps |= SelectionKey.OP_WRITE;
+		}
+		key.interestOps(interestOps);
+
+		if (readThrottled || writeThrottled) {
+			throttledPeers.add(key);
+		}
+	}
+
+	private void processPolledPeers() {
+		Iterator<Peer> peers = polledPeers.iterator();
+		while (peers.hasNext()) {
+			Peer peer = peers.next();
+			BitTorrentSocket socket = peer.getBitTorrentSocket();
+			if (socket.closed()) {
+				peers.remove();
+				continue;
+			}
+
+			try {
+				handleWrite(socket);
+				queueNextUpload(peer);
+				handleRead(peer);
+			} catch (IOException e) {
+				LOGGER.error(String.format("IO Error for peer: %s", peer), e);
+				socket.close();
+				peers.remove();
+			}
+		}
+	}
+
+	private static void handleWrite(BitTorrentSocket socket) throws IOException {
+		if (socket.hasOutboundMessages() || socket.hasPendingWrites()) {
+			socket.sendMessages(WRITE_BUDGET);
+		}
+	}
+
+	/**
+	 * Reads and processes the messages which are available for the given peer.
+	 * @param peer The peer to read messages from.
+	 * @return <code>true</code> when the read budget was exhausted and there might be more messages buffered.
+	 * @throws IOException When the socket fails to read.
+	 */
+	private static boolean handleRead(Peer peer) throws IOException {
+		BitTorrentSocket socket = peer.getBitTorrentSocket();
+		for (int i = 0; i < MAX_MESSAGES_PER_CYCLE; i++) {
+			if (!socket.canReadMessage()) {
+				return false;
+			}
+
+			socket.readMessage().process(peer);
+		}
+
+		return true;
+	}
+
+	private static void queueNextUpload(Peer peer) {
+		if (!peer.getBitTorrentSocket().hasOutboundMessages() && peer.getWorkQueueSize(PeerDirection.Upload) > 0) {
+			peer.queueNextPieceForSending();
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.johnnei.javatorrent.async.LoopingRunnable;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+
+/**
+ * A fixed set of {@link PeerIoReactor} instances which each run on their own thread. Every peer is pinned to a single reactor for its entire lifetime so
+ * that all of its IO and message processing happens on the same thread.
+ */
+public class PeerIoReactorGroup implements IPeerIoEngine {
+
+	private final List<PeerIoReactor> reactors;
+
+	private final List<LoopingRunnable> runnables;
+
+	/**
+	 * Creates a new group of reactors.
+	 * @param reactorCount The amount of reactor threads to use.
+	 * @throws IOException When one of the selectors can not be opened.
+	 */
+	public PeerIoReactorGroup(int reactorCount) throws IOException {
+		if (reactorCount < 1) {
+			throw new IllegalArgumentException("At least one peer IO thread is required.");
+		}
+
+		reactors = new ArrayList<>(reactorCount);
+		runnables = new ArrayList<>(reactorCount);
+		for (int i = 0; i < reactorCount; i++) {
+			PeerIoReactor reactor = new PeerIoReactor();
+			reactors.add(reactor);
+			// The reactor blocks on the selector itself, so sleeping between cycles would only add latency.
+			runnables.add(new LoopingRunnable(reactor, false));
+		}
+	}
+
+	/**
+	 * Starts a daemon thread for each of the reactors.
+	 */
+	@Override
+	public void start() {
+		for (int i = 0; i < runnables.size(); i++) {
+			String name = runnables.size() == 1 ? "Peer IO" : String.format("Peer IO #%d", i);
+			Thread thread = new Thread(runnables.get(i), name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Gracefully stops all reactors.
+	 */
+	@Override
+	public void stop() {
+		runnables.forEach(LoopingRunnable::stop);
+		reactors.forEach(PeerIoReactor::wakeup);
+	}
+
+	/**
+	 * Registers the peer on the reactor to which it is pinned. This method is safe to be called from any thread.
+	 * @param peer The peer to register.
+	 */
+	@Override
+	public void registerPeer(Peer peer) {
+		reactors.get(getReactorIndex(peer, reactors.size())).registerPeer(peer);
+	}
+
+	/**
+	 * Calculates the reactor to which the peer is pinned. The identity hash is used as it remains stable for the lifetime of the peer even when its state
+	 * changes.
+	 * @param peer The peer to pin.
+	 * @param reactorCount The amount of available reactors.
+	 * @return The index of the reactor.
+	 */
+	static int getReactorIndex(Peer peer, int reactorCount) {
+		int hash = System.identityHashCode(peer);
+		// Spread the higher bits as the identity hash is not guaranteed to be uniform in the lower bits.
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash, reactorCount);
+	}
+
+	/**
+	 * Gets the amount of reactors in this group.
+	 * @return The amount of reactors.
+	 */
+	public int getReactorCount() {
+		return reactors.size();
+	}
+
+}
@@ -0,0 +1,201 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
+import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+import org.johnnei.javatorrent.torrent.peer.PeerDirection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A peer IO engine which dedicates threads to each peer and uses plain blocking IO. Each peer gets a thread which reads the incoming messages and a thread
+ * which writes the outgoing messages. Selectable channels are switched to blocking mode upon registration.
+ *
+ * The state of a peer is only modified on its writing thread: the read messages are processed, the results of the disk jobs of the peer are handled and the
+ * uploads are queued on that thread, just like a single thread of the {@link PeerIoReactor} does all of this for its peers. The reader blocks once
+ * {@link #MAX_UNPROCESSED_MESSAGES} messages are waiting to be processed.
+ *
+ * This mode is intended to be used with a {@link ThreadFactory} which creates lightweight threads (ex. virtual threads on Java 21+). With platform threads
+ * every peer costs two full threads.
+ */
+public class ThreadPerPeerIo implements IPeerIoEngine {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ThreadPerPeerIo.class);
+
+	/**
+	 * The time after which the writer re-checks the upload queue of the peer even without being signalled.
+	 */
+	private static final long WRITER_IDLE_TIMEOUT = 1;
+
+	/**
+	 * The time in milliseconds after which the writer retries to send messages which have been postponed by the upload limit.
+	 */
+	private static final long WRITER_THROTTLE_TIMEOUT = 5;
+
+	/**
+	 * The maximum amount of read messages which are waiting to be processed by the writing thread.
+	 */
+	static final int MAX_UNPROCESSED_MESSAGES = 64;
+
+	private final ThreadFactory threadFactory;
+
+	private final Set<Thread> threads;
+
+	private volatile boolean running;
+
+	/**
+	 * Creates a new thread-per-peer engine.
+	 * @param threadFactory The factory which creates the threads for the peers.
+	 */
+	public ThreadPerPeerIo(ThreadFactory threadFactory) {
+		this.threadFactory = Objects.requireNonNull(threadFactory, "Thread factory can not be null.");
+		threads = ConcurrentHashMap.newKeySet();
+	}
+
+	@Override
+	public void start() {
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		threads.forEach(Thread::interrupt);
+	}
+
+	@Override
+	public void registerPeer(Peer peer) {
+		Optional<SocketChannel> channel = peer.getBitTorrentSocket().getChannel();
+		if (channel.isPresent()) {
+			try {
+				// The threads are dedicated to the peer, so they can block on the channel instead of polling it.
+				channel.get().configureBlocking(true);
+			} catch (IOException e) {
+				LOGGER.error(String.format("Failed to configure channel of peer: %s", peer), e);
+				peer.getBitTorrentSocket().close();
+				return;
+			}
+		}
+
+		Semaphore writeSignal = new Semaphore(0);
+		peer.getBitTorrentSocket().setMessageQueuedListener(writeSignal::release);
+
+		Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+		AtomicBoolean writerStopped = new AtomicBoolean();
+		Executor peerExecutor = task -> {
+			pendingTasks.add(task);
+			writeSignal.release();
+			if (writerStopped.get()) {
+				// Tasks might own resources (ex. pooled buffers of read blocks) which are released by running them.
+				runPendingTasks(pendingTasks);
+			}
+		};
+		peer.setIoExecutor(peerExecutor);
+
+		startThread(() -> readLoop(peer, writeSignal, peerExecutor));
+		startThread(() -> {
+			writeLoop(peer, writeSignal, pendingTasks);
+			writerStopped.set(true);
+			// Run the tasks which have been added while the writer was stopping.
+			runPendingTasks(pendingTasks);
+		});
+	}
+
+	private void startThread(Runnable runnable) {
+		Thread thread = threadFactory.newThread(() -> {
+			try {
+				runnable.run();
+			} finally {
+				threads.remove(Thread.currentThread());
+			}
+		});
+		threads.add(thread);
+		thread.start();
+	}
+
+	private void readLoop(Peer peer, Semaphore writeSignal, Executor peerExecutor) {
+		BitTorrentSocket socket = peer.getBitTorrentSocket();
+		Semaphore unprocessedMessages = new Semaphore(MAX_UNPROCESSED_MESSAGES);
+		try {
+			while (running && !socket.closed()) {
+				IMessage message = socket.awaitMessage();
+				unprocessedMessages.acquire();
+				// Hand the message over to the writer so that the state of the peer is only modified by a single thread.
+				peerExecutor.execute(() -> {
+					try {
+						message.process(peer);
+					} finally {
+						unprocessedMessages.release();
+					}
+				});
+			}
+		} catch (IOException e) {
+			LOGGER.error(String.format("IO Error for peer: %s", peer), e);
+			socket.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// Allow the writer to observe the closed socket.
+			writeSignal.release();
+		}
+	}
+
+	private void writeLoop(Peer peer, Semaphore writeSignal, Queue<Runnable> pendingTasks) {
+		BitTorrentSocket socket = peer.getBitTorrentSocket();
+		try {
+			while (running && !socket.closed()) {
+				runPendingTasks(pendingTasks);
+
+				boolean throttled = false;
+				while ((socket.hasOutboundMessages() || socket.hasPendingWrites()) && !throttled) {
+					socket.sendMessages(PeerIoReactor.WRITE_BUDGET);
+					throttled = socket.isWriteThrottled();
+				}
+
+				if (throttled) {
+					// Wait for the limit to refill instead of spinning on the exhausted bucket.
+					Thread.sleep(WRITER_THROTTLE_TIMEOUT);
+					continue;
+				}
+
+				if (peer.getWorkQueueSize(PeerDirection.Upload) > 0) {
+					peer.queueNextPieceForSending();
+				}
+
+				writeSignal.tryAcquire(WRITER_IDLE_TIMEOUT, TimeUnit.SECONDS);
+				writeSignal.drainPermits();
+			}
+		} catch (IOException e) {
+			LOGGER.error(String.format("IO Error for peer: %s", peer), e);
+			socket.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// Tasks might own resources (ex. pooled buffers of read blocks) which are released by running them.
+			runPendingTasks(pendingTasks);
+		}
+	}
+
+	private static void runPendingTasks(Queue<Runnable> pendingTasks) {
+		Runnable task;
+		while ((task = pendingTasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+}
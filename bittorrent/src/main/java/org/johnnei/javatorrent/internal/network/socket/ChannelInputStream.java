@@ -0,0 +1,123 @@
+package org.johnnei.javatorrent.internal.network.socket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * An {@link InputStream} facade on a {@link SocketChannel}.
+ *
+ * On a non-blocking channel {@link #available()} pulls in the data which is ready on the channel without blocking and reads may only consume the bytes which
+ * have been reported as available. On a blocking channel the reads block until data has been received and {@link #available()} only reports the buffered
+ * data.
+ */
+class ChannelInputStream extends InputStream {
+
+	private final SocketChannel channel;
+
+	/**
+	 * The bytes which have been read from the channel but not yet from this stream. The buffer is kept in read mode.
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Remembers if the remote end has closed the connection.
+	 */
+	private boolean endOfStream;
+
+	ChannelInputStream(SocketChannel channel, int bufferSize) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(bufferSize);
+		buffer.flip();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws EOFException When the remote end has closed the connection and all buffered data has been consumed.
+	 */
+	@Override
+	public int available() throws IOException {
+		if (!channel.isBlocking()) {
+			fill();
+		}
+		if (endOfStream && !buffer.hasRemaining()) {
+			throw new EOFException("Remote end has closed the connection.");
+		}
+
+		return buffer.remaining();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!awaitData()) {
+			return -1;
+		}
+
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!awaitData()) {
+			return -1;
+		}
+
+		int readBytes = Math.min(len, buffer.remaining());
+		buffer.get(b, off, readBytes);
+		return readBytes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Ensures that there is buffered data to read.
+	 * @return <code>false</code> when the end of the stream has been reached.
+	 * @throws IllegalBlockingModeException When no data has been received on a non-blocking channel.
+	 */
+	private boolean awaitData() throws IOException {
+		while (!buffer.hasRemaining()) {
+			fill();
+
+			if (buffer.hasRemaining()) {
+				return true;
+			}
+
+			if (endOfStream || !channel.isOpen()) {
+				return false;
+			}
+
+			if (!channel.isBlocking()) {
+				// Waiting for data would block the thread which multiplexes this channel.
+				throw new IllegalBlockingModeException();
+			}
+		}
+
+		return true;
+	}
+
+	private void fill() throws IOException {
+		if (endOfStream) {
+			return;
+		}
+
+		buffer.compact();
+		try {
+			if (channel.read(buffer) < 0) {
+				endOfStream = true;
+			}
+		} finally {
+			buffer.flip();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package org.johnnei.javatorrent.internal.network.socket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * An {@link OutputStream} facade on a {@link SocketChannel}. Writes never block on a non-blocking channel: the bytes which the channel doesn't accept are
+ * kept in a pending buffer which must be sent with {@link #flushPending()} once the channel becomes writable again. Until the pending buffer is drained,
+ * new writes are appended to it so that the order of the bytes is preserved. On a blocking channel all bytes are written directly.
+ */
+class ChannelOutputStream extends OutputStream {
+
+	private final SocketChannel channel;
+
+	/**
+	 * The bytes which have not yet been accepted by the channel. The buffer is kept in write mode and is <code>null</code> when nothing is pending.
+	 */
+	private ByteBuffer pending;
+
+	ChannelOutputStream(SocketChannel channel) {
+		this.channel = channel;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		write(ByteBuffer.wrap(b, off, len));
+	}
+
+	/**
+	 * Writes the remaining bytes of the given buffer to the channel. The bytes which the channel doesn't accept are copied into the pending buffer.
+	 * @param source The bytes to write.
+	 * @throws IOException When the channel fails to write the bytes.
+	 */
+	void write(ByteBuffer source) throws IOException {
+		if (!flushPending()) {
+			appendPending(source);
+			return;
+		}
+
+		while (source.hasRemaining()) {
+			if (channel.write(source) == 0) {
+				appendPending(source);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Transfers a section of the given file to the channel. This allows the kernel to send the data straight from the page cache. The section which the
+	 * channel doesn't accept is read into the pending buffer.
+	 * @param file The file to read from.
+	 * @param position The offset within the file.
+	 * @param count The amount of bytes to transfer.
+	 * @throws IOException When the file is too short or the channel fails to write the bytes.
+	 */
+	void transferFrom(FileChannel file, long position, long count) throws IOException {
+		long transferred = 0;
+		if (flushPending()) {
+			while (transferred < count) {
+				long written = file.transferTo(position + transferred, count - transferred, channel);
+				if (written == 0) {
+					break;
+				}
+				transferred += written;
+			}
+		}
+
+		if (transferred == count) {
+			return;
+		}
+
+		if (position + transferred >= file.size()) {
+			throw new EOFException(String.format("File ended at %d before all %d bytes from %d were transferred.", file.size(), count, position));
+		}
+
+		ByteBuffer remainder = ByteBuffer.allocate((int) (count - transferred));
+		while (remainder.hasRemaining()) {
+			if (file.read(remainder, position + transferred + remainder.position()) < 0) {
+				throw new EOFException(String.format("File ended at %d before all %d bytes from %d were transferred.", file.size(), count, position));
+			}
+		}
+		remainder.flip();
+		appendPending(remainder);
+	}
+
+	/**
+	 * Writes the pending bytes to the channel.
+	 * @return <code>true</code> when all pending bytes have been written.
+	 * @throws IOException When the channel fails to write the bytes.
+	 */
+	boolean flushPending() throws IOException {
+		if (pending == null) {
+			return true;
+		}
+
+		pending.flip();
+		try {
+			while (pending.hasRemaining()) {
+				if (channel.write(pending) == 0) {
+					return false;
+				}
+			}
+		} finally {
+			pending.compact();
+		}
+
+		pending = null;
+		return true;
+	}
+
+	/**
+	 * Checks if there are bytes which have not yet been accepted by the channel.
+	 * @return <code>true</code> when {@link #flushPending()} must be called once the channel is writable.
+	 */
+	boolean hasPending() {
+		return pending != null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pending = null;
+		channel.close();
+	}
+
+	private void appendPending(ByteBuffer source) {
+		if (pending == null) {
+			pending = ByteBuffer.allocate(source.remaining());
+		} else if (pending.remaining() < source.remaining()) {
+			ByteBuffer grown = ByteBuffer.allocate(pending.position() + source.remaining());
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+
+		pending.put(source);
+	}
+}
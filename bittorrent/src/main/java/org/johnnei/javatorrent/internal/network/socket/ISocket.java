@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Optional;
 
 /**
  * A socket facade to get multiple socket protocols work on the some functions<br>
@@ -61,4 +64,51 @@ public interface ISocket extends AutoCloseable {
 	 */
 	public void flush() throws IOException;
 
+	/**
+	 * Gets the non-blocking channel backing this socket. Sockets which expose a channel can be multiplexed on a {@link java.nio.channels.Selector} instead
+	 * of being polled for data.
+	 * @return The channel or {@link Optional#empty()} when this socket isn't backed by a selectable channel.
+	 */
+	public default Optional<SocketChannel> getChannel() {
+		return Optional.empty();
+	}
+
+	/**
+	 * Checks if this socket can send data directly from a file with {@link #transferFrom(FileChannel, long, long)}.
+	 * @return <code>true</code> when file transfers are supported.
+	 */
+	public default boolean supportsFileTransfer() {
+		return false;
+	}
+
+	/**
+	 * Sends a section of the given file without copying it through the heap (ex. by using <code>sendfile</code>). All data which has been written to the
+	 * output stream must be flushed before calling this. Sockets which don't block on writes keep the bytes which have not been accepted yet as pending
+	 * writes, see {@link #hasPendingWrites()}.
+	 * @param file The file to read from.
+	 * @param position The offset within the file.
+	 * @param count The amount of bytes to send.
+	 * @throws IOException When the file can not be read or the socket fails to write.
+	 * @throws UnsupportedOperationException When {@link #supportsFileTransfer()} returns <code>false</code>.
+	 */
+	public default void transferFrom(FileChannel file, long position, long count) throws IOException {
+		throw new UnsupportedOperationException(String.format("%s does not support file transfers.", getClass().getSimpleName()));
+	}
+
+	/**
+	 * Checks if there are written bytes which the socket has not yet been able to send because its send buffer was full.
+	 * @return <code>true</code> when {@link #flushPendingWrites()} must be called once the socket is writable.
+	 */
+	public default boolean hasPendingWrites() {
+		return false;
+	}
+
+	/**
+	 * Sends as many of the pending writes as the socket accepts without blocking.
+	 * @throws IOException When the socket fails to write.
+	 */
+	public default void flushPendingWrites() throws IOException {
+		// Sockets which block on writes never have pending writes.
+	}
+
 }
@@ -0,0 +1,157 @@
+package org.johnnei.javatorrent.internal.network.socket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A TCP socket which is backed by a non-blocking {@link SocketChannel}. Unlike {@link TcpSocket} this socket can be multiplexed on a
+ * {@link java.nio.channels.Selector} so that peers only get processed when data can be read or written. Writes which the channel doesn't accept are kept
+ * as pending writes instead of blocking the writing thread.
+ *
+ * The channel may be switched to blocking mode when a thread is dedicated to it, in which case reads block until data is received.
+ */
+public class NioTcpSocket implements ISocket {
+
+	private static final int CONNECT_TIMEOUT = 10_000;
+
+	private static final int READ_BUFFER_SIZE = 32_768;
+
+	private SocketChannel channel;
+
+	private InputStream inputStream;
+
+	private ChannelOutputStream outputStream;
+
+	/**
+	 * Creates a new unconnected socket. The channel will be opened upon {@link #connect(InetSocketAddress)}.
+	 */
+	public NioTcpSocket() {
+		/* Channel gets created on connect */
+	}
+
+	/**
+	 * Creates a NioTcpSocket on a pre-connected channel.
+	 *
+	 * @param channel The underlying TCP channel.
+	 * @throws IOException When the channel can not be configured as non-blocking.
+	 */
+	public NioTcpSocket(SocketChannel channel) throws IOException {
+		this.channel = Objects.requireNonNull(channel, "Channel can not be null.");
+		configureChannel();
+	}
+
+	@Override
+	public void connect(InetSocketAddress endpoint) throws IOException {
+		SocketChannel newChannel = SocketChannel.open();
+		try {
+			newChannel.socket().connect(endpoint, CONNECT_TIMEOUT);
+			channel = newChannel;
+			configureChannel();
+		} catch (IOException e) {
+			newChannel.close();
+			throw e;
+		}
+	}
+
+	private void configureChannel() throws IOException {
+		channel.configureBlocking(false);
+		inputStream = new ChannelInputStream(channel, READ_BUFFER_SIZE);
+		outputStream = new ChannelOutputStream(channel);
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return inputStream;
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return outputStream;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return channel == null || !channel.isOpen() || !channel.isConnected();
+	}
+
+	@Override
+	public boolean isInputShutdown() {
+		return channel.socket().isInputShutdown();
+	}
+
+	@Override
+	public boolean isOutputShutdown() {
+		return channel.socket().isOutputShutdown();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// Writes are directly passed on to the channel.
+	}
+
+	@Override
+	public Optional<SocketChannel> getChannel() {
+		return Optional.ofNullable(channel);
+	}
+
+	@Override
+	public boolean supportsFileTransfer() {
+		return true;
+	}
+
+	@Override
+	public void transferFrom(FileChannel file, long position, long count) throws IOException {
+		outputStream.transferFrom(file, position, count);
+	}
+
+	@Override
+	public boolean hasPendingWrites() {
+		return outputStream != null && outputStream.hasPending();
+	}
+
+	@Override
+	public void flushPendingWrites() throws IOException {
+		outputStream.flushPending();
+	}
+
+	@Override
+	public String toString() {
+		SocketAddress remoteAddress = channel == null ? null : channel.socket().getRemoteSocketAddress();
+		return String.format("NioTcpSocket[remoteAddress=%s]", remoteAddress == null ? "" : remoteAddress.toString().substring(1));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null) {
+			return false;
+		}
+		if (!(o instanceof NioTcpSocket)) {
+			return false;
+		}
+
+		NioTcpSocket other = (NioTcpSocket) o;
+		return Objects.equals(channel, other.channel);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(channel);
+	}
+}
@@ -6,14 +6,18 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 
 import org.johnnei.javatorrent.TorrentClient;
 import org.johnnei.javatorrent.async.LoopingRunnable;
-import org.johnnei.javatorrent.internal.network.PeerIoRunnable;
+import org.johnnei.javatorrent.internal.network.IPeerIoEngine;
+import org.johnnei.javatorrent.internal.network.PeerIoReactorGroup;
+import org.johnnei.javatorrent.internal.network.ThreadPerPeerIo;
 import org.johnnei.javatorrent.internal.tracker.TrackerManager;
 import org.johnnei.javatorrent.network.TcpPeerConnectionAcceptor;
 import org.johnnei.javatorrent.torrent.Torrent;
+import org.johnnei.javatorrent.torrent.peer.Peer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,10 +36,26 @@ public class TorrentManager {
 
 	private LoopingRunnable connectorRunnable;
 
-	private LoopingRunnable peerIoRunnable;
+	private final int peerIoThreads;
+
+	private final ThreadFactory peerThreadFactory;
+
+	private IPeerIoEngine peerIo;
 
 	public TorrentManager(TrackerManager trackerManager) {
+		this(trackerManager, 1, null);
+	}
+
+	/**
+	 * Creates a new torrent manager.
+	 * @param trackerManager The tracker manager to register the torrents on.
+	 * @param peerIoThreads The amount of threads which handle the peer connections.
+	 * @param peerThreadFactory The factory to create a thread per peer with. When <code>null</code> the peers are multiplexed on the peer IO threads.
+	 */
+	public TorrentManager(TrackerManager trackerManager, int peerIoThreads, ThreadFactory peerThreadFactory) {
 		this.trackerManager = trackerManager;
+		this.peerIoThreads = peerIoThreads;
+		this.peerThreadFactory = peerThreadFactory;
 		activeTorrents = new ArrayList<>();
 	}
 
@@ -46,10 +66,20 @@ public class TorrentManager {
 		this.torrentClient = torrentClient;
 
 		// Start reading peer input/output
-		peerIoRunnable = new LoopingRunnable(new PeerIoRunnable(this));
-		Thread thread = new Thread(peerIoRunnable, "Peer IO");
-		thread.setDaemon(true);
-		thread.start();
+		peerIo = createPeerIoEngine();
+		peerIo.start();
+	}
+
+	private IPeerIoEngine createPeerIoEngine() {
+		if (peerThreadFactory != null) {
+			return new ThreadPerPeerIo(peerThreadFactory);
+		}
+
+		try {
+			return new PeerIoReactorGroup(peerIoThreads);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to create peer IO selector.", e);
+		}
 	}
 
 	/**
@@ -57,7 +87,14 @@ public class TorrentManager {
 	 */
 	public void enableConnectionAcceptor() {
 		try {
-			connectorRunnable = new LoopingRunnable(new TcpPeerConnectionAcceptor(torrentClient));
+			TcpPeerConnectionAcceptor acceptor;
+			if (peerThreadFactory != null) {
+				acceptor = new TcpPeerConnectionAcceptor(torrentClient, runnable -> peerThreadFactory.newThread(runnable).start());
+			} else {
+				acceptor = new TcpPeerConnectionAcceptor(torrentClient);
+			}
+
+			connectorRunnable = new LoopingRunnable(acceptor);
 			Thread connectorThread = new Thread(connectorRunnable, "Connection Acceptor");
 			connectorThread.setDaemon(true);
 			connectorThread.start();
@@ -70,13 +107,21 @@ public class TorrentManager {
 	 * Gracefully stops the connection processing.
 	 */
 	public void stop() {
-		peerIoRunnable.stop();
+		peerIo.stop();
 
 		if (connectorRunnable != null) {
 			connectorRunnable.stop();
 		}
 	}
 
+	/**
+	 * Registers the peer to be processed by the peer IO engine.
+	 * @param peer The peer to register.
+	 */
+	public void registerPeer(Peer peer) {
+		peerIo.registerPeer(peer);
+	}
+
 	/**
 	 * Registers a new torrent
 	 * @param torrent The torrent to register
@@ -3,6 +3,7 @@ package org.johnnei.javatorrent.internal.torrent.peer;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.function.Predicate;
 
 public class Client {
 
@@ -80,6 +81,23 @@ public class Client {
 		}
 	}
 
+	/**
+	 * Grabs the first job on the workingQueue if it matches the condition
+	 *
+	 * @param condition The condition which the job must match.
+	 * @return The next job or <code>null</code> when the queue is empty or the job doesn't match.
+	 */
+	public Job popNextJobIf(Predicate<Job> condition) {
+		synchronized (queueLock) {
+			Job job = workingQueue.peek();
+			if (job == null || !condition.test(job)) {
+				return null;
+			}
+
+			return workingQueue.poll();
+		}
+	}
+
 	/**
 	 * Gets an iterable to allow iteration over the job list.
 	 * @return An iteratable collection containing the jobs.
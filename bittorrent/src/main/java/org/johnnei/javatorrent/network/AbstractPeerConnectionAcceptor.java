@@ -2,6 +2,7 @@ package org.johnnei.javatorrent.network;
 
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import org.johnnei.javatorrent.TorrentClient;
 import org.johnnei.javatorrent.bittorrent.protocol.BitTorrentHandshake;
@@ -21,15 +22,38 @@ public abstract class AbstractPeerConnectionAcceptor implements Runnable {
 
 	protected final TorrentClient torrentClient;
 
+	private final Executor handshakeExecutor;
+
 	public AbstractPeerConnectionAcceptor(TorrentClient torrentClient) {
+		this(torrentClient, Runnable::run);
+	}
+
+	/**
+	 * Creates a new acceptor which processes the handshakes of the accepted connections on the given executor. This allows slow handshakes to not delay
+	 * accepting other connections.
+	 * @param torrentClient The client for which connections are accepted.
+	 * @param handshakeExecutor The executor on which the handshakes are processed.
+	 */
+	public AbstractPeerConnectionAcceptor(TorrentClient torrentClient, Executor handshakeExecutor) {
 		this.torrentClient = torrentClient;
+		this.handshakeExecutor = handshakeExecutor;
 	}
 
 	@Override
 	public void run() {
-		ISocket socket = null;
+		ISocket socket;
 		try {
 			socket = acceptSocket();
+		} catch (IOException e) {
+			LOGGER.debug("Failed to create connection with peer.", e);
+			return;
+		}
+
+		handshakeExecutor.execute(() -> handshake(socket));
+	}
+
+	private void handshake(ISocket socket) {
+		try {
 			acceptConnection(createSocket(socket));
 		} catch (IOException e) {
 			LOGGER.debug("Failed to create connection with peer.", e);
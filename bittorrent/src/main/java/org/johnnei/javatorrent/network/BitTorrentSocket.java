@@ -1,25 +1,32 @@
 package org.johnnei.javatorrent.network;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.SocketChannel;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.johnnei.javatorrent.bittorrent.protocol.BitTorrentHandshake;
 import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageFileBlock;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageKeepAlive;
 import org.johnnei.javatorrent.internal.network.ByteInputStream;
 import org.johnnei.javatorrent.internal.network.ByteOutputStream;
 import org.johnnei.javatorrent.internal.network.socket.ISocket;
+import org.johnnei.javatorrent.network.bandwidth.RateMeter;
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,9 +35,6 @@ public class BitTorrentSocket {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(BitTorrentSocket.class);
 
-	private final Object queueLock = new Object();
-	private final Object blockQueueLock = new Object();
-
 	/**
 	 * Clock instance to allow for speedy unit tests on this.
 	 */
@@ -38,6 +42,23 @@ public class BitTorrentSocket {
 
 	private static final int HANDSHAKE_SIZE = 68;
 
+	private static final byte[] PROTOCOL_NAME = "BitTorrent protocol".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The initial size of the read buffer. This fits two block messages so that the buffer rarely has to be compacted in the middle of a block.
+	 */
+	private static final int READ_BUFFER_SIZE = 1 << 15;
+
+	/**
+	 * The initial size of the write buffer.
+	 */
+	private static final int WRITE_BUFFER_SIZE = 1 << 15;
+
+	/**
+	 * The time in milliseconds a blocking read waits before checking the download limit again.
+	 */
+	private static final long THROTTLE_DELAY = 5;
+
 	private ISocket socket;
 
 	private ByteInputStream inStream;
@@ -62,21 +83,29 @@ public class BitTorrentSocket {
 	private boolean passedHandshake;
 
 	/**
-	 * The queue containing the messages which still have to be send
+	 * The queue containing the messages which still have to be send. Messages are queued from any thread (ex. disk completions) and consumed by the peer IO
+	 * thread, therefore this is a lock-free queue.
 	 */
 	private Queue<IMessage> messageQueue;
 
 	/**
-	 * The queue containing the block message which still have to be send
+	 * The queue containing the block message (either {@link MessageBlock} or {@link MessageFileBlock}) which still have to be send
 	 */
 	private Queue<IMessage> blockQueue;
 
-	private OutStream buffer;
+	/**
+	 * The buffer into which the received bytes are read. The unprocessed bytes are between the position and the limit. Messages are decoded directly from
+	 * this buffer, so the bytes only get moved when the buffer runs out of space at the end.
+	 */
+	private ByteBuffer readBuffer;
 
-	private int bufferSize;
+	/**
+	 * The buffer in which a batch of outbound messages is serialised before it is written to the socket at once.
+	 */
+	private OutStream writeBuffer;
 
 	/**
-	 * The last time a buffer was created
+	 * The time at which the first bytes of the message at the head of the {@link #readBuffer} were received.
 	 */
 	private LocalDateTime lastBufferCreate;
 
@@ -85,15 +114,53 @@ public class BitTorrentSocket {
 	 */
 	private LocalDateTime lastActivity;
 
+	/**
+	 * The bucket which limits the reading from the socket or <code>null</code> when reads are not limited.
+	 */
+	private TokenBucket downloadLimiter;
+
+	/**
+	 * The bucket which limits the writing to the socket or <code>null</code> when writes are not limited.
+	 */
+	private TokenBucket uploadLimiter;
+
+	/**
+	 * The meter which measures the download rate or <code>null</code> when the rate is not measured.
+	 */
+	private volatile RateMeter downloadMeter;
+
+	/**
+	 * The meter which measures the upload rate or <code>null</code> when the rate is not measured.
+	 */
+	private volatile RateMeter uploadMeter;
+
+	/**
+	 * Remembers if the last read was postponed because the download limit was exhausted.
+	 */
+	private boolean readThrottled;
+
+	/**
+	 * Remembers if the last write was postponed because the upload limit was exhausted.
+	 */
+	private boolean writeThrottled;
+
+	/**
+	 * The listener which gets notified when a message has been queued for sending.
+	 */
+	private volatile Runnable messageQueuedListener = () -> {};
+
 	/**
 	 * Creates a new unbound BitTorrent socket.
 	 * @param messageFactory The factory to create {@link IMessage} instances.
 	 */
 	public BitTorrentSocket(MessageFactory messageFactory) {
 		this.messageFactory = messageFactory;
-		messageQueue = new LinkedList<>();
-		blockQueue = new LinkedList<>();
+		messageQueue = new ConcurrentLinkedQueue<>();
+		blockQueue = new ConcurrentLinkedQueue<>();
 		lastActivity = LocalDateTime.now(clock);
+		readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		readBuffer.limit(0);
+		writeBuffer = new OutStream(WRITE_BUFFER_SIZE);
 	}
 
 	/**
@@ -142,30 +209,89 @@ public class BitTorrentSocket {
 	 * @param message The message to be added to the queue
 	 */
 	public void enqueueMessage(IMessage message) {
-		if (message instanceof MessageBlock) {
-			synchronized (blockQueueLock) {
-				blockQueue.add(message);
-			}
+		if (message instanceof MessageBlock || message instanceof MessageFileBlock) {
+			blockQueue.add(message);
 		} else {
-			synchronized (queueLock) {
-				messageQueue.add(message);
-			}
+			messageQueue.add(message);
 		}
+
+		messageQueuedListener.run();
+	}
+
+	/**
+	 * Sets the listener which gets notified each time a message is queued with {@link #enqueueMessage(IMessage)}. This allows the peer IO engine to only
+	 * check this socket for outbound messages when there are any.
+	 * @param listener The listener to invoke.
+	 */
+	public void setMessageQueuedListener(Runnable listener) {
+		this.messageQueuedListener = Objects.requireNonNull(listener, "Listener can not be null.");
+	}
+
+	/**
+	 * Sets the buckets which limit the bandwidth of this socket. This must be called before the socket is registered to the peer IO engine.
+	 * @param downloadLimiter The bucket which limits the reads or <code>null</code> for no limit.
+	 * @param uploadLimiter The bucket which limits the writes or <code>null</code> for no limit.
+	 */
+	public void setRateLimiters(TokenBucket downloadLimiter, TokenBucket uploadLimiter) {
+		this.downloadLimiter = downloadLimiter;
+		this.uploadLimiter = uploadLimiter;
+	}
+
+	/**
+	 * Sets the meters which measure the transfer rates of this socket. Only the bytes transferred after this call are recorded.
+	 * @param downloadMeter The meter which records the read bytes or <code>null</code>.
+	 * @param uploadMeter The meter which records the written bytes or <code>null</code>.
+	 */
+	public void setRateMeters(RateMeter downloadMeter, RateMeter uploadMeter) {
+		this.downloadMeter = downloadMeter;
+		this.uploadMeter = uploadMeter;
 	}
 
 	private void createIOStreams() throws IOException {
-		inStream = new ByteInputStream(new BufferedInputStream(socket.getInputStream()));
+		// The read buffer already batches the reads, an additional buffered stream would only add a copy.
+		inStream = new ByteInputStream(socket.getInputStream());
 		outStream = new ByteOutputStream(new BufferedOutputStream(socket.getOutputStream()));
 	}
 
+	/**
+	 * Reads the message which has been buffered by {@link #canReadMessage()}. The message is decoded directly from the read buffer, therefore
+	 * {@link IMessage#read(InStream)} must copy all data which it needs to retain.
+	 * @return The read message.
+	 */
 	public IMessage readMessage() {
+		int length = readBuffer.getInt();
+		Duration readDuration = getBufferLifetime();
 
-		InStream stream = getBufferedMessage();
-		int length = stream.readInt();
+		IMessage message;
 		if (length == 0) {
-			return new MessageKeepAlive();
+			message = MessageKeepAlive.INSTANCE;
+		} else {
+			int limit = readBuffer.limit();
+			readBuffer.limit(readBuffer.position() + length);
+			message = createMessage(new InStream(readBuffer, readDuration));
+			readBuffer.position(readBuffer.limit());
+			readBuffer.limit(limit);
 		}
 
+		onBytesConsumed();
+		return message;
+	}
+
+	/**
+	 * Reads the next message from the socket and blocks until it has been fully received. This is intended for the thread-per-peer IO mode in which the
+	 * calling thread is dedicated to this socket. This method must not be mixed with {@link #canReadMessage()} on the same socket.
+	 * @return The received message.
+	 * @throws IOException When an IO error occurs during the reading.
+	 */
+	public IMessage awaitMessage() throws IOException {
+		while (!hasBufferedMessage()) {
+			fillReadBuffer(true, getBufferedMessageSize());
+		}
+
+		return readMessage();
+	}
+
+	private IMessage createMessage(InStream stream) {
 		int id = stream.readByte();
 		IMessage message = messageFactory.createById(id);
 		message.read(stream);
@@ -178,35 +304,114 @@ public class BitTorrentSocket {
 	 * @throws IOException
 	 */
 	public void sendMessage() throws IOException {
-		IMessage message = null;
+		sendMessages(1);
+	}
 
-		if (!messageQueue.isEmpty()) {
-			synchronized (queueLock) {
-				message = messageQueue.poll();
-			}
-		} else if (!blockQueue.isEmpty()) {
-			synchronized (blockQueueLock) {
-				message = blockQueue.poll();
+	/**
+	 * Sends the pending messages as a single batch and flushes the socket once. Messages are taken until the next message would exceed the byte budget, the
+	 * first message is always sent regardless of its size. {@link MessageBlock} will be send after all other messages.
+	 *
+	 * The block of a {@link MessageFileBlock} is transferred straight from the file to the socket, the messages before it are flushed first.
+	 *
+	 * The batch is limited by the upload limit as well. When the limit is exhausted nothing is sent and {@link #isWriteThrottled()} returns
+	 * <code>true</code>.
+	 *
+	 * When the socket has pending writes (see {@link #hasPendingWrites()}) those are sent first. A new batch is only started once they have been fully
+	 * accepted by the socket.
+	 * @param byteBudget The maximum amount of bytes to send in this batch.
+	 * @return The amount of messages which have been sent.
+	 * @throws IOException When the socket fails to write the batch.
+	 */
+	public int sendMessages(int byteBudget) throws IOException {
+		int budget = byteBudget;
+		writeThrottled = false;
+		if (socket.hasPendingWrites()) {
+			socket.flushPendingWrites();
+			if (socket.hasPendingWrites()) {
+				return 0;
 			}
 		}
 
-		if (message == null) {
-			return;
+		if (uploadLimiter != null && hasOutboundMessages()) {
+			long allowance = uploadLimiter.getAvailable();
+			if (allowance <= 0) {
+				writeThrottled = true;
+				return 0;
+			}
+
+			budget = (int) Math.min(budget, allowance);
 		}
 
-		LOGGER.trace("Writing message {}", message);
+		int messageCount = 0;
+		int batchSize = 0;
+		try {
+			while (true) {
+				// Only this thread removes messages, so the peeked message remains the head of the queue.
+				Queue<IMessage> queue = messageQueue.isEmpty() ? blockQueue : messageQueue;
+				IMessage message = queue.peek();
+				if (message == null) {
+					break;
+				}
 
-		OutStream outBuffer = new OutStream(message.getLength() + 4);
-		outBuffer.writeInt(message.getLength());
+				int length = message.getLength();
+				if (messageCount > 0 && batchSize + length + 4 > budget) {
+					break;
+				}
+
+				queue.poll();
+				LOGGER.trace("Writing message {}", message);
+
+				writeBuffer.writeInt(length);
+				if (length > 0) {
+					writeBuffer.writeByte(message.getId());
+					message.write(writeBuffer);
+				}
+				releaseBlock(message);
+				if (message instanceof MessageFileBlock) {
+					transferFileBlock((MessageFileBlock) message);
+				}
 
-		if (message.getLength() > 0) {
-			outBuffer.writeByte(message.getId());
-			message.write(outBuffer);
+				batchSize += length + 4;
+				messageCount++;
+			}
+
+			if (messageCount == 0) {
+				return 0;
+			}
+
+			flushWriteBuffer();
+		} finally {
+			writeBuffer.reset();
+			if (uploadLimiter != null) {
+				uploadLimiter.consume(batchSize);
+			}
+			RateMeter meter = uploadMeter;
+			if (meter != null) {
+				meter.record(batchSize);
+			}
 		}
 
-		outStream.write(outBuffer.toByteArray());
-		outStream.flush();
 		lastActivity = LocalDateTime.now(clock);
+		return messageCount;
+	}
+
+	private void flushWriteBuffer() throws IOException {
+		writeBuffer.writeTo(outStream);
+		outStream.flush();
+		writeBuffer.reset();
+	}
+
+	private void transferFileBlock(MessageFileBlock message) throws IOException {
+		// The header of the message (and the messages before it) must be on the wire before the block.
+		flushWriteBuffer();
+		message.getPiece().visitFileRegions(message.getOffset(), message.getBlockLength(), (file, offsetInFile, offset, length) -> {
+			try {
+				socket.transferFrom(file.acquireChannel(), offsetInFile, length);
+			} finally {
+				file.releaseChannel();
+			}
+		});
+		outStream.addTransferredBytes(message.getBlockLength());
 	}
 
 	/**
@@ -244,28 +449,34 @@ public class BitTorrentSocket {
 
 		awaitHandshake();
 
-		int protocolLength = inStream.read();
+		int protocolLength = readBuffer.get();
 		if (protocolLength != 0x13) {
 			throw new IOException("Protocol handshake failed");
 		}
 
-		String protocol = inStream.readString(0x13);
+		byte[] protocol = new byte[0x13];
+		readBuffer.get(protocol);
 
-		if (!"BitTorrent protocol".equals(protocol)) {
+		if (!Arrays.equals(PROTOCOL_NAME, protocol)) {
 			throw new IOException("Protocol handshake failed");
 		}
 
-		byte[] extensionBytes = inStream.readByteArray(8);
-		byte[] torrentHash = inStream.readByteArray(20);
-		byte[] peerId = inStream.readByteArray(20);
+		byte[] extensionBytes = new byte[8];
+		byte[] torrentHash = new byte[20];
+		byte[] peerId = new byte[20];
+		readBuffer.get(extensionBytes);
+		readBuffer.get(torrentHash);
+		readBuffer.get(peerId);
 
+		// Peers are allowed to send messages directly after the handshake, those remain buffered.
+		onBytesConsumed();
 		return new BitTorrentHandshake(torrentHash, extensionBytes, peerId);
 	}
 
 	private void awaitHandshake() throws IOException {
 		LocalDateTime startTime = LocalDateTime.now(clock);
 
-		while (Duration.between(startTime, LocalDateTime.now(clock)).minusSeconds(5).isNegative() && inStream.available() < HANDSHAKE_SIZE) {
+		while (Duration.between(startTime, LocalDateTime.now(clock)).minusSeconds(5).isNegative() && getBufferedHandshakeBytes() < HANDSHAKE_SIZE) {
 			try {
 				Thread.sleep(100);
 			} catch (InterruptedException e) {
@@ -275,14 +486,22 @@ public class BitTorrentSocket {
 			}
 		}
 
-		if (inStream.available() < HANDSHAKE_SIZE) {
+		if (getBufferedHandshakeBytes() < HANDSHAKE_SIZE) {
 			throw new IOException("Remote end failed to supply handshake within 5 seconds");
 		}
 
 	}
 
+	private int getBufferedHandshakeBytes() throws IOException {
+		if (readBuffer.remaining() < HANDSHAKE_SIZE) {
+			fillReadBuffer(false, HANDSHAKE_SIZE);
+		}
+		return readBuffer.remaining();
+	}
+
 	/**
-	 * Polls all the transfer speeds.
+	 * Polls all the transfer speeds. The polled rates are the amount of bytes transferred since the previous poll, see
+	 * {@link org.johnnei.javatorrent.torrent.peer.Peer#getDownloadMeter()} for rates which are normalised by time.
 	 */
 	public void pollRates() {
 		if (inStream != null) {
@@ -293,10 +512,22 @@ public class BitTorrentSocket {
 		}
 	}
 
+	private static void releaseBlock(IMessage message) {
+		if (message instanceof MessageBlock) {
+			((MessageBlock) message).release();
+		}
+	}
+
 	/**
 	 * Closes the connection with the socket
 	 */
 	public void close() {
+		// The blocks will never be sent, return their buffers to the pool.
+		IMessage message;
+		while ((message = blockQueue.poll()) != null) {
+			releaseBlock(message);
+		}
+
 		if (socket.isClosed()) {
 			return;
 		}
@@ -314,42 +545,138 @@ public class BitTorrentSocket {
 	 * @throws IOException When an IO error occurs during the buffering.
 	 */
 	public boolean canReadMessage() throws IOException {
-		if (buffer == null) {
-			if (inStream.available() < 4) {
-				return false;
+		if (hasBufferedMessage()) {
+			return true;
+		}
+
+		fillReadBuffer(false, getBufferedMessageSize());
+		return hasBufferedMessage();
+	}
+
+	private boolean hasBufferedMessage() throws IOException {
+		return readBuffer.remaining() >= 4 && readBuffer.remaining() >= getBufferedMessageSize();
+	}
+
+	/**
+	 * Calculates the size of the message at the head of the read buffer including the length prefix.
+	 * @return The size of the message or <code>4</code> when the length prefix has not been fully received yet.
+	 * @throws IOException When the length prefix is invalid.
+	 */
+	private int getBufferedMessageSize() throws IOException {
+		if (readBuffer.remaining() < 4) {
+			return 4;
+		}
+
+		int length = readBuffer.getInt(readBuffer.position());
+		if (length < 0 || length > Integer.MAX_VALUE - 4) {
+			throw new IOException(String.format("Invalid message length: %d", length));
+		}
+
+		return length + 4;
+	}
+
+	/**
+	 * Reads the received bytes into the read buffer.
+	 * @param blocking <code>true</code> when the read may block until data is available.
+	 * @param requiredSize The size of the data at the head of the buffer which must fit in the buffer.
+	 * @throws IOException When the socket fails to read or has reached the end of the stream.
+	 */
+	private void fillReadBuffer(boolean blocking, int requiredSize) throws IOException {
+		int readableBytes = blocking ? Integer.MAX_VALUE : inStream.available();
+		readThrottled = false;
+		if (readableBytes <= 0) {
+			return;
+		}
+
+		if (downloadLimiter != null) {
+			long allowance = downloadLimiter.getAvailable();
+			if (allowance <= 0) {
+				readThrottled = true;
+				if (blocking) {
+					awaitThrottle();
+				}
+				return;
 			}
 
-			lastBufferCreate = LocalDateTime.now(clock);
-			int length = inStream.readInt();
-			buffer = new OutStream(length + 4);
-			bufferSize = length + 4;
-			buffer.writeInt(length);
+			readableBytes = (int) Math.min(readableBytes, allowance);
 		}
 
-		int remainingBytes = bufferSize - buffer.size();
-		if (remainingBytes == 0) {
-			return true;
+		ensureCapacity(requiredSize);
+
+		boolean startsNewMessage = !readBuffer.hasRemaining();
+		int writePosition = readBuffer.limit();
+		int readBytes = inStream.readBytes(
+				readBuffer.array(),
+				readBuffer.arrayOffset() + writePosition,
+				Math.min(readableBytes, readBuffer.capacity() - writePosition)
+		);
+
+		if (readBytes < 0) {
+			throw new EOFException("Remote end has closed the connection.");
 		}
 
-		int availableBytes = Math.min(remainingBytes, inStream.available());
-		buffer.write(inStream.readByteArray(availableBytes));
+		if (readBytes == 0) {
+			return;
+		}
+
+		if (downloadLimiter != null) {
+			downloadLimiter.consume(readBytes);
+		}
+		RateMeter meter = downloadMeter;
+		if (meter != null) {
+			meter.record(readBytes);
+		}
+
+		readBuffer.limit(writePosition + readBytes);
 		lastActivity = LocalDateTime.now(clock);
+		if (startsNewMessage) {
+			lastBufferCreate = lastActivity;
+		}
+	}
 
-		return bufferSize - buffer.size() == 0;
+	private static void awaitThrottle() throws IOException {
+		try {
+			Thread.sleep(THROTTLE_DELAY);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			// Honour the cancellation and rethrow it as IOException
+			throw new IOException(e);
+		}
 	}
 
-	private InStream getBufferedMessage() {
-		InStream bufferedStream = new InStream(buffer.toByteArray(), getBufferLifetime());
-		buffer = null;
-		return bufferedStream;
+	/**
+	 * Ensures that there is space to read into and that the data of <code>requiredSize</code> at the head of the buffer fits without moving it again.
+	 * @param requiredSize The size of the data at the head of the buffer.
+	 */
+	private void ensureCapacity(int requiredSize) {
+		int capacity = Math.max(READ_BUFFER_SIZE, requiredSize);
+		if (capacity != readBuffer.capacity() && readBuffer.remaining() <= capacity) {
+			// Either the next message doesn't fit or an earlier large message has been consumed and the buffer can return to the default size.
+			ByteBuffer resizedBuffer = ByteBuffer.allocate(capacity);
+			resizedBuffer.put(readBuffer);
+			resizedBuffer.flip();
+			readBuffer = resizedBuffer;
+		} else if (readBuffer.position() + requiredSize > readBuffer.capacity() || readBuffer.limit() == readBuffer.capacity()) {
+			readBuffer.compact();
+			readBuffer.flip();
+		}
+	}
+
+	private void onBytesConsumed() {
+		// The remaining bytes have been received before this point in time, so the next message must have started before as well.
+		lastBufferCreate = readBuffer.hasRemaining() ? LocalDateTime.now(clock) : null;
 	}
 
 	/**
-	 * The time that this buffer has existed
+	 * The time that the message at the head of the read buffer has been receiving.
 	 *
-	 * @return The duration since creation
+	 * @return The duration since the first bytes of the message were received.
 	 */
 	private Duration getBufferLifetime() {
+		if (lastBufferCreate == null) {
+			return Duration.ZERO;
+		}
+
 		return Duration.between(lastBufferCreate, LocalDateTime.now(clock));
 	}
 
@@ -401,6 +728,22 @@ public class BitTorrentSocket {
 		passedHandshake = true;
 	}
 
+	/**
+	 * Checks if the last attempt to read from the socket was postponed because the download limit was exhausted.
+	 * @return <code>true</code> when reading must be retried later.
+	 */
+	public boolean isReadThrottled() {
+		return readThrottled;
+	}
+
+	/**
+	 * Checks if the last attempt to send messages was postponed because the upload limit was exhausted.
+	 * @return <code>true</code> when sending must be retried later.
+	 */
+	public boolean isWriteThrottled() {
+		return writeThrottled;
+	}
+
 	/**
 	 * Checks if this socket has messages queued for sending
 	 * @return <code>true</code> if there is at least one {@link IMessage} waiting to be sent.
@@ -409,6 +752,40 @@ public class BitTorrentSocket {
 		return !messageQueue.isEmpty() || !blockQueue.isEmpty();
 	}
 
+	/**
+	 * Checks if the socket has bytes of previously sent messages which it has not yet been able to send.
+	 * @return <code>true</code> when {@link #sendMessages(int)} must be called once the socket is writable, even without outbound messages.
+	 *
+	 * @see ISocket#hasPendingWrites()
+	 */
+	public boolean hasPendingWrites() {
+		return socket != null && socket.hasPendingWrites();
+	}
+
+	/**
+	 * Gets the selectable channel of the underlying socket.
+	 * @return The channel or {@link Optional#empty()} when the socket must be polled for data.
+	 *
+	 * @see ISocket#getChannel()
+	 */
+	public Optional<SocketChannel> getChannel() {
+		if (socket == null) {
+			return Optional.empty();
+		}
+
+		return socket.getChannel();
+	}
+
+	/**
+	 * Checks if blocks can be sent as {@link MessageFileBlock}, which transfers them from the file to the socket without copying them through the heap.
+	 * @return <code>true</code> when the underlying socket supports file transfers.
+	 *
+	 * @see ISocket#supportsFileTransfer()
+	 */
+	public boolean supportsFileTransfer() {
+		return socket != null && socket.supportsFileTransfer();
+	}
+
 	/**
 	 * Gets the class simple name of the underlying socket.
 	 * @return The name of the socket or an empty string when no socket is set.
@@ -0,0 +1,127 @@
+package org.johnnei.javatorrent.network;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted buffer which holds the data of a block while it moves between the network and the disk. A buffer starts with a reference count of
+ * <code>1</code>. Every holder which keeps the buffer beyond the call in which it received it must {@link #retain()} it, and every holder must
+ * {@link #release()} it when done. When the last reference is released the backing array is returned to the owning {@link BlockBufferPool}.
+ *
+ * The data is stored in a heap array so that it can be used directly with the stream based socket and file APIs.
+ */
+public final class BlockBuffer {
+
+	private final BlockBufferPool pool;
+
+	private final byte[] array;
+
+	private final int length;
+
+	private final AtomicInteger referenceCount;
+
+	BlockBuffer(BlockBufferPool pool, byte[] array, int length) {
+		this.pool = pool;
+		this.array = array;
+		this.length = length;
+		referenceCount = new AtomicInteger(1);
+	}
+
+	/**
+	 * Creates a buffer which is not owned by any pool.
+	 * @param data The data of the block.
+	 * @return The buffer wrapping the given data.
+	 */
+	public static BlockBuffer wrap(byte[] data) {
+		return new BlockBuffer(null, data, data.length);
+	}
+
+	/**
+	 * Gets the backing array of this buffer. The array may be larger than {@link #getLength()}, only the first <code>length</code> bytes belong to the
+	 * block.
+	 * @return The backing array.
+	 * @throws IllegalStateException When the buffer has already been released.
+	 */
+	public byte[] getArray() {
+		ensureAccessible();
+		return array;
+	}
+
+	/**
+	 * Gets the amount of bytes of the block.
+	 * @return The length of the block.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Copies the block into a new array of exactly {@link #getLength()} bytes.
+	 * @return The copied data.
+	 * @throws IllegalStateException When the buffer has already been released.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(getArray(), length);
+	}
+
+	/**
+	 * Adds a reference to this buffer.
+	 * @return This buffer.
+	 * @throws IllegalStateException When the buffer has already been released.
+	 */
+	public BlockBuffer retain() {
+		int count;
+		do {
+			count = referenceCount.get();
+			if (count <= 0) {
+				throw new IllegalStateException("Buffer has already been released.");
+			}
+		} while (!referenceCount.compareAndSet(count, count + 1));
+
+		return this;
+	}
+
+	/**
+	 * Removes a reference from this buffer. Once the last reference has been removed the buffer must no longer be used.
+	 * @return <code>true</code> when this was the last reference.
+	 * @throws IllegalStateException When the buffer has already been released.
+	 */
+	public boolean release() {
+		int count = referenceCount.decrementAndGet();
+		if (count < 0) {
+			referenceCount.incrementAndGet();
+			throw new IllegalStateException("Buffer has already been released.");
+		}
+
+		if (count > 0) {
+			return false;
+		}
+
+		if (pool != null) {
+			pool.onReleased(this, array);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the current amount of references to this buffer.
+	 * @return The reference count.
+	 */
+	public int getReferenceCount() {
+		return referenceCount.get();
+	}
+
+	private void ensureAccessible() {
+		if (referenceCount.get() <= 0) {
+			throw new IllegalStateException("Buffer has already been released.");
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("BlockBuffer[length=%d, references=%d]", length, referenceCount.get());
+	}
+}
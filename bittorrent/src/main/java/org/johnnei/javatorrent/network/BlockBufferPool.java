@@ -0,0 +1,193 @@
+package org.johnnei.javatorrent.network;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of equally sized arrays which back the {@link BlockBuffer} instances. The pool never blocks: when no array is available a new one is
+ * allocated and on release it is only kept when the pool has room for it.
+ *
+ * Buffers which are never released are not lost, they are reclaimed by the garbage collector like any other object. To find those, the pool can track the
+ * allocation site of every outstanding buffer (see {@link #reportLeaks()}). This is intended for tests as it captures a stack trace per allocation.
+ */
+public class BlockBufferPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BlockBufferPool.class);
+
+	private final int bufferSize;
+
+	private final int maxPooledBuffers;
+
+	private final Queue<byte[]> freeArrays;
+
+	/**
+	 * The amount of arrays in {@link #freeArrays}. Tracked separately as {@link ConcurrentLinkedQueue#size()} is not constant time.
+	 */
+	private final AtomicInteger pooledCount;
+
+	private final AtomicInteger outstandingCount;
+
+	private final LongAdder hitCount;
+
+	private final LongAdder missCount;
+
+	/**
+	 * The allocation sites of the outstanding buffers or <code>null</code> when leaks aren't tracked.
+	 */
+	private final Map<BlockBuffer, Throwable> allocationSites;
+
+	/**
+	 * Creates a new pool without leak tracking.
+	 * @param bufferSize The size of the pooled arrays.
+	 * @param maxPooledBuffers The maximum amount of unused arrays which are kept.
+	 */
+	public BlockBufferPool(int bufferSize, int maxPooledBuffers) {
+		this(bufferSize, maxPooledBuffers, false);
+	}
+
+	/**
+	 * Creates a new pool.
+	 * @param bufferSize The size of the pooled arrays.
+	 * @param maxPooledBuffers The maximum amount of unused arrays which are kept.
+	 * @param trackLeaks <code>true</code> when the allocation site of each buffer should be recorded.
+	 */
+	public BlockBufferPool(int bufferSize, int maxPooledBuffers, boolean trackLeaks) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive.");
+		}
+		if (maxPooledBuffers < 0) {
+			throw new IllegalArgumentException("Maximum amount of pooled buffers can not be negative.");
+		}
+
+		this.bufferSize = bufferSize;
+		this.maxPooledBuffers = maxPooledBuffers;
+		freeArrays = new ConcurrentLinkedQueue<>();
+		pooledCount = new AtomicInteger();
+		outstandingCount = new AtomicInteger();
+		hitCount = new LongAdder();
+		missCount = new LongAdder();
+		allocationSites = trackLeaks ? new ConcurrentHashMap<>() : null;
+	}
+
+	/**
+	 * Allocates a buffer for a block of the given length. Lengths which exceed the buffer size of this pool are served with an unpooled array.
+	 * @param length The length of the block.
+	 * @return The buffer with a reference count of <code>1</code>. The content of the buffer is undefined.
+	 */
+	public BlockBuffer allocate(int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Length can not be negative.");
+		}
+
+		byte[] array = null;
+		if (length <= bufferSize) {
+			array = freeArrays.poll();
+		}
+
+		if (array != null) {
+			pooledCount.decrementAndGet();
+			hitCount.increment();
+		} else {
+			missCount.increment();
+			array = new byte[Math.max(length, bufferSize)];
+		}
+
+		BlockBuffer buffer = new BlockBuffer(this, array, length);
+		outstandingCount.incrementAndGet();
+		if (allocationSites != null) {
+			allocationSites.put(buffer, new Throwable("Allocation site of " + buffer));
+		}
+		return buffer;
+	}
+
+	void onReleased(BlockBuffer buffer, byte[] array) {
+		outstandingCount.decrementAndGet();
+		if (allocationSites != null) {
+			allocationSites.remove(buffer);
+		}
+
+		if (array.length != bufferSize) {
+			return;
+		}
+
+		if (pooledCount.incrementAndGet() <= maxPooledBuffers) {
+			freeArrays.add(array);
+		} else {
+			pooledCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Logs the allocation site of every buffer which has not been released yet. Allocation sites are only available when leak tracking is enabled.
+	 * @return The amount of buffers which have not been released.
+	 */
+	public int reportLeaks() {
+		if (allocationSites != null) {
+			allocationSites.values().forEach(site -> LOGGER.error("Block buffer has not been released.", site));
+		}
+
+		return outstandingCount.get();
+	}
+
+	/**
+	 * Gets the size of the pooled arrays.
+	 * @return The size in bytes.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Gets the amount of allocations which have been served with a pooled array.
+	 * @return The amount of hits.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Gets the amount of allocations which required a new array.
+	 * @return The amount of misses.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Gets the amount of unused arrays which are currently kept by this pool.
+	 * @return The amount of pooled arrays.
+	 */
+	public int getPooledCount() {
+		return pooledCount.get();
+	}
+
+	/**
+	 * Gets the amount of buffers which have been allocated but not released yet.
+	 * @return The amount of outstanding buffers.
+	 */
+	public int getOutstandingCount() {
+		return outstandingCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"BlockBufferPool[bufferSize=%d, pooled=%d, outstanding=%d, hits=%d, misses=%d]",
+				bufferSize,
+				getPooledCount(),
+				getOutstandingCount(),
+				getHitCount(),
+				getMissCount()
+		);
+	}
+}
@@ -1,38 +1,30 @@
 package org.johnnei.javatorrent.network;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.time.Duration;
 import java.util.Optional;
 
-import org.johnnei.javatorrent.internal.utils.CheckedRunnable;
-import org.johnnei.javatorrent.internal.utils.CheckedSupplier;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+/**
+ * A reader which provides data-type access on an in-memory section of bytes. The stream is backed by a {@link ByteBuffer} so that it can be created as a view
+ * on a larger buffer (ex. the receive buffer of a socket) without copying the data.
+ *
+ * Reading beyond the available bytes results in a {@link BufferUnderflowException}.
+ */
 public class InStream {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(InStream.class);
-
 	private Duration readDuration;
 
 	/**
-	 * The byte array reader
-	 */
-	private ByteArrayInputStream buffer;
-
-	/**
-	 * The wrapper around the {@link #buffer} which provides data-type access.
+	 * The buffer containing the readable bytes. Position <code>0</code> is the start of the stream.
 	 */
-	private DataInputStream in;
+	private final ByteBuffer buffer;
 
 	/**
-	 * The total amount of supplied bytes
+	 * The position to return to on {@link #resetToMark()}.
 	 */
-	private int length;
+	private int markPosition;
 
 	/**
 	 * Creates a new buffered input stream based on the given byte array.
@@ -79,9 +71,17 @@ public class InStream {
 	 * @param readDuration The duration it took to read the given buffer
 	 */
 	public InStream(byte[] data, int offset, int length, Duration readDuration) {
-		buffer = new ByteArrayInputStream(data, offset, length);
-		in = new DataInputStream(buffer);
-		this.length = length;
+		this(ByteBuffer.wrap(data, offset, length), readDuration);
+	}
+
+	/**
+	 * Creates a new input stream on the remaining bytes of the given buffer. The stream is a view on the buffer, changes to the content of the buffer will be
+	 * visible in the stream. The position and limit of the given buffer are not modified.
+	 * @param data The buffer to read from.
+	 * @param readDuration The duration it took to read the given buffer
+	 */
+	public InStream(ByteBuffer data, Duration readDuration) {
+		buffer = data.slice();
 		this.readDuration = readDuration;
 	}
 
@@ -90,7 +90,7 @@ public class InStream {
 	 * @return The read boolean
 	 */
 	public boolean readBoolean() {
-		return doUnchecked(() -> in.readBoolean());
+		return buffer.get() != 0;
 	}
 
 	/**
@@ -98,7 +98,7 @@ public class InStream {
 	 * @return The read byte.
 	 */
 	public byte readByte() {
-		return doUnchecked(() -> in.readByte());
+		return buffer.get();
 	}
 
 	/**
@@ -106,7 +106,7 @@ public class InStream {
 	 * @return The read character.
 	 */
 	public char readChar() {
-		return doUnchecked(() -> in.readChar());
+		return buffer.getChar();
 	}
 
 	/**
@@ -124,7 +124,7 @@ public class InStream {
 	 * @param len The amount of bytes to copy.
 	 */
 	public void readFully(byte[] b, int off, int len) {
-		doUnchecked(() -> in.readFully(b, off, len));
+		buffer.get(b, off, len);
 	}
 
 	/**
@@ -143,7 +143,7 @@ public class InStream {
 	 * @return The read integer.
 	 */
 	public int readInt() {
-		return doUnchecked(() -> in.readInt());
+		return buffer.getInt();
 	}
 
 	/**
@@ -151,7 +151,7 @@ public class InStream {
 	 * @return The read long.
 	 */
 	public long readLong() {
-		return doUnchecked(() -> in.readLong());
+		return buffer.getLong();
 	}
 
 	/**
@@ -159,7 +159,7 @@ public class InStream {
 	 * @return The read short.
 	 */
 	public short readShort() {
-		return doUnchecked(() -> in.readShort());
+		return buffer.getShort();
 	}
 
 	/**
@@ -167,7 +167,7 @@ public class InStream {
 	 * @return The read byte.
 	 */
 	public int readUnsignedByte() {
-		return doUnchecked(() -> in.readUnsignedByte());
+		return buffer.get() & 0xFF;
 	}
 
 	/**
@@ -175,7 +175,7 @@ public class InStream {
 	 * @return The read short.
 	 */
 	public int readUnsignedShort() {
-		return doUnchecked(() -> in.readUnsignedShort());
+		return buffer.getShort() & 0xFFFF;
 	}
 
 	/**
@@ -184,20 +184,17 @@ public class InStream {
 	 * @return The actual amount of bytes skipped.
 	 */
 	public int skipBytes(int n) {
-		return doUnchecked(() -> in.skipBytes(n));
+		int skipped = Math.min(n, buffer.remaining());
+		buffer.position(buffer.position() + skipped);
+		return skipped;
 	}
 
 	/**
 	 * Moves the read pointer back with <code>n</code> position.
-	 * This method cannot be combined with {@link #mark()} on the same stream as this method assumes the marked position to be 0.
 	 * @param n The amount of bytes to 'unread'
-	 *
-	 * @see #mark()
 	 */
 	public void moveBack(int n) {
-		int offset = length - buffer.available() - n;
-		buffer.reset();
-		skipBytes(offset);
+		buffer.position(buffer.position() - n);
 	}
 
 	/**
@@ -205,7 +202,7 @@ public class InStream {
 	 * @return The amount of readable bytes.
 	 */
 	public int available() {
-		return doUnchecked(() -> in.available());
+		return buffer.remaining();
 	}
 
 	/**
@@ -222,14 +219,14 @@ public class InStream {
 	 * Marks the current position.
 	 */
 	public void mark() {
-		buffer.mark(buffer.available());
+		markPosition = buffer.position();
 	}
 
 	/**
 	 * Returns to the last marked position with {@link #mark()} or <code>0</code> if no mark has happened before.
 	 */
 	public void resetToMark() {
-		buffer.reset();
+		buffer.position(markPosition);
 	}
 
 	/**
@@ -240,22 +237,4 @@ public class InStream {
 		return Optional.ofNullable(readDuration);
 	}
 
-	private void doUnchecked(CheckedRunnable<IOException> readCall) {
-		try {
-			readCall.run();
-		} catch (IOException e) {
-			LOGGER.error("You managed to cause an IO exception on an in-memory byte array. I'm proud.", e);
-			throw new RuntimeException("IO Exception on in-memory byte array", e);
-		}
-	}
-
-	private <T> T doUnchecked(CheckedSupplier<T, IOException> readCall) {
-		try {
-			return readCall.get();
-		} catch (IOException e) {
-			LOGGER.error("You managed to cause an IO exception on an in-memory byte array. I'm proud.", e);
-			throw new RuntimeException("IO Exception on in-memory byte array", e);
-		}
-	}
-
 }
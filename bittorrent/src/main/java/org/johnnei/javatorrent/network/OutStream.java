@@ -1,78 +1,107 @@
 package org.johnnei.javatorrent.network;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
-import org.johnnei.javatorrent.internal.utils.CheckedRunnable;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+/**
+ * A writer which provides data-type access to build an in-memory section of bytes. The stream is backed by a heap {@link ByteBuffer} which grows when the
+ * written data doesn't fit anymore.
+ */
 public class OutStream {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(OutStream.class);
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
 
-	private ByteArrayOutputStream buffer;
-	private DataOutputStream out;
+	private ByteBuffer buffer;
 
+	/**
+	 * Creates a new stream with an initial capacity of 32 bytes.
+	 */
 	public OutStream() {
 		this(32);
 	}
 
+	/**
+	 * Creates a new stream with the given initial capacity.
+	 * @param size The amount of bytes which can be written before the stream has to grow.
+	 */
 	public OutStream(int size) {
-		buffer = new ByteArrayOutputStream(size);
-		out = new DataOutputStream(buffer);
+		buffer = ByteBuffer.allocate(size);
 	}
 
 	public void write(byte[] b) {
-		writeUnchecked(() -> out.write(b));
+		write(b, 0, b.length);
 	}
 
 	public void write(byte[] b, int off, int len) {
-		writeUnchecked(() -> out.write(b, off, len));
+		ensureCapacity(len);
+		buffer.put(b, off, len);
 	}
 
 	public void writeBoolean(boolean v) {
-		writeUnchecked(() -> out.writeBoolean(v));
+		writeByte(v ? 1 : 0);
 	}
 
 	public void writeByte(int v) {
-		writeUnchecked(() -> out.writeByte(v));
+		ensureCapacity(1);
+		buffer.put((byte) v);
 	}
 
 	public void writeInt(int v) {
-		writeUnchecked(() -> out.writeInt(v));
+		ensureCapacity(4);
+		buffer.putInt(v);
 	}
 
 	public void writeLong(long v) {
-		writeUnchecked(() -> out.writeLong(v));
+		ensureCapacity(8);
+		buffer.putLong(v);
 	}
 
 	public void writeShort(int v) {
-		writeUnchecked(() -> out.writeShort(v));
+		ensureCapacity(2);
+		buffer.putShort((short) v);
 	}
 
 	public void writeString(String s) {
-		write(s.getBytes(Charset.forName("UTF-8")));
+		write(s.getBytes(UTF_8));
 	}
 
 	public int size() {
-		return buffer.size();
+		return buffer.position();
 	}
 
 	public byte[] toByteArray() {
-		return buffer.toByteArray();
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	/**
+	 * Writes all bytes which have been written to this stream to the given stream without creating a copy of them.
+	 * @param outputStream The stream to write to.
+	 * @throws IOException When the given stream fails to write.
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		outputStream.write(buffer.array(), 0, buffer.position());
 	}
 
-	private void writeUnchecked(CheckedRunnable<IOException> writeCall) {
-		try {
-			writeCall.run();
-		} catch (IOException e) {
-			LOGGER.error("Somehow you managed to get an IO exception on a byte array. I'm proud.", e);
-			throw new RuntimeException("IO Exception on in-memory byte array.", e);
+	/**
+	 * Discards all written bytes. The allocated capacity is retained so the stream can be reused.
+	 */
+	public void reset() {
+		buffer.clear();
+	}
+
+	private void ensureCapacity(int length) {
+		if (buffer.remaining() >= length) {
+			return;
 		}
+
+		int requiredCapacity = buffer.position() + length;
+		ByteBuffer grownBuffer = ByteBuffer.allocate(Math.max(requiredCapacity, buffer.capacity() * 2));
+		buffer.flip();
+		grownBuffer.put(buffer);
+		buffer = grownBuffer;
 	}
 
 }
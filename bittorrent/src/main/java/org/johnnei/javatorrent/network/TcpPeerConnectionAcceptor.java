@@ -1,10 +1,15 @@
 package org.johnnei.javatorrent.network;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.Executor;
 
 import org.johnnei.javatorrent.TorrentClient;
 import org.johnnei.javatorrent.internal.network.socket.ISocket;
+import org.johnnei.javatorrent.internal.network.socket.NioTcpSocket;
 import org.johnnei.javatorrent.internal.network.socket.TcpSocket;
 
 public class TcpPeerConnectionAcceptor extends AbstractPeerConnectionAcceptor {
@@ -16,13 +21,37 @@ public class TcpPeerConnectionAcceptor extends AbstractPeerConnectionAcceptor {
 		serverSocket = createServerSocket();
 	}
 
+	/**
+	 * Creates a new acceptor which processes the handshakes of the accepted connections on the given executor.
+	 * @param torrentClient The client for which connections are accepted.
+	 * @param handshakeExecutor The executor on which the handshakes are processed.
+	 * @throws IOException When the server socket can not be bound.
+	 */
+	public TcpPeerConnectionAcceptor(TorrentClient torrentClient, Executor handshakeExecutor) throws IOException {
+		super(torrentClient, handshakeExecutor);
+		serverSocket = createServerSocket();
+	}
+
 	@Override
 	protected ISocket acceptSocket() throws IOException {
-		return new TcpSocket( serverSocket.accept());
+		Socket socket = serverSocket.accept();
+		if (socket.getChannel() != null) {
+			return new NioTcpSocket(socket.getChannel());
+		}
+
+		return new TcpSocket(socket);
 	}
 
 	ServerSocket createServerSocket() throws IOException {
-		return new ServerSocket(torrentClient.getDownloadPort());
+		// Open through a channel so that accepted connections can be multiplexed by the peer IO reactor.
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket().bind(new InetSocketAddress(torrentClient.getDownloadPort()));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel.socket();
 	}
 
 }
@@ -0,0 +1,36 @@
+package org.johnnei.javatorrent.network.bandwidth;
+
+/**
+ * The priority classes by which torrents share the global bandwidth limits. When the global limit is saturated each torrent receives bandwidth in proportion
+ * to the weight of its priority.
+ */
+public enum BandwidthPriority {
+
+	/**
+	 * Receives a quarter of the bandwidth of a {@link #High} priority torrent.
+	 */
+	Low(1),
+	/**
+	 * The default priority.
+	 */
+	Normal(2),
+	/**
+	 * Receives four times the bandwidth of a {@link #Low} priority torrent.
+	 */
+	High(4);
+
+	private final int weight;
+
+	BandwidthPriority(int weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * Gets the weight which is applied on the {@link TokenBucket} of the torrent.
+	 * @return The weight.
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+}
@@ -0,0 +1,185 @@
+package org.johnnei.javatorrent.network.bandwidth;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the transfer rate in bytes per second as exponentially weighted moving averages over each {@link RateWindow}. Meters form a hierarchy (ex.
+ * global, torrent and peer) in which the bytes recorded on a meter are recorded on all of its parents as well.
+ *
+ * Recording bytes is lock-free so that it can be done from any IO thread. The averages are updated at most once per {@link #TICK_MILLIS} by the first
+ * thread which records or reads the meter after the interval has passed. As the averages are normalised by the actual elapsed time an idle meter decays
+ * correctly without being polled.
+ *
+ * Optionally the meter keeps a history of the average rate of each tick, which gives a view of the throughput over the last minutes.
+ */
+public class RateMeter {
+
+	/**
+	 * The interval in milliseconds at which the averages are updated.
+	 */
+	static final long TICK_MILLIS = 1000;
+
+	private static final RateWindow[] WINDOWS = RateWindow.values();
+
+	private final RateMeter parent;
+
+	private final Clock clock;
+
+	private final LongAdder total;
+
+	/**
+	 * The averages in bytes per second, indexed by {@link RateWindow#ordinal()}. Replaced as a whole on each tick.
+	 */
+	private volatile double[] rates;
+
+	/**
+	 * The time of the last tick, read without locking to determine if a tick is due.
+	 */
+	private volatile long lastTick;
+
+	/**
+	 * The total on the last tick. Guarded by <code>this</code>.
+	 */
+	private long lastTotal;
+
+	/**
+	 * The ring of per-tick rates. Guarded by <code>this</code>.
+	 */
+	private final long[] history;
+
+	/**
+	 * The amount of samples which have been added to {@link #history}. Guarded by <code>this</code>.
+	 */
+	private long historyCount;
+
+	/**
+	 * Creates a new meter without history.
+	 * @param parent The meter which aggregates this meter or <code>null</code> for a root meter.
+	 */
+	public RateMeter(RateMeter parent) {
+		this(parent, 0, Clock.systemUTC());
+	}
+
+	/**
+	 * Creates a new meter.
+	 * @param parent The meter which aggregates this meter or <code>null</code> for a root meter.
+	 * @param historySize The amount of ticks to keep in the history.
+	 */
+	public RateMeter(RateMeter parent, int historySize) {
+		this(parent, historySize, Clock.systemUTC());
+	}
+
+	/**
+	 * Creates a new meter.
+	 * @param parent The meter which aggregates this meter or <code>null</code> for a root meter.
+	 * @param historySize The amount of ticks to keep in the history.
+	 * @param clock The clock to measure the elapsed time with.
+	 */
+	public RateMeter(RateMeter parent, int historySize, Clock clock) {
+		if (historySize < 0) {
+			throw new IllegalArgumentException("History size can not be negative.");
+		}
+
+		this.parent = parent;
+		this.clock = clock;
+		total = new LongAdder();
+		rates = new double[WINDOWS.length];
+		history = new long[historySize];
+		lastTick = clock.millis();
+	}
+
+	/**
+	 * Records transferred bytes on this meter and all of its parents.
+	 * @param bytes The amount of bytes which have been transferred.
+	 */
+	public void record(long bytes) {
+		if (bytes <= 0) {
+			return;
+		}
+
+		for (RateMeter meter = this; meter != null; meter = meter.parent) {
+			// Tick first so that the bytes are accounted to the interval in which they have been transferred.
+			meter.tickIfDue();
+			meter.total.add(bytes);
+		}
+	}
+
+	/**
+	 * Gets the average rate over the given window.
+	 * @param window The window to average over.
+	 * @return The rate in bytes per second.
+	 */
+	public long getRate(RateWindow window) {
+		tickIfDue();
+		return Math.round(rates[window.ordinal()]);
+	}
+
+	/**
+	 * Gets the total amount of bytes which have been recorded on this meter.
+	 * @return The amount of bytes.
+	 */
+	public long getTotal() {
+		return total.sum();
+	}
+
+	/**
+	 * Gets the rates of the most recent ticks.
+	 * @return The rates in bytes per second, ordered from oldest to newest.
+	 */
+	public synchronized long[] getHistory() {
+		tick(clock.millis());
+		int size = (int) Math.min(historyCount, history.length);
+		long[] samples = new long[size];
+		for (int i = 0; i < size; i++) {
+			samples[i] = history[(int) ((historyCount - size + i) % history.length)];
+		}
+		return samples;
+	}
+
+	private void tickIfDue() {
+		long now = clock.millis();
+		if (now - lastTick < TICK_MILLIS) {
+			return;
+		}
+
+		synchronized (this) {
+			tick(now);
+		}
+	}
+
+	private void tick(long now) {
+		long elapsed = now - lastTick;
+		if (elapsed < TICK_MILLIS) {
+			return;
+		}
+
+		long currentTotal = total.sum();
+		double instantRate = (currentTotal - lastTotal) * 1000d / elapsed;
+
+		double[] previousRates = rates;
+		double[] newRates = new double[WINDOWS.length];
+		for (int i = 0; i < WINDOWS.length; i++) {
+			double alpha = 1 - Math.exp(-elapsed / (WINDOWS[i].getSeconds() * 1000d));
+			newRates[i] = previousRates[i] + alpha * (instantRate - previousRates[i]);
+		}
+
+		if (history.length > 0) {
+			// An idle period which spans multiple ticks is spread evenly over them.
+			long ticks = Math.min(elapsed / TICK_MILLIS, history.length);
+			for (long i = 0; i < ticks; i++) {
+				history[(int) (historyCount % history.length)] = Math.round(instantRate);
+				historyCount++;
+			}
+		}
+
+		lastTotal = currentTotal;
+		rates = newRates;
+		lastTick = now;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RateMeter[rate=%d, total=%d]", Math.round(rates[RateWindow.TenSeconds.ordinal()]), getTotal());
+	}
+}
@@ -0,0 +1,35 @@
+package org.johnnei.javatorrent.network.bandwidth;
+
+/**
+ * The windows over which a {@link RateMeter} averages the transfer rate.
+ */
+public enum RateWindow {
+
+	/**
+	 * Follows the rate closely, intended for displaying the current rate.
+	 */
+	OneSecond(1),
+	/**
+	 * Smooths out short bursts, intended for choking and request pipelining decisions.
+	 */
+	TenSeconds(10),
+	/**
+	 * The long term rate, intended for peer eviction decisions.
+	 */
+	OneMinute(60);
+
+	private final int seconds;
+
+	RateWindow(int seconds) {
+		this.seconds = seconds;
+	}
+
+	/**
+	 * Gets the time constant of the exponentially weighted moving average.
+	 * @return The duration of the window in seconds.
+	 */
+	public int getSeconds() {
+		return seconds;
+	}
+
+}
@@ -0,0 +1,247 @@
+package org.johnnei.javatorrent.network.bandwidth;
+
+import java.time.Clock;
+
+/**
+ * A token bucket which limits the amount of bytes per second which can be transferred. Buckets form a hierarchy (ex. global, torrent and peer) in which a
+ * transfer is limited by every bucket up to the root and consumes the tokens of all of them.
+ *
+ * A bucket refills continuously at its rate and holds at most {@link #BURST_MILLIS} worth of tokens (but at least {@link #MINIMUM_BURST}). A transfer is
+ * allowed as long as the bucket holds any tokens and may drive it into debt, so that messages which are larger than the burst (ex. blocks on a slow limit)
+ * can still be sent. The debt is paid off by the refill before the next transfer is allowed.
+ *
+ * When the parent of a bucket is limited, the children which are actively transferring share the tokens of the parent by their weight. The rate, burst
+ * and weight can be changed at any time.
+ */
+public class TokenBucket {
+
+	/**
+	 * The rate which indicates that the bucket doesn't limit transfers.
+	 */
+	public static final long UNLIMITED = 0;
+
+	/**
+	 * The default weight of a bucket.
+	 */
+	public static final int DEFAULT_WEIGHT = 1;
+
+	/**
+	 * The amount of time worth of tokens which a bucket can hold.
+	 */
+	static final long BURST_MILLIS = 250;
+
+	/**
+	 * The minimum amount of tokens which a limited bucket can hold, this allows a full block to be sent without going into debt.
+	 */
+	static final long MINIMUM_BURST = 1 << 14;
+
+	/**
+	 * The duration in milliseconds in which a child must have requested tokens to be considered active when the tokens are shared by weight.
+	 */
+	private static final long DEMAND_WINDOW = 100;
+
+	private final TokenBucket parent;
+
+	private final Clock clock;
+
+	private volatile long rate;
+
+	private volatile int weight;
+
+	/**
+	 * The available tokens, negative when the bucket is in debt. Guarded by <code>this</code>.
+	 */
+	private long tokens;
+
+	/**
+	 * The time at which the tokens were last refilled. Guarded by <code>this</code>.
+	 */
+	private long lastRefill;
+
+	/**
+	 * The demand window in which the children registered {@link #demandWeight}. Guarded by <code>this</code>.
+	 */
+	private long demandWindow;
+
+	/**
+	 * The summed weight of the children which requested tokens in the current demand window. Guarded by <code>this</code>.
+	 */
+	private int demandWeight;
+
+	/**
+	 * The summed weight of the children which requested tokens in the previous demand window. Guarded by <code>this</code>.
+	 */
+	private int previousDemandWeight;
+
+	/**
+	 * The demand window in which this bucket has last been counted in the {@link #demandWeight} of the parent. Guarded by the parent.
+	 */
+	private long lastDemandWindow = -1;
+
+	/**
+	 * Creates a new unlimited bucket.
+	 * @param parent The bucket which limits this bucket or <code>null</code> for a root bucket.
+	 */
+	public TokenBucket(TokenBucket parent) {
+		this(parent, Clock.systemUTC());
+	}
+
+	/**
+	 * Creates a new unlimited bucket.
+	 * @param parent The bucket which limits this bucket or <code>null</code> for a root bucket.
+	 * @param clock The clock to measure the refill with.
+	 */
+	public TokenBucket(TokenBucket parent, Clock clock) {
+		this.parent = parent;
+		this.clock = clock;
+		rate = UNLIMITED;
+		weight = DEFAULT_WEIGHT;
+	}
+
+	/**
+	 * Calculates the amount of bytes which may be transferred right now. This is limited by this bucket and all of its parents.
+	 * @return The amount of bytes, {@link Long#MAX_VALUE} when no bucket in the hierarchy is limited or zero or less when the transfer must wait.
+	 */
+	public long getAvailable() {
+		long available = getOwnAvailable();
+		if (parent == null || available <= 0) {
+			return available;
+		}
+
+		long parentAvailable = parent.getAvailable();
+		if (parentAvailable != Long.MAX_VALUE) {
+			parentAvailable = parent.getShare(this, parentAvailable);
+		}
+
+		return Math.min(available, parentAvailable);
+	}
+
+	/**
+	 * Consumes the tokens for the given amount of transferred bytes from this bucket and all of its parents.
+	 * @param bytes The amount of bytes which have been transferred.
+	 */
+	public void consume(long bytes) {
+		if (bytes <= 0) {
+			return;
+		}
+
+		for (TokenBucket bucket = this; bucket != null; bucket = bucket.parent) {
+			bucket.consumeOwn(bytes);
+		}
+	}
+
+	private long getOwnAvailable() {
+		if (rate == UNLIMITED) {
+			return Long.MAX_VALUE;
+		}
+
+		synchronized (this) {
+			refill();
+			return tokens;
+		}
+	}
+
+	private void consumeOwn(long bytes) {
+		if (rate == UNLIMITED) {
+			return;
+		}
+
+		synchronized (this) {
+			refill();
+			tokens -= bytes;
+		}
+	}
+
+	private void refill() {
+		long now = clock.millis();
+		long elapsed = now - lastRefill;
+		if (elapsed <= 0) {
+			return;
+		}
+
+		long refilled = rate * elapsed / 1000;
+		if (refilled <= 0) {
+			// Keep the refill time so that slow rates still accumulate tokens over multiple calls.
+			return;
+		}
+
+		tokens = Math.min(getBurst(), tokens + refilled);
+		lastRefill = now;
+	}
+
+	private synchronized long getShare(TokenBucket child, long available) {
+		if (available <= 0) {
+			return available;
+		}
+
+		long window = clock.millis() / DEMAND_WINDOW;
+		if (window != demandWindow) {
+			previousDemandWeight = window == demandWindow + 1 ? demandWeight : 0;
+			demandWeight = 0;
+			demandWindow = window;
+		}
+
+		if (child.lastDemandWindow != window) {
+			child.lastDemandWindow = window;
+			demandWeight += child.weight;
+		}
+
+		int activeWeight = Math.max(demandWeight, previousDemandWeight);
+		if (activeWeight <= child.weight) {
+			return available;
+		}
+
+		return Math.max(1, available * child.weight / activeWeight);
+	}
+
+	/**
+	 * Changes the rate of this bucket. The bucket starts full after changing the rate.
+	 * @param bytesPerSecond The amount of bytes per second or {@link #UNLIMITED}.
+	 */
+	public synchronized void setRate(long bytesPerSecond) {
+		if (bytesPerSecond < 0) {
+			throw new IllegalArgumentException("Rate can not be negative.");
+		}
+
+		rate = bytesPerSecond;
+		tokens = getBurst();
+		lastRefill = clock.millis();
+	}
+
+	/**
+	 * Gets the rate of this bucket.
+	 * @return The amount of bytes per second or {@link #UNLIMITED}.
+	 */
+	public long getRate() {
+		return rate;
+	}
+
+	/**
+	 * Changes the weight by which this bucket shares the tokens of its parent with its siblings.
+	 * @param weight The weight (at least 1).
+	 */
+	public void setWeight(int weight) {
+		if (weight < 1) {
+			throw new IllegalArgumentException("Weight must be at least 1.");
+		}
+
+		this.weight = weight;
+	}
+
+	/**
+	 * Gets the weight by which this bucket shares the tokens of its parent with its siblings.
+	 * @return The weight.
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	private long getBurst() {
+		return Math.max(MINIMUM_BURST, rate * BURST_MILLIS / 1000);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TokenBucket[rate=%d, weight=%d]", rate, weight);
+	}
+}
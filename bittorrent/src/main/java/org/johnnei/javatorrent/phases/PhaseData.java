@@ -7,6 +7,7 @@ import java.util.stream.Collectors;
 
 import org.johnnei.javatorrent.TorrentClient;
 import org.johnnei.javatorrent.bittorrent.tracker.TrackerEvent;
+import org.johnnei.javatorrent.disk.DiskBackpressure;
 import org.johnnei.javatorrent.torrent.Torrent;
 import org.johnnei.javatorrent.torrent.TorrentException;
 import org.johnnei.javatorrent.torrent.algos.choking.IChokingStrategy;
@@ -44,6 +45,18 @@ public class PhaseData implements IDownloadPhase {
 
 	@Override
 	public void process() {
+		if (torrent.isRechecking()) {
+			// Pieces which have not been verified yet must not be downloaded, they may already be on disk.
+			return;
+		}
+
+		DiskBackpressure backpressure = torrentClient.getDiskBackpressure();
+		if (backpressure != null && backpressure.isPaused()) {
+			// The received blocks can't be written fast enough, wait for the disk to catch up.
+			LOGGER.trace("Not requesting blocks for {} while the disk is backed up: {}", torrent, backpressure);
+			return;
+		}
+
 		for (Peer peer : getRelevantPeers(torrent.getPeers())) {
 			Optional<Piece> pieceOptional = torrent.getPieceSelector().getPieceForPeer(peer);
 			if (!pieceOptional.isPresent()) {
@@ -51,7 +64,8 @@ public class PhaseData implements IDownloadPhase {
 			}
 
 			Piece piece = pieceOptional.get();
-			while (piece.hasBlockWithStatus(BlockStatus.Needed) && peer.getFreeWorkTime() > 0) {
+			int allowedRequests = backpressure != null ? backpressure.getAllowedRequests(peer.getFreeWorkTime()) : Integer.MAX_VALUE;
+			while (piece.hasBlockWithStatus(BlockStatus.Needed) && peer.getFreeWorkTime() > 0 && allowedRequests > 0) {
 				Optional<Block> blockOptional = piece.getRequestBlock();
 				if (!blockOptional.isPresent()) {
 					break;
@@ -59,13 +73,14 @@ public class PhaseData implements IDownloadPhase {
 
 				final Block block = blockOptional.get();
 				peer.addBlockRequest(piece, torrent.getFileSet().getBlockSize() * block.getIndex(), block.getSize(), PeerDirection.Download);
+				allowedRequests--;
 			}
 		}
 	}
 
 	@Override
 	public void onPhaseEnter() {
-		torrent.checkProgress();
+		torrent.startRecheck();
 		torrent.setPieceSelector(new FullPieceSelect(torrent));
 		File downloadFolder = torrent.getFileSet().getDownloadFolder();
 
@@ -5,6 +5,8 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.stream.Stream;
 
+import org.johnnei.javatorrent.disk.FileTorrentStorage;
+import org.johnnei.javatorrent.disk.ITorrentStorage;
 import org.johnnei.javatorrent.torrent.files.BlockStatus;
 import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
 import org.johnnei.javatorrent.torrent.files.Piece;
@@ -28,6 +30,11 @@ public abstract class AbstractFileSet {
 	 */
 	private final int blockSize;
 
+	/**
+	 * The storage in which the data of the pieces is stored, created on first use when not set.
+	 */
+	private volatile ITorrentStorage storage;
+
 	public AbstractFileSet(int blockSize) {
 		this.blockSize = blockSize;
 	}
@@ -187,6 +194,32 @@ public abstract class AbstractFileSet {
 	 */
 	public abstract byte[] getBitfieldBytes();
 
+	/**
+	 * Replaces the storage in which the data of the pieces is stored.
+	 * @param storage The storage.
+	 */
+	public void setStorage(ITorrentStorage storage) {
+		this.storage = Argument.requireNonNull(storage, "Storage can not be null.");
+	}
+
+	/**
+	 * Gets the storage in which the data of the pieces is stored. Unless another storage has been set this is a {@link FileTorrentStorage} on the
+	 * {@link #getFiles() files} of this set.
+	 * @return The storage.
+	 */
+	public final ITorrentStorage getStorage() {
+		ITorrentStorage currentStorage = storage;
+		if (currentStorage == null) {
+			synchronized (this) {
+				if (storage == null) {
+					storage = new FileTorrentStorage(this);
+				}
+				currentStorage = storage;
+			}
+		}
+		return currentStorage;
+	}
+
 	/**
 	 * Creates an unmodifiable view of the list of files in this fileset.
 	 * @return The list of files in this set.
@@ -0,0 +1,282 @@
+package org.johnnei.javatorrent.torrent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.johnnei.javatorrent.bittorrent.encoding.BencodedInteger;
+import org.johnnei.javatorrent.bittorrent.encoding.BencodedList;
+import org.johnnei.javatorrent.bittorrent.encoding.BencodedMap;
+import org.johnnei.javatorrent.bittorrent.encoding.BencodedString;
+import org.johnnei.javatorrent.bittorrent.encoding.Bencoding;
+import org.johnnei.javatorrent.bittorrent.encoding.IBencodedValue;
+import org.johnnei.javatorrent.network.InStream;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The fast-resume record of a torrent which allows a restart to skip the hash verification of the data which didn't change since the record was written.
+ *
+ * The record is a bencoded dictionary containing the format version, the info hash, the bitfield of the verified pieces and the size and modification time
+ * of each file. When the record is restored the verified pieces are trusted as long as all files which contain a part of the piece still have the recorded
+ * size and modification time. Only the pieces within files which changed need to be verified again.
+ */
+public class FastResume {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FastResume.class);
+
+	/**
+	 * The version of the format of the records which are written.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final String KEY_VERSION = "version";
+	private static final String KEY_INFO_HASH = "info-hash";
+	private static final String KEY_PIECE_COUNT = "piece-count";
+	private static final String KEY_BITFIELD = "bitfield";
+	private static final String KEY_FILES = "files";
+	private static final String KEY_SIZE = "size";
+	private static final String KEY_MODIFIED = "mtime";
+
+	private final byte[] infoHash;
+
+	private final int pieceCount;
+
+	private final byte[] bitfield;
+
+	private final List<FileState> files;
+
+	private FastResume(byte[] infoHash, int pieceCount, byte[] bitfield, List<FileState> files) {
+		this.infoHash = infoHash;
+		this.pieceCount = pieceCount;
+		this.bitfield = bitfield;
+		this.files = files;
+	}
+
+	/**
+	 * Creates a record of the current state of the file set.
+	 * @param infoHash The info hash of the torrent.
+	 * @param fileSet The file set of the torrent.
+	 * @return The record.
+	 * @throws IOException When the state of a file can not be read.
+	 */
+	public static FastResume capture(byte[] infoHash, AbstractFileSet fileSet) throws IOException {
+		List<FileState> files = new ArrayList<>(fileSet.getFiles().size());
+		for (FileInfo file : fileSet.getFiles()) {
+			files.add(FileState.of(file.getFile()));
+		}
+
+		// The pieces are captured after the files so that a piece which completes in between will be verified again rather than trusted on outdated files.
+		byte[] bitfield = new byte[(fileSet.getPieceCount() + 7) / 8];
+		for (int i = 0; i < fileSet.getPieceCount(); i++) {
+			if (fileSet.getPiece(i).isDone()) {
+				bitfield[i / 8] |= 0x80 >> (i % 8);
+			}
+		}
+
+		return new FastResume(infoHash, fileSet.getPieceCount(), bitfield, files);
+	}
+
+	/**
+	 * Reads the record from the given file.
+	 * @param file The file containing the record.
+	 * @return The record or {@link Optional#empty()} when the file doesn't exist, is corrupt or has an unsupported version.
+	 */
+	public static Optional<FastResume> read(File file) {
+		if (!file.exists()) {
+			return Optional.empty();
+		}
+
+		try {
+			byte[] data = Files.readAllBytes(file.toPath());
+			BencodedMap map = (BencodedMap) new Bencoding().decode(new InStream(data));
+
+			long version = map.get(KEY_VERSION).map(IBencodedValue::asLong).orElse(0L);
+			if (version != FORMAT_VERSION) {
+				LOGGER.info("Ignoring fast-resume record {} with unsupported version {}.", file, version);
+				return Optional.empty();
+			}
+
+			List<FileState> files = new ArrayList<>();
+			for (IBencodedValue fileValue : getRequired(map, KEY_FILES).asList()) {
+				BencodedMap fileMap = (BencodedMap) fileValue;
+				files.add(new FileState(getRequired(fileMap, KEY_SIZE).asLong(), getRequired(fileMap, KEY_MODIFIED).asLong()));
+			}
+
+			return Optional.of(new FastResume(
+					getRequired(map, KEY_INFO_HASH).asBytes(),
+					(int) getRequired(map, KEY_PIECE_COUNT).asLong(),
+					getRequired(map, KEY_BITFIELD).asBytes(),
+					files));
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Ignoring corrupt fast-resume record {}.", file, e);
+			return Optional.empty();
+		}
+	}
+
+	private static IBencodedValue getRequired(BencodedMap map, String key) {
+		return map.get(key).orElseThrow(() -> new IllegalArgumentException(String.format("Missing %s entry.", key)));
+	}
+
+	/**
+	 * Writes the record to the given file. The record is written to a temporary file first which then replaces the file, so a crash never leaves a partial
+	 * record behind.
+	 * @param file The file to write to.
+	 * @throws IOException When the record could not be written.
+	 */
+	public void write(File file) throws IOException {
+		Path target = file.toPath();
+		Path parent = target.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+
+		Path temporary = Files.createTempFile(parent, file.getName(), ".tmp");
+		try {
+			Files.write(temporary, serialize());
+			try {
+				Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private byte[] serialize() {
+		BencodedMap map = new BencodedMap();
+		map.put(KEY_VERSION, new BencodedInteger(FORMAT_VERSION));
+		map.put(KEY_INFO_HASH, new BencodedString(infoHash));
+		map.put(KEY_PIECE_COUNT, new BencodedInteger(pieceCount));
+		map.put(KEY_BITFIELD, new BencodedString(bitfield));
+
+		BencodedList fileList = new BencodedList();
+		for (FileState file : files) {
+			BencodedMap fileMap = new BencodedMap();
+			fileMap.put(KEY_SIZE, new BencodedInteger(file.size));
+			fileMap.put(KEY_MODIFIED, new BencodedInteger(file.modified));
+			fileList.add(fileMap);
+		}
+		map.put(KEY_FILES, fileList);
+
+		return map.serialize();
+	}
+
+	/**
+	 * Tests if this record has been captured for the given torrent.
+	 * @param infoHash The info hash of the torrent.
+	 * @param fileSet The file set of the torrent.
+	 * @return <code>true</code> when the record matches the layout of the torrent.
+	 */
+	public boolean isApplicable(byte[] infoHash, AbstractFileSet fileSet) {
+		return Arrays.equals(this.infoHash, infoHash) && pieceCount == fileSet.getPieceCount() && files.size() == fileSet.getFiles().size();
+	}
+
+	/**
+	 * Restores the verified pieces of which the files didn't change since the record was captured.
+	 * @param fileSet The file set of the torrent, must be {@link #isApplicable(byte[], AbstractFileSet) applicable}.
+	 * @param verifiedPieceConsumer The consumer which marks the trusted pieces as verified.
+	 * @return The pieces which are not yet completed and of which at least one file has changed. These pieces must be verified again.
+	 */
+	public List<Piece> restore(AbstractFileSet fileSet, Consumer<Piece> verifiedPieceConsumer) {
+		List<FileInfo> fileInfos = fileSet.getFiles();
+		boolean[] changed = new boolean[fileInfos.size()];
+		for (int i = 0; i < changed.length; i++) {
+			changed[i] = !files.get(i).matches(fileInfos.get(i).getFile());
+			if (changed[i]) {
+				LOGGER.debug("{} changed since the fast-resume record was written.", fileInfos.get(i).getFileName());
+			}
+		}
+
+		List<Piece> changedPieces = new ArrayList<>();
+		for (int index = 0; index < pieceCount; index++) {
+			Piece piece = fileSet.getPiece(index);
+			if (piece.isDone()) {
+				continue;
+			}
+
+			if (isInChangedFile(fileSet, piece, changed)) {
+				changedPieces.add(piece);
+			} else if ((bitfield[index / 8] & (0x80 >> (index % 8))) != 0) {
+				verifiedPieceConsumer.accept(piece);
+			}
+		}
+
+		return changedPieces;
+	}
+
+	private static boolean isInChangedFile(AbstractFileSet fileSet, Piece piece, boolean[] changed) {
+		long start = piece.getIndex() * fileSet.getPieceSize();
+		long end = start + piece.getSize();
+		List<FileInfo> fileInfos = fileSet.getFiles();
+		for (int i = 0; i < fileInfos.size(); i++) {
+			FileInfo file = fileInfos.get(i);
+			boolean overlaps = file.getFirstByteOffset() < end && file.getFirstByteOffset() + file.getSize() > start;
+			if (overlaps && changed[i]) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Gets the amount of pieces which were verified when the record was captured.
+	 * @return The amount of verified pieces.
+	 */
+	public int countVerifiedPieces() {
+		int count = 0;
+		for (byte b : bitfield) {
+			count += Integer.bitCount(b & 0xFF);
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FastResume[pieces=%d/%d, files=%d]", countVerifiedPieces(), pieceCount, files.size());
+	}
+
+	private static final class FileState {
+
+		private final long size;
+
+		/**
+		 * The modification time in nanoseconds, or the best precision the file system offers.
+		 */
+		private final long modified;
+
+		FileState(long size, long modified) {
+			this.size = size;
+			this.modified = modified;
+		}
+
+		static FileState of(File file) throws IOException {
+			if (!file.exists()) {
+				return new FileState(-1, -1);
+			}
+
+			Path path = file.toPath();
+			return new FileState(Files.size(path), Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS));
+		}
+
+		boolean matches(File file) {
+			try {
+				FileState current = of(file);
+				return size >= 0 && current.size == size && current.modified == modified;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+	}
+}
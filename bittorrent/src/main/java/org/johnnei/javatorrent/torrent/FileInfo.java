@@ -1,47 +1,62 @@
 package org.johnnei.javatorrent.torrent;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
+import org.johnnei.javatorrent.disk.FileHandleCache;
+import org.johnnei.javatorrent.torrent.files.MappedRegionCache;
 import org.johnnei.javatorrent.torrent.fileset.FileEntry;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 public class FileInfo {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(FileInfo.class);
-
 	private final FileEntry fileEntry;
 
+	/**
+	 * The file on the harddrive
+	 */
+	private final File file;
+
 	/**
 	 * The amount of pieces which contain a part of data for this file
 	 */
 	private int pieceCount;
 
 	/**
-	 * The link between the file on the harddrive
+	 * The link between the file on the harddrive, opened on first use when no {@link #handleCache} is set. Guarded by <code>this</code>.
 	 */
 	private RandomAccessFile fileAccess;
 
 	/**
-	 * A lock to prevent concurrent writes to a single file
+	 * The cache which manages the handle to this file or <code>null</code> to keep the handle open once it has been opened.
 	 */
-	public final Object fileLock = new Object();
+	private volatile FileHandleCache handleCache;
+
+	/**
+	 * The cache of mapped windows through which this file is accessed or <code>null</code> to use positional system calls.
+	 */
+	private volatile MappedRegionCache mappedRegions;
 
 	public FileInfo(long filesize, long firstByteOffset, File file, int pieceCount) {
 		this.fileEntry = new FileEntry(file.getName(), filesize, firstByteOffset);
+		this.file = file;
 		this.pieceCount = pieceCount;
-		try {
-			if (!file.exists()) {
-				file.getParentFile().mkdirs();
-				file.createNewFile();
-			}
-			fileAccess = new RandomAccessFile(file, "rw");
-		} catch (IOException ex) {
-			LOGGER.warn("Failed to open read/write access to {}", file.getAbsolutePath(), ex);
+	}
+
+	/**
+	 * Opens the handle to the file when it isn't open yet. The file is only touched when it is accessed, so a torrent of which the data is not stored in
+	 * the files never creates them.
+	 * @param create <code>true</code> to create the file when it doesn't exist.
+	 */
+	private synchronized RandomAccessFile open(boolean create) throws IOException {
+		if (fileAccess == null) {
+			fileAccess = FileHandleCache.openFile(file, create);
 		}
+
+		return fileAccess;
 	}
 
 	/**
@@ -80,11 +95,152 @@ public class FileInfo {
 	}
 
 	/**
-	 * Gets the handle to write/read from this file.
-	 * @return The IO handle.
+	 * Gets the channel of the handle to this file, the file is created when it doesn't exist yet. When a {@link #setHandleCache(FileHandleCache) handle
+	 * cache} is set the handle is leased from the cache and will not be closed until {@link #releaseChannel()} has been called.
+	 * @return The file channel.
+	 * @throws IOException When the file could not be opened.
 	 */
-	public RandomAccessFile getFileAccess() {
-		return fileAccess;
+	public FileChannel acquireChannel() throws IOException {
+		return acquireChannel(true);
+	}
+
+	private FileChannel acquireChannel(boolean create) throws IOException {
+		FileHandleCache cache = handleCache;
+		if (cache != null) {
+			return cache.acquire(this, create);
+		}
+
+		return open(create).getChannel();
+	}
+
+	/**
+	 * Ends the use of the channel which has been returned by {@link #acquireChannel()}.
+	 */
+	public void releaseChannel() {
+		FileHandleCache cache = handleCache;
+		if (cache != null) {
+			cache.release(this);
+		}
+	}
+
+	/**
+	 * Closes the handle to the file. The handle will be opened again when the file is accessed after it has been closed.
+	 * @throws IOException When the handle could not be closed.
+	 */
+	public void close() throws IOException {
+		FileHandleCache cache = handleCache;
+		if (cache != null) {
+			cache.close(this);
+		}
+
+		synchronized (this) {
+			if (fileAccess != null) {
+				fileAccess.close();
+				fileAccess = null;
+			}
+		}
+	}
+
+	/**
+	 * Sets the cache which manages the handle to this file. This must be set before the file is accessed.
+	 * @param handleCache The cache or <code>null</code> to keep the handle open once it has been opened.
+	 */
+	public void setHandleCache(FileHandleCache handleCache) {
+		this.handleCache = handleCache;
+	}
+
+	/**
+	 * Sets the cache of mapped windows through which {@link #read(ByteBuffer, long)} and {@link #write(ByteBuffer, long)} access this file.
+	 * @param mappedRegions The cache or <code>null</code> to use positional system calls.
+	 */
+	public void setMappedRegions(MappedRegionCache mappedRegions) {
+		this.mappedRegions = mappedRegions;
+	}
+
+	/**
+	 * Gets the cache of mapped windows through which this file is accessed.
+	 * @return The cache or <code>null</code> when positional system calls are used.
+	 */
+	public MappedRegionCache getMappedRegions() {
+		return mappedRegions;
+	}
+
+	/**
+	 * Reads bytes starting at the given position in the file until the buffer is full. This uses positional reads (pread) or the mapped windows when
+	 * {@link #setMappedRegions(MappedRegionCache)} is set and is therefore safe to be called concurrently with other reads and writes on this file.
+	 * @param buffer The buffer to read into.
+	 * @param position The position in the file to start reading at.
+	 * @throws EOFException When the file ends before the buffer is full or the file hasn't been written yet.
+	 * @throws IOException When the read fails.
+	 */
+	public void read(ByteBuffer buffer, long position) throws IOException {
+		MappedRegionCache regions = mappedRegions;
+		if (regions != null) {
+			regions.read(this, buffer, position);
+			return;
+		}
+
+		FileChannel channel = acquireChannel(false);
+		try {
+			long readPosition = position;
+			while (buffer.hasRemaining()) {
+				int readBytes = channel.read(buffer, readPosition);
+				if (readBytes < 0) {
+					throw new EOFException(String.format("Reached the end of %s at position %d.", getFileName(), readPosition));
+				}
+				readPosition += readBytes;
+			}
+		} finally {
+			releaseChannel();
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer starting at the given position in the file. This uses positional writes (pwrite) or the mapped windows when
+	 * {@link #setMappedRegions(MappedRegionCache)} is set and is therefore safe to be called concurrently with other reads and writes on this file.
+	 * @param buffer The buffer to write.
+	 * @param position The position in the file to start writing at.
+	 * @throws IOException When the write fails.
+	 */
+	public void write(ByteBuffer buffer, long position) throws IOException {
+		MappedRegionCache regions = mappedRegions;
+		if (regions != null) {
+			regions.write(this, buffer, position);
+			return;
+		}
+
+		FileChannel channel = acquireChannel(true);
+		try {
+			long writePosition = position;
+			while (buffer.hasRemaining()) {
+				writePosition += channel.write(buffer, writePosition);
+			}
+		} finally {
+			releaseChannel();
+		}
+	}
+
+	/**
+	 * Gets the amount of bytes which are currently stored in the file on the harddrive. This does not open the file.
+	 * @return The current length of the file or 0 when it hasn't been written yet.
+	 * @throws IOException When the length can not be determined.
+	 */
+	public long length() throws IOException {
+		synchronized (this) {
+			if (fileAccess != null) {
+				return fileAccess.getChannel().size();
+			}
+		}
+
+		return file.length();
+	}
+
+	/**
+	 * Gets the file on the harddrive in which the data is stored.
+	 * @return The file.
+	 */
+	public File getFile() {
+		return file;
 	}
 
 	@Override
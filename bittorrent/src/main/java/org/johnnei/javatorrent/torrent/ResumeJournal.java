@@ -0,0 +1,252 @@
+package org.johnnei.javatorrent.torrent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.johnnei.javatorrent.disk.PieceCache;
+import org.johnnei.javatorrent.torrent.files.BlockStatus;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of the blocks which have been written to the files but of which the piece has not been verified yet. This allows a restart to
+ * continue partially downloaded pieces instead of downloading them again, which complements the piece level {@link FastResume} record.
+ *
+ * The journal starts with a header containing the format version, the info hash and the piece count, followed by a fixed size record (piece index, block
+ * index) for every block which has been written. The journal is compacted by rewriting it with only the blocks of the pieces which are still incomplete.
+ * A record which has been cut off by a crash is ignored. A block which is recorded but of which the data didn't reach the files is caught by the hash check
+ * of the piece, just like a corrupt block received from a peer.
+ */
+public class ResumeJournal implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResumeJournal.class);
+
+	/**
+	 * The version of the format of the journals which are written.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int MAGIC = 0x4A544A4C;
+
+	private static final int HASH_SIZE = 20;
+
+	private static final int HEADER_SIZE = 12 + HASH_SIZE;
+
+	private static final int RECORD_SIZE = 8;
+
+	private final File file;
+
+	private final byte[] infoHash;
+
+	private final int pieceCount;
+
+	/**
+	 * The channel to which the records are appended. Guarded by <code>this</code>.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The records which have been read when the journal was opened, in pairs of piece and block index.
+	 */
+	private final int[] restoredRecords;
+
+	private ResumeJournal(File file, byte[] infoHash, int pieceCount, int[] restoredRecords) {
+		this.file = file;
+		this.infoHash = infoHash;
+		this.pieceCount = pieceCount;
+		this.restoredRecords = restoredRecords;
+	}
+
+	/**
+	 * Opens the journal in the given file. The records of an existing journal are kept when it has been written for the same torrent, otherwise the journal
+	 * starts empty.
+	 * @param file The file containing the journal.
+	 * @param infoHash The info hash of the torrent.
+	 * @param pieceCount The amount of pieces in the torrent.
+	 * @return The opened journal.
+	 * @throws IOException When the journal can not be created.
+	 */
+	public static ResumeJournal open(File file, byte[] infoHash, int pieceCount) throws IOException {
+		ResumeJournal journal = new ResumeJournal(file, infoHash, pieceCount, readRecords(file, infoHash, pieceCount));
+		synchronized (journal) {
+			journal.rewrite(journal.restoredRecords, journal.restoredRecords.length);
+		}
+		return journal;
+	}
+
+	private static int[] readRecords(File file, byte[] infoHash, int pieceCount) {
+		if (!file.exists()) {
+			return new int[0];
+		}
+
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+				LOGGER.warn("Ignoring corrupt resume journal {}.", file);
+				return new int[0];
+			}
+
+			int version = buffer.getInt();
+			byte[] journalHash = new byte[HASH_SIZE];
+			buffer.get(journalHash);
+			if (version != FORMAT_VERSION || !Arrays.equals(journalHash, infoHash) || buffer.getInt() != pieceCount) {
+				LOGGER.info("Ignoring resume journal {} which has been written with version {} or for another torrent.", file, version);
+				return new int[0];
+			}
+
+			int[] records = new int[(buffer.remaining() / RECORD_SIZE) * 2];
+			for (int i = 0; i < records.length; i++) {
+				records[i] = buffer.getInt();
+			}
+			return records;
+		} catch (IOException e) {
+			LOGGER.warn("Ignoring unreadable resume journal {}.", file, e);
+			return new int[0];
+		}
+	}
+
+	/**
+	 * Marks the recorded blocks of the incomplete pieces as {@link BlockStatus#Stored} so that they will not be requested again.
+	 * @param fileSet The file set of the torrent.
+	 * @return The pieces of which all blocks have been stored. These pieces must be verified.
+	 */
+	public List<Piece> restore(AbstractFileSet fileSet) {
+		int restoredBlocks = 0;
+		List<Piece> completedPieces = new ArrayList<>();
+		for (int i = 0; i < restoredRecords.length; i += 2) {
+			int pieceIndex = restoredRecords[i];
+			int blockIndex = restoredRecords[i + 1];
+			if (pieceIndex < 0 || pieceIndex >= fileSet.getPieceCount()) {
+				continue;
+			}
+
+			Piece piece = fileSet.getPiece(pieceIndex);
+			if (blockIndex < 0 || blockIndex >= piece.getBlockCount() || piece.getBlockStatus(blockIndex) != BlockStatus.Needed) {
+				continue;
+			}
+
+			piece.setBlockStatus(blockIndex, BlockStatus.Stored);
+			restoredBlocks++;
+			if (piece.countBlocksWithStatus(BlockStatus.Stored) == piece.getBlockCount()) {
+				completedPieces.add(piece);
+			}
+		}
+
+		LOGGER.info("Restored {} blocks from {}, {} pieces are complete.", restoredBlocks, file, completedPieces.size());
+		return completedPieces;
+	}
+
+	/**
+	 * Records that the block has been written to the files.
+	 * @param piece The piece containing the block.
+	 * @param blockIndex The index of the block within the piece.
+	 * @throws IOException When the record could not be written.
+	 */
+	public synchronized void append(Piece piece, int blockIndex) throws IOException {
+		if (channel == null) {
+			throw new IOException(String.format("%s has been closed.", this));
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		record.putInt(piece.getIndex());
+		record.putInt(blockIndex);
+		record.flip();
+		while (record.hasRemaining()) {
+			channel.write(record);
+		}
+	}
+
+	/**
+	 * Rewrites the journal with only the blocks which are stored in the files and of which the piece has not been verified yet. Blocks which are still being
+	 * assembled in the piece cache are left out as they are not in the files yet.
+	 * @param fileSet The file set of the torrent.
+	 * @param pieceCache The cache in which pieces are assembled or <code>null</code> when blocks are written directly.
+	 * @throws IOException When the journal could not be written.
+	 */
+	public synchronized void compact(AbstractFileSet fileSet, PieceCache pieceCache) throws IOException {
+		int[] records = new int[16];
+		int length = 0;
+		for (int pieceIndex = 0; pieceIndex < fileSet.getPieceCount(); pieceIndex++) {
+			Piece piece = fileSet.getPiece(pieceIndex);
+			if (piece.isDone()) {
+				continue;
+			}
+
+			for (int blockIndex = 0; blockIndex < piece.getBlockCount(); blockIndex++) {
+				if (piece.getBlockStatus(blockIndex) != BlockStatus.Stored || (pieceCache != null && pieceCache.isCached(piece, blockIndex))) {
+					continue;
+				}
+
+				if (length + 2 > records.length) {
+					records = Arrays.copyOf(records, records.length * 2);
+				}
+				records[length++] = pieceIndex;
+				records[length++] = blockIndex;
+			}
+		}
+
+		rewrite(records, length);
+	}
+
+	private void rewrite(int[] records, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (length / 2) * RECORD_SIZE);
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.put(infoHash, 0, HASH_SIZE);
+		buffer.putInt(pieceCount);
+		for (int i = 0; i < length; i++) {
+			buffer.putInt(records[i]);
+		}
+
+		Path target = file.toPath();
+		Path parent = target.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temporary = Files.createTempFile(parent, file.getName(), ".tmp");
+		try {
+			Files.write(temporary, buffer.array());
+			close();
+			try {
+				Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+			channel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+		}
+	}
+
+	/**
+	 * Gets the file in which the journal is stored.
+	 * @return The file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ResumeJournal[file=%s]", file);
+	}
+}
@@ -4,20 +4,38 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.johnnei.javatorrent.TorrentClient;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBitfield;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageHave;
-import org.johnnei.javatorrent.disk.DiskJobCheckHash;
-import org.johnnei.javatorrent.disk.DiskJobWriteBlock;
+import org.johnnei.javatorrent.disk.AsyncDisk;
+import org.johnnei.javatorrent.disk.FileHandleCache;
 import org.johnnei.javatorrent.disk.IDiskJob;
+import org.johnnei.javatorrent.disk.IRecheckListener;
+import org.johnnei.javatorrent.disk.ITorrentStorage;
+import org.johnnei.javatorrent.disk.PieceCache;
+import org.johnnei.javatorrent.disk.ReadCache;
+import org.johnnei.javatorrent.disk.ReadCacheMetrics;
+import org.johnnei.javatorrent.disk.Recheck;
+import org.johnnei.javatorrent.disk.StorageMode;
 import org.johnnei.javatorrent.module.IModule;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
+import org.johnnei.javatorrent.network.bandwidth.BandwidthPriority;
+import org.johnnei.javatorrent.network.bandwidth.RateMeter;
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
 import org.johnnei.javatorrent.torrent.algos.pieceselector.FullPieceSelect;
 import org.johnnei.javatorrent.torrent.algos.pieceselector.IPieceSelector;
 import org.johnnei.javatorrent.torrent.files.BlockStatus;
+import org.johnnei.javatorrent.torrent.files.MappedRegionCache;
 import org.johnnei.javatorrent.torrent.files.Piece;
 import org.johnnei.javatorrent.torrent.peer.Peer;
 import org.johnnei.javatorrent.utils.Argument;
@@ -68,6 +86,63 @@ public class Torrent {
 	 */
 	private TorrentClient torrentClient;
 
+	/**
+	 * The bucket which limits the download rate of all peers of this torrent.
+	 */
+	private final TokenBucket downloadLimiter;
+
+	/**
+	 * The bucket which limits the upload rate of all peers of this torrent.
+	 */
+	private final TokenBucket uploadLimiter;
+
+	private BandwidthPriority bandwidthPriority;
+
+	/**
+	 * The meter which aggregates the download rates of all peers of this torrent.
+	 */
+	private final RateMeter downloadMeter;
+
+	/**
+	 * The meter which aggregates the upload rates of all peers of this torrent.
+	 */
+	private final RateMeter uploadMeter;
+
+	/**
+	 * The way in which the files of this torrent are accessed.
+	 */
+	private final StorageMode storageMode;
+
+	/**
+	 * The mapped windows of the files when the {@link #storageMode} is {@link StorageMode#MemoryMapped}.
+	 */
+	private final MappedRegionCache mappedRegions;
+
+	/**
+	 * The factory which creates the storage for the file sets of this torrent or <code>null</code> to store the data in the files.
+	 */
+	private final Function<AbstractFileSet, ITorrentStorage> storageFactory;
+
+	/**
+	 * The most recently started recheck.
+	 */
+	private volatile Recheck recheck;
+
+	/**
+	 * The journal of the blocks which have been written for the incomplete pieces or <code>null</code> when fast-resume is disabled.
+	 */
+	private volatile ResumeJournal journal;
+
+	/**
+	 * The metrics of the reads of this torrent which have been served by the read cache.
+	 */
+	private final ReadCacheMetrics readCacheMetrics;
+
+	/**
+	 * The disk on which the blocks of this torrent are stored and verified.
+	 */
+	private final AsyncDisk disk;
+
 	/**
 	 * Creates a new Torrent.
 	 *
@@ -82,6 +157,16 @@ public class Torrent {
 			displayName = builder.displayName;
 		}
 		torrentClient = builder.torrentClient;
+		downloadLimiter = new TokenBucket(torrentClient != null ? torrentClient.getDownloadLimiter() : null);
+		uploadLimiter = new TokenBucket(torrentClient != null ? torrentClient.getUploadLimiter() : null);
+		setBandwidthPriority(BandwidthPriority.Normal);
+		downloadMeter = new RateMeter(torrentClient != null ? torrentClient.getDownloadMeter() : null);
+		uploadMeter = new RateMeter(torrentClient != null ? torrentClient.getUploadMeter() : null);
+		disk = new AsyncDisk(this::addDiskJob);
+		storageMode = builder.storageMode;
+		mappedRegions = storageMode == StorageMode.MemoryMapped ? new MappedRegionCache() : null;
+		storageFactory = builder.storageFactory;
+		readCacheMetrics = new ReadCacheMetrics();
 		downloadedBytes = 0L;
 		peers = new LinkedList<>();
 		pieceSelector = new FullPieceSelect(this);
@@ -109,6 +194,8 @@ public class Torrent {
 		}
 
 		peer.getBitTorrentSocket().setPassedHandshake();
+		peer.getBitTorrentSocket().setRateLimiters(peer.getDownloadLimiter(), peer.getUploadLimiter());
+		peer.getBitTorrentSocket().setRateMeters(peer.getDownloadMeter(), peer.getUploadMeter());
 		for (IModule module : torrentClient.getModules()) {
 			module.onPostHandshake(peer);
 		}
@@ -117,6 +204,8 @@ public class Torrent {
 		synchronized (this) {
 			peers.add(peer);
 		}
+
+		torrentClient.registerPeer(peer);
 	}
 
 	/**
@@ -187,45 +276,195 @@ public class Torrent {
 	 * @param data The bytes to be stored
 	 */
 	public void onReceivedBlock(AbstractFileSet fileSet, int index, int offset, byte[] data) {
+		onReceivedBlock(fileSet, index, offset, BlockBuffer.wrap(data));
+	}
+
+	/**
+	 * Tells the torrent to save a block of data. The reference to the buffer is taken over and released once the block has been stored.
+	 *
+	 * @param fileSet The fileset for which the block of data has been received.
+	 * @param index The piece index
+	 * @param offset The offset within the piece
+	 * @param data The buffer containing the bytes to be stored
+	 */
+	public void onReceivedBlock(AbstractFileSet fileSet, int index, int offset, BlockBuffer data) {
 		int blockIndex = offset / fileSet.getBlockSize();
 
 		Piece piece = fileSet.getPiece(index);
-		if (piece.getBlockSize(blockIndex) != data.length) {
+		if (piece.getBlockSize(blockIndex) != data.getLength()) {
 			LOGGER.debug("Received incorrect sized block for piece {}, offset {}", index, offset);
+			data.release();
 			piece.setBlockStatus(blockIndex, BlockStatus.Needed);
 		} else {
-			addDiskJob(new DiskJobWriteBlock(piece, blockIndex, data, this::onStoreBlockComplete));
+			disk.write(piece, blockIndex, data, getPieceCache(), getCompletionExecutor()).whenComplete((ignored, failure) -> {
+				if (failure != null) {
+					onStoreBlockFailed(piece, blockIndex, failure);
+				} else {
+					onStoreBlockComplete(piece, blockIndex);
+				}
+			});
+		}
+	}
+
+	private void onStoreBlockFailed(Piece piece, int blockIndex, Throwable failure) {
+		LOGGER.warn("Failed to store block {} of {}, the block will be requested again.", blockIndex, piece, failure);
+		piece.setBlockStatus(blockIndex, BlockStatus.Needed);
+	}
+
+	private void onStoreBlockComplete(Piece piece, int blockIndex) {
+		boolean completedPiece;
+		synchronized (piece) {
+			// Completions of the same piece can be handled concurrently, only the one which stored the last block may trigger the verification.
+			piece.setBlockStatus(blockIndex, BlockStatus.Stored);
+			completedPiece = piece.countBlocksWithStatus(BlockStatus.Stored) == piece.getBlockCount();
+		}
+		appendJournal(piece, blockIndex);
+
+		if (!completedPiece) {
+			return;
 		}
+
+		disk.checkHash(piece, getPieceCache(), getCompletionExecutor()).whenComplete((matchingHash, failure) -> {
+			if (failure != null) {
+				// The stored data can't be trusted, download the piece again just like on a mismatching hash.
+				LOGGER.warn("Failed to verify {}, the piece will be downloaded again.", piece, failure);
+				onCheckPieceHashComplete(piece, false);
+			} else {
+				onCheckPieceHashComplete(piece, matchingHash);
+			}
+		});
 	}
 
-	private void onStoreBlockComplete(DiskJobWriteBlock storeBlock) {
-		Piece piece = storeBlock.getPiece();
-		piece.setBlockStatus(storeBlock.getBlockIndex(), BlockStatus.Stored);
+	/**
+	 * Gets the executor on which the results of the disk jobs of this torrent are handled, which keeps that work off the disk threads.
+	 * @return The executor of the torrent client or <code>null</code> to handle the results on the disk threads.
+	 */
+	private Executor getCompletionExecutor() {
+		return torrentClient != null ? torrentClient.getExecutorService() : null;
+	}
 
-		if (piece.countBlocksWithStatus(BlockStatus.Stored) != piece.getBlockCount()) {
+	private void appendJournal(Piece piece, int blockIndex) {
+		ResumeJournal currentJournal = journal;
+		PieceCache pieceCache = getPieceCache();
+		if (currentJournal == null || piece.getFileSet() != fileSet || (pieceCache != null && pieceCache.isCached(piece, blockIndex))) {
+			// Blocks which are assembled in the piece cache are recorded once they have been written, when the journal is compacted.
 			return;
 		}
 
-		addDiskJob(new DiskJobCheckHash(piece, this::onCheckPieceHashComplete));
+		try {
+			currentJournal.append(piece, blockIndex);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to record block {} of {} in the resume journal.", blockIndex, piece, e);
+		}
 	}
 
-	private void onCheckPieceHashComplete(DiskJobCheckHash checkJob) {
-		Piece piece = checkJob.getPiece();
-		if (!checkJob.isMatchingHash()) {
+	private void onCheckPieceHashComplete(Piece piece, boolean matchingHash) {
+		if (!matchingHash) {
 			LOGGER.debug("Piece hash mismatched");
 			piece.onHashMismatch();
 			return;
 		}
 
-		piece.getFileSet().setHavingPiece(piece.getIndex());
-		if (piece.getFileSet().equals(fileSet)) {
-			broadcastMessage(new MessageHave(piece.getIndex()));
-			downloadedBytes += piece.getSize();
+		// The verifications of pieces are completed concurrently on the executor, serialize the updates of the bitfield and the counters.
+		synchronized (this) {
+			piece.getFileSet().setHavingPiece(piece.getIndex());
+			if (piece.getFileSet().equals(fileSet)) {
+				broadcastMessage(new MessageHave(piece.getIndex()));
+				downloadedBytes += piece.getSize();
+			}
 		}
 
 		LOGGER.debug("Completed piece {}", piece.getIndex());
 	}
 
+	private PieceCache getPieceCache() {
+		return torrentClient != null ? torrentClient.getPieceCache() : null;
+	}
+
+	/**
+	 * Gets the disk on which the blocks of this torrent are read, stored and verified. The jobs are queued through {@link #addDiskJob(IDiskJob)}.
+	 * @return The asynchronous disk of this torrent.
+	 */
+	public AsyncDisk getDisk() {
+		return disk;
+	}
+
+	/**
+	 * Gets the cache through which the blocks requested by peers are read.
+	 * @return The read cache of the torrent client or <code>null</code> when blocks are read from the files directly.
+	 */
+	public ReadCache getReadCache() {
+		return torrentClient != null ? torrentClient.getReadCache() : null;
+	}
+
+	/**
+	 * Gets the hit rate and other metrics of the reads of this torrent which have been served by the {@link #getReadCache() read cache}.
+	 * @return The read cache metrics of this torrent.
+	 */
+	public ReadCacheMetrics getReadCacheMetrics() {
+		return readCacheMetrics;
+	}
+
+	/**
+	 * Gets the pool from which the block buffers of this torrent are allocated.
+	 * @return The block buffer pool of the torrent client.
+	 */
+	public BlockBufferPool getBlockBufferPool() {
+		return torrentClient.getBlockBufferPool();
+	}
+
+	/**
+	 * Gets the bucket which limits the download rate of this torrent. Its rate can be changed at any time with {@link TokenBucket#setRate(long)}.
+	 * @return The download limiter of this torrent.
+	 */
+	public TokenBucket getDownloadLimiter() {
+		return downloadLimiter;
+	}
+
+	/**
+	 * Gets the bucket which limits the upload rate of this torrent. Its rate can be changed at any time with {@link TokenBucket#setRate(long)}.
+	 * @return The upload limiter of this torrent.
+	 */
+	public TokenBucket getUploadLimiter() {
+		return uploadLimiter;
+	}
+
+	/**
+	 * Changes the priority by which this torrent shares the global bandwidth limits with the other torrents.
+	 * @param bandwidthPriority The new priority.
+	 */
+	public void setBandwidthPriority(BandwidthPriority bandwidthPriority) {
+		this.bandwidthPriority = Argument.requireNonNull(bandwidthPriority, "Bandwidth priority can not be null.");
+		downloadLimiter.setWeight(bandwidthPriority.getWeight());
+		uploadLimiter.setWeight(bandwidthPriority.getWeight());
+	}
+
+	/**
+	 * Gets the priority by which this torrent shares the global bandwidth limits with the other torrents.
+	 * @return The bandwidth priority.
+	 */
+	public BandwidthPriority getBandwidthPriority() {
+		return bandwidthPriority;
+	}
+
+	/**
+	 * Gets the meter which measures the download rate of all peers of this torrent combined. Unlike {@link #getDownloadRate()} this doesn't require
+	 * polling and doesn't lock the peer list.
+	 * @return The download meter of this torrent.
+	 */
+	public RateMeter getDownloadMeter() {
+		return downloadMeter;
+	}
+
+	/**
+	 * Gets the meter which measures the upload rate of all peers of this torrent combined. Unlike {@link #getUploadRate()} this doesn't require polling
+	 * and doesn't lock the peer list.
+	 * @return The upload meter of this torrent.
+	 */
+	public RateMeter getUploadMeter() {
+		return uploadMeter;
+	}
+
 	/**
 	 * Adds a task to the IOManager of this torrent
 	 *
@@ -242,25 +481,160 @@ public class Torrent {
 	}
 
 	/**
-	 * Calculates the current progress based on all available fileSet on the HDD
+	 * Calculates the current progress based on all available fileSet on the HDD. This blocks until all pieces have been verified.
+	 *
+	 * @see #startRecheck()
 	 */
 	public void checkProgress() {
+		startRecheck().getCompletion().join();
+	}
+
+	/**
+	 * Starts verifying the pieces which are not yet completed in the background. Each piece which matched its hash is announced to the peers immediately, so
+	 * the torrent can serve those pieces while the recheck continues.
+	 *
+	 * @return The progress of the recheck.
+	 */
+	public Recheck startRecheck() {
+		return startRecheck((recheck, piece, matchingHash) -> {});
+	}
+
+	/**
+	 * Starts verifying the pieces which are not yet completed in the background. Each piece which matched its hash is announced to the peers immediately, so
+	 * the torrent can serve those pieces while the recheck continues.
+	 *
+	 * @param listener The listener which will be informed of the progress after the torrent has processed the event.
+	 * @return The progress of the recheck.
+	 */
+	public Recheck startRecheck(IRecheckListener listener) {
 		LOGGER.info("Checking progress...");
-		fileSet.getNeededPieces()
-				.filter(p -> {
-					try {
-						return p.checkHash();
-					} catch (IOException e) {
-						LOGGER.warn("Failed hash check for piece {}.", p.getIndex(), e);
-						return false;
-					}
-				}).
-				forEach(p -> {
-						fileSet.setHavingPiece(p.getIndex());
-						broadcastMessage(new MessageHave(p.getIndex()));
-					}
-				);
-		LOGGER.info("Checking progress done");
+		List<Piece> pieces = new ArrayList<>(restoreResumeData().orElseGet(() -> fileSet.getNeededPieces().collect(Collectors.toList())));
+		restoreJournal().stream().filter(piece -> !pieces.contains(piece)).forEach(pieces::add);
+		Recheck startedRecheck = torrentClient.getRecheckEngine().recheck(pieces, new IRecheckListener() {
+			@Override
+			public void onPieceChecked(Recheck recheck, Piece piece, boolean matchingHash) {
+				onRecheckedPiece(piece, matchingHash);
+				listener.onPieceChecked(recheck, piece, matchingHash);
+			}
+
+			@Override
+			public void onRecheckCompleted(Recheck recheck) {
+				LOGGER.info("Checking progress done: {}", recheck);
+				listener.onRecheckCompleted(recheck);
+			}
+		});
+		recheck = startedRecheck;
+		return startedRecheck;
+	}
+
+	private void onRecheckedPiece(Piece piece, boolean matchingHash) {
+		if (!matchingHash) {
+			if (piece.countBlocksWithStatus(BlockStatus.Stored) == piece.getBlockCount()) {
+				// The journal restored all blocks but the data didn't match, drop blocks just like a hash mismatch of a downloaded piece.
+				piece.onHashMismatch();
+			}
+			return;
+		}
+
+		// Pieces are verified concurrently, serialize the updates of the bitfield.
+		synchronized (this) {
+			piece.getFileSet().setHavingPiece(piece.getIndex());
+			broadcastMessage(new MessageHave(piece.getIndex()));
+		}
+	}
+
+	private Optional<List<Piece>> restoreResumeData() {
+		File resumeFile = getResumeFile();
+		if (resumeFile == null) {
+			return Optional.empty();
+		}
+
+		Optional<FastResume> fastResume = FastResume.read(resumeFile).filter(resume -> resume.isApplicable(metadata.getHash(), fileSet));
+		if (!fastResume.isPresent()) {
+			return Optional.empty();
+		}
+
+		List<Piece> changedPieces = fastResume.get().restore(fileSet, piece -> onRecheckedPiece(piece, true));
+		LOGGER.info("Restored {}, {} pieces in changed files will be verified.", fastResume.get(), changedPieces.size());
+		return Optional.of(changedPieces);
+	}
+
+	private List<Piece> restoreJournal() {
+		File resumeFile = getResumeFile();
+		if (resumeFile == null) {
+			return Collections.emptyList();
+		}
+
+		closeJournal();
+		try {
+			ResumeJournal openedJournal = ResumeJournal.open(new File(resumeFile.getParentFile(), metadata.getHashString() + ".journal"), metadata.getHash(),
+					fileSet.getPieceCount());
+			List<Piece> completedPieces = openedJournal.restore(fileSet);
+			journal = openedJournal;
+			return completedPieces;
+		} catch (IOException e) {
+			LOGGER.warn("Failed to open the resume journal, partially downloaded pieces will not be resumed.", e);
+			return Collections.emptyList();
+		}
+	}
+
+	private void closeJournal() {
+		ResumeJournal currentJournal = journal;
+		if (currentJournal == null) {
+			return;
+		}
+
+		journal = null;
+		try {
+			currentJournal.close();
+		} catch (IOException e) {
+			LOGGER.debug("Failed to close {}.", currentJournal, e);
+		}
+	}
+
+	/**
+	 * Writes the fast-resume record of this torrent so that a restart doesn't have to verify all pieces and compacts the journal of the partially downloaded
+	 * pieces. The record is not written while the torrent doesn't have its files yet or is being rechecked.
+	 *
+	 * @throws IOException When the record could not be written.
+	 * @see TorrentClient.Builder#setResumeDirectory(File)
+	 */
+	public void saveResumeData() throws IOException {
+		File resumeFile = getResumeFile();
+		if (resumeFile == null || fileSet == null || isRechecking()) {
+			return;
+		}
+
+		FastResume.capture(metadata.getHash(), fileSet).write(resumeFile);
+
+		ResumeJournal currentJournal = journal;
+		if (currentJournal != null) {
+			currentJournal.compact(fileSet, getPieceCache());
+		}
+	}
+
+	/**
+	 * Gets the file in which the fast-resume record of this torrent is stored.
+	 *
+	 * @return The file or <code>null</code> when fast-resume is disabled.
+	 */
+	public File getResumeFile() {
+		File resumeDirectory = torrentClient != null ? torrentClient.getResumeDirectory() : null;
+		if (resumeDirectory == null) {
+			return null;
+		}
+
+		return new File(resumeDirectory, metadata.getHashString() + ".resume");
+	}
+
+	/**
+	 * Tests if the pieces of this torrent are being verified by {@link #startRecheck()}.
+	 *
+	 * @return <code>true</code> when a recheck is in progress.
+	 */
+	public boolean isRechecking() {
+		Recheck currentRecheck = recheck;
+		return currentRecheck != null && !currentRecheck.isDone();
 	}
 
 	/**
@@ -273,14 +647,35 @@ public class Torrent {
 	}
 
 	/**
-	 * Sets the current set of fileSet this torrent is downloading.
+	 * Sets the current set of fileSet this torrent is downloading. When the torrent has been built with a storage factory the data will be stored in the
+	 * storage created by it, otherwise the data is stored in the files of which the handles are managed by the file handle cache of the client. When the
+	 * torrent uses {@link StorageMode#MemoryMapped} the files will be accessed through the mapped windows of this torrent.
 	 *
 	 * @param files The file set.
 	 */
 	public void setFileSet(TorrentFileSet files) {
+		if (files != null) {
+			if (storageFactory != null) {
+				files.setStorage(Argument.requireNonNull(storageFactory.apply(files), "Storage factory must create a storage."));
+			} else {
+				FileHandleCache handleCache = torrentClient != null ? torrentClient.getFileHandleCache() : null;
+				files.getFiles().forEach(file -> {
+					file.setHandleCache(handleCache);
+					file.setMappedRegions(mappedRegions);
+				});
+			}
+		}
 		this.fileSet = files;
 	}
 
+	/**
+	 * Gets the way in which the files of this torrent are accessed.
+	 * @return The storage mode.
+	 */
+	public StorageMode getStorageMode() {
+		return storageMode;
+	}
+
 	public Metadata getMetadata() {
 		return metadata;
 	}
@@ -374,7 +769,9 @@ public class Torrent {
 	 * @return The amount of bytes downloaded this session
 	 */
 	public long getDownloadedBytes() {
-		return downloadedBytes;
+		synchronized (this) {
+			return downloadedBytes;
+		}
 	}
 
 	/**
@@ -433,6 +830,10 @@ public class Torrent {
 
 		private String displayName;
 
+		private StorageMode storageMode = StorageMode.Channel;
+
+		private Function<AbstractFileSet, ITorrentStorage> storageFactory;
+
 		/**
 		 * Sets the torrent client on which this torrent will be registered.
 		 * @param torrentClient The client.
@@ -463,6 +864,28 @@ public class Torrent {
 			return this;
 		}
 
+		/**
+		 * Sets the way in which the files of the torrent are accessed. Defaults to {@link StorageMode#Channel}.
+		 * @param storageMode The storage mode.
+		 * @return The adjusted builder.
+		 */
+		public Builder setStorageMode(StorageMode storageMode) {
+			this.storageMode = Argument.requireNonNull(storageMode, "Storage mode can not be null.");
+			return this;
+		}
+
+		/**
+		 * Sets the factory which creates the storage in which the data of the torrent is stored, for example
+		 * {@link org.johnnei.javatorrent.disk.MemoryTorrentStorage#MemoryTorrentStorage(AbstractFileSet) MemoryTorrentStorage::new}. Defaults to storing
+		 * the data in the files, which are accessed according to the {@link #setStorageMode(StorageMode) storage mode}.
+		 * @param storageFactory The factory which creates the storage for a file set.
+		 * @return The adjusted builder.
+		 */
+		public Builder setStorage(Function<AbstractFileSet, ITorrentStorage> storageFactory) {
+			this.storageFactory = Argument.requireNonNull(storageFactory, "Storage factory can not be null.");
+			return this;
+		}
+
 		/**
 		 * @return <code>true</code> if the hash of the metadata is available.
 		 */
@@ -13,7 +13,10 @@ import org.johnnei.javatorrent.utils.MathUtils;
 
 public class TorrentFileSet extends AbstractFileSet {
 
-	private static final int BLOCK_SIZE = 1 << 14;
+	/**
+	 * The size of the blocks in which the pieces are transferred.
+	 */
+	public static final int BLOCK_SIZE = 1 << 14;
 
 	private final TorrentFileSetRequestFactory requestFactory;
 
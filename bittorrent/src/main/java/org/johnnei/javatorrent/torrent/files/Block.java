@@ -13,9 +13,9 @@ public class Block {
 	private final int size;
 
 	/**
-	 * The status of this block
+	 * The status of this block. Updated under the lock of the owning {@link Piece}, but also read by holders of the block without it.
 	 */
-	private BlockStatus status;
+	private volatile BlockStatus status;
 
 	/**
 	 * Creates a new block which is part of a {@link Piece}.
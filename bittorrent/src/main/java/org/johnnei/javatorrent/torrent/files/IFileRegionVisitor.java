@@ -0,0 +1,25 @@
+package org.johnnei.javatorrent.torrent.files;
+
+import java.io.IOException;
+
+import org.johnnei.javatorrent.torrent.FileInfo;
+
+/**
+ * A visitor which receives the sections of the files which make up a section of a {@link Piece}.
+ *
+ * @see Piece#visitFileRegions(int, int, IFileRegionVisitor)
+ */
+@FunctionalInterface
+public interface IFileRegionVisitor {
+
+	/**
+	 * Visits a single section of a file.
+	 * @param file The file which contains the section.
+	 * @param offsetInFile The offset of the section within the file.
+	 * @param offset The offset of the section relative to the start of the visited section of the piece.
+	 * @param length The amount of bytes in the section.
+	 * @throws IOException When the processing of the section fails.
+	 */
+	void visit(FileInfo file, long offsetInFile, int offset, int length) throws IOException;
+
+}
@@ -0,0 +1,336 @@
+package org.johnnei.javatorrent.torrent.files;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.utils.Argument;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps the files of a torrent into memory in fixed size windows and keeps the most recently used windows mapped.
+ *
+ * Windows are at most {@link #DEFAULT_WINDOW_SIZE} bytes by default, which keeps each mapping well below the 2 GiB limit of a {@link MappedByteBuffer} and
+ * allows files of any size to be mapped. Windows are always mapped read/write, mapping a window beyond the current end of the file therefore grows the file
+ * up to the end of the window (but never beyond the size of the file in the torrent).
+ *
+ * When more than the maximum amount of windows are mapped the least recently used window is evicted. An evicted window is unmapped as soon as the last
+ * read or write which is using it has completed. The JDK doesn't offer an API to unmap a buffer, so the cleaner of the buffer is invoked when the runtime
+ * allows it. Otherwise the mapping is released by the garbage collector.
+ */
+public class MappedRegionCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedRegionCache.class);
+
+	/**
+	 * The default size of a mapped window.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+	/**
+	 * The default maximum amount of windows which are mapped at the same time.
+	 */
+	public static final int DEFAULT_MAX_WINDOWS = 64;
+
+	private static final Unmapper UNMAPPER = Unmapper.create();
+
+	private final int windowSize;
+
+	private final int maxWindows;
+
+	/**
+	 * The mapped windows in least recently used order. Guarded by <code>this</code>.
+	 */
+	private final LinkedHashMap<WindowKey, Window> windows;
+
+	/**
+	 * Creates a new cache with the default window size and limit.
+	 */
+	public MappedRegionCache() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_MAX_WINDOWS);
+	}
+
+	/**
+	 * Creates a new cache.
+	 * @param windowSize The size in bytes of each mapped window.
+	 * @param maxWindows The maximum amount of windows which are mapped at the same time.
+	 */
+	public MappedRegionCache(int windowSize, int maxWindows) {
+		Argument.requireWithinBounds(windowSize, 1, Integer.MAX_VALUE, "Window size must be at least 1 byte.");
+		Argument.requireWithinBounds(maxWindows, 1, Integer.MAX_VALUE, "At least one window must be allowed to be mapped.");
+		this.windowSize = windowSize;
+		this.maxWindows = maxWindows;
+		windows = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Reads bytes starting at the given position in the file until the buffer is full.
+	 * @param file The file to read from.
+	 * @param buffer The buffer to read into.
+	 * @param position The position in the file to start reading at.
+	 * @throws IOException When the file can not be mapped or the buffer doesn't fit in the file.
+	 */
+	public void read(FileInfo file, ByteBuffer buffer, long position) throws IOException {
+		long readPosition = position;
+		while (buffer.hasRemaining()) {
+			Window window = acquire(file, readPosition);
+			try {
+				ByteBuffer view = window.view(readPosition, buffer.remaining());
+				readPosition += view.remaining();
+				buffer.put(view);
+			} finally {
+				window.release();
+			}
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer starting at the given position in the file.
+	 * @param file The file to write to.
+	 * @param buffer The buffer to write.
+	 * @param position The position in the file to start writing at.
+	 * @throws IOException When the file can not be mapped or the buffer doesn't fit in the file.
+	 */
+	public void write(FileInfo file, ByteBuffer buffer, long position) throws IOException {
+		long writePosition = position;
+		while (buffer.hasRemaining()) {
+			Window window = acquire(file, writePosition);
+			try {
+				ByteBuffer view = window.view(writePosition, buffer.remaining());
+				int length = view.remaining();
+				ByteBuffer source = buffer.duplicate();
+				source.limit(source.position() + length);
+				view.put(source);
+				buffer.position(buffer.position() + length);
+				writePosition += length;
+			} finally {
+				window.release();
+			}
+		}
+	}
+
+	private Window acquire(FileInfo file, long position) throws IOException {
+		if (position < 0 || position >= file.getSize()) {
+			throw new EOFException(String.format("Position %d is outside of %s.", position, file.getFileName()));
+		}
+
+		WindowKey key = new WindowKey(file, position / windowSize);
+		synchronized (this) {
+			Window window = windows.get(key);
+			if (window == null) {
+				window = map(key);
+				windows.put(key, window);
+				evict();
+			}
+
+			window.retain();
+			return window;
+		}
+	}
+
+	private Window map(WindowKey key) throws IOException {
+		long start = key.index * windowSize;
+		long size = Math.min(windowSize, key.file.getSize() - start);
+		// The mapping stays valid when the handle is closed afterwards.
+		try {
+			MappedByteBuffer buffer = key.file.acquireChannel().map(FileChannel.MapMode.READ_WRITE, start, size);
+			return new Window(buffer, start);
+		} finally {
+			key.file.releaseChannel();
+		}
+	}
+
+	private void evict() {
+		Iterator<Window> iterator = windows.values().iterator();
+		while (windows.size() > maxWindows) {
+			Window window = iterator.next();
+			iterator.remove();
+			window.release();
+		}
+	}
+
+	/**
+	 * Flushes all changes in the mapped windows of the file to the harddrive.
+	 * @param file The file to flush.
+	 */
+	public void force(FileInfo file) {
+		for (Window window : getWindows(file)) {
+			try {
+				window.buffer.force();
+			} finally {
+				window.release();
+			}
+		}
+	}
+
+	/**
+	 * Unmaps all windows. Reads and writes which are in progress complete before their window is unmapped.
+	 */
+	public void clear() {
+		List<Window> evicted;
+		synchronized (this) {
+			evicted = new ArrayList<>(windows.values());
+			windows.clear();
+		}
+
+		evicted.forEach(Window::release);
+	}
+
+	private synchronized List<Window> getWindows(FileInfo file) {
+		List<Window> fileWindows = new ArrayList<>();
+		for (Map.Entry<WindowKey, Window> entry : windows.entrySet()) {
+			if (entry.getKey().file.equals(file)) {
+				entry.getValue().retain();
+				fileWindows.add(entry.getValue());
+			}
+		}
+		return fileWindows;
+	}
+
+	/**
+	 * Gets the amount of windows which are currently mapped by this cache.
+	 * @return The amount of mapped windows.
+	 */
+	public synchronized int getMappedWindowCount() {
+		return windows.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MappedRegionCache[windowSize=%d, maxWindows=%d]", windowSize, maxWindows);
+	}
+
+	private static final class WindowKey {
+
+		private final FileInfo file;
+
+		private final long index;
+
+		WindowKey(FileInfo file, long index) {
+			this.file = file;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof WindowKey)) {
+				return false;
+			}
+			WindowKey other = (WindowKey) o;
+			return index == other.index && file.equals(other.file);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(file, index);
+		}
+	}
+
+	private static final class Window {
+
+		private final MappedByteBuffer buffer;
+
+		private final long start;
+
+		/**
+		 * The amount of users of the window, the cache counts as user as long as the window is not evicted.
+		 */
+		private final AtomicInteger references;
+
+		Window(MappedByteBuffer buffer, long start) {
+			this.buffer = buffer;
+			this.start = start;
+			references = new AtomicInteger(1);
+		}
+
+		ByteBuffer view(long position, int maxLength) {
+			ByteBuffer view = buffer.duplicate();
+			int offset = (int) (position - start);
+			view.position(offset);
+			view.limit(offset + Math.min(maxLength, view.capacity() - offset));
+			return view;
+		}
+
+		void retain() {
+			references.incrementAndGet();
+		}
+
+		void release() {
+			if (references.decrementAndGet() == 0) {
+				UNMAPPER.unmap(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Invokes the cleaner of a mapped buffer to unmap it before the buffer is garbage collected.
+	 */
+	private static final class Unmapper {
+
+		private final Object target;
+
+		private final Method method;
+
+		private Unmapper(Object target, Method method) {
+			this.target = target;
+			this.method = method;
+		}
+
+		static Unmapper create() {
+			try {
+				// Java 9 and later
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Field field = unsafeClass.getDeclaredField("theUnsafe");
+				field.setAccessible(true);
+				return new Unmapper(field.get(null), unsafeClass.getMethod("invokeCleaner", ByteBuffer.class));
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOGGER.trace("Unsafe.invokeCleaner is not available.", e);
+			}
+
+			try {
+				// Java 8
+				Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+				return new Unmapper(null, cleaner);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOGGER.debug("Mapped buffers can not be unmapped explicitly, they will be unmapped once they are garbage collected.", e);
+				return new Unmapper(null, null);
+			}
+		}
+
+		void unmap(MappedByteBuffer buffer) {
+			if (method == null) {
+				return;
+			}
+
+			try {
+				if (target != null) {
+					method.invoke(target, buffer);
+				} else {
+					Object cleaner = method.invoke(buffer);
+					if (cleaner != null) {
+						cleaner.getClass().getMethod("clean").invoke(cleaner);
+					}
+				}
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOGGER.debug("Failed to unmap buffer, it will be unmapped once it is garbage collected.", e);
+			}
+		}
+	}
+}
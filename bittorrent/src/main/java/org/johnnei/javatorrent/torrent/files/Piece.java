@@ -1,7 +1,8 @@
 package org.johnnei.javatorrent.torrent.files;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -9,13 +10,18 @@ import java.util.Objects;
 import java.util.Optional;
 
 import org.johnnei.javatorrent.bittorrent.encoding.SHA1;
+import org.johnnei.javatorrent.disk.FileTorrentStorage;
+import org.johnnei.javatorrent.disk.ITorrentStorage;
+import org.johnnei.javatorrent.network.BlockBuffer;
 import org.johnnei.javatorrent.torrent.AbstractFileSet;
-import org.johnnei.javatorrent.torrent.FileInfo;
 import org.johnnei.javatorrent.utils.MathUtils;
 import org.johnnei.javatorrent.utils.StringUtils;
 
 /**
  * Represents a piece within a {@link AbstractFileSet}.
+ *
+ * The status of the blocks is updated by the peer, disk and verification threads. All access to it is guarded by the piece itself, so callers which need
+ * several updates to be atomic (ex. storing a block and testing if it completed the piece) can synchronize on the piece.
  */
 public class Piece {
 
@@ -30,16 +36,26 @@ public class Piece {
 	 */
 	private int index;
 	/**
-	 * All the blocks in this piece
+	 * All the blocks in this piece. The status of the blocks is guarded by <code>this</code>.
 	 */
 	private List<Block> blocks;
 	/**
-	 * The next piece which will be dropped on hash fail
+	 * The next piece which will be dropped on hash fail. Guarded by <code>this</code>.
 	 */
 	private int hashFailCheck;
 
 	private byte[] expectedHash;
 
+	/**
+	 * The digest of the blocks which have been stored in order from the start of the piece. Guarded by <code>this</code>.
+	 */
+	private MessageDigest digest;
+
+	/**
+	 * The amount of bytes from the start of the piece which have been fed to the {@link #digest}. Guarded by <code>this</code>.
+	 */
+	private int hashedBytes;
+
 	/**
 	 * Creates a new piece.
 	 * @param files The {@link AbstractFileSet} which owns this piece.
@@ -66,7 +82,7 @@ public class Piece {
 	/**
 	 * Drops ceil(10%) of the blocks in order to maintain speed and still try to *not* redownload the entire piece
 	 */
-	public void onHashMismatch() {
+	public synchronized void onHashMismatch() {
 		int tenPercent = MathUtils.ceilDivision(blocks.size(), 10);
 		for (int i = 0; i < tenPercent; i++) {
 			blocks.get(hashFailCheck++).setStatus(BlockStatus.Needed);
@@ -86,82 +102,122 @@ public class Piece {
 	 */
 	public byte[] loadPiece(int offset, int length) throws IOException {
 		byte[] pieceData = new byte[length];
+		loadPiece(offset, length, pieceData);
+		return pieceData;
+	}
 
-		int readBytes = 0;
-		while (readBytes < length) {
-			// Offset within the piece
-			int alreadyReadOffset = offset + readBytes;
-
-			// Find file for the given offset
-			FileInfo outputFile = files.getFileForBytes(index, alreadyReadOffset / files.getBlockSize(), alreadyReadOffset % files.getBlockSize());
-
-			// Calculate offset as if the torrent was one file
-			long pieceIndexOffset = index * files.getPieceSize();
-			long totalOffset = pieceIndexOffset + alreadyReadOffset;
+	/**
+	 * Loads {@link BlockBuffer#getLength()} bytes from the file into the given buffer.
+	 *
+	 * @param offset The offset in the piece
+	 * @param buffer The buffer to read the bytes into.
+	 * @throws IOException When the underlying IO causes an error.
+	 */
+	public void loadPiece(int offset, BlockBuffer buffer) throws IOException {
+		loadPiece(offset, buffer.getLength(), buffer.getArray());
+	}
 
-			// Calculate the offset within the file
-			long offsetInFile = totalOffset - outputFile.getFirstByteOffset();
+	private void loadPiece(int offset, int length, byte[] pieceData) throws IOException {
+		files.getStorage().read(getStartOffset() + offset, ByteBuffer.wrap(pieceData, 0, length));
+	}
 
-			// Calculate how many bytes we want/can read from the file
-			int bytesToRead = Math.min(length - readBytes, (int) (outputFile.getSize() - offsetInFile));
+	/**
+	 * Splits the given section of this piece into the sections of the files which contain it and passes them to the visitor in order.
+	 *
+	 * @param offset The offset in the piece
+	 * @param length The amount of bytes in the section
+	 * @param visitor The visitor to pass each file section to.
+	 * @throws IOException When the section can not be mapped onto the files or the visitor fails.
+	 * @see #isStoredInFiles()
+	 */
+	public void visitFileRegions(int offset, int length, IFileRegionVisitor visitor) throws IOException {
+		FileTorrentStorage.visitFileRegions(files, getStartOffset() + offset, length, visitor);
+	}
 
-			// Check if we don't read outside the file
-			if (offsetInFile < 0) {
-				// TODO Figure out why this exception can be thrown in the first place.
-				throw new IOException("Cannot seek to position: " + offsetInFile);
-			}
+	/**
+	 * Tests if the data of this piece is stored in the files of the {@link AbstractFileSet}, only then the file regions of the piece contain its data.
+	 *
+	 * @return <code>true</code> when the storage of the file set is backed by the files.
+	 */
+	public boolean isStoredInFiles() {
+		return files.getStorage().isFileBacked();
+	}
 
-			// Read the actual files
-			synchronized (outputFile.fileLock) {
-				RandomAccessFile file = outputFile.getFileAccess();
-				file.seek(offsetInFile);
-				file.readFully(pieceData, readBytes, bytesToRead);
-				readBytes += bytesToRead;
-			}
-		}
-		return pieceData;
+	/**
+	 * Gets the offset of the first byte of this piece as if the torrent was one file.
+	 */
+	private long getStartOffset() {
+		return (long) index * files.getPieceSize();
 	}
 
 	/**
-	 * Checks if the received bytes hash matches with the hash which was given in the metadata
+	 * Checks if the received bytes hash matches with the hash which was given in the metadata. The blocks which have been stored in order from the start of
+	 * the piece have already been hashed while they were stored, only the remainder of the piece is read back from the storage.
 	 *
 	 * @return hashMatched ? true : false
 	 */
 	public boolean checkHash() throws IOException {
-		final int pieceSize = getSize();
-
-		// Test if the piece is completely available on disk.
-		int remainingBytes = pieceSize;
-		int alreadyReadOffset = 0;
-		while (remainingBytes > 0) {
-			FileInfo file = files.getFileForBytes(index, alreadyReadOffset / files.getBlockSize(), alreadyReadOffset % files.getBlockSize());
+		return checkHashWithBuffer(null);
+	}
 
-			long pieceIndexOffset = index * files.getPieceSize();
-			long totalOffset = pieceIndexOffset + alreadyReadOffset;
+	/**
+	 * Checks if the received bytes hash matches with the hash which was given in the metadata. The part of the piece which has not been hashed yet is
+	 * streamed from the storage through the given buffer, which allows a buffer to be reused for many pieces.
+	 *
+	 * @param buffer The buffer to read the storage into or <code>null</code> to let the storage allocate a buffer when needed.
+	 * @return <code>true</code> when the hash matched, otherwise <code>false</code>.
+	 * @throws IOException When the storage could not be read.
+	 * @see #checkHash()
+	 */
+	public boolean checkHashWithBuffer(byte[] buffer) throws IOException {
+		final int pieceSize = getSize();
 
-			// Calculate the offset within the file
-			long offsetInFile = totalOffset - file.getFirstByteOffset();
-			long fileSize;
-			synchronized (file.fileLock) {
-				fileSize = file.getFileAccess().length();
-			}
+		// Test if the piece is completely available in the storage.
+		ITorrentStorage storage = files.getStorage();
+		long pieceStart = getStartOffset();
+		if (!storage.isAvailable(pieceStart, pieceSize)) {
+			return false;
+		}
 
-			// Subtract the available bytes.
-			long availableBytes = fileSize - offsetInFile;
-			if (availableBytes <= 0) {
-				// Not enough bytes are available to read this entire piece.
-				return false;
-			}
+		// Verify the hash, continuing on the digest of the blocks which have been stored in order.
+		MessageDigest pieceDigest;
+		int offset;
+		synchronized (this) {
+			pieceDigest = digest != null ? digest : SHA1.acquireDigest();
+			offset = hashedBytes;
+			digest = null;
+			hashedBytes = 0;
+		}
 
-			remainingBytes -= availableBytes;
-			alreadyReadOffset += availableBytes;
+		try {
+			storage.hash(pieceStart + offset, pieceSize - offset, pieceDigest, buffer);
+			return Arrays.equals(expectedHash, pieceDigest.digest());
+		} finally {
+			SHA1.releaseDigest(pieceDigest);
 		}
+	}
 
-		// Verify the hash.
-		byte[] pieceData = loadPiece(0, pieceSize);
+	/**
+	 * Checks if the hash of the given data matches with the hash which was given in the metadata. This allows pieces which have been assembled in memory
+	 * to be verified before they are written.
+	 *
+	 * @param pieceData The data of the entire piece.
+	 * @return <code>true</code> when the hash matched, otherwise <code>false</code>.
+	 */
+	public boolean checkHash(byte[] pieceData) {
 		return Arrays.equals(expectedHash, SHA1.hash(pieceData));
 	}
 
+	/**
+	 * Writes the block into the correct file(s)
+	 *
+	 * @param blockIndex The index of the block to write
+	 * @param blockData The buffer containing the data of the block
+	 */
+	public void storeBlock(int blockIndex, BlockBuffer blockData) throws IOException {
+		storeBlock(blockIndex, blockData.getArray());
+	}
+
 	/**
 	 * Writes the block into the correct file(s)
 	 *
@@ -170,38 +226,77 @@ public class Piece {
 	 */
 	public void storeBlock(int blockIndex, byte[] blockData) throws IOException {
 		Block block = blocks.get(blockIndex);
-		int remainingBytesToWrite = block.getSize();
-		// Write Block
-		while (remainingBytesToWrite > 0) {
-			// The offset within the block itself
-			int dataOffset = block.getSize() - remainingBytesToWrite;
-			// Retrieve the file to which we need to write
-			FileInfo outputFile = files.getFileForBytes(index, blockIndex, dataOffset);
-
-			// Calculate the offset in bytes as if the torrent was one file
-			final long pieceOffset = index * files.getPieceSize();
-			final long blockOffset = (long) blockIndex * files.getBlockSize();
-			final long totalOffset = pieceOffset + blockOffset + dataOffset;
-
-			// Calculate the offset within the file
-			long offsetInFile = totalOffset - outputFile.getFirstByteOffset();
-
-			// Determine how many bytes still belong in this file
-			int bytesToWrite = Math.min(remainingBytesToWrite, (int) (outputFile.getSize() - offsetInFile));
-
-			// Check if the calculated offset is within the file
-			if (offsetInFile < 0) {
-				throw new IOException("Cannot seek to position: " + offsetInFile);
-			}
+		int offset = blockIndex * files.getBlockSize();
+		storeSection(offset, ByteBuffer.wrap(blockData, 0, block.getSize()));
+		updateDigest(offset, blockData, block.getSize());
+	}
 
-			// Write the actual bytes
-			synchronized (outputFile.fileLock) {
-				RandomAccessFile file = outputFile.getFileAccess();
-				file.seek(offsetInFile);
-				file.write(blockData, dataOffset, bytesToWrite);
-				remainingBytesToWrite -= bytesToWrite;
-			}
+	/**
+	 * Writes consecutive blocks as one contiguous section of this piece.
+	 *
+	 * @param firstBlockIndex The index of the first block to write
+	 * @param blockData The buffers containing the data of the blocks, in order
+	 * @throws IOException When the section can not be mapped onto the files or the write fails.
+	 * @see #storeSection(int, ByteBuffer...)
+	 */
+	public void storeBlocks(int firstBlockIndex, BlockBuffer... blockData) throws IOException {
+		ByteBuffer[] buffers = new ByteBuffer[blockData.length];
+		for (int i = 0; i < blockData.length; i++) {
+			buffers[i] = ByteBuffer.wrap(blockData[i].getArray(), 0, blocks.get(firstBlockIndex + i).getSize());
+		}
+
+		int offset = firstBlockIndex * files.getBlockSize();
+		storeSection(offset, buffers);
+
+		for (int i = 0; i < blockData.length; i++) {
+			updateDigest(offset, blockData[i].getArray(), blocks.get(firstBlockIndex + i).getSize());
+			offset += blocks.get(firstBlockIndex + i).getSize();
+		}
+	}
+
+	/**
+	 * Feeds the stored block to the digest when it directly follows the already hashed blocks. Blocks which are stored out of order will be read back by
+	 * {@link #checkHash()}.
+	 */
+	private synchronized void updateDigest(int offset, byte[] blockData, int length) {
+		if (offset < hashedBytes) {
+			// A hashed block has been overwritten, the digest no longer matches the stored data.
+			SHA1.releaseDigest(digest);
+			digest = null;
+			hashedBytes = 0;
 		}
+
+		if (offset != hashedBytes) {
+			return;
+		}
+
+		if (digest == null) {
+			digest = SHA1.acquireDigest();
+		}
+
+		digest.update(blockData, 0, length);
+		hashedBytes += length;
+	}
+
+	/**
+	 * Gets the amount of bytes from the start of the piece which have been hashed while they were stored.
+	 *
+	 * @return The amount of hashed bytes.
+	 */
+	synchronized int getHashedBytes() {
+		return hashedBytes;
+	}
+
+	/**
+	 * Writes the buffers as one contiguous section of this piece, the section may span multiple files. The section is handed to the storage of the
+	 * {@link AbstractFileSet} as a single write, so sections of different pieces can be stored concurrently. This allows multiple adjacent blocks to be stored in a single call.
+	 *
+	 * @param offset The offset in the piece at which the section starts.
+	 * @param buffers The buffers of which the remaining bytes form the section, in order. Their positions are advanced by the written bytes.
+	 * @throws IOException When the section can not be mapped onto the files or the write fails.
+	 */
+	public void storeSection(int offset, ByteBuffer... buffers) throws IOException {
+		files.getStorage().write(getStartOffset() + offset, buffers);
 	}
 
 	/**
@@ -209,7 +304,7 @@ public class Piece {
 	 *
 	 * @return The remaining amount of bytes to finish this piece
 	 */
-	public long countRemainingBytes() {
+	public synchronized long countRemainingBytes() {
 		return blocks.stream().filter(b -> b.getStatus() != BlockStatus.Verified).mapToLong(Block::getSize).sum();
 	}
 
@@ -219,7 +314,7 @@ public class Piece {
 	 * @param blockIndex The index of the block.
 	 * @param blockStatus The new status of the block.
 	 */
-	public void setBlockStatus(int blockIndex, BlockStatus blockStatus) {
+	public synchronized void setBlockStatus(int blockIndex, BlockStatus blockStatus) {
 		if (blockIndex < 0 || blockIndex >= blocks.size()) {
 			throw new IllegalArgumentException(String.format(ERR_BLOCK_IS_NOT_WITHIN_PIECE, blockIndex, blocks.size(), this));
 		}
@@ -233,7 +328,7 @@ public class Piece {
 	 * @param blockIndex The index of the block
 	 * @return The status of the given block.
 	 */
-	public BlockStatus getBlockStatus(int blockIndex) {
+	public synchronized BlockStatus getBlockStatus(int blockIndex) {
 		if (blockIndex < 0 || blockIndex >= blocks.size()) {
 			throw new IllegalArgumentException(String.format(ERR_BLOCK_IS_NOT_WITHIN_PIECE, blockIndex, blocks.size(), this));
 		}
@@ -246,7 +341,7 @@ public class Piece {
 	 *
 	 * @return If this piece is completed
 	 */
-	public boolean isDone() {
+	public synchronized boolean isDone() {
 		return blocks.stream().allMatch(b -> b.getStatus() == BlockStatus.Verified);
 	}
 
@@ -255,7 +350,7 @@ public class Piece {
 	 *
 	 * @return true if any progress is found
 	 */
-	public boolean isStarted() {
+	public synchronized boolean isStarted() {
 		return blocks.stream().anyMatch(b -> b.getStatus() != BlockStatus.Needed);
 	}
 
@@ -291,7 +386,7 @@ public class Piece {
 	 * @param status The status which much be equal.
 	 * @return The amount of blocks in this piece with the given status.
 	 */
-	public int countBlocksWithStatus(BlockStatus status) {
+	public synchronized int countBlocksWithStatus(BlockStatus status) {
 		return (int) blocks.stream().filter(block -> block.getStatus() == status).count();
 	}
 
@@ -301,16 +396,17 @@ public class Piece {
 	 * @param status The status expected
 	 * @return returns <code>true</code> when at least 1 block has the given status, otherwise <code>false</code>
 	 */
-	public boolean hasBlockWithStatus(BlockStatus status) {
+	public synchronized boolean hasBlockWithStatus(BlockStatus status) {
 		return blocks.stream().anyMatch(block -> block.getStatus() == status);
 	}
 
 	/**
-	 * Gets a new block to be requested
+	 * Gets a new block to be requested and marks it as requested. Finding and marking the block is atomic, so concurrent callers never receive the same
+	 * block.
 	 *
 	 * @return an unrequested block
 	 */
-	public Optional<Block> getRequestBlock() {
+	public synchronized Optional<Block> getRequestBlock() {
 		Optional<Block> block = blocks.stream().filter(p -> p.getStatus() == BlockStatus.Needed).findAny();
 
 		if (block.isPresent()) {
@@ -2,31 +2,54 @@ package org.johnnei.javatorrent.torrent.peer;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageChoke;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageFileBlock;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageInterested;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageKeepAlive;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUnchoke;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUninterested;
-import org.johnnei.javatorrent.disk.DiskJobReadBlock;
+import org.johnnei.javatorrent.disk.ReadCacheMetrics;
 import org.johnnei.javatorrent.internal.torrent.peer.Bitfield;
 import org.johnnei.javatorrent.internal.torrent.peer.Client;
 import org.johnnei.javatorrent.internal.torrent.peer.Job;
 import org.johnnei.javatorrent.module.IModule;
 import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
+import org.johnnei.javatorrent.network.bandwidth.RateMeter;
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
 import org.johnnei.javatorrent.torrent.Torrent;
 import org.johnnei.javatorrent.torrent.files.BlockStatus;
 import org.johnnei.javatorrent.torrent.files.Piece;
 import org.johnnei.javatorrent.utils.Argument;
 import org.johnnei.javatorrent.utils.StringUtils;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class Peer {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(Peer.class);
+
+	/**
+	 * The amount of seconds of throughput history which is kept per peer.
+	 */
+	private static final int RATE_HISTORY_SIZE = 60;
+
+	/**
+	 * The maximum amount of bytes of adjacent requests which are read from the files at once.
+	 */
+	private static final int MAX_MERGED_READ_SIZE = 1 << 17;
+
 	/**
 	 * The torrent on which this peer is participating.
 	 */
@@ -89,11 +112,36 @@ public class Peer {
 	 */
 	private final BitTorrentSocket socket;
 
+	/**
+	 * The bucket which limits the download rate of this peer.
+	 */
+	private final TokenBucket downloadLimiter;
+
+	/**
+	 * The bucket which limits the upload rate of this peer.
+	 */
+	private final TokenBucket uploadLimiter;
+
+	/**
+	 * The meter which measures the download rate of this peer.
+	 */
+	private final RateMeter downloadMeter;
+
+	/**
+	 * The meter which measures the upload rate of this peer.
+	 */
+	private final RateMeter uploadMeter;
+
 	/**
 	 * A map of the extra data stored by {@link IModule} which are peer specific
 	 */
 	private Map<Class<?>, Object> extensions;
 
+	/**
+	 * The executor which runs tasks on the IO thread of this peer or <code>null</code> when the peer isn't handled by an IO thread.
+	 */
+	private volatile Executor ioExecutor;
+
 	private Peer(Builder builder) {
 		this.torrent = Argument.requireNonNull(builder.torrent, "Peer must be assigned to a torrent.");
 		this.socket = Argument.requireNonNull(builder.socket, "Peer must have a socket.");
@@ -111,6 +159,11 @@ public class Peer {
 			haveState = new Bitfield(0);
 		}
 		requestLimit = 1;
+
+		downloadLimiter = new TokenBucket(torrent.getDownloadLimiter());
+		uploadLimiter = new TokenBucket(torrent.getUploadLimiter());
+		downloadMeter = new RateMeter(torrent.getDownloadMeter(), RATE_HISTORY_SIZE);
+		uploadMeter = new RateMeter(torrent.getUploadMeter(), RATE_HISTORY_SIZE);
 	}
 
 	/**
@@ -169,7 +222,7 @@ public class Peer {
 			return;
 		}
 
-		socket.enqueueMessage(new MessageKeepAlive());
+		socket.enqueueMessage(MessageKeepAlive.INSTANCE);
 	}
 
 	/**
@@ -340,6 +393,23 @@ public class Peer {
 		return torrent;
 	}
 
+	/**
+	 * Sets the executor which runs tasks on the IO thread of this peer. This is set by the IO engine which handles the peer.
+	 * @param ioExecutor The executor of the IO thread.
+	 */
+	public void setIoExecutor(Executor ioExecutor) {
+		this.ioExecutor = ioExecutor;
+	}
+
+	/**
+	 * Gets the executor which runs tasks on the IO thread of this peer. Results of disk jobs for this peer are handled on this executor so that the disk
+	 * threads don't queue the resulting messages themselves.
+	 * @return The executor of the IO thread or <code>null</code> when the peer isn't handled by an IO thread yet.
+	 */
+	public Executor getIoExecutor() {
+		return ioExecutor;
+	}
+
 	/**
 	 * Adds an amount of strikes to the peer
 	 *
@@ -391,9 +461,9 @@ public class Peer {
 
 		if (direction == PeerDirection.Upload) {
 			if (choked) {
-				socket.enqueueMessage(new MessageChoke());
+				socket.enqueueMessage(MessageChoke.INSTANCE);
 			} else {
-				socket.enqueueMessage(new MessageUnchoke());
+				socket.enqueueMessage(MessageUnchoke.INSTANCE);
 			}
 		}
 	}
@@ -415,9 +485,9 @@ public class Peer {
 
 		if (direction == PeerDirection.Download) {
 			if (interested) {
-				socket.enqueueMessage(new MessageInterested());
+				socket.enqueueMessage(MessageInterested.INSTANCE);
 			} else {
-				socket.enqueueMessage(new MessageUninterested());
+				socket.enqueueMessage(MessageUninterested.INSTANCE);
 			}
 		}
 	}
@@ -511,6 +581,38 @@ public class Peer {
 		return socket;
 	}
 
+	/**
+	 * Gets the bucket which limits the download rate of this peer. Its rate can be changed at any time with {@link TokenBucket#setRate(long)}.
+	 * @return The download limiter of this peer.
+	 */
+	public TokenBucket getDownloadLimiter() {
+		return downloadLimiter;
+	}
+
+	/**
+	 * Gets the bucket which limits the upload rate of this peer. Its rate can be changed at any time with {@link TokenBucket#setRate(long)}.
+	 * @return The upload limiter of this peer.
+	 */
+	public TokenBucket getUploadLimiter() {
+		return uploadLimiter;
+	}
+
+	/**
+	 * Gets the meter which measures the download rate of this peer. The meter keeps the history of the last minute.
+	 * @return The download meter of this peer.
+	 */
+	public RateMeter getDownloadMeter() {
+		return downloadMeter;
+	}
+
+	/**
+	 * Gets the meter which measures the upload rate of this peer. The meter keeps the history of the last minute.
+	 * @return The upload meter of this peer.
+	 */
+	public RateMeter getUploadMeter() {
+		return uploadMeter;
+	}
+
 	/**
 	 * Requests to queue the next piece in the socket for sending
 	 */
@@ -524,16 +626,80 @@ public class Peer {
 			return;
 		}
 
+		if (socket.supportsFileTransfer() && request.getPiece().isStoredInFiles()) {
+			// The block is transferred from the file to the socket by the kernel when it gets sent, no need to load it first.
+			socket.enqueueMessage(new MessageFileBlock(request.getPiece(), request.getBlockIndex(), request.getLength()));
+			torrent.addUploadedBytes(request.getLength());
+			return;
+		}
+
 		addToPendingMessages(1);
 
-		torrent.addDiskJob(new DiskJobReadBlock(request.getPiece(), request.getBlockIndex(), request.getLength(), this::onReadBlockComplete));
+		// Serve the directly following requests for the adjacent sections of the same piece with the same read.
+		List<Job> requests = new ArrayList<>();
+		requests.add(request);
+		int readLength = request.getLength();
+		Job adjacentRequest;
+		while ((adjacentRequest = popAdjacentRequest(request.getPiece(), request.getBlockIndex() + readLength, readLength)) != null) {
+			requests.add(adjacentRequest);
+			readLength += adjacentRequest.getLength();
+		}
+
+		ReadCacheMetrics readCacheMetrics = torrent.getReadCacheMetrics();
+		if (readCacheMetrics != null && requests.size() > 1) {
+			readCacheMetrics.onMergedRequests(requests.size() - 1);
+		}
+
+		torrent.getDisk().read(
+				request.getPiece(),
+				request.getBlockIndex(),
+				readLength,
+				torrent.getBlockBufferPool(),
+				torrent.getReadCache(),
+				readCacheMetrics,
+				ioExecutor
+		).whenComplete((data, failure) -> {
+			if (failure != null) {
+				onReadBlockFailed(requests, failure);
+			} else {
+				onReadBlockComplete(data, requests);
+			}
+		});
+	}
+
+	private Job popAdjacentRequest(Piece piece, int offset, int readLength) {
+		return peerClient.popNextJobIf(job ->
+				job.getPiece() == piece && job.getBlockIndex() == offset && readLength + job.getLength() <= MAX_MERGED_READ_SIZE
+		);
+	}
+
+	private void onReadBlockComplete(BlockBuffer data, List<Job> requests) {
+		final int length = data.getLength();
+		final Job firstRequest = requests.get(0);
+		final int pieceIndex = firstRequest.getPiece().getIndex();
+		if (requests.size() == 1) {
+			// The message takes over the reference to the buffer.
+			socket.enqueueMessage(new MessageBlock(pieceIndex, firstRequest.getBlockIndex(), data));
+		} else {
+			// Split the merged read into a message per request.
+			BlockBufferPool bufferPool = torrent.getBlockBufferPool();
+			int offsetInRead = 0;
+			for (Job request : requests) {
+				BlockBuffer block = bufferPool != null ? bufferPool.allocate(request.getLength()) : BlockBuffer.wrap(new byte[request.getLength()]);
+				System.arraycopy(data.getArray(), offsetInRead, block.getArray(), 0, request.getLength());
+				socket.enqueueMessage(new MessageBlock(pieceIndex, request.getBlockIndex(), block));
+				offsetInRead += request.getLength();
+			}
+			data.release();
+		}
+		addToPendingMessages(-1);
+		torrent.addUploadedBytes(length);
 	}
 
-	private void onReadBlockComplete(DiskJobReadBlock readJob) {
-		final byte[] data = readJob.getBlockData();
-		socket.enqueueMessage(new MessageBlock(readJob.getPiece().getIndex(), readJob.getOffset(), data));
+	private void onReadBlockFailed(List<Job> requests, Throwable failure) {
+		// The job released the buffer of the failed read. Without the fast extension requests can't be rejected, so they are dropped.
+		LOGGER.warn("Failed to read {} requested blocks of {} for {}, dropping the requests.", requests.size(), requests.get(0).getPiece(), this, failure);
 		addToPendingMessages(-1);
-		torrent.addUploadedBytes(data.length);
 	}
 
 	public static final class Builder {
@@ -120,6 +120,14 @@ public class PeerConnector implements Runnable, IPeerConnector {
 			return;
 		}
 
+		connect(peerInfo);
+	}
+
+	/**
+	 * Establishes the connection and processes the handshake with the given peer. When successful the peer is added to the torrent.
+	 * @param peerInfo The peer to connect to.
+	 */
+	void connect(PeerConnectInfo peerInfo) {
 		BitTorrentSocket peerSocket = createUnconnectedSocket();
 		try {
 			peerSocket.connect(torrentClient.getConnectionDegradation(), peerInfo.getAddress());
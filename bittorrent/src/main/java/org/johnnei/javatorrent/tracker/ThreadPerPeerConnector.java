@@ -0,0 +1,106 @@
+package org.johnnei.javatorrent.tracker;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.TorrentClient;
+import org.johnnei.javatorrent.network.PeerConnectInfo;
+import org.johnnei.javatorrent.torrent.Torrent;
+
+/**
+ * A {@link IPeerConnector} which runs every connection attempt on its own thread. Unlike {@link PeerConnectorPool} the amount of concurrent connection
+ * attempts is not capped by the amount of connector threads.
+ *
+ * This connector is intended to be used with a {@link ThreadFactory} which creates lightweight threads (ex. virtual threads on Java 21+).
+ */
+public class ThreadPerPeerConnector implements IPeerConnector {
+
+	private final TorrentClient torrentClient;
+
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * Performs the actual connection procedure. This connector is never started itself.
+	 */
+	private final PeerConnector connector;
+
+	/**
+	 * The peers which are currently being connected.
+	 */
+	private final Queue<PeerConnectInfo> connectingPeers;
+
+	private volatile boolean running;
+
+	/**
+	 * Creates a new connector.
+	 * @param torrentClient The torrent client for which the peers will be connected.
+	 * @param threadFactory The factory which creates the thread for each connection attempt.
+	 */
+	public ThreadPerPeerConnector(TorrentClient torrentClient, ThreadFactory threadFactory) {
+		this.torrentClient = torrentClient;
+		this.threadFactory = Objects.requireNonNull(threadFactory, "Thread factory can not be null.");
+		connector = new PeerConnector(torrentClient);
+		connectingPeers = new ConcurrentLinkedQueue<>();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void start() {
+		running = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void enqueuePeer(PeerConnectInfo peerInfo) {
+		if (peerInfo == null || !running) {
+			return;
+		}
+
+		if (torrentClient.getPeerDistributor().hasReachedPeerLimit(peerInfo.getTorrent())) {
+			// Later on we might need to peer.
+			torrentClient.getExecutorService().schedule(() -> enqueuePeer(peerInfo), 10, TimeUnit.SECONDS);
+			return;
+		}
+
+		connectingPeers.add(peerInfo);
+		threadFactory.newThread(() -> {
+			try {
+				connector.connect(peerInfo);
+			} finally {
+				connectingPeers.remove(peerInfo);
+			}
+		}).start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getConnectingCount() {
+		return connectingPeers.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getConnectingCountFor(Torrent torrent) {
+		return (int) connectingPeers.stream().filter(p -> p.getTorrent().equals(torrent)).count();
+	}
+
+}
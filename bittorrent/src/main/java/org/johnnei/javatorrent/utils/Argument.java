@@ -37,6 +37,19 @@ public class Argument {
 		throw new IllegalArgumentException(message);
 	}
 
+	/**
+	 * Tests if the given long is positive.
+	 * @param amount The amount to test.
+	 * @param message The message when the amount is negative.
+	 */
+	public static void requirePositive(long amount, String message) {
+		if (amount >= 0) {
+			return;
+		}
+
+		throw new IllegalArgumentException(message);
+	}
+
 	/**
 	 * Tests if the given amount is within the bounds.
 	 * @param amount The amount to test
@@ -1,7 +1,9 @@
 package org.johnnei.javatorrent;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.johnnei.javatorrent.async.LoopingRunnable;
@@ -9,6 +11,7 @@ import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
 import org.johnnei.javatorrent.bittorrent.tracker.ITracker;
 import org.johnnei.javatorrent.disk.IDiskJob;
 import org.johnnei.javatorrent.internal.disk.IOManager;
+import org.johnnei.javatorrent.internal.network.PeerIoReactorGroup;
 import org.johnnei.javatorrent.internal.torrent.TorrentManager;
 import org.johnnei.javatorrent.module.IModule;
 import org.johnnei.javatorrent.network.ConnectionDegradation;
@@ -226,6 +229,7 @@ public class TorrentClientTest extends EasyMockSupport {
 		peerConnectorMock.stop();
 
 		executorServiceMock.shutdown();
+		expect(executorServiceMock.awaitTermination(anyLong(), same(TimeUnit.SECONDS))).andReturn(true);
 
 		replayAll();
 
@@ -240,7 +244,8 @@ public class TorrentClientTest extends EasyMockSupport {
 				.build();
 
 		TorrentManager torrentManager = Whitebox.getInternalState(cut, TorrentManager.class);
-		LoopingRunnable peerIoRunnable = Whitebox.getInternalState(torrentManager, "peerIoRunnable");
+		PeerIoReactorGroup peerIoReactors = Whitebox.getInternalState(torrentManager, "peerIo");
+		LoopingRunnable peerIoRunnable = Whitebox.<List<LoopingRunnable>>getInternalState(peerIoReactors, "runnables").get(0);
 
 		assertTrue("Peer IO should have been invoked to start", Whitebox.getInternalState(peerIoRunnable, "keepRunning"));
 
@@ -0,0 +1,41 @@
+package org.johnnei.javatorrent.bittorrent.encoding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests {@link SHA1}
+ */
+public class SHA1Test {
+
+	private static final byte[] HASH_ABC = {
+			(byte) 0xa9, (byte) 0x99, (byte) 0x3e, (byte) 0x36, (byte) 0x47, (byte) 0x06, (byte) 0x81, (byte) 0x6a, (byte) 0xba, (byte) 0x3e,
+			(byte) 0x25, (byte) 0x71, (byte) 0x78, (byte) 0x50, (byte) 0xc2, (byte) 0x6c, (byte) 0x9c, (byte) 0xd0, (byte) 0xd8, (byte) 0x9d
+	};
+
+	@Test
+	public void testHash() {
+		assertArrayEquals("Incorrect hash", HASH_ABC, SHA1.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+		assertArrayEquals("Incorrect hash of section", HASH_ABC, SHA1.hash("xabcx".getBytes(StandardCharsets.US_ASCII), 1, 3));
+	}
+
+	@Test
+	public void testDigestIsResetOnRelease() {
+		MessageDigest digest = SHA1.acquireDigest();
+		digest.update((byte) 1);
+		SHA1.releaseDigest(digest);
+
+		MessageDigest reused = SHA1.acquireDigest();
+		assertSame("Released digest should have been reused", digest, reused);
+
+		reused.update("abc".getBytes(StandardCharsets.US_ASCII));
+		assertArrayEquals("Released digest must have been reset", HASH_ABC, reused.digest());
+		SHA1.releaseDigest(reused);
+	}
+
+}
@@ -0,0 +1,132 @@
+package org.johnnei.javatorrent.bittorrent.protocol;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBitfield;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageCancel;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageChoke;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageHave;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageInterested;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageKeepAlive;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageRequest;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUnchoke;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUninterested;
+import org.johnnei.javatorrent.network.BlockBufferPool;
+import org.johnnei.javatorrent.network.InStream;
+import org.johnnei.javatorrent.network.OutStream;
+
+/**
+ * Measures the time and heap allocation to decode and encode each message type of BEP 3.
+ *
+ * Usage: <code>MessageCodecBenchmark [iterations per message type]</code>
+ *
+ * Decoding covers the lookup in {@link MessageFactory} and reading the payload from an {@link InStream}, like {@link
+ * org.johnnei.javatorrent.network.BitTorrentSocket} does for each received message. Encoding covers writing the length prefix, ID and payload into a reused
+ * {@link OutStream}. Keep alive messages are only encoded as they have no ID to decode by.
+ */
+public class MessageCodecBenchmark {
+
+	private static final int BLOCK_SIZE = 1 << 14;
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+		BlockBufferPool pool = new BlockBufferPool(BLOCK_SIZE, 16);
+		MessageFactory messageFactory = new MessageFactory.Builder().setBlockBufferPool(pool).build();
+		Map<String, IMessage> messages = createMessages();
+
+		// Warm up so that the measurement is not polluted by class loading and JIT compilation.
+		for (IMessage message : messages.values()) {
+			if (!(message instanceof MessageKeepAlive)) {
+				decode(messageFactory, message, iterations / 4);
+			}
+			encode(message, iterations / 4);
+		}
+
+		System.out.printf("%-13s %12s %12s %12s %12s%n", "message", "decode ns", "decode B", "encode ns", "encode B");
+		for (Map.Entry<String, IMessage> entry : messages.entrySet()) {
+			IMessage message = entry.getValue();
+			// Blocks carry 16 KiB each, run less of them to keep the duration in line with the other types.
+			int messageIterations = message instanceof MessageBlock ? iterations / 16 : iterations;
+
+			double[] decodeResult = message instanceof MessageKeepAlive ? null : decode(messageFactory, message, messageIterations);
+			double[] encodeResult = encode(message, messageIterations);
+			System.out.printf("%-13s %12s %12s %12.1f %12.1f%n",
+					entry.getKey(),
+					decodeResult == null ? "-" : String.format("%.1f", decodeResult[0]),
+					decodeResult == null ? "-" : String.format("%.1f", decodeResult[1]),
+					encodeResult[0],
+					encodeResult[1]);
+		}
+	}
+
+	private static Map<String, IMessage> createMessages() {
+		Map<String, IMessage> messages = new LinkedHashMap<>();
+		messages.put("keep-alive", new MessageKeepAlive());
+		messages.put("choke", new MessageChoke());
+		messages.put("unchoke", new MessageUnchoke());
+		messages.put("interested", new MessageInterested());
+		messages.put("uninterested", new MessageUninterested());
+		messages.put("have", new MessageHave(1_234));
+		messages.put("bitfield", new MessageBitfield(new byte[128]));
+		messages.put("request", new MessageRequest(1_234, BLOCK_SIZE, BLOCK_SIZE));
+		messages.put("piece", new MessageBlock(1_234, BLOCK_SIZE, new byte[BLOCK_SIZE]));
+		messages.put("cancel", new MessageCancel(1_234, BLOCK_SIZE, BLOCK_SIZE));
+		return messages;
+	}
+
+	private static double[] decode(MessageFactory messageFactory, IMessage template, int iterations) {
+		OutStream outStream = new OutStream(template.getLength());
+		template.write(outStream);
+		ByteBuffer payload = ByteBuffer.wrap(outStream.toByteArray());
+		int id = template.getId();
+
+		long allocatedBefore = getAllocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			IMessage message = messageFactory.createById(id);
+			message.read(new InStream(payload, null));
+			if (message instanceof MessageBlock) {
+				((MessageBlock) message).release();
+			}
+			sink = message;
+		}
+		long duration = System.nanoTime() - start;
+		long allocated = getAllocatedBytes() - allocatedBefore;
+
+		return new double[] { duration / (double) iterations, allocated / (double) iterations };
+	}
+
+	private static double[] encode(IMessage message, int iterations) {
+		OutStream outStream = new OutStream(4 + message.getLength());
+		boolean hasId = message.getLength() > 0;
+
+		long allocatedBefore = getAllocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			outStream.reset();
+			outStream.writeInt(message.getLength());
+			if (hasId) {
+				outStream.writeByte(message.getId());
+			}
+			message.write(outStream);
+		}
+		long duration = System.nanoTime() - start;
+		long allocated = getAllocatedBytes() - allocatedBefore;
+		sink = outStream;
+
+		return new double[] { duration / (double) iterations, allocated / (double) iterations };
+	}
+
+	private static long getAllocatedBytes() {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -15,6 +15,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * Tests {@link MessageFactory}
@@ -49,6 +50,34 @@ public class MessageFactoryTest {
 		cut.createById(9);
 	}
 
+	@Test
+	public void testStatelessMessagesAreShared() {
+		MessageFactory cut = new MessageFactory.Builder().build();
+
+		assertSame("Choke message should be shared", MessageChoke.INSTANCE, cut.createById(BitTorrent.MESSAGE_CHOKE));
+		assertSame("Unchoke message should be shared", MessageUnchoke.INSTANCE, cut.createById(BitTorrent.MESSAGE_UNCHOKE));
+		assertSame("Interested message should be shared", MessageInterested.INSTANCE, cut.createById(BitTorrent.MESSAGE_INTERESTED));
+		assertSame("Uninterested message should be shared", MessageUninterested.INSTANCE, cut.createById(BitTorrent.MESSAGE_UNINTERESTED));
+	}
+
+	@Test
+	public void testErrorOnIdOutOfRange() {
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Message 256");
+
+		MessageFactory cut = new MessageFactory.Builder().build();
+		cut.createById(256);
+	}
+
+	@Test
+	public void testErrorOnRegisterIdOutOfRange() {
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Failed to add message");
+
+		new MessageFactory.Builder()
+				.registerMessage(-1, MessageBlock::new);
+	}
+
 	@Test
 	public void testErrorOnOverrideMessage() {
 		thrown.expect(IllegalStateException.class);
@@ -2,6 +2,8 @@ package org.johnnei.javatorrent.bittorrent.protocol.messages;
 
 import java.time.Duration;
 
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
 import org.johnnei.javatorrent.network.InStream;
 import org.johnnei.javatorrent.network.OutStream;
 import org.johnnei.javatorrent.torrent.Torrent;
@@ -10,10 +12,13 @@ import org.johnnei.javatorrent.torrent.files.Piece;
 import org.johnnei.javatorrent.torrent.peer.Peer;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -60,7 +65,7 @@ public class MessageBlockTest {
 		cut.read(inStream);
 		cut.process(peerMock);
 
-		verify(torrentMock).onReceivedBlock(fileSetMock, 5, 0x3800, new byte[] { 0x00 });
+		assertArrayEquals("Incorrect block data", new byte[] { 0x00 }, captureReceivedBlock().toByteArray());
 		verify(peerMock).onReceivedBlock(pieceMock, 0x3800);
 		verify(peerMock).addStrike(-1);
 		verify(peerMock).setRequestLimit(5);
@@ -93,7 +98,7 @@ public class MessageBlockTest {
 		cut.read(inStream);
 		cut.process(peerMock);
 
-		verify(torrentMock).onReceivedBlock(fileSetMock, 5, 0x3800, new byte[] { 0x00 });
+		assertArrayEquals("Incorrect block data", new byte[] { 0x00 }, captureReceivedBlock().toByteArray());
 		verify(peerMock).onReceivedBlock(pieceMock, 0x3800);
 		verify(peerMock).addStrike(-1);
 		verify(peerMock).setRequestLimit(6);
@@ -115,11 +120,51 @@ public class MessageBlockTest {
 		cut.read(inStream);
 		cut.process(peerMock);
 
-		verify(torrentMock).onReceivedBlock(fileSetMock, 5, 0x3800, new byte[] { 0x00 });
+		assertArrayEquals("Incorrect block data", new byte[] { 0x00 }, captureReceivedBlock().toByteArray());
 		verify(peerMock).onReceivedBlock(pieceMock, 0x3800);
 		verify(peerMock).addStrike(-1);
 	}
 
+	private BlockBuffer captureReceivedBlock() {
+		ArgumentCaptor<BlockBuffer> bufferCaptor = ArgumentCaptor.forClass(BlockBuffer.class);
+		verify(torrentMock).onReceivedBlock(same(fileSetMock), eq(5), eq(0x3800), bufferCaptor.capture());
+		return bufferCaptor.getValue();
+	}
+
+	@Test
+	public void testReadIntoPooledBuffer() {
+		InStream inStream = new InStream(new byte[] {
+				0x00, 0x00, 0x00, 0x05,
+				0x00, 0x00, 0x38, 0x00,
+				0x01, 0x02
+		});
+
+		prepareTest();
+
+		BlockBufferPool pool = new BlockBufferPool(4, 1, true);
+		MessageBlock cut = new MessageBlock(pool);
+		cut.read(inStream);
+		cut.process(peerMock);
+
+		BlockBuffer buffer = captureReceivedBlock();
+		assertArrayEquals("Incorrect block data", new byte[] { 0x01, 0x02 }, buffer.toByteArray());
+		assertEquals("Buffer should be allocated from the pool", 1, pool.getOutstandingCount());
+
+		buffer.release();
+		assertEquals("Buffer should be released", 0, pool.reportLeaks());
+	}
+
+	@Test
+	public void testProcessInvalidLengthReleasesBuffer() {
+		prepareTest();
+
+		BlockBufferPool pool = new BlockBufferPool(4, 1, true);
+		MessageBlock cut = new MessageBlock(5, 0x37FF, pool.allocate(0));
+		cut.process(peerMock);
+
+		assertEquals("Buffer should be released", 0, pool.reportLeaks());
+	}
+
 	@Test
 	public void testWrite() {
 		MessageBlock cut = new MessageBlock(1, 2, new byte[] { 0x00, 0x00, 0x00 });
@@ -0,0 +1,51 @@
+package org.johnnei.javatorrent.bittorrent.protocol.messages;
+
+import org.johnnei.javatorrent.network.InStream;
+import org.johnnei.javatorrent.network.OutStream;
+import org.johnnei.javatorrent.torrent.files.Piece;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link MessageFileBlock}
+ */
+public class MessageFileBlockTest {
+
+	@Test
+	public void testWrite() {
+		byte[] expectedBytes = { 0, 0, 0, 1, 0, 0, 0, 2 };
+		Piece pieceMock = mock(Piece.class);
+		when(pieceMock.getIndex()).thenReturn(1);
+
+		OutStream outStream = new OutStream();
+		MessageFileBlock cut = new MessageFileBlock(pieceMock, 2, 3);
+		cut.write(outStream);
+
+		assertArrayEquals("Only the header should have been written", expectedBytes, outStream.toByteArray());
+		assertEquals("Incorrect message length", 1 + expectedBytes.length + 3, cut.getLength());
+		assertEquals("Incorrect message ID", 7, cut.getId());
+		assertSame("Incorrect piece", pieceMock, cut.getPiece());
+		assertEquals("Incorrect offset", 2, cut.getOffset());
+		assertEquals("Incorrect block length", 3, cut.getBlockLength());
+		assertTrue("Incorrect toString start.", cut.toString().startsWith("MessageFileBlock["));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRead() {
+		new MessageFileBlock(mock(Piece.class), 0, 1).read(new InStream(new byte[0]));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testProcess() {
+		new MessageFileBlock(mock(Piece.class), 0, 1).process(mock(Peer.class));
+	}
+
+}
@@ -0,0 +1,170 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.johnnei.javatorrent.bittorrent.encoding.SHA1;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link AsyncDisk}
+ */
+public class AsyncDiskTest {
+
+	private static final int PIECE_SIZE = 32;
+
+	private Queue<IDiskJob> jobs;
+
+	private ExecutorService completionThread;
+
+	private AsyncDisk cut;
+
+	@Before
+	public void setUp() {
+		jobs = new ConcurrentLinkedQueue<>();
+		completionThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Completion"));
+		cut = new AsyncDisk(jobs::add);
+	}
+
+	@After
+	public void tearDown() {
+		completionThread.shutdownNow();
+	}
+
+	/**
+	 * Processes the submitted jobs on a thread named "Disk".
+	 */
+	private void processJobs() throws InterruptedException {
+		AtomicReference<IOException> failure = new AtomicReference<>();
+		Thread diskThread = new Thread(() -> {
+			IDiskJob job;
+			while ((job = jobs.poll()) != null) {
+				try {
+					job.process();
+				} catch (IOException e) {
+					failure.set(e);
+				}
+			}
+		}, "Disk");
+		diskThread.start();
+		diskThread.join();
+		assertNull("Jobs should not have failed", failure.get());
+	}
+
+	@Test
+	public void testWriteReadAndCheckHash() throws Exception {
+		byte[] data = createData();
+		Piece piece = new TestFileSet(SHA1.hash(data)).getPiece(0);
+
+		CompletableFuture<String> writeThread = cut.write(piece, 0, BlockBuffer.wrap(data), null, completionThread)
+				.thenApply(ignored -> Thread.currentThread().getName());
+		processJobs();
+		assertEquals("Write should have been completed on the completion executor", "Completion", writeThread.get(5, TimeUnit.SECONDS));
+
+		CompletableFuture<BlockBuffer> readData = cut.read(piece, 0, PIECE_SIZE, completionThread);
+		processJobs();
+		BlockBuffer buffer = readData.get(5, TimeUnit.SECONDS);
+		assertArrayEquals("Incorrect data read back", data, buffer.toByteArray());
+		buffer.release();
+
+		CompletableFuture<Boolean> matchingHash = cut.checkHash(piece, null, completionThread);
+		CompletableFuture<String> hashThread = matchingHash.thenApply(ignored -> Thread.currentThread().getName());
+		processJobs();
+		assertTrue("Hash should have matched", matchingHash.get(5, TimeUnit.SECONDS));
+		assertEquals("Hash check should have been completed on the completion executor", "Completion", hashThread.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCompleteOnDiskThreadWithoutExecutor() throws Exception {
+		Piece piece = new TestFileSet(new byte[20]).getPiece(0);
+
+		CompletableFuture<String> thread = cut.write(piece, 0, BlockBuffer.wrap(createData()), null, null)
+				.thenApply(ignored -> Thread.currentThread().getName());
+		processJobs();
+
+		assertEquals("Write without executor should have been completed on the disk thread", "Disk", thread.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCompleteOnDiskThreadWhenRejected() throws Exception {
+		Piece piece = new TestFileSet(new byte[20]).getPiece(0);
+
+		CompletableFuture<String> thread = cut.write(piece, 0, BlockBuffer.wrap(createData()), null, task -> {
+			throw new RejectedExecutionException();
+		}).thenApply(ignored -> Thread.currentThread().getName());
+		processJobs();
+
+		assertEquals("Rejected completion should have been completed on the disk thread", "Disk", thread.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testFailedJobCompletesExceptionally() throws Exception {
+		Piece piece = new TestFileSet(new byte[20]).getPiece(0);
+		IOException failure = new IOException("Stubbed IO Exception");
+
+		CompletableFuture<Throwable> result = cut.read(piece, 0, PIECE_SIZE, completionThread)
+				.handle((buffer, cause) -> cause);
+		jobs.poll().onFailure(failure);
+
+		Throwable cause = result.get(5, TimeUnit.SECONDS);
+		assertSame("Future should have been completed with the failure of the job", failure, cause);
+	}
+
+	private static byte[] createData() {
+		byte[] data = new byte[PIECE_SIZE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i + 1);
+		}
+		return data;
+	}
+
+	private static final class TestFileSet extends AbstractFileSet {
+
+		TestFileSet(byte[] hash) {
+			super(PIECE_SIZE);
+			fileInfos = Collections.singletonList(new FileInfo(PIECE_SIZE, 0, new File("unused"), 1));
+			pieces = new ArrayList<>();
+			pieces.add(new Piece(this, hash, 0, PIECE_SIZE, PIECE_SIZE));
+			setStorage(new MemoryTorrentStorage(PIECE_SIZE));
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package org.johnnei.javatorrent.disk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link DiskBackpressure}
+ */
+public class DiskBackpressureTest {
+
+	private static final int BLOCK_SIZE = 100;
+
+	@Test
+	public void testFullSpeedBelowLowWatermark() {
+		DiskBackpressure cut = new DiskBackpressure(4 * BLOCK_SIZE, 8 * BLOCK_SIZE);
+		queueBlocks(cut, 4);
+
+		assertEquals("Requests should not be limited up to the low watermark", 10, cut.getAllowedRequests(10));
+		assertFalse("Requesting should not be paused", cut.isPaused());
+	}
+
+	@Test
+	public void testSlowDownBetweenWatermarks() {
+		DiskBackpressure cut = new DiskBackpressure(4 * BLOCK_SIZE, 8 * BLOCK_SIZE);
+
+		queueBlocks(cut, 6);
+		assertEquals("Requests should be halved halfway between the watermarks", 5, cut.getAllowedRequests(10));
+
+		queueBlocks(cut, 2);
+		assertEquals("At least a single request should be allowed until paused", 1, cut.getAllowedRequests(10));
+		assertEquals("No requests should be made when the peer can't accept them", 0, cut.getAllowedRequests(0));
+	}
+
+	@Test
+	public void testPauseUntilBelowLowWatermark() {
+		DiskBackpressure cut = new DiskBackpressure(4 * BLOCK_SIZE, 8 * BLOCK_SIZE);
+
+		queueBlocks(cut, 9);
+		assertTrue("Requesting should pause above the high watermark", cut.isPaused());
+		assertEquals("No requests should be allowed while paused", 0, cut.getAllowedRequests(10));
+
+		completeBlocks(cut, 4);
+		assertTrue("Requesting should remain paused between the watermarks", cut.isPaused());
+
+		completeBlocks(cut, 1);
+		assertFalse("Requesting should resume at the low watermark", cut.isPaused());
+		assertEquals("Incorrect pending writes", 4, cut.getPendingWrites());
+		assertEquals("Incorrect pending write bytes", 4L * BLOCK_SIZE, cut.getPendingWriteBytes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWatermarks() {
+		new DiskBackpressure(BLOCK_SIZE, BLOCK_SIZE);
+	}
+
+	private static void queueBlocks(DiskBackpressure cut, int count) {
+		for (int i = 0; i < count; i++) {
+			cut.onWriteQueued(BLOCK_SIZE);
+		}
+	}
+
+	private static void completeBlocks(DiskBackpressure cut, int count) {
+		for (int i = 0; i < count; i++) {
+			cut.onWriteCompleted(BLOCK_SIZE);
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.nio.charset.Charset;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.johnnei.javatorrent.network.BlockBufferPool;
 import org.johnnei.javatorrent.test.StubEntity;
 import org.johnnei.javatorrent.torrent.AbstractFileSet;
 import org.johnnei.javatorrent.torrent.FileInfo;
@@ -43,10 +44,28 @@ public class DiskJobReadBlockTest {
 		cut.process();
 
 		assertTrue("Callback method wasn't called", countDownLatch.await(5, TimeUnit.SECONDS));
-		assertEquals("Incorrect message read", "Hello world block!", new String(cut.getBlockData(), Charset.forName("UTF-8")));
+		assertEquals("Incorrect message read", "Hello world block!", new String(cut.getBlockData().toByteArray(), Charset.forName("UTF-8")));
 		assertEquals("Incorrect piece", piece, cut.getPiece());
 		assertEquals("Incorrect offset", 0, cut.getOffset());
 		assertEquals("Incorrect priority", 10, cut.getPriority());
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testReadBlockIntoPooledBuffer() throws Exception {
+		BlockBufferPool pool = new BlockBufferPool(32, 1, true);
+		FileInfo fileInfo = new FileInfo(11560, 0, testFile, 1);
+		AbstractFileSet filesStub = StubEntity.stubAFiles(1, fileInfo, 18);
+		Piece piece = new Piece(filesStub, new byte[20], 0, 18, 18);
+		DiskJobReadBlock cut = new DiskJobReadBlock(piece, 0, 18, pool, x -> countDownLatch.countDown());
+		cut.process();
+
+		assertTrue("Callback method wasn't called", countDownLatch.await(5, TimeUnit.SECONDS));
+		assertEquals("Incorrect buffer length", 18, cut.getBlockData().getLength());
+		assertEquals("Incorrect message read", "Hello world block!", new String(cut.getBlockData().getArray(), 0, 18, Charset.forName("UTF-8")));
+
+		cut.getBlockData().release();
+		assertEquals("Buffer should have been returned", 0, pool.reportLeaks());
+		assertEquals("Buffer should be pooled for reuse", 1, pool.getPooledCount());
+	}
+
+}
@@ -7,6 +7,8 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.johnnei.javatorrent.internal.network.ByteInputStream;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
 import org.johnnei.javatorrent.test.StubEntity;
 import org.johnnei.javatorrent.torrent.AbstractFileSet;
 import org.johnnei.javatorrent.torrent.FileInfo;
@@ -60,4 +62,29 @@ public class DiskJobWriteBlockTest {
 		assertEquals("Incorrect block", 0, cut.getBlockIndex());
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testWritePooledBlock() throws Exception {
+		BlockBufferPool pool = new BlockBufferPool(32, 1, true);
+		BlockBuffer buffer = pool.allocate(18);
+		byte[] bytes = "Hello world write!".getBytes(Charset.forName("UTF-8"));
+		System.arraycopy(bytes, 0, buffer.getArray(), 0, bytes.length);
+
+		File testFile = tempFolder.newFile();
+		FileInfo fileInfo = new FileInfo(18, 0, testFile, 1);
+		AbstractFileSet filesStub = StubEntity.stubAFiles(1, fileInfo);
+		Piece piece = new Piece(filesStub, new byte[20], 0, 18, 18);
+		DiskJobWriteBlock cut = new DiskJobWriteBlock(piece, 0, buffer, x -> countDownLatch.countDown());
+		cut.process();
+
+		byte[] writtenBytes;
+
+		try (ByteInputStream inputStream = new ByteInputStream(new FileInputStream(testFile))) {
+			writtenBytes = inputStream.readByteArray(18);
+		}
+
+		assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+		assertArrayEquals("Incorrect output", bytes, writtenBytes);
+		assertEquals("Buffer should have been released after storing", 0, pool.reportLeaks());
+	}
+
+}
@@ -0,0 +1,186 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.torrent.FileInfo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link FileHandleCache}
+ */
+public class FileHandleCacheTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws Exception {
+		FileHandleCache cut = new FileHandleCache(2);
+		FileInfo fileOne = createFile(cut, "one");
+		FileInfo fileTwo = createFile(cut, "two");
+		FileInfo fileThree = createFile(cut, "three");
+
+		fileOne.write(ByteBuffer.wrap(new byte[] { 1 }), 0);
+		fileTwo.write(ByteBuffer.wrap(new byte[] { 2 }), 0);
+		fileOne.write(ByteBuffer.wrap(new byte[] { 3 }), 1);
+		fileThree.write(ByteBuffer.wrap(new byte[] { 4 }), 0);
+
+		assertEquals("Incorrect amount of open files", 2, cut.getOpenFiles());
+		assertTrue("Recently used file should be open", cut.isOpen(fileOne));
+		assertFalse("Least recently used file should have been closed", cut.isOpen(fileTwo));
+		assertTrue("Accessed file should be open", cut.isOpen(fileThree));
+
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		fileTwo.read(buffer, 0);
+		assertArrayEquals("Closed file should be reopened", new byte[] { 2 }, buffer.array());
+
+		FileHandleCacheMetrics metrics = cut.getMetrics();
+		assertEquals("Incorrect amount of opens", 4, metrics.getOpens());
+		assertEquals("Incorrect amount of hits", 1, metrics.getHits());
+		assertEquals("Incorrect amount of evictions", 2, metrics.getEvictions());
+		assertEquals("Incorrect hit rate", 0.2, metrics.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testLeasedHandleIsNotEvicted() throws Exception {
+		FileHandleCache cut = new FileHandleCache(1);
+		FileInfo fileOne = createFile(cut, "one");
+		FileInfo fileTwo = createFile(cut, "two");
+
+		fileOne.acquireChannel();
+		fileTwo.write(ByteBuffer.wrap(new byte[] { 1 }), 0);
+
+		assertTrue("Leased file must not be closed", cut.isOpen(fileOne));
+		assertEquals("Limit should be exceeded while all handles are in use", 1, cut.getOpenFiles());
+
+		fileOne.releaseChannel();
+		fileTwo.write(ByteBuffer.wrap(new byte[] { 2 }), 0);
+
+		assertFalse("Released file should be closed once the limit is exceeded", cut.isOpen(fileOne));
+		assertTrue("Used file should be open", cut.isOpen(fileTwo));
+	}
+
+	@Test
+	public void testReadDoesNotCreateFile() throws Exception {
+		FileHandleCache cut = new FileHandleCache(1);
+		File file = new File(temporaryFolder.getRoot(), "folder/unwritten");
+		FileInfo fileInfo = new FileInfo(10, 0, file, 1);
+		fileInfo.setHandleCache(cut);
+
+		try {
+			fileInfo.read(ByteBuffer.allocate(1), 0);
+			fail("Reading a file which hasn't been written should fail.");
+		} catch (EOFException e) {
+			// Expected.
+		}
+
+		assertFalse("File should only be created when it is written", file.exists());
+		assertEquals("Unwritten file should be empty", 0, fileInfo.length());
+
+		fileInfo.write(ByteBuffer.wrap(new byte[] { 1, 2 }), 0);
+		assertTrue("Written file should have been created", file.exists());
+		assertEquals("Incorrect length", 2, fileInfo.length());
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		FileHandleCache cut = new FileHandleCache(4);
+		FileInfo fileInfo = createFile(cut, "one");
+		fileInfo.write(ByteBuffer.wrap(new byte[] { 1 }), 0);
+
+		fileInfo.close();
+
+		assertFalse("Closed file should not be open", cut.isOpen(fileInfo));
+		assertEquals("Incorrect amount of open files", 0, cut.getOpenFiles());
+	}
+
+	@Test
+	public void testCloseWhileLeased() throws Exception {
+		FileHandleCache cut = new FileHandleCache(1);
+		FileInfo fileOne = createFile(cut, "one");
+		FileInfo fileTwo = createFile(cut, "two");
+
+		FileChannel channel = fileOne.acquireChannel();
+		fileOne.close();
+
+		assertTrue("Leased channel must not be closed", channel.isOpen());
+		channel.write(ByteBuffer.wrap(new byte[] { 1 }), 0);
+
+		// The lease which is started before the first one ends must share the handle.
+		assertSame("Handle should be shared until it is closed", channel, fileOne.acquireChannel());
+		fileOne.releaseChannel();
+		fileTwo.write(ByteBuffer.wrap(new byte[] { 2 }), 0);
+
+		assertTrue("Handle must not be evicted while it is leased", channel.isOpen());
+		assertTrue("Leased file should be open", cut.isOpen(fileOne));
+
+		fileOne.releaseChannel();
+
+		assertFalse("Handle should be closed once the last lease has been released", channel.isOpen());
+		assertFalse("Closed file should not be open", cut.isOpen(fileOne));
+	}
+
+	@Test
+	public void testConcurrentAcquireSharesHandle() throws Exception {
+		final int threadCount = 4;
+		FileHandleCache cut = new FileHandleCache(1);
+		FileInfo fileInfo = createFile(cut, "folder/one");
+
+		ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+		CyclicBarrier barrier = new CyclicBarrier(threadCount);
+		List<Future<FileChannel>> channels = new ArrayList<>();
+		try {
+			for (int i = 0; i < threadCount; i++) {
+				channels.add(executorService.submit((Callable<FileChannel>) () -> {
+					barrier.await(5, TimeUnit.SECONDS);
+					return fileInfo.acquireChannel();
+				}));
+			}
+
+			FileChannel channel = channels.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<FileChannel> otherChannel : channels) {
+				assertSame("All leases should share a single handle", channel, otherChannel.get(5, TimeUnit.SECONDS));
+			}
+			assertTrue("Leased channel must be open", channel.isOpen());
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		assertEquals("Incorrect amount of open files", 1, cut.getOpenFiles());
+		assertEquals("Incorrect amount of opens", 1, cut.getMetrics().getOpens());
+		assertEquals("Incorrect amount of hits", threadCount - 1, cut.getMetrics().getHits());
+
+		for (int i = 0; i < threadCount; i++) {
+			fileInfo.releaseChannel();
+		}
+		fileInfo.close();
+		assertFalse("Released file should be closed", cut.isOpen(fileInfo));
+	}
+
+	private FileInfo createFile(FileHandleCache cache, String name) {
+		FileInfo fileInfo = new FileInfo(10, 0, new File(temporaryFolder.getRoot(), name), 1);
+		fileInfo.setHandleCache(cache);
+		return fileInfo;
+	}
+}
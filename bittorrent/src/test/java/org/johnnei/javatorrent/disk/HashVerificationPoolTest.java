@@ -0,0 +1,252 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.johnnei.javatorrent.bittorrent.encoding.SHA1;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HashVerificationPool}
+ */
+public class HashVerificationPoolTest {
+
+	private static final int PIECE_SIZE = 64;
+
+	private static final int PIECE_COUNT = 8;
+
+	@Test
+	public void testVerifyPieces() throws Exception {
+		byte[] data = new byte[PIECE_SIZE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i + 1);
+		}
+		TestFileSet fileSet = new TestFileSet(SHA1.hash(data));
+		fileSet.setStorage(new MemoryTorrentStorage(PIECE_SIZE * PIECE_COUNT));
+		for (int i = 0; i < PIECE_COUNT; i += 2) {
+			// Only the even pieces are stored and will therefore match.
+			fileSet.getStorage().write(i * PIECE_SIZE, ByteBuffer.wrap(data));
+		}
+
+		HashVerificationPool cut = new HashVerificationPool(2, PIECE_COUNT);
+		CountDownLatch completedJobs = new CountDownLatch(PIECE_COUNT);
+		Map<Integer, Boolean> results = new ConcurrentHashMap<>();
+		Map<Integer, Thread> threads = new ConcurrentHashMap<>();
+		try {
+			for (Piece piece : fileSet.getPieces()) {
+				cut.submit(new DiskJobCheckHash(piece, job -> {
+					results.put(job.getPiece().getIndex(), job.isMatchingHash());
+					threads.put(job.getPiece().getIndex(), Thread.currentThread());
+					completedJobs.countDown();
+				}));
+			}
+
+			assertTrue("All pieces should have been verified", completedJobs.await(5, TimeUnit.SECONDS));
+		} finally {
+			cut.shutdown();
+		}
+
+		for (int i = 0; i < PIECE_COUNT; i++) {
+			assertEquals(String.format("Incorrect result for piece %d", i), i % 2 == 0, results.get(i));
+			assertTrue("Piece should have been verified on the pool", threads.get(i).getName().startsWith("Hash Verifier"));
+		}
+		assertEquals("Incorrect thread count", 2, cut.getThreadCount());
+	}
+
+	@Test
+	public void testFullQueueBlocksSubmitter() throws Exception {
+		TestFileSet fileSet = new TestFileSet(new byte[20]);
+		CountDownLatch release = new CountDownLatch(1);
+		fileSet.setStorage(new MemoryTorrentStorage(PIECE_SIZE * PIECE_COUNT) {
+			@Override
+			public boolean isAvailable(long offset, int length) {
+				return true;
+			}
+
+			@Override
+			public void hash(long offset, int length, MessageDigest digest, byte[] buffer) throws IOException {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		HashVerificationPool cut = new HashVerificationPool(1, 1);
+		CountDownLatch completedJobs = new CountDownLatch(PIECE_COUNT);
+		Map<Integer, Thread> threads = new ConcurrentHashMap<>();
+		ExecutorService submitter = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Submitter"));
+		try {
+			CompletableFuture<Void> submitted = CompletableFuture.runAsync(() -> {
+				for (Piece piece : fileSet.getPieces()) {
+					cut.submit(new DiskJobCheckHash(piece, job -> {
+						threads.put(job.getPiece().getIndex(), Thread.currentThread());
+						completedJobs.countDown();
+					}));
+				}
+			}, submitter);
+
+			Thread.sleep(100);
+			assertFalse("Submitter should wait while the queue is full", submitted.isDone());
+
+			release.countDown();
+			submitted.get(5, TimeUnit.SECONDS);
+			assertTrue("All pieces should have been verified", completedJobs.await(5, TimeUnit.SECONDS));
+		} finally {
+			cut.shutdown();
+			submitter.shutdownNow();
+		}
+
+		for (int i = 0; i < PIECE_COUNT; i++) {
+			assertTrue("Piece must not be verified on the submitting thread", threads.get(i).getName().startsWith("Hash Verifier"));
+		}
+	}
+
+	@Test
+	public void testWriteCachedPieceOnDiskWorker() throws Exception {
+		byte[] data = new byte[PIECE_SIZE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i + 1);
+		}
+		TestFileSet fileSet = new TestFileSet(SHA1.hash(data));
+		Map<Long, String> writingThreads = new ConcurrentHashMap<>();
+		fileSet.setStorage(new MemoryTorrentStorage(PIECE_SIZE * PIECE_COUNT) {
+			@Override
+			public void write(long offset, ByteBuffer... buffers) throws IOException {
+				writingThreads.put(offset, Thread.currentThread().getName());
+				super.write(offset, buffers);
+			}
+		});
+		Piece piece = fileSet.getPiece(0);
+		PieceCache pieceCache = new PieceCache(PIECE_SIZE);
+		pieceCache.storeBlock(piece, 0, BlockBuffer.wrap(data));
+
+		ExecutorService diskWorker = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Disk"));
+		HashVerificationPool cut = new HashVerificationPool(1, 1, job -> diskWorker.execute(() -> {
+			try {
+				job.process();
+			} catch (IOException e) {
+				job.onFailure(e);
+			}
+		}));
+		CompletableFuture<Boolean> result = new CompletableFuture<>();
+		try {
+			cut.submit(new DiskJobCheckHash(piece, pieceCache, job -> result.complete(job.isMatchingHash()), result::completeExceptionally));
+
+			assertTrue("Hash should have matched", result.get(5, TimeUnit.SECONDS));
+		} finally {
+			cut.shutdown();
+			diskWorker.shutdownNow();
+		}
+
+		assertEquals("Cached piece should have been written by the disk worker", "Disk", writingThreads.get(0L));
+		assertEquals("Piece should have been written once", 1, pieceCache.getFlushedPieces());
+		assertEquals("Incorrect verified pieces", 1, cut.getVerifiedPieces());
+	}
+
+	@Test
+	public void testFailOnAllAttempts() throws Exception {
+		TestFileSet fileSet = new TestFileSet(new byte[20]);
+		AtomicInteger attempts = new AtomicInteger();
+		fileSet.setStorage(new MemoryTorrentStorage(PIECE_SIZE * PIECE_COUNT) {
+			@Override
+			public boolean isAvailable(long offset, int length) {
+				return true;
+			}
+
+			@Override
+			public void hash(long offset, int length, MessageDigest digest, byte[] buffer) throws IOException {
+				attempts.incrementAndGet();
+				throw new IOException("Stubbed IO Exception");
+			}
+		});
+
+		HashVerificationPool cut = new HashVerificationPool(1, 1);
+		CompletableFuture<IOException> failure = new CompletableFuture<>();
+		try {
+			cut.submit(new DiskJobCheckHash(fileSet.getPiece(0), null, job -> failure.complete(null), failure::complete));
+
+			assertNotNull("Job should have been failed", failure.get(5, TimeUnit.SECONDS));
+		} finally {
+			cut.shutdown();
+		}
+
+		assertEquals("Piece should have been verified on all attempts", HashVerificationPool.MAX_ATTEMPTS, attempts.get());
+		assertEquals("Failed pieces should not be counted as verified", 0, cut.getVerifiedPieces());
+	}
+
+	@Test
+	public void testFailAfterShutdown() throws Exception {
+		TestFileSet fileSet = new TestFileSet(new byte[20]);
+		fileSet.setStorage(new MemoryTorrentStorage(PIECE_SIZE * PIECE_COUNT));
+
+		HashVerificationPool cut = new HashVerificationPool(1, 1);
+		cut.shutdown();
+
+		CompletableFuture<IOException> failure = new CompletableFuture<>();
+		cut.submit(new DiskJobCheckHash(fileSet.getPiece(0), null, job -> failure.complete(null), failure::complete));
+
+		assertNotNull("Job submitted after the shutdown should have been failed", failure.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoThreads() {
+		new HashVerificationPool(0, 1);
+	}
+
+	private static final class TestFileSet extends AbstractFileSet {
+
+		TestFileSet(byte[] hash) {
+			super(PIECE_SIZE);
+			fileInfos = Collections.singletonList(new FileInfo(PIECE_SIZE * PIECE_COUNT, 0, new File("unused"), PIECE_COUNT));
+			pieces = new ArrayList<>();
+			for (int i = 0; i < PIECE_COUNT; i++) {
+				pieces.add(new Piece(this, hash, i, PIECE_SIZE, PIECE_SIZE));
+			}
+		}
+
+		List<Piece> getPieces() {
+			return pieces;
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link MemoryTorrentStorage}
+ */
+public class MemoryTorrentStorageTest {
+
+	private static final int SIZE = 2 * MemoryTorrentStorage.SEGMENT_SIZE + 10;
+
+	@Test
+	public void testWriteAndReadAcrossSegments() throws Exception {
+		MemoryTorrentStorage cut = new MemoryTorrentStorage(SIZE);
+		byte[] data = createData(20);
+		long offset = MemoryTorrentStorage.SEGMENT_SIZE - 10;
+
+		cut.write(offset, ByteBuffer.wrap(data, 0, 5), ByteBuffer.wrap(data, 5, 15));
+
+		byte[] result = new byte[20];
+		cut.read(offset, ByteBuffer.wrap(result));
+		assertArrayEquals("Incorrect data read back", data, result);
+		assertEquals("Only the written segments should be allocated", 2L * MemoryTorrentStorage.SEGMENT_SIZE, cut.getAllocatedBytes());
+	}
+
+	@Test
+	public void testReadUnwrittenSection() throws Exception {
+		MemoryTorrentStorage cut = new MemoryTorrentStorage(SIZE);
+
+		try {
+			cut.read(0, ByteBuffer.allocate(3));
+			fail("Reading an unwritten section should fail.");
+		} catch (EOFException e) {
+			// Expected.
+		}
+
+		assertEquals("Reading should not allocate", 0, cut.getAllocatedBytes());
+	}
+
+	@Test
+	public void testReadPartiallyWrittenSegment() throws Exception {
+		MemoryTorrentStorage cut = new MemoryTorrentStorage(SIZE);
+		cut.write(10, ByteBuffer.wrap(createData(10)));
+
+		try {
+			cut.read(5, ByteBuffer.allocate(10));
+			fail("Reading the unwritten gap before the written range should fail.");
+		} catch (EOFException e) {
+			// Expected.
+		}
+
+		try {
+			cut.hash(10, 20, MessageDigest.getInstance("SHA-1"), null);
+			fail("Hashing beyond the written range should fail.");
+		} catch (EOFException e) {
+			// Expected.
+		}
+	}
+
+	@Test
+	public void testHash() throws Exception {
+		MemoryTorrentStorage cut = new MemoryTorrentStorage(SIZE);
+		byte[] data = createData(SIZE);
+		cut.write(0, ByteBuffer.wrap(data));
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		cut.hash(5, SIZE - 5, digest, null);
+
+		MessageDigest expectedDigest = MessageDigest.getInstance("SHA-1");
+		expectedDigest.update(data, 5, SIZE - 5);
+		assertArrayEquals("Incorrect hash", expectedDigest.digest(), digest.digest());
+	}
+
+	@Test
+	public void testIsAvailable() throws Exception {
+		MemoryTorrentStorage cut = new MemoryTorrentStorage(SIZE);
+		cut.write(2L * MemoryTorrentStorage.SEGMENT_SIZE, ByteBuffer.wrap(createData(10)));
+
+		assertTrue("Written segment should be available", cut.isAvailable(2L * MemoryTorrentStorage.SEGMENT_SIZE, 10));
+		assertFalse("Section in unwritten segment should not be available", cut.isAvailable(MemoryTorrentStorage.SEGMENT_SIZE, 10));
+		assertFalse("Unwritten part of a written segment should not be available", cut.isAvailable(2L * MemoryTorrentStorage.SEGMENT_SIZE + 5, 10));
+		assertFalse("Section outside of the torrent should not be available", cut.isAvailable(SIZE - 5, 10));
+		assertFalse("Storage should not be file backed", cut.isFileBacked());
+	}
+
+	@Test
+	public void testWriteInAnyOrder() throws Exception {
+		MemoryTorrentStorage cut = new MemoryTorrentStorage(SIZE);
+		byte[] data = createData(30);
+
+		cut.write(20, ByteBuffer.wrap(data, 20, 10));
+		cut.write(0, ByteBuffer.wrap(data, 0, 10));
+		assertFalse("Section with a gap should not be available", cut.isAvailable(0, 30));
+
+		cut.write(10, ByteBuffer.wrap(data, 10, 10));
+		assertTrue("Adjacent ranges should have been merged", cut.isAvailable(0, 30));
+
+		byte[] result = new byte[30];
+		cut.read(0, ByteBuffer.wrap(result));
+		assertArrayEquals("Incorrect data read back", data, result);
+	}
+
+	@Test(expected = EOFException.class)
+	public void testWriteOutOfBounds() throws Exception {
+		new MemoryTorrentStorage(SIZE).write(SIZE - 5, ByteBuffer.wrap(createData(10)));
+	}
+
+	@Test(expected = EOFException.class)
+	public void testReadOutOfBounds() throws Exception {
+		new MemoryTorrentStorage(SIZE).read(-1, ByteBuffer.allocate(1));
+	}
+
+	private static byte[] createData(int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) i;
+		}
+		return data;
+	}
+}
@@ -0,0 +1,363 @@
+package org.johnnei.javatorrent.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.bittorrent.encoding.SHA1;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.BlockStatus;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link PieceCache}
+ */
+public class PieceCacheTest {
+
+	private static final int BLOCK_SIZE = 4;
+
+	private static final int PIECE_SIZE = 8;
+
+	private static final byte[] PIECE_ZERO = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+	private static final byte[] PIECE_ONE = { 9, 10, 11, 12, 13, 14, 15, 16 };
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private FileInfo fileInfo;
+
+	private TestFileSet fileSet;
+
+	@Before
+	public void setUp() throws Exception {
+		fileInfo = new FileInfo(2 * PIECE_SIZE, 0, temporaryFolder.newFile(), 2);
+		fileSet = new TestFileSet(fileInfo, SHA1.hash(PIECE_ZERO), SHA1.hash(PIECE_ONE));
+	}
+
+	@Test
+	public void testVerifyBeforeWrite() throws Exception {
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece piece = fileSet.getPiece(0);
+
+		cut.storeBlock(piece, 1, block(PIECE_ZERO, 1));
+		cut.storeBlock(piece, 0, block(PIECE_ZERO, 0));
+
+		assertEquals("Blocks must not be written before the hash has been verified", 0, fileInfo.length());
+		assertEquals("Incorrect cache size", PIECE_SIZE, cut.getSize());
+
+		assertTrue("Hash should have matched", cut.checkHash(piece));
+
+		assertArrayEquals("Piece should have been written", PIECE_ZERO, read(0));
+		assertEquals("Incorrect cache size after flush", 0, cut.getSize());
+		assertEquals("Incorrect hits", 1, cut.getHits());
+		assertEquals("Incorrect misses", 0, cut.getMisses());
+		assertEquals("Incorrect flushed pieces", 1, cut.getFlushedPieces());
+		assertEquals("Incorrect written bytes", PIECE_SIZE, cut.getWrittenBytes());
+	}
+
+	@Test
+	public void testVerifyWithoutWriting() throws Exception {
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece pieceZero = fileSet.getPiece(0);
+		Piece pieceOne = fileSet.getPiece(1);
+
+		cut.storeBlock(pieceZero, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(pieceZero, 1, block(PIECE_ZERO, 1));
+
+		assertEquals("Hash should have matched", PieceCache.Verification.MatchedNotWritten, cut.verify(pieceZero));
+		assertEquals("Verification must not write the piece", 0, fileInfo.length());
+
+		cut.storeBlock(pieceOne, 0, block(PIECE_ONE, 0));
+		assertEquals("Verified piece must not be evicted", 0, cut.getEvictedPieces());
+
+		cut.write(pieceZero);
+		assertArrayEquals("Piece should have been written", PIECE_ZERO, read(0));
+		assertEquals("Incorrect flushed pieces", 1, cut.getFlushedPieces());
+		assertEquals("Partially cached piece must be written before it can be verified", PieceCache.Verification.NotWritten, cut.verify(pieceOne));
+	}
+
+	@Test
+	public void testCorruptDataIsNotWritten() throws Exception {
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece piece = fileSet.getPiece(0);
+
+		cut.storeBlock(piece, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(piece, 1, block(PIECE_ONE, 1));
+
+		assertFalse("Hash should not have matched", cut.checkHash(piece));
+		assertEquals("Corrupt data must not be written", 0, fileInfo.length());
+		assertEquals("Incorrect dropped pieces", 1, cut.getDroppedPieces());
+
+		// Redownload the dropped blocks.
+		cut.storeBlock(piece, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(piece, 1, block(PIECE_ZERO, 1));
+
+		assertTrue("Hash should have matched after replacing the corrupt block", cut.checkHash(piece));
+		assertArrayEquals("Piece should have been written", PIECE_ZERO, read(0));
+	}
+
+	@Test
+	public void testCorruptDataIsDropped() throws Exception {
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece pieceZero = fileSet.getPiece(0);
+		Piece pieceOne = fileSet.getPiece(1);
+
+		cut.storeBlock(pieceZero, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(pieceZero, 1, block(PIECE_ONE, 1));
+		pieceZero.setBlockStatus(0, BlockStatus.Stored);
+		pieceZero.setBlockStatus(1, BlockStatus.Stored);
+
+		assertEquals("Hash should not have matched", PieceCache.Verification.Mismatched, cut.verify(pieceZero));
+
+		assertEquals("Corrupt piece must not use the capacity", 0, cut.getSize());
+		assertFalse("Corrupt block must not be reported as cached", cut.isCached(pieceZero, 0));
+		assertFalse("Corrupt block must not be reported as cached", cut.isCached(pieceZero, 1));
+		assertEquals("Dropped blocks must be downloaded again", BlockStatus.Needed, pieceZero.getBlockStatus(0));
+		assertEquals("Dropped blocks must be downloaded again", BlockStatus.Needed, pieceZero.getBlockStatus(1));
+
+		// Neither an eviction nor a flush may write the corrupt data.
+		cut.storeBlock(pieceOne, 0, block(PIECE_ONE, 0));
+		cut.flush();
+
+		assertEquals("Incorrect evicted pieces", 0, cut.getEvictedPieces());
+		assertArrayEquals("Corrupt data must not be written", new byte[PIECE_SIZE], read(0));
+	}
+
+	@Test
+	public void testEvictionWritesPartialPiece() throws Exception {
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece pieceZero = fileSet.getPiece(0);
+		Piece pieceOne = fileSet.getPiece(1);
+
+		cut.storeBlock(pieceZero, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(pieceOne, 0, block(PIECE_ONE, 0));
+
+		assertEquals("Incorrect evicted pieces", 1, cut.getEvictedPieces());
+		assertEquals("Incorrect cache size", PIECE_SIZE, cut.getSize());
+		assertArrayEquals("Evicted block should have been written", new byte[] { 1, 2, 3, 4 }, read(0, BLOCK_SIZE));
+
+		cut.storeBlock(pieceZero, 1, block(PIECE_ZERO, 1));
+
+		assertTrue("Hash should have matched", cut.checkHash(pieceZero));
+		assertEquals("Partially cached piece must be verified from the files", 1, cut.getMisses());
+		assertArrayEquals("Piece should have been written", PIECE_ZERO, read(0));
+	}
+
+	@Test
+	public void testFailedEvictionMarksBlocksAsNeeded() throws Exception {
+		fileSet.setStorage(new MemoryTorrentStorage(2 * PIECE_SIZE) {
+			@Override
+			public void write(long offset, ByteBuffer... buffers) throws IOException {
+				throw new IOException("Stubbed IO Exception");
+			}
+		});
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece pieceZero = fileSet.getPiece(0);
+		Piece pieceOne = fileSet.getPiece(1);
+
+		cut.storeBlock(pieceZero, 0, block(PIECE_ZERO, 0));
+		pieceZero.setBlockStatus(0, BlockStatus.Stored);
+		cut.storeBlock(pieceOne, 0, block(PIECE_ONE, 0));
+
+		assertEquals("Incorrect evicted pieces", 1, cut.getEvictedPieces());
+		assertEquals("Block which could not be written must be downloaded again", BlockStatus.Needed, pieceZero.getBlockStatus(0));
+		assertFalse("Block which could not be written must not be reported as cached", cut.isCached(pieceZero, 0));
+		assertTrue("Block of the new piece should have been cached", cut.isCached(pieceOne, 0));
+	}
+
+	@Test
+	public void testFailedWriteOfVerifiedPiece() throws Exception {
+		fileSet.setStorage(new MemoryTorrentStorage(2 * PIECE_SIZE) {
+			@Override
+			public void write(long offset, ByteBuffer... buffers) throws IOException {
+				throw new IOException("Stubbed IO Exception");
+			}
+		});
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece pieceZero = fileSet.getPiece(0);
+		Piece pieceOne = fileSet.getPiece(1);
+
+		cut.storeBlock(pieceZero, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(pieceZero, 1, block(PIECE_ZERO, 1));
+		assertEquals("Hash should have matched", PieceCache.Verification.MatchedNotWritten, cut.verify(pieceZero));
+
+		try {
+			cut.write(pieceZero);
+			fail("Write should have failed.");
+		} catch (IOException e) {
+			// Expected.
+		}
+
+		// The storage also fails the write of the evicted blocks, which drops them.
+		cut.storeBlock(pieceOne, 0, block(PIECE_ONE, 0));
+		assertEquals("Piece which failed to be written should be evictable", 1, cut.getEvictedPieces());
+		assertFalse("Evicted block should not be cached", cut.isCached(pieceZero, 0));
+	}
+
+	@Test
+	public void testFailedWriteJobDropsPiece() throws Exception {
+		fileSet.setStorage(new MemoryTorrentStorage(2 * PIECE_SIZE) {
+			@Override
+			public void write(long offset, ByteBuffer... buffers) throws IOException {
+				throw new IOException("Stubbed IO Exception");
+			}
+		});
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece piece = fileSet.getPiece(0);
+
+		cut.storeBlock(piece, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(piece, 1, block(PIECE_ZERO, 1));
+		piece.setBlockStatus(0, BlockStatus.Stored);
+		piece.setBlockStatus(1, BlockStatus.Stored);
+		assertEquals("Hash should have matched", PieceCache.Verification.MatchedNotWritten, cut.verify(piece));
+
+		List<IOException> failures = new ArrayList<>();
+		DiskJobWritePiece job = new DiskJobWritePiece(piece, cut, written -> fail("Write should have failed."), failures::add);
+		IOException cause = null;
+		try {
+			job.process();
+		} catch (IOException e) {
+			cause = e;
+		}
+		assertNotNull("Write should have failed", cause);
+		job.onFailure(cause);
+
+		assertEquals("Failure should have been reported", Collections.singletonList(cause), failures);
+		assertEquals("Piece which could not be written must not use the capacity", 0, cut.getSize());
+		assertFalse("Block which could not be written must not be reported as cached", cut.isCached(piece, 0));
+		assertEquals("Block which could not be written must be downloaded again", BlockStatus.Needed, piece.getBlockStatus(0));
+		assertEquals("Block which could not be written must be downloaded again", BlockStatus.Needed, piece.getBlockStatus(1));
+	}
+
+	@Test
+	public void testCheckHashWaitsForEviction() throws Exception {
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		fileSet.setStorage(new MemoryTorrentStorage(2 * PIECE_SIZE) {
+			@Override
+			public void write(long offset, ByteBuffer... buffers) throws IOException {
+				writing.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.write(offset, buffers);
+			}
+		});
+		PieceCache cut = new PieceCache(PIECE_SIZE);
+		Piece pieceZero = fileSet.getPiece(0);
+		Piece pieceOne = fileSet.getPiece(1);
+
+		cut.storeBlock(pieceZero, 0, block(PIECE_ZERO, 0));
+		cut.storeBlock(pieceZero, 1, block(PIECE_ZERO, 1));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> eviction = executor.submit(() -> {
+				cut.storeBlock(pieceOne, 0, block(PIECE_ONE, 0));
+				return null;
+			});
+			assertTrue("Eviction should have started writing", writing.await(5, TimeUnit.SECONDS));
+
+			Future<Boolean> matchingHash = executor.submit(() -> cut.checkHash(pieceZero));
+			release.countDown();
+
+			eviction.get(5, TimeUnit.SECONDS);
+			assertTrue("Hash should have been verified after the evicted blocks were written", matchingHash.get(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPieceLargerThanCapacity() throws Exception {
+		PieceCache cut = new PieceCache(PIECE_SIZE - 1);
+		Piece piece = fileSet.getPiece(1);
+
+		cut.storeBlock(piece, 0, block(PIECE_ONE, 0));
+		cut.storeBlock(piece, 1, block(PIECE_ONE, 1));
+
+		assertArrayEquals("Blocks should have been written directly", PIECE_ONE, read(PIECE_SIZE));
+		assertTrue("Hash should have matched", cut.checkHash(piece));
+		assertEquals("Incorrect misses", 1, cut.getMisses());
+	}
+
+	@Test
+	public void testFlush() throws Exception {
+		PieceCache cut = new PieceCache(2 * PIECE_SIZE);
+
+		cut.storeBlock(fileSet.getPiece(0), 1, block(PIECE_ZERO, 1));
+		cut.flush();
+
+		assertEquals("Incorrect cache size", 0, cut.getSize());
+		assertArrayEquals("Block should have been written", new byte[] { 5, 6, 7, 8 }, read(BLOCK_SIZE, BLOCK_SIZE));
+	}
+
+	private BlockBuffer block(byte[] piece, int blockIndex) {
+		byte[] data = new byte[BLOCK_SIZE];
+		System.arraycopy(piece, blockIndex * BLOCK_SIZE, data, 0, BLOCK_SIZE);
+		return BlockBuffer.wrap(data);
+	}
+
+	private byte[] read(int position) throws IOException {
+		return read(position, PIECE_SIZE);
+	}
+
+	private byte[] read(int position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		fileInfo.read(buffer, position);
+		return buffer.array();
+	}
+
+	private static final class TestFileSet extends AbstractFileSet {
+
+		TestFileSet(FileInfo fileInfo, byte[]... hashes) {
+			super(BLOCK_SIZE);
+			fileInfos = Collections.singletonList(fileInfo);
+			pieces = new ArrayList<>();
+			for (int i = 0; i < hashes.length; i++) {
+				pieces.add(new Piece(this, hashes[i], i, PIECE_SIZE, BLOCK_SIZE));
+			}
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
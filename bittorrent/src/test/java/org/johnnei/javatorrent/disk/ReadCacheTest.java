@@ -0,0 +1,136 @@
+package org.johnnei.javatorrent.disk;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link ReadCache}
+ */
+public class ReadCacheTest {
+
+	private static final int BLOCK_SIZE = 4;
+
+	private static final int PIECE_SIZE = 4 * BLOCK_SIZE;
+
+	private static final byte[] DATA = new byte[2 * PIECE_SIZE];
+
+	static {
+		for (int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) i;
+		}
+	}
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private TestFileSet fileSet;
+
+	@Before
+	public void setUp() throws Exception {
+		FileInfo fileInfo = new FileInfo(DATA.length, 0, temporaryFolder.newFile(), 2);
+		fileInfo.write(ByteBuffer.wrap(DATA), 0);
+		fileSet = new TestFileSet(fileInfo);
+	}
+
+	@Test
+	public void testReadAhead() throws Exception {
+		ReadCache cut = new ReadCache(1024, 2 * BLOCK_SIZE);
+		ReadCacheMetrics torrentMetrics = new ReadCacheMetrics();
+		Piece piece = fileSet.getPiece(0);
+
+		assertRead(cut, piece, 0, BLOCK_SIZE, torrentMetrics);
+		assertEquals("Incorrect amount of misses", 1, torrentMetrics.getMisses());
+		assertEquals("Requested block and read-ahead should be read at once", 3 * BLOCK_SIZE, torrentMetrics.getDiskReadBytes());
+
+		assertRead(cut, piece, BLOCK_SIZE, BLOCK_SIZE, torrentMetrics);
+		assertRead(cut, piece, 2 * BLOCK_SIZE, BLOCK_SIZE, torrentMetrics);
+		assertEquals("Read-ahead blocks should be hits", 2, torrentMetrics.getHits());
+		assertEquals("Incorrect hit count of the cache", 2, cut.getMetrics().getHits());
+
+		assertRead(cut, piece, 3 * BLOCK_SIZE, BLOCK_SIZE, torrentMetrics);
+		assertEquals("Read-ahead must not continue into the next piece", 4 * BLOCK_SIZE, torrentMetrics.getDiskReadBytes());
+		assertEquals("Incorrect hit rate", 0.5, torrentMetrics.getHitRate(), 0.001);
+	}
+
+	@Test
+	public void testReadUnalignedSection() throws Exception {
+		ReadCache cut = new ReadCache(1024, 0);
+		Piece piece = fileSet.getPiece(1);
+
+		assertRead(cut, piece, 2, 2 * BLOCK_SIZE, null);
+		assertEquals("The blocks covering the section should be read", 3 * BLOCK_SIZE, cut.getMetrics().getDiskReadBytes());
+
+		assertRead(cut, piece, 1, BLOCK_SIZE + 2, null);
+		assertEquals("Cached section should be a hit", 1, cut.getMetrics().getHits());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		ReadCache cut = new ReadCache(2 * BLOCK_SIZE, 0);
+
+		assertRead(cut, fileSet.getPiece(0), 0, BLOCK_SIZE, null);
+		assertRead(cut, fileSet.getPiece(0), BLOCK_SIZE, BLOCK_SIZE, null);
+		assertRead(cut, fileSet.getPiece(0), 0, BLOCK_SIZE, null);
+		assertRead(cut, fileSet.getPiece(1), 0, BLOCK_SIZE, null);
+
+		assertEquals("Cache must not exceed its capacity", 2 * BLOCK_SIZE, cut.getSize());
+
+		assertRead(cut, fileSet.getPiece(0), 0, BLOCK_SIZE, null);
+		assertEquals("Recently used block should have been kept", 2, cut.getMetrics().getHits());
+
+		assertRead(cut, fileSet.getPiece(0), BLOCK_SIZE, BLOCK_SIZE, null);
+		assertEquals("Least recently used block should have been evicted", 4, cut.getMetrics().getMisses());
+	}
+
+	private static void assertRead(ReadCache cache, Piece piece, int offset, int length, ReadCacheMetrics metrics) throws Exception {
+		BlockBuffer buffer = BlockBuffer.wrap(new byte[length]);
+		cache.read(piece, offset, buffer, metrics);
+
+		int start = piece.getIndex() * PIECE_SIZE + offset;
+		assertArrayEquals("Incorrect data has been read", Arrays.copyOfRange(DATA, start, start + length), buffer.getArray());
+	}
+
+	private static final class TestFileSet extends AbstractFileSet {
+
+		TestFileSet(FileInfo fileInfo) {
+			super(BLOCK_SIZE);
+			fileInfos = Collections.singletonList(fileInfo);
+			pieces = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				pieces.add(new Piece(this, new byte[20], i, PIECE_SIZE, BLOCK_SIZE));
+			}
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package org.johnnei.javatorrent.disk;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.bittorrent.encoding.SHA1;
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link RecheckEngine}
+ */
+public class RecheckEngineTest {
+
+	private static final int PIECE_SIZE = 8;
+
+	private static final int PIECE_COUNT = 10;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private RecheckEngine cut;
+
+	@After
+	public void tearDown() {
+		if (cut != null) {
+			cut.shutdown();
+		}
+	}
+
+	@Test
+	public void testRecheck() throws Exception {
+		cut = new RecheckEngine(3, TokenBucket.UNLIMITED);
+		TestFileSet fileSet = createFileSet();
+
+		List<Piece> matchingPieces = Collections.synchronizedList(new ArrayList<>());
+		List<Recheck> completed = new ArrayList<>();
+		Recheck recheck = cut.recheck(fileSet.getPieces(), new IRecheckListener() {
+			@Override
+			public void onPieceChecked(Recheck recheck, Piece piece, boolean matchingHash) {
+				if (matchingHash) {
+					matchingPieces.add(piece);
+				}
+			}
+
+			@Override
+			public void onRecheckCompleted(Recheck recheck) {
+				completed.add(recheck);
+			}
+		});
+
+		assertSame("Completion should return the recheck", recheck, recheck.getCompletion().get(5, TimeUnit.SECONDS));
+
+		assertTrue("Recheck should be done", recheck.isDone());
+		assertEquals("Incorrect total pieces", PIECE_COUNT, recheck.getTotalPieces());
+		assertEquals("Incorrect checked pieces", PIECE_COUNT, recheck.getCheckedPieces());
+		assertEquals("Only the even pieces are on disk", PIECE_COUNT / 2, recheck.getMatchingPieces());
+		assertEquals("Incorrect checked bytes", PIECE_COUNT * PIECE_SIZE, recheck.getCheckedBytes());
+		assertEquals("Incorrect progress", 1, recheck.getProgress(), 0.001);
+		assertEquals("Incorrect matching pieces reported", PIECE_COUNT / 2, matchingPieces.size());
+		assertTrue("Only even pieces should have matched", matchingPieces.stream().allMatch(piece -> piece.getIndex() % 2 == 0));
+		assertEquals("Completion should have been reported once", 1, completed.size());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		cut = new RecheckEngine(1, TokenBucket.UNLIMITED);
+		TestFileSet fileSet = createFileSet();
+
+		Recheck recheck = cut.recheck(fileSet.getPieces(), (r, piece, matchingHash) -> r.cancel());
+		recheck.getCompletion().get(5, TimeUnit.SECONDS);
+
+		assertTrue("Recheck should have been cancelled", recheck.isCancelled());
+		assertFalse("Cancelled recheck must not have checked all pieces", recheck.getCheckedPieces() == PIECE_COUNT);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConcurrency() {
+		new RecheckEngine(0, TokenBucket.UNLIMITED);
+	}
+
+	private TestFileSet createFileSet() throws Exception {
+		FileInfo fileInfo = new FileInfo(PIECE_SIZE * PIECE_COUNT, 0, temporaryFolder.newFile(), PIECE_COUNT);
+		List<byte[]> hashes = new ArrayList<>();
+		for (int i = 0; i < PIECE_COUNT; i++) {
+			byte[] data = new byte[PIECE_SIZE];
+			data[0] = (byte) (i + 1);
+			hashes.add(SHA1.hash(data));
+
+			if (i % 2 == 0) {
+				fileInfo.write(ByteBuffer.wrap(data), (long) i * PIECE_SIZE);
+			}
+		}
+
+		return new TestFileSet(fileInfo, hashes);
+	}
+
+	private static final class TestFileSet extends AbstractFileSet {
+
+		TestFileSet(FileInfo fileInfo, List<byte[]> hashes) {
+			super(PIECE_SIZE);
+			fileInfos = Collections.singletonList(fileInfo);
+			pieces = new ArrayList<>();
+			for (int i = 0; i < hashes.size(); i++) {
+				pieces.add(new Piece(this, hashes.get(i), i, PIECE_SIZE, PIECE_SIZE));
+			}
+		}
+
+		List<Piece> getPieces() {
+			return pieces;
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -5,9 +5,11 @@ import org.johnnei.javatorrent.disk.IDiskJob;
 import org.easymock.EasyMockSupport;
 import org.junit.Test;
 
+import static org.easymock.EasyMock.expect;
 import static org.johnnei.javatorrent.test.TestUtils.assertEqualsMethod;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests {@link DiskJobWrapper}
@@ -28,4 +30,26 @@ public class DiskJobWrapperTest extends EasyMockSupport {
 		assertEquals("hashcode wrappers don't match", wrapperOne.hashCode(), wrapperTwo.hashCode());
 		assertNotEquals("Non-Equal wrappers match", wrapperOne, wrapperThree);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testCompareToKeepsInsertionOrderWithinPriority() throws Exception {
+		IDiskJob diskJobOne = createMock(IDiskJob.class);
+		IDiskJob diskJobTwo = createMock(IDiskJob.class);
+		IDiskJob diskJobThree = createMock(IDiskJob.class);
+		expect(diskJobOne.getPriority()).andStubReturn(5);
+		expect(diskJobTwo.getPriority()).andStubReturn(5);
+		expect(diskJobThree.getPriority()).andStubReturn(1);
+
+		replayAll();
+
+		DiskJobWrapper wrapperOne = new DiskJobWrapper(diskJobOne);
+		DiskJobWrapper wrapperTwo = new DiskJobWrapper(diskJobTwo);
+		DiskJobWrapper wrapperThree = new DiskJobWrapper(diskJobThree);
+
+		assertTrue("Earlier job should be processed first", wrapperOne.compareTo(wrapperTwo) < 0);
+		assertTrue("Later job should be processed last", wrapperTwo.compareTo(wrapperOne) > 0);
+		assertTrue("Priority should take precedence over insertion order", wrapperThree.compareTo(wrapperOne) < 0);
+
+		verifyAll();
+	}
+}
@@ -1,8 +1,26 @@
 package org.johnnei.javatorrent.internal.disk;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.johnnei.javatorrent.bittorrent.encoding.SHA1;
+import org.johnnei.javatorrent.disk.DiskAffinity;
+import org.johnnei.javatorrent.disk.DiskBackpressure;
+import org.johnnei.javatorrent.disk.DiskJobWriteBlock;
 import org.johnnei.javatorrent.disk.IDiskJob;
+import org.johnnei.javatorrent.disk.MemoryTorrentStorage;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
 
 import org.easymock.EasyMockSupport;
 import org.easymock.IMocksControl;
@@ -10,6 +28,10 @@ import org.junit.Test;
 
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests {@link IOManager}
@@ -43,6 +65,28 @@ public class IOManagerTest extends EasyMockSupport {
 		verifyAll();
 	}
 
+	@Test
+	public void testAwaitTermination() throws Exception {
+		IOManager cut = new IOManager();
+
+		IDiskJob diskJobMock = createMock(IDiskJob.class);
+
+		expect(diskJobMock.getPriority()).andStubReturn(5);
+		diskJobMock.process();
+
+		replayAll();
+
+		cut.start();
+		cut.stop();
+		assertTrue("Workers should have stopped", cut.awaitTermination(5, TimeUnit.SECONDS));
+
+		cut.addTask(diskJobMock);
+		assertEquals("Job should remain queued once the workers have stopped", 1, cut.getQueueSize());
+		cut.run();
+
+		verifyAll();
+	}
+
 	@Test
 	public void testFailOnFirstProcess() throws Exception {
 		IOManager cut = new IOManager();
@@ -62,6 +106,27 @@ public class IOManagerTest extends EasyMockSupport {
 		verifyAll();
 	}
 
+	@Test
+	public void testFailOnAllAttempts() throws Exception {
+		IOManager cut = new IOManager();
+
+		IDiskJob diskJobMock = createMock(IDiskJob.class);
+		IOException failure = new IOException("Stubbed IO Exception");
+
+		expect(diskJobMock.getPriority()).andStubReturn(5);
+		diskJobMock.process();
+		expectLastCall().andThrow(failure).times(DiskJobWrapper.MAX_ATTEMPTS);
+		diskJobMock.onFailure(failure);
+
+		replayAll();
+
+		cut.addTask(diskJobMock);
+		cut.run();
+
+		verifyAll();
+		assertEquals("Failed job should not be retried", 0, cut.getQueueSize());
+	}
+
 	@Test
 	public void testHonorPriority() throws IOException {
 		IOManager cut = new IOManager();
@@ -90,4 +155,188 @@ public class IOManagerTest extends EasyMockSupport {
 
 		verifyAll();
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testWorkersProcessJobs() throws Exception {
+		IOManager cut = new IOManager(2, DiskAffinity.File);
+		CountDownLatch latch = new CountDownLatch(4);
+
+		IDiskJob diskJobMock = createMock(IDiskJob.class);
+		expect(diskJobMock.getPriority()).andStubReturn(5);
+		expect(diskJobMock.getPiece()).andStubReturn(null);
+		diskJobMock.process();
+		expectLastCall().andAnswer(() -> {
+			latch.countDown();
+			return null;
+		}).times(4);
+
+		replayAll();
+
+		cut.start();
+		try {
+			for (int i = 0; i < 4; i++) {
+				cut.addTask(diskJobMock);
+			}
+
+			assertTrue("Jobs should have been processed by the worker threads", latch.await(5, TimeUnit.SECONDS));
+		} finally {
+			cut.stop();
+		}
+
+		verifyAll();
+	}
+
+	@Test
+	public void testAffinityPinsFileToWorker() {
+		IOManager cut = new IOManager(4, DiskAffinity.File);
+
+		FileInfo fileMock = createMock(FileInfo.class);
+		AbstractFileSet fileSetMock = createMock(AbstractFileSet.class);
+		Piece pieceOneMock = createMock(Piece.class);
+		Piece pieceTwoMock = createMock(Piece.class);
+		IDiskJob diskJobOneMock = createMock(IDiskJob.class);
+		IDiskJob diskJobTwoMock = createMock(IDiskJob.class);
+
+		expect(diskJobOneMock.getPiece()).andStubReturn(pieceOneMock);
+		expect(diskJobTwoMock.getPiece()).andStubReturn(pieceTwoMock);
+		expect(pieceOneMock.getFileSet()).andStubReturn(fileSetMock);
+		expect(pieceTwoMock.getFileSet()).andStubReturn(fileSetMock);
+		expect(pieceOneMock.getIndex()).andStubReturn(1);
+		expect(pieceTwoMock.getIndex()).andStubReturn(2);
+		expect(fileSetMock.getFileForBytes(1, 0, 0)).andStubReturn(fileMock);
+		expect(fileSetMock.getFileForBytes(2, 0, 0)).andStubReturn(fileMock);
+
+		replayAll();
+
+		assertEquals("Jobs on the same file must be processed by the same worker", cut.getWorkerIndex(diskJobOneMock), cut.getWorkerIndex(diskJobTwoMock));
+		assertEquals("Incorrect worker count", 4, cut.getWorkerCount());
+
+		verifyAll();
+	}
+
+	@Test
+	public void testUnboundJobsGoToLeastLoadedWorker() {
+		IOManager cut = new IOManager(2, DiskAffinity.File);
+
+		IDiskJob diskJobMock = createMock(IDiskJob.class);
+		expect(diskJobMock.getPriority()).andStubReturn(5);
+		expect(diskJobMock.getPiece()).andStubReturn(null);
+
+		replayAll();
+
+		int firstWorker = cut.getWorkerIndex(diskJobMock);
+		cut.addTask(diskJobMock);
+
+		assertEquals("Second job should be assigned to the idle worker", 1 - firstWorker, cut.getWorkerIndex(diskJobMock));
+
+		verifyAll();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoWorkers() {
+		new IOManager(0, DiskAffinity.File);
+	}
+
+	@Test
+	public void testCoalesceAdjacentWrites() throws Exception {
+		IOManager cut = new IOManager();
+
+		byte[] data = new byte[2 * CoalesceFileSet.PIECE_SIZE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		RecordingStorage storage = new RecordingStorage(data.length);
+		CoalesceFileSet fileSet = new CoalesceFileSet(SHA1.hash(Arrays.copyOf(data, CoalesceFileSet.PIECE_SIZE)));
+		fileSet.setStorage(storage);
+
+		List<DiskJobWriteBlock> completedJobs = new ArrayList<>();
+		int[][] blocks = { { 1, 0 }, { 0, 2 }, { 0, 0 }, { 0, 1 }, { 0, 3 } };
+		for (int[] block : blocks) {
+			int offset = block[0] * CoalesceFileSet.PIECE_SIZE + block[1] * CoalesceFileSet.BLOCK_SIZE;
+			byte[] blockData = Arrays.copyOfRange(data, offset, offset + CoalesceFileSet.BLOCK_SIZE);
+			cut.addTask(new DiskJobWriteBlock(fileSet.getPiece(block[0]), block[1], blockData, completedJobs::add));
+		}
+
+		cut.run();
+
+		assertEquals("All jobs should have completed", blocks.length, completedJobs.size());
+		assertEquals("Consecutive blocks should have been merged", Arrays.asList(0L, (long) CoalesceFileSet.PIECE_SIZE), storage.writeOffsets);
+		assertEquals("Incorrect merged write sizes", Arrays.asList(CoalesceFileSet.PIECE_SIZE, CoalesceFileSet.BLOCK_SIZE), storage.writeLengths);
+
+		byte[] storedData = new byte[data.length - 3 * CoalesceFileSet.BLOCK_SIZE];
+		storage.read(0, ByteBuffer.wrap(storedData));
+		assertArrayEquals("Incorrect data has been stored", Arrays.copyOf(data, storedData.length), storedData);
+		assertTrue("Merged blocks should be hashed as they are stored", fileSet.getPiece(0).checkHash());
+	}
+
+	@Test
+	public void testReportWritesToBackpressure() throws Exception {
+		DiskBackpressure backpressure = new DiskBackpressure(CoalesceFileSet.BLOCK_SIZE, 3 * CoalesceFileSet.BLOCK_SIZE);
+		IOManager cut = new IOManager(1, DiskAffinity.File, Duration.ZERO, backpressure);
+
+		CoalesceFileSet fileSet = new CoalesceFileSet(new byte[20]);
+		fileSet.setStorage(new MemoryTorrentStorage(2 * CoalesceFileSet.PIECE_SIZE));
+		for (int block = 0; block < 4; block++) {
+			cut.addTask(new DiskJobWriteBlock(fileSet.getPiece(0), block, new byte[CoalesceFileSet.BLOCK_SIZE], job -> {}));
+		}
+
+		assertEquals("Incorrect queue size", 4, cut.getQueueSize());
+		assertEquals("Incorrect pending writes", 4, backpressure.getPendingWrites());
+		assertEquals("Incorrect pending write bytes", 4L * CoalesceFileSet.BLOCK_SIZE, backpressure.getPendingWriteBytes());
+		assertTrue("Requesting should be paused above the high watermark", backpressure.isPaused());
+
+		cut.run();
+
+		assertEquals("All jobs should have been processed", 0, cut.getQueueSize());
+		assertEquals("Stored writes should no longer be pending", 0, backpressure.getPendingWriteBytes());
+		assertFalse("Requesting should resume below the low watermark", backpressure.isPaused());
+	}
+
+	private static final class RecordingStorage extends MemoryTorrentStorage {
+
+		private final List<Long> writeOffsets = new ArrayList<>();
+
+		private final List<Integer> writeLengths = new ArrayList<>();
+
+		RecordingStorage(long size) {
+			super(size);
+		}
+
+		@Override
+		public void write(long offset, ByteBuffer... buffers) throws IOException {
+			writeOffsets.add(offset);
+			writeLengths.add(Arrays.stream(buffers).mapToInt(ByteBuffer::remaining).sum());
+			super.write(offset, buffers);
+		}
+	}
+
+	private static final class CoalesceFileSet extends AbstractFileSet {
+
+		private static final int BLOCK_SIZE = 4;
+
+		private static final int PIECE_SIZE = 4 * BLOCK_SIZE;
+
+		CoalesceFileSet(byte[] firstPieceHash) {
+			super(BLOCK_SIZE);
+			fileInfos = Collections.singletonList(new FileInfo(2 * PIECE_SIZE, 0, new File("unused"), 2));
+			pieces = new ArrayList<>();
+			pieces.add(new Piece(this, firstPieceHash, 0, PIECE_SIZE, BLOCK_SIZE));
+			pieces.add(new Piece(this, new byte[20], 1, PIECE_SIZE, BLOCK_SIZE));
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
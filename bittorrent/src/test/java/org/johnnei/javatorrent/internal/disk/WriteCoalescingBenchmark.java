@@ -0,0 +1,229 @@
+package org.johnnei.javatorrent.internal.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.disk.DiskAffinity;
+import org.johnnei.javatorrent.disk.DiskJobWriteBlock;
+import org.johnnei.javatorrent.disk.IDiskJob;
+import org.johnnei.javatorrent.disk.MemoryTorrentStorage;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+/**
+ * Measures the time to store a torrent of which the blocks arrive in random order on a simulated spinning disk. Each write which doesn't continue at the
+ * end of the previous write pays the seek time, after which the data is transferred at the sequential rate of the disk.
+ *
+ * Blocks arrive at a fixed network rate for several pieces at a time, like they would when they are downloaded from many peers. The blocks are either
+ * written one at a time (as before writes were coalesced) or coalesced with the given batching windows.
+ *
+ * Usage: <code>WriteCoalescingBenchmark [batching window in milliseconds...]</code>
+ */
+public class WriteCoalescingBenchmark {
+
+	private static final int BLOCK_SIZE = 1 << 14;
+
+	private static final int PIECE_SIZE = 1 << 18;
+
+	private static final int PIECE_COUNT = 32;
+
+	/**
+	 * The amount of pieces of which blocks are received at the same time.
+	 */
+	private static final int PIECES_IN_FLIGHT = 8;
+
+	private static final long SEEK_TIME = TimeUnit.MILLISECONDS.toNanos(4);
+
+	private static final long DISK_BYTES_PER_SECOND = 100L << 20;
+
+	private static final long NETWORK_BYTES_PER_SECOND = 40L << 20;
+
+	public static void main(String[] args) throws Exception {
+		List<Long> windows = new ArrayList<>();
+		for (String arg : args) {
+			windows.add(Long.parseLong(arg));
+		}
+		if (windows.isEmpty()) {
+			windows.add(0L);
+			windows.add(5L);
+			windows.add(20L);
+		}
+
+		List<int[]> arrivalOrder = createArrivalOrder(new Random(42));
+
+		run("uncoalesced", Duration.ZERO, arrivalOrder, false);
+		for (long window : windows) {
+			run(String.format("window=%dms", window), Duration.ofMillis(window), arrivalOrder, true);
+		}
+	}
+
+	private static void run(String name, Duration window, List<int[]> arrivalOrder, boolean coalesce) throws Exception {
+		ThrottledStorage storage = new ThrottledStorage((long) PIECE_SIZE * PIECE_COUNT);
+		BenchmarkFileSet fileSet = new BenchmarkFileSet();
+		fileSet.setStorage(storage);
+
+		IOManager ioManager = new IOManager(1, DiskAffinity.File, window);
+		ioManager.start();
+
+		CountDownLatch completedBlocks = new CountDownLatch(arrivalOrder.size());
+		long blockInterval = TimeUnit.SECONDS.toNanos(1) * BLOCK_SIZE / NETWORK_BYTES_PER_SECOND;
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < arrivalOrder.size(); i++) {
+				// Pace the arrival of the blocks at the network rate.
+				long arrivalTime = start + i * blockInterval;
+				long delay = arrivalTime - System.nanoTime();
+				if (delay > 0) {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+
+				int[] block = arrivalOrder.get(i);
+				DiskJobWriteBlock job = new DiskJobWriteBlock(fileSet.getPiece(block[0]), block[1], new byte[BLOCK_SIZE], x -> completedBlocks.countDown());
+				ioManager.addTask(coalesce ? job : new UncoalescedJob(job));
+			}
+
+			completedBlocks.await();
+		} finally {
+			ioManager.stop();
+		}
+
+		long duration = System.nanoTime() - start;
+		long megabytes = (long) PIECE_SIZE * PIECE_COUNT >> 20;
+		System.out.printf(
+				"%s: stored %d MiB in %d ms (%.1f MiB/s), writes=%d, seeks=%d, average write=%d KiB%n",
+				name,
+				megabytes,
+				TimeUnit.NANOSECONDS.toMillis(duration),
+				megabytes / (duration / 1e9),
+				storage.writes,
+				storage.seeks,
+				storage.writtenBytes / storage.writes >> 10);
+	}
+
+	/**
+	 * Creates the order in which the blocks arrive: the blocks of the pieces in flight arrive interleaved in random order.
+	 */
+	private static List<int[]> createArrivalOrder(Random random) {
+		List<int[]> arrivalOrder = new ArrayList<>();
+		int blocksPerPiece = PIECE_SIZE / BLOCK_SIZE;
+		for (int firstPiece = 0; firstPiece < PIECE_COUNT; firstPiece += PIECES_IN_FLIGHT) {
+			List<int[]> blocks = new ArrayList<>();
+			for (int piece = firstPiece; piece < Math.min(PIECE_COUNT, firstPiece + PIECES_IN_FLIGHT); piece++) {
+				for (int block = 0; block < blocksPerPiece; block++) {
+					blocks.add(new int[] { piece, block });
+				}
+			}
+			Collections.shuffle(blocks, random);
+			arrivalOrder.addAll(blocks);
+		}
+		return arrivalOrder;
+	}
+
+	/**
+	 * A storage which simulates the seek time and sequential rate of a spinning disk.
+	 */
+	private static final class ThrottledStorage extends MemoryTorrentStorage {
+
+		private long position = -1;
+
+		private long writes;
+
+		private long seeks;
+
+		private long writtenBytes;
+
+		ThrottledStorage(long size) {
+			super(size);
+		}
+
+		@Override
+		public synchronized void write(long offset, ByteBuffer... buffers) throws IOException {
+			long length = 0;
+			for (ByteBuffer buffer : buffers) {
+				length += buffer.remaining();
+			}
+
+			long cost = TimeUnit.SECONDS.toNanos(1) * length / DISK_BYTES_PER_SECOND;
+			if (offset != position) {
+				cost += SEEK_TIME;
+				seeks++;
+			}
+
+			try {
+				TimeUnit.NANOSECONDS.sleep(cost);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while writing.", e);
+			}
+
+			super.write(offset, buffers);
+			position = offset + length;
+			writes++;
+			writtenBytes += length;
+		}
+	}
+
+	/**
+	 * Hides the write job from the coalescing of the disk worker, which stores the block on its own like before writes were coalesced.
+	 */
+	private static final class UncoalescedJob implements IDiskJob {
+
+		private final DiskJobWriteBlock job;
+
+		UncoalescedJob(DiskJobWriteBlock job) {
+			this.job = job;
+		}
+
+		@Override
+		public void process() throws IOException {
+			job.process();
+		}
+
+		@Override
+		public int getPriority() {
+			return job.getPriority();
+		}
+
+		@Override
+		public Piece getPiece() {
+			return job.getPiece();
+		}
+	}
+
+	private static final class BenchmarkFileSet extends AbstractFileSet {
+
+		BenchmarkFileSet() {
+			super(BLOCK_SIZE);
+			fileInfos = Collections.singletonList(new FileInfo((long) PIECE_SIZE * PIECE_COUNT, 0, new File("unused"), PIECE_COUNT));
+			pieces = new ArrayList<>();
+			for (int i = 0; i < PIECE_COUNT; i++) {
+				pieces.add(new Piece(this, new byte[20], i, PIECE_SIZE, BLOCK_SIZE));
+			}
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link ByteInputStream}
+ */
+public class ByteInputStreamTest {
+
+	@Test
+	public void testPollSpeedCountsAllReads() throws Exception {
+		ByteInputStream cut = new ByteInputStream(new ByteArrayInputStream(new byte[32]));
+
+		cut.read();
+		cut.readInt();
+		cut.readFully(new byte[3]);
+		cut.readByteArray(4);
+		cut.readBytes(new byte[8], 0, 8);
+
+		assertEquals("Incorrect amount of read bytes", 20, cut.pollSpeed());
+		assertEquals("Speed should have been reset by the poll", 0, cut.pollSpeed());
+	}
+
+}
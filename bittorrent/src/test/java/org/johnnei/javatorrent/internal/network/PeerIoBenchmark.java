@@ -0,0 +1,315 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.async.LoopingRunnable;
+import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
+import org.johnnei.javatorrent.internal.network.socket.ISocket;
+import org.johnnei.javatorrent.internal.network.socket.NioTcpSocket;
+import org.johnnei.javatorrent.internal.network.socket.TcpSocket;
+import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.network.InStream;
+import org.johnnei.javatorrent.network.OutStream;
+import org.johnnei.javatorrent.torrent.Metadata;
+import org.johnnei.javatorrent.torrent.Torrent;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+
+/**
+ * Compares the CPU usage and message latency of the {@link PeerIoReactor} for polled (blocking {@link TcpSocket}) and selected ({@link NioTcpSocket}) peers
+ * over loopback connections. The {@link ThreadPerPeerIo} engine is measured as well (blocking {@link TcpSocket} with platform threads).
+ *
+ * Usage: <code>PeerIoBenchmark [connections,...] [pings per second] [measure seconds]</code>
+ *
+ * Each connection consists of two peers which are both handled by the reactor under test. The driver thread sends pings over the connections at a fixed
+ * rate, the other end answers them with a pong which records the round trip time.
+ */
+public class PeerIoBenchmark {
+
+	private static final int MESSAGE_PING = 100;
+
+	private static final int MESSAGE_PONG = 101;
+
+	private static final long IDLE_MILLIS = 2_000;
+
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	private final MessageFactory messageFactory = new MessageFactory.Builder()
+			.registerMessage(MESSAGE_PING, () -> new MessagePing(MESSAGE_PING))
+			.registerMessage(MESSAGE_PONG, () -> new MessagePing(MESSAGE_PONG))
+			.build();
+
+	private final Torrent torrent = new Torrent.Builder()
+			.setMetadata(new Metadata.Builder().setHash(new byte[20]).build())
+			.build();
+
+	private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+
+	public static void main(String[] args) throws Exception {
+		int[] connectionCounts = args.length > 0 ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray() : new int[] { 100, 1_000, 10_000 };
+		int pingsPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+		int measureSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		System.out.printf("%-8s %8s %12s %12s %12s %10s %10s %10s%n", "mode", "conns", "idle cpu ms", "load cpu ms", "pongs", "p50 us", "p99 us", "max us");
+		for (int connectionCount : connectionCounts) {
+			for (Mode mode : Mode.values()) {
+				try {
+					new PeerIoBenchmark().run(mode, connectionCount, pingsPerSecond, measureSeconds);
+				} catch (IOException e) {
+					System.out.printf("%-8s %8d failed: %s%n", mode.getName(), connectionCount, e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void run(Mode mode, int connectionCount, int pingsPerSecond, int measureSeconds) throws Exception {
+		List<Thread> ioThreads = Collections.synchronizedList(new ArrayList<>());
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "Peer IO");
+			thread.setDaemon(true);
+			ioThreads.add(thread);
+			return thread;
+		};
+
+		IPeerIoEngine engine;
+		if (mode == Mode.THREADS) {
+			engine = new ThreadPerPeerIo(threadFactory);
+		} else {
+			engine = new ReactorEngine(threadFactory);
+		}
+		engine.start();
+
+		List<Peer> pingingPeers = new ArrayList<>(connectionCount);
+		List<Peer> allPeers = new ArrayList<>(connectionCount * 2);
+		try {
+			connect(mode == Mode.SELECTED, connectionCount, pingingPeers, allPeers);
+			allPeers.forEach(engine::registerPeer);
+
+			// Measure the cost of having the connections open without any traffic.
+			long idleCpu = getCpuTime(ioThreads);
+			Thread.sleep(IDLE_MILLIS);
+			idleCpu = getCpuTime(ioThreads) - idleCpu;
+
+			long loadCpu = getCpuTime(ioThreads);
+			drive(pingingPeers, pingsPerSecond, measureSeconds);
+			// Allow in-flight pongs to arrive.
+			Thread.sleep(100);
+			loadCpu = getCpuTime(ioThreads) - loadCpu;
+
+			long[] latencies = latencyRecorder.snapshot();
+			System.out.printf(
+					"%-8s %8d %12d %12d %12d %10d %10d %10d%n",
+					mode.getName(),
+					connectionCount,
+					TimeUnit.NANOSECONDS.toMillis(idleCpu),
+					TimeUnit.NANOSECONDS.toMillis(loadCpu),
+					latencies.length,
+					percentile(latencies, 0.50),
+					percentile(latencies, 0.99),
+					percentile(latencies, 1.00));
+		} finally {
+			engine.stop();
+			allPeers.forEach(peer -> peer.getBitTorrentSocket().close());
+		}
+	}
+
+	private long getCpuTime(List<Thread> threads) {
+		synchronized (threads) {
+			return threads.stream().mapToLong(thread -> Math.max(0, threadMXBean.getThreadCpuTime(thread.getId()))).sum();
+		}
+	}
+
+	private void connect(boolean selected, int connectionCount, List<Peer> pingingPeers, List<Peer> allPeers) throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		if (selected) {
+			try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+				serverChannel.socket().bind(new InetSocketAddress(loopback, 0), connectionCount);
+				for (int i = 0; i < connectionCount; i++) {
+					NioTcpSocket socket = new NioTcpSocket();
+					socket.connect((InetSocketAddress) serverChannel.socket().getLocalSocketAddress());
+					addPair(socket, new NioTcpSocket(serverChannel.accept()), pingingPeers, allPeers);
+				}
+			}
+		} else {
+			try (ServerSocket serverSocket = new ServerSocket(0, connectionCount, loopback)) {
+				for (int i = 0; i < connectionCount; i++) {
+					TcpSocket socket = new TcpSocket();
+					socket.connect(new InetSocketAddress(loopback, serverSocket.getLocalPort()));
+					addPair(socket, new TcpSocket(serverSocket.accept()), pingingPeers, allPeers);
+				}
+			}
+		}
+	}
+
+	private void addPair(ISocket local, ISocket remote, List<Peer> pingingPeers, List<Peer> allPeers) throws IOException {
+		Peer localPeer = createPeer(local);
+		pingingPeers.add(localPeer);
+		allPeers.add(localPeer);
+		allPeers.add(createPeer(remote));
+	}
+
+	private Peer createPeer(ISocket socket) throws IOException {
+		return new Peer.Builder()
+				.setTorrent(torrent)
+				.setSocket(new BitTorrentSocket(messageFactory, socket))
+				.setExtensionBytes(new byte[8])
+				.setId(new byte[20])
+				.build();
+	}
+
+	private void drive(List<Peer> peers, int pingsPerSecond, int measureSeconds) throws InterruptedException {
+		final long tickNanos = TimeUnit.MILLISECONDS.toNanos(10);
+		final int pingsPerTick = Math.max(1, pingsPerSecond / 100);
+		long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(measureSeconds);
+		int nextPeer = 0;
+
+		while (System.nanoTime() < endTime) {
+			long tickStart = System.nanoTime();
+			for (int i = 0; i < pingsPerTick; i++) {
+				MessagePing ping = new MessagePing(MESSAGE_PING);
+				ping.timestamp = System.nanoTime();
+				peers.get(nextPeer).getBitTorrentSocket().enqueueMessage(ping);
+				nextPeer = (nextPeer + 1) % peers.size();
+			}
+
+			long sleepNanos = tickNanos - (System.nanoTime() - tickStart);
+			if (sleepNanos > 0) {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			}
+		}
+	}
+
+	private static long percentile(long[] sortedValues, double percentile) {
+		if (sortedValues.length == 0) {
+			return 0;
+		}
+
+		int index = (int) Math.ceil(percentile * sortedValues.length) - 1;
+		return TimeUnit.NANOSECONDS.toMicros(sortedValues[Math.max(0, index)]);
+	}
+
+	private enum Mode {
+		POLLED("polled"),
+		SELECTED("selected"),
+		THREADS("threads");
+
+		private final String name;
+
+		Mode(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	/**
+	 * Runs a single {@link PeerIoReactor} on a thread of the given factory so that its CPU time can be measured.
+	 */
+	private static final class ReactorEngine implements IPeerIoEngine {
+
+		private final PeerIoReactor reactor;
+
+		private final LoopingRunnable runnable;
+
+		private final ThreadFactory threadFactory;
+
+		ReactorEngine(ThreadFactory threadFactory) throws IOException {
+			this.threadFactory = threadFactory;
+			reactor = new PeerIoReactor();
+			runnable = new LoopingRunnable(reactor, false);
+		}
+
+		@Override
+		public void start() {
+			threadFactory.newThread(runnable).start();
+		}
+
+		@Override
+		public void stop() {
+			runnable.stop();
+			reactor.wakeup();
+		}
+
+		@Override
+		public void registerPeer(Peer peer) {
+			reactor.registerPeer(peer);
+		}
+	}
+
+	private final class MessagePing implements IMessage {
+
+		private final int id;
+
+		private long timestamp;
+
+		MessagePing(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public void write(OutStream outStream) {
+			outStream.writeLong(timestamp);
+		}
+
+		@Override
+		public void read(InStream inStream) {
+			timestamp = inStream.readLong();
+		}
+
+		@Override
+		public void process(Peer peer) {
+			if (id == MESSAGE_PING) {
+				MessagePing pong = new MessagePing(MESSAGE_PONG);
+				pong.timestamp = timestamp;
+				peer.getBitTorrentSocket().enqueueMessage(pong);
+			} else {
+				latencyRecorder.record(System.nanoTime() - timestamp);
+			}
+		}
+
+		@Override
+		public int getLength() {
+			return 9;
+		}
+
+		@Override
+		public int getId() {
+			return id;
+		}
+	}
+
+	private static final class LatencyRecorder {
+
+		private long[] values = new long[1024];
+
+		private int count;
+
+		synchronized void record(long value) {
+			if (count == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+
+			values[count++] = value;
+		}
+
+		synchronized long[] snapshot() {
+			long[] snapshot = Arrays.copyOf(values, count);
+			Arrays.sort(snapshot);
+			return snapshot;
+		}
+	}
+}
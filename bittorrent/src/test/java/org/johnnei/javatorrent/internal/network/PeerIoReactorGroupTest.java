@@ -0,0 +1,60 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.util.List;
+
+import org.johnnei.javatorrent.async.LoopingRunnable;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+
+import org.easymock.EasyMockSupport;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PeerIoReactorGroup}
+ */
+public class PeerIoReactorGroupTest extends EasyMockSupport {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectNoThreads() throws Exception {
+		new PeerIoReactorGroup(0);
+	}
+
+	@Test
+	public void testGetReactorIndex() {
+		Peer peerMock = createMock(Peer.class);
+
+		replayAll();
+
+		int index = PeerIoReactorGroup.getReactorIndex(peerMock, 4);
+		assertTrue("Index must be within the reactor count", index >= 0 && index < 4);
+		assertEquals("Index must be stable for the same peer", index, PeerIoReactorGroup.getReactorIndex(peerMock, 4));
+		assertEquals("Single reactor must always be selected", 0, PeerIoReactorGroup.getReactorIndex(peerMock, 1));
+
+		verifyAll();
+	}
+
+	@Test
+	public void testStartStop() throws Exception {
+		PeerIoReactorGroup cut = new PeerIoReactorGroup(2);
+		assertEquals("Incorrect reactor count", 2, cut.getReactorCount());
+
+		cut.start();
+
+		List<LoopingRunnable> runnables = Whitebox.getInternalState(cut, "runnables");
+		assertEquals("Each reactor should have a runnable", 2, runnables.size());
+		for (LoopingRunnable runnable : runnables) {
+			assertTrue("Reactor should have been started", Whitebox.getInternalState(runnable, "keepRunning"));
+		}
+
+		cut.stop();
+
+		for (LoopingRunnable runnable : runnables) {
+			assertFalse("Reactor should have been tasked to stop", Whitebox.getInternalState(runnable, "keepRunning"));
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Optional;
+
+import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
+import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+import org.johnnei.javatorrent.torrent.peer.PeerDirection;
+
+import org.easymock.EasyMockSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.notNull;
+import static org.easymock.EasyMock.same;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests {@link PeerIoReactor}
+ */
+public class PeerIoReactorTest extends EasyMockSupport {
+
+	private PeerIoReactor cut;
+
+	@Before
+	public void setUp() throws Exception {
+		cut = new PeerIoReactor();
+	}
+
+	@After
+	public void tearDown() {
+		cut.wakeup();
+	}
+
+	@Test
+	public void testRunPolledPeers() throws Exception {
+		// Closed peer
+		Peer peerOne = createMock(Peer.class);
+		BitTorrentSocket socketOne = createMock(BitTorrentSocket.class);
+		expect(peerOne.getBitTorrentSocket()).andReturn(socketOne).atLeastOnce();
+		expect(socketOne.getChannel()).andReturn(Optional.empty());
+		expect(socketOne.closed()).andReturn(true);
+
+		// No read, write pending
+		Peer peerTwo = createMock(Peer.class);
+		BitTorrentSocket socketTwo = createMock(BitTorrentSocket.class);
+		expect(peerTwo.getBitTorrentSocket()).andReturn(socketTwo).atLeastOnce();
+		expect(socketTwo.getChannel()).andReturn(Optional.empty());
+		expect(socketTwo.closed()).andReturn(false);
+		expect(socketTwo.hasOutboundMessages()).andReturn(true).andReturn(false);
+		expect(socketTwo.sendMessages(PeerIoReactor.WRITE_BUDGET)).andReturn(1);
+		expect(peerTwo.getWorkQueueSize(same(PeerDirection.Upload))).andReturn(0);
+		expect(socketTwo.canReadMessage()).andReturn(false);
+
+		// Read, queue next
+		Peer peerThree = createMock(Peer.class);
+		BitTorrentSocket socketThree = createMock(BitTorrentSocket.class);
+		IMessage messageMock = createMock(IMessage.class);
+		expect(peerThree.getBitTorrentSocket()).andReturn(socketThree).atLeastOnce();
+		expect(socketThree.getChannel()).andReturn(Optional.empty());
+		expect(socketThree.closed()).andReturn(false);
+		expect(socketThree.hasOutboundMessages()).andReturn(false).times(2);
+		expect(socketThree.hasPendingWrites()).andReturn(false);
+		expect(peerThree.getWorkQueueSize(same(PeerDirection.Upload))).andReturn(1);
+		peerThree.queueNextPieceForSending();
+		expect(socketThree.canReadMessage()).andReturn(true).andReturn(false);
+		expect(socketThree.readMessage()).andReturn(messageMock);
+		messageMock.process(same(peerThree));
+
+		// IOException
+		Peer peerFour = createMock(Peer.class);
+		BitTorrentSocket socketFour = createMock(BitTorrentSocket.class);
+		expect(peerFour.getBitTorrentSocket()).andReturn(socketFour).atLeastOnce();
+		expect(socketFour.getChannel()).andReturn(Optional.empty());
+		expect(socketFour.closed()).andReturn(false);
+		expect(socketFour.hasOutboundMessages()).andReturn(true);
+		expect(socketFour.sendMessages(PeerIoReactor.WRITE_BUDGET)).andThrow(new IOException("IOException stub"));
+		socketFour.close();
+
+		replayAll();
+
+		cut.registerPeer(peerOne);
+		cut.registerPeer(peerTwo);
+		cut.registerPeer(peerThree);
+		cut.registerPeer(peerFour);
+		cut.run();
+
+		verifyAll();
+	}
+
+	@Test
+	public void testRunSelectedPeer() throws Exception {
+		try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+			serverChannel.socket().bind(new InetSocketAddress("localhost", 0));
+			try (
+				SocketChannel localChannel = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+				SocketChannel remoteChannel = serverChannel.accept()
+			) {
+				localChannel.configureBlocking(false);
+
+				Peer peerMock = createMock(Peer.class);
+				BitTorrentSocket socketMock = createMock(BitTorrentSocket.class);
+				IMessage messageMock = createMock(IMessage.class);
+
+				expect(peerMock.getBitTorrentSocket()).andStubReturn(socketMock);
+				expect(socketMock.getChannel()).andReturn(Optional.of(localChannel));
+				socketMock.setMessageQueuedListener(notNull());
+				expect(socketMock.closed()).andStubReturn(false);
+				expect(socketMock.hasOutboundMessages()).andStubReturn(false);
+				expect(socketMock.hasPendingWrites()).andStubReturn(false);
+				expect(socketMock.isReadThrottled()).andStubReturn(false);
+				expect(socketMock.isWriteThrottled()).andStubReturn(false);
+				expect(peerMock.getWorkQueueSize(eq(PeerDirection.Upload))).andStubReturn(0);
+				expect(socketMock.canReadMessage()).andReturn(true).andReturn(false);
+				expect(socketMock.readMessage()).andReturn(messageMock);
+				messageMock.process(same(peerMock));
+
+				replayAll();
+
+				remoteChannel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 0 }));
+
+				cut.registerPeer(peerMock);
+				// First cycle registers the peer, the channel is writable and readable on the second at latest.
+				cut.run();
+				cut.run();
+
+				verifyAll();
+			}
+		}
+	}
+
+	@Test
+	public void testRunSelectedPeerClosedByHandler() throws Exception {
+		try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+			serverChannel.socket().bind(new InetSocketAddress("localhost", 0));
+			try (
+				SocketChannel localChannel = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+				SocketChannel remoteChannel = serverChannel.accept()
+			) {
+				localChannel.configureBlocking(false);
+
+				Peer peerMock = createMock(Peer.class);
+				BitTorrentSocket socketMock = createMock(BitTorrentSocket.class);
+				IMessage messageMock = createMock(IMessage.class);
+
+				expect(peerMock.getBitTorrentSocket()).andStubReturn(socketMock);
+				expect(socketMock.getChannel()).andReturn(Optional.of(localChannel));
+				socketMock.setMessageQueuedListener(notNull());
+				expect(socketMock.closed()).andStubAnswer(() -> !localChannel.isOpen());
+				expect(socketMock.hasOutboundMessages()).andStubReturn(false);
+				expect(socketMock.hasPendingWrites()).andStubReturn(false);
+				expect(socketMock.isReadThrottled()).andStubReturn(false);
+				expect(socketMock.isWriteThrottled()).andStubReturn(false);
+				expect(peerMock.getWorkQueueSize(eq(PeerDirection.Upload))).andStubReturn(0);
+				expect(socketMock.canReadMessage()).andReturn(true).andReturn(false);
+				expect(socketMock.readMessage()).andReturn(messageMock);
+				// The handler closes the socket, like a request for a piece which we don't have.
+				messageMock.process(same(peerMock));
+				expectLastCall().andAnswer(() -> {
+					localChannel.close();
+					return null;
+				});
+
+				replayAll();
+
+				remoteChannel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 0 }));
+
+				cut.registerPeer(peerMock);
+				// Updating the interest of the cancelled key must not escape the reactor.
+				cut.run();
+				cut.run();
+				cut.run();
+
+				verifyAll();
+				assertFalse("Channel should have been closed by the handler", localChannel.isOpen());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package org.johnnei.javatorrent.internal.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
+import org.johnnei.javatorrent.internal.network.socket.NioTcpSocket;
+import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.network.InStream;
+import org.johnnei.javatorrent.network.OutStream;
+import org.johnnei.javatorrent.torrent.Metadata;
+import org.johnnei.javatorrent.torrent.Torrent;
+import org.johnnei.javatorrent.torrent.peer.Peer;
+
+/**
+ * Measures how the message throughput of a loopback swarm scales with the amount of threads in the {@link PeerIoReactorGroup}.
+ *
+ * Usage: <code>PeerIoScalingBenchmark [threads,...] [connections] [payload bytes] [measure seconds]</code>
+ *
+ * Every connection keeps a fixed window of echo messages in flight. Each received echo is answered immediately, so the throughput is only bound by the
+ * reactor threads.
+ */
+public class PeerIoScalingBenchmark {
+
+	private static final int MESSAGE_ECHO = 100;
+
+	private static final int WINDOW = 4;
+
+	private final LongAdder echoCount = new LongAdder();
+
+	private final MessageFactory messageFactory;
+
+	private final Torrent torrent = new Torrent.Builder()
+			.setMetadata(new Metadata.Builder().setHash(new byte[20]).build())
+			.build();
+
+	private final int payloadSize;
+
+	private PeerIoScalingBenchmark(int payloadSize) {
+		this.payloadSize = payloadSize;
+		messageFactory = new MessageFactory.Builder().registerMessage(MESSAGE_ECHO, MessageEcho::new).build();
+	}
+
+	public static void main(String[] args) throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = args.length > 0 ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray() : defaultThreadCounts(cores);
+		int connectionCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+		int payloadSize = args.length > 2 ? Integer.parseInt(args[2]) : 1_024;
+		int measureSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+		System.out.printf("cores=%d connections=%d payload=%d bytes%n", cores, connectionCount, payloadSize);
+		System.out.printf("%8s %14s %10s%n", "threads", "messages/s", "speedup");
+		double baseline = 0;
+		for (int threadCount : threadCounts) {
+			double throughput = new PeerIoScalingBenchmark(payloadSize).run(threadCount, connectionCount, measureSeconds);
+			if (baseline == 0) {
+				baseline = throughput;
+			}
+			System.out.printf("%8d %14.0f %10.2f%n", threadCount, throughput, throughput / baseline);
+		}
+	}
+
+	private static int[] defaultThreadCounts(int cores) {
+		List<Integer> counts = new ArrayList<>();
+		for (int i = 1; i < cores; i *= 2) {
+			counts.add(i);
+		}
+		counts.add(cores);
+		return counts.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private double run(int threadCount, int connectionCount, int measureSeconds) throws Exception {
+		PeerIoReactorGroup group = new PeerIoReactorGroup(threadCount);
+		group.start();
+
+		List<Peer> peers = new ArrayList<>(connectionCount * 2);
+		try {
+			List<Peer> initiators = connect(connectionCount, peers);
+			peers.forEach(group::registerPeer);
+
+			for (Peer peer : initiators) {
+				for (int i = 0; i < WINDOW; i++) {
+					peer.getBitTorrentSocket().enqueueMessage(new MessageEcho(new byte[payloadSize]));
+				}
+			}
+
+			// Warm up before measuring.
+			Thread.sleep(1_000);
+
+			long start = System.nanoTime();
+			long startCount = echoCount.sum();
+			Thread.sleep(TimeUnit.SECONDS.toMillis(measureSeconds));
+			long echoes = echoCount.sum() - startCount;
+			long duration = System.nanoTime() - start;
+
+			return echoes / (duration / (double) TimeUnit.SECONDS.toNanos(1));
+		} finally {
+			group.stop();
+			peers.forEach(peer -> peer.getBitTorrentSocket().close());
+		}
+	}
+
+	private List<Peer> connect(int connectionCount, List<Peer> peers) throws IOException {
+		List<Peer> initiators = new ArrayList<>(connectionCount);
+		try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+			serverChannel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), connectionCount);
+			for (int i = 0; i < connectionCount; i++) {
+				NioTcpSocket socket = new NioTcpSocket();
+				socket.connect((InetSocketAddress) serverChannel.socket().getLocalSocketAddress());
+
+				Peer initiator = createPeer(socket);
+				initiators.add(initiator);
+				peers.add(initiator);
+				peers.add(createPeer(new NioTcpSocket(serverChannel.accept())));
+			}
+		}
+		return initiators;
+	}
+
+	private Peer createPeer(NioTcpSocket socket) throws IOException {
+		return new Peer.Builder()
+				.setTorrent(torrent)
+				.setSocket(new BitTorrentSocket(messageFactory, socket))
+				.setExtensionBytes(new byte[8])
+				.setId(new byte[20])
+				.build();
+	}
+
+	private final class MessageEcho implements IMessage {
+
+		private byte[] payload;
+
+		MessageEcho() {
+			/* Payload gets read */
+		}
+
+		MessageEcho(byte[] payload) {
+			this.payload = payload;
+		}
+
+		@Override
+		public void write(OutStream outStream) {
+			outStream.write(payload);
+		}
+
+		@Override
+		public void read(InStream inStream) {
+			payload = inStream.readFully(payloadSize);
+		}
+
+		@Override
+		public void process(Peer peer) {
+			echoCount.increment();
+			peer.getBitTorrentSocket().enqueueMessage(new MessageEcho(payload));
+		}
+
+		@Override
+		public int getLength() {
+			return 1 + payload.length;
+		}
+
+		@Override
+		public int getId() {
+			return MESSAGE_ECHO;
+		}
+	}
+}
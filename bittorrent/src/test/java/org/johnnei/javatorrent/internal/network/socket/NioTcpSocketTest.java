@@ -0,0 +1,197 @@
+package org.johnnei.javatorrent.internal.network.socket;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link NioTcpSocket}
+ */
+public class NioTcpSocketTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testConnectAndTransfer() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			NioTcpSocket cut = new NioTcpSocket();
+			assertTrue("Unconnected socket should be closed", cut.isClosed());
+
+			cut.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+
+			try (Socket remote = serverSocket.accept()) {
+				assertFalse("Connected socket should not be closed", cut.isClosed());
+				assertTrue("Channel should be exposed", cut.getChannel().isPresent());
+				assertTrue("Incorrect toString start", cut.toString().startsWith("NioTcpSocket["));
+
+				OutputStream outputStream = cut.getOutputStream();
+				outputStream.write(new byte[] { 1, 2, 3 });
+				cut.flush();
+
+				InputStream remoteInput = remote.getInputStream();
+				assertEquals(1, remoteInput.read());
+				assertEquals(2, remoteInput.read());
+				assertEquals(3, remoteInput.read());
+
+				remote.getOutputStream().write(new byte[] { 4, 5 });
+				remote.getOutputStream().flush();
+
+				InputStream inputStream = cut.getInputStream();
+				awaitAvailable(inputStream, 2);
+				assertEquals(4, inputStream.read());
+				assertEquals(5, inputStream.read());
+				assertEquals("All data should have been consumed", 0, inputStream.available());
+			}
+
+			cut.close();
+			assertTrue("Socket should be closed", cut.isClosed());
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void testAvailableOnRemoteClose() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			NioTcpSocket cut = new NioTcpSocket();
+			cut.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+
+			serverSocket.accept().close();
+
+			try {
+				// Wait for the remote close to arrive.
+				awaitAvailable(cut.getInputStream(), 1);
+			} finally {
+				cut.close();
+			}
+		}
+	}
+
+	@Test
+	public void testTransferFromFile() throws Exception {
+		File file = temporaryFolder.newFile();
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		try (ServerSocket serverSocket = new ServerSocket(0); RandomAccessFile fileAccess = new RandomAccessFile(file, "r")) {
+			NioTcpSocket cut = new NioTcpSocket();
+			cut.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+
+			try (Socket remote = serverSocket.accept()) {
+				assertTrue("File transfers should be supported", cut.supportsFileTransfer());
+				cut.transferFrom(fileAccess.getChannel(), 2, 5);
+
+				byte[] received = new byte[5];
+				new DataInputStream(remote.getInputStream()).readFully(received);
+				assertArrayEquals("Incorrect transferred bytes", new byte[] { 3, 4, 5, 6, 7 }, received);
+			} finally {
+				cut.close();
+			}
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void testTransferFromFileBeyondEnd() throws Exception {
+		File file = temporaryFolder.newFile();
+		Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+		try (ServerSocket serverSocket = new ServerSocket(0); RandomAccessFile fileAccess = new RandomAccessFile(file, "r")) {
+			NioTcpSocket cut = new NioTcpSocket();
+			cut.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+
+			try (Socket remote = serverSocket.accept()) {
+				cut.transferFrom(fileAccess.getChannel(), 1, 5);
+			} finally {
+				cut.close();
+			}
+		}
+	}
+
+	@Test
+	public void testWriteKeepsPendingBytesOnFullSocket() throws Exception {
+		byte[] data = new byte[1 << 23];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			NioTcpSocket cut = new NioTcpSocket();
+			cut.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+
+			try (Socket remote = serverSocket.accept()) {
+				// The remote doesn't read yet, so the socket buffers can't hold all data.
+				cut.getOutputStream().write(data);
+				assertTrue("Bytes which didn't fit the socket should be pending", cut.hasPendingWrites());
+
+				byte[] received = new byte[data.length];
+				Thread reader = new Thread(() -> {
+					try {
+						new DataInputStream(remote.getInputStream()).readFully(received);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				reader.start();
+
+				while (cut.hasPendingWrites()) {
+					cut.flushPendingWrites();
+					Thread.sleep(1);
+				}
+				reader.join(5000);
+
+				assertArrayEquals("Incorrect received bytes", data, received);
+			} finally {
+				cut.close();
+			}
+		}
+	}
+
+	@Test(expected = IllegalBlockingModeException.class)
+	public void testReadWithoutDataOnNonBlockingChannel() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			NioTcpSocket cut = new NioTcpSocket();
+			cut.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+
+			try (Socket remote = serverSocket.accept()) {
+				cut.getInputStream().read();
+			} finally {
+				cut.close();
+			}
+		}
+	}
+
+	@Test
+	public void testEqualsAndHashcode() throws Exception {
+		NioTcpSocket socketOne = new NioTcpSocket();
+		NioTcpSocket socketTwo = new NioTcpSocket();
+
+		assertEquals("Unconnected sockets should be equal", socketOne, socketTwo);
+		assertEquals("Unconnected sockets should have equal hash", socketOne.hashCode(), socketTwo.hashCode());
+	}
+
+	/**
+	 * Polls the stream until the given amount of bytes is available or the remote end closed the connection.
+	 */
+	private static void awaitAvailable(InputStream inputStream, int count) throws Exception {
+		for (int i = 0; i < 500 && inputStream.available() < count; i++) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -1,11 +1,13 @@
 package org.johnnei.javatorrent.internal.torrent;
 
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.johnnei.javatorrent.TorrentClient;
 import org.johnnei.javatorrent.async.LoopingRunnable;
+import org.johnnei.javatorrent.internal.network.PeerIoReactorGroup;
 import org.johnnei.javatorrent.internal.tracker.TrackerManager;
 import org.johnnei.javatorrent.phases.IDownloadPhase;
 import org.johnnei.javatorrent.phases.PhaseRegulator;
@@ -164,7 +166,8 @@ public class TorrentManagerTest extends EasyMockSupport {
 
 		cut.start(torrentClientMock);
 
-		LoopingRunnable peerIoRunnable = Whitebox.getInternalState(cut, "peerIoRunnable");
+		PeerIoReactorGroup peerIoReactors = Whitebox.getInternalState(cut, "peerIo");
+		LoopingRunnable peerIoRunnable = Whitebox.<List<LoopingRunnable>>getInternalState(peerIoReactors, "runnables").get(0);
 		assertNotNull("Peer IO runner should have been started.", peerIoRunnable);
 
 		cut.stop();
@@ -186,7 +189,8 @@ public class TorrentManagerTest extends EasyMockSupport {
 		cut.start(torrentClientMock);
 		cut.enableConnectionAcceptor();
 
-		LoopingRunnable peerIoRunnable = Whitebox.getInternalState(cut, "peerIoRunnable");
+		PeerIoReactorGroup peerIoReactors = Whitebox.getInternalState(cut, "peerIo");
+		LoopingRunnable peerIoRunnable = Whitebox.<List<LoopingRunnable>>getInternalState(peerIoReactors, "runnables").get(0);
 		LoopingRunnable peerConnectorRunnable = Whitebox.getInternalState(cut, "connectorRunnable");
 		assertNotNull("Peer IO runner should have been started.", peerIoRunnable);
 		assertNotNull("Peer connector runner should have been started.", peerConnectorRunnable);
@@ -67,6 +67,21 @@ public class ClientTest {
 		assertEquals("Job did not get removed", 0, cut.getQueueSize());
 	}
 
+	@Test
+	public void testPopNextJobIf() {
+		Piece pieceMock = mock(Piece.class);
+
+		Client cut = new Client();
+		Job job = new Job(pieceMock, 2, 3);
+
+		cut.addJob(job);
+
+		assertEquals("Job which doesn't match should not be returned", null, cut.popNextJobIf(queuedJob -> queuedJob.getBlockIndex() == 0));
+		assertEquals("Job should not have been removed", 1, cut.getQueueSize());
+		assertEquals("Incorrect job got returned", job, cut.popNextJobIf(queuedJob -> queuedJob.getBlockIndex() == 2));
+		assertEquals("Job did not get removed", 0, cut.getQueueSize());
+	}
+
 	@Test
 	public void testRemoveJob() {
 		Piece pieceMockOne = mock(Piece.class);
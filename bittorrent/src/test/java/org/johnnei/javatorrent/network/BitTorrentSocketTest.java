@@ -19,10 +19,16 @@ import org.johnnei.javatorrent.bittorrent.protocol.BitTorrentHandshake;
 import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageFileBlock;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageHave;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageKeepAlive;
 import org.johnnei.javatorrent.internal.network.ByteInputStream;
 import org.johnnei.javatorrent.internal.network.ByteOutputStream;
 import org.johnnei.javatorrent.internal.network.socket.ISocket;
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileRegionVisitor;
+import org.johnnei.javatorrent.torrent.files.Piece;
 import org.johnnei.javatorrent.test.DummyEntity;
 import org.johnnei.javatorrent.test.TestLinkedClock;
 import org.johnnei.javatorrent.test.TestUtils;
@@ -35,11 +41,11 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.powermock.reflect.Whitebox;
 
-import static org.easymock.EasyMock.anyInt;
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isNull;
 import static org.easymock.EasyMock.notNull;
 import static org.easymock.EasyMock.same;
 import static org.junit.Assert.assertArrayEquals;
@@ -227,19 +233,21 @@ public class BitTorrentSocketTest extends EasyMockSupport {
 
 		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 		InputStream inputStream = createMock(InputStream.class);
-		expect(inputStream.available()).andReturn(2);
-		expect(inputStream.available()).andReturn(4);
-		expect(inputStream.available()).andReturn(0);
-		expect(inputStream.available()).andReturn(1);
-
 		Capture<byte[]> bufferCapture = EasyMock.newCapture();
 
-		expect(inputStream.read(capture(bufferCapture), eq(0), anyInt())).andAnswer(() -> {
+		// First half of the length
+		expect(inputStream.available()).andReturn(2);
+		expect(inputStream.read(capture(bufferCapture), eq(0), eq(2))).andReturn(2);
+		// Second half of the length
+		expect(inputStream.available()).andReturn(2);
+		expect(inputStream.read(capture(bufferCapture), eq(2), eq(2))).andAnswer(() -> {
 			bufferCapture.getValue()[3] = 1;
-			return 4;
+			return 2;
 		});
-		expect(inputStream.read(capture(bufferCapture), eq(0), anyInt())).andAnswer(() -> {
-			bufferCapture.getValue()[0] = 1;
+		// Message ID
+		expect(inputStream.available()).andReturn(1);
+		expect(inputStream.read(capture(bufferCapture), eq(4), eq(1))).andAnswer(() -> {
+			bufferCapture.getValue()[4] = 1;
 			return 1;
 		});
 
@@ -259,6 +267,40 @@ public class BitTorrentSocketTest extends EasyMockSupport {
 		verifyAll();
 	}
 
+	@Test
+	public void testReadMessagesFromSingleRead() throws Exception {
+		MessageFactory messageFactoryMock = createMock(MessageFactory.class);
+		IMessage messageMock = createMock(IMessage.class);
+		expect(messageFactoryMock.createById(eq(1))).andReturn(messageMock);
+		messageMock.read(notNull());
+
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[] {
+				// Keep alive
+				0x00, 0x00, 0x00, 0x00,
+				// Length
+				0x00, 0x00, 0x00, 0x01,
+				// ID
+				0x01 });
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		ISocket socketMock = createMock(ISocket.class);
+		expect(socketMock.getInputStream()).andReturn(inputStream);
+		expect(socketMock.getOutputStream()).andReturn(outputStream);
+
+		replayAll();
+
+		BitTorrentSocket cut = new BitTorrentSocket(messageFactoryMock, socketMock);
+		cut.setPassedHandshake();
+		assertTrue("Should be able to read message", cut.canReadMessage());
+		assertTrue("Incorrect message type", cut.readMessage() instanceof MessageKeepAlive);
+		assertEquals("All bytes should have been read at once", 0, inputStream.available());
+		assertTrue("Should be able to read buffered message", cut.canReadMessage());
+		assertEquals("Incorrect message type", messageMock, cut.readMessage());
+		assertFalse("Shouldn't be able to read message", cut.canReadMessage());
+
+		verifyAll();
+	}
+
 	@Test
 	public void testCanReadMessageNotEnoughBytes() throws Exception {
 		MessageFactory messageFactoryMock = createMock(MessageFactory.class);
@@ -614,6 +656,7 @@ public class BitTorrentSocketTest extends EasyMockSupport {
 
 		expect(socketMock.getOutputStream()).andReturn(outputStream);
 		expect(socketMock.getInputStream()).andReturn(inputStream);
+		expect(socketMock.hasPendingWrites()).andStubReturn(false);
 
 		replayAll();
 
@@ -634,6 +677,7 @@ public class BitTorrentSocketTest extends EasyMockSupport {
 
 		expect(socketMock.getOutputStream()).andReturn(outputStream);
 		expect(socketMock.getInputStream()).andReturn(inputStream);
+		expect(socketMock.hasPendingWrites()).andStubReturn(false);
 
 		IMessage messageMock = createMock(MessageKeepAlive.class);
 		IMessage pieceMessageMock = createMock(MessageBlock.class);
@@ -641,16 +685,17 @@ public class BitTorrentSocketTest extends EasyMockSupport {
 		// KeepAlive
 		expect(pieceMessageMock.getId()).andReturn(BitTorrent.MESSAGE_PIECE);
 
-		expect(messageMock.getLength()).andReturn(0).times(3);
+		expect(messageMock.getLength()).andReturn(0);
 
 		byte[] randomBytes = DummyEntity.createRandomBytes(5);
-		expect(pieceMessageMock.getLength()).andReturn(randomBytes.length).times(3);
+		expect(pieceMessageMock.getLength()).andReturn(randomBytes.length);
 		Capture<OutStream> outStreamCapture = EasyMock.newCapture();
 		pieceMessageMock.write(capture(outStreamCapture));
 		expectLastCall().andAnswer(() -> {
 			outStreamCapture.getValue().write(randomBytes);
 			return null;
 		});
+		((MessageBlock) pieceMessageMock).release();
 
 		replayAll();
 
@@ -678,4 +723,166 @@ public class BitTorrentSocketTest extends EasyMockSupport {
 
 		assertEquals("Incorrect last activity timestamp", LocalDateTime.now(clock), cut.getLastActivity());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testSendFileBlock() throws Exception {
+		MessageFactory messageFactoryMock = createMock(MessageFactory.class);
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[0]);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ISocket socketMock = createMock(ISocket.class);
+		Piece pieceMock = createMock(Piece.class);
+		FileInfo fileMock = createMock(FileInfo.class);
+
+		expect(socketMock.getOutputStream()).andReturn(outputStream);
+		expect(socketMock.getInputStream()).andReturn(inputStream);
+		expect(socketMock.hasPendingWrites()).andStubReturn(false);
+		expect(pieceMock.getIndex()).andStubReturn(1);
+		expect(fileMock.acquireChannel()).andReturn(null);
+		fileMock.releaseChannel();
+
+		Capture<IFileRegionVisitor> visitorCapture = EasyMock.newCapture();
+		pieceMock.visitFileRegions(eq(2), eq(5), capture(visitorCapture));
+		expectLastCall().andAnswer(() -> {
+			assertEquals("Header must be flushed before the block is transferred", 13, outputStream.size());
+			visitorCapture.getValue().visit(fileMock, 10, 0, 5);
+			return null;
+		});
+		socketMock.transferFrom(isNull(), eq(10L), eq(5L));
+
+		replayAll();
+
+		BitTorrentSocket cut = new BitTorrentSocket(messageFactoryMock, socketMock);
+		cut.enqueueMessage(new MessageFileBlock(pieceMock, 2, 5));
+
+		assertEquals("Incorrect amount of sent messages", 1, cut.sendMessages(1 << 16));
+
+		verifyAll();
+
+		assertArrayEquals("Incorrect header output", new byte[] { 0, 0, 0, 14, 7, 0, 0, 0, 1, 0, 0, 0, 2 }, outputStream.toByteArray());
+		cut.pollRates();
+		assertEquals("Transferred block should count as uploaded", 18, cut.getUploadRate());
+	}
+
+	@Test
+	public void testSendMessagesWithinBudget() throws Exception {
+		MessageFactory messageFactoryMock = createMock(MessageFactory.class);
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[0]);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ISocket socketMock = createMock(ISocket.class);
+
+		expect(socketMock.getOutputStream()).andReturn(outputStream);
+		expect(socketMock.getInputStream()).andReturn(inputStream);
+		expect(socketMock.hasPendingWrites()).andStubReturn(false);
+
+		replayAll();
+
+		BitTorrentSocket cut = new BitTorrentSocket(messageFactoryMock, socketMock);
+		cut.enqueueMessage(new MessageHave(1));
+		cut.enqueueMessage(new MessageHave(2));
+		cut.enqueueMessage(new MessageHave(3));
+
+		assertEquals("Only two messages fit in the budget", 2, cut.sendMessages(20));
+		assertArrayEquals("Incorrect batch output.", new byte[] {
+				0x00, 0x00, 0x00, 0x05, 0x04, 0x00, 0x00, 0x00, 0x01,
+				0x00, 0x00, 0x00, 0x05, 0x04, 0x00, 0x00, 0x00, 0x02
+		}, outputStream.toByteArray());
+		assertTrue("Third message should still be pending", cut.hasOutboundMessages());
+
+		outputStream.reset();
+		assertEquals("Message exceeding the budget must still be sent on an empty batch", 1, cut.sendMessages(1));
+		assertEquals("Incorrect batch size", 9, outputStream.size());
+		assertEquals("No messages are pending", 0, cut.sendMessages(20));
+
+		verifyAll();
+	}
+
+	@Test
+	public void testSendMessagesThrottled() throws Exception {
+		MessageFactory messageFactoryMock = createMock(MessageFactory.class);
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[0]);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ISocket socketMock = createMock(ISocket.class);
+
+		expect(socketMock.getOutputStream()).andReturn(outputStream);
+		expect(socketMock.getInputStream()).andReturn(inputStream);
+		expect(socketMock.hasPendingWrites()).andStubReturn(false);
+
+		replayAll();
+
+		TokenBucket uploadLimiter = new TokenBucket(null);
+		uploadLimiter.setRate(1);
+
+		BitTorrentSocket cut = new BitTorrentSocket(messageFactoryMock, socketMock);
+		cut.setRateLimiters(null, uploadLimiter);
+		cut.enqueueMessage(new MessageHave(1));
+
+		assertEquals("Message should be sent within the burst", 1, cut.sendMessages(20));
+		assertFalse("Socket should not be throttled yet", cut.isWriteThrottled());
+
+		uploadLimiter.consume(TokenBucket.MINIMUM_BURST);
+		cut.enqueueMessage(new MessageHave(2));
+
+		assertEquals("Message should be postponed by the exhausted limit", 0, cut.sendMessages(20));
+		assertTrue("Socket should be throttled", cut.isWriteThrottled());
+		assertTrue("Message should still be pending", cut.hasOutboundMessages());
+		assertEquals("Only the first message should have been written", 9, outputStream.size());
+
+		verifyAll();
+	}
+
+	@Test
+	public void testSendMessagesAfterPendingWrites() throws Exception {
+		MessageFactory messageFactoryMock = createMock(MessageFactory.class);
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[0]);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ISocket socketMock = createMock(ISocket.class);
+
+		expect(socketMock.getOutputStream()).andReturn(outputStream);
+		expect(socketMock.getInputStream()).andReturn(inputStream);
+		// The first attempt can't drain the socket, the second one can.
+		expect(socketMock.hasPendingWrites()).andReturn(true).times(4);
+		socketMock.flushPendingWrites();
+		expectLastCall().times(2);
+		expect(socketMock.hasPendingWrites()).andReturn(false);
+
+		replayAll();
+
+		BitTorrentSocket cut = new BitTorrentSocket(messageFactoryMock, socketMock);
+		cut.enqueueMessage(new MessageHave(1));
+
+		assertTrue("Pending writes should be reported", cut.hasPendingWrites());
+		assertEquals("No batch may be started while writes are pending", 0, cut.sendMessages(20));
+		assertEquals("Nothing should have been written", 0, outputStream.size());
+		assertEquals("Message should be sent once the pending writes are drained", 1, cut.sendMessages(20));
+		assertEquals("Incorrect batch size", 9, outputStream.size());
+
+		verifyAll();
+	}
+
+	@Test
+	public void testCanReadMessageThrottled() throws Exception {
+		MessageFactory messageFactoryMock = createMock(MessageFactory.class);
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[] { 0x00, 0x00, 0x00, 0x00 });
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		ISocket socketMock = createMock(ISocket.class);
+		expect(socketMock.getInputStream()).andReturn(inputStream);
+		expect(socketMock.getOutputStream()).andReturn(outputStream);
+
+		replayAll();
+
+		TokenBucket downloadLimiter = new TokenBucket(null);
+		downloadLimiter.setRate(1);
+		downloadLimiter.consume(TokenBucket.MINIMUM_BURST);
+
+		BitTorrentSocket cut = new BitTorrentSocket(messageFactoryMock, socketMock);
+		cut.setPassedHandshake();
+		cut.setRateLimiters(downloadLimiter, null);
+
+		assertFalse("Read should be postponed by the exhausted limit", cut.canReadMessage());
+		assertTrue("Socket should be throttled", cut.isReadThrottled());
+		assertEquals("No bytes should have been read", 4, inputStream.available());
+
+		verifyAll();
+	}
+}
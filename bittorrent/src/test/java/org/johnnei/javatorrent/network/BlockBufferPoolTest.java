@@ -0,0 +1,118 @@
+package org.johnnei.javatorrent.network;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link BlockBufferPool}
+ */
+public class BlockBufferPoolTest {
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void testReuse() {
+		BlockBufferPool cut = new BlockBufferPool(16, 2, true);
+
+		BlockBuffer buffer = cut.allocate(10);
+		byte[] array = buffer.getArray();
+
+		assertEquals("Incorrect length", 10, buffer.getLength());
+		assertEquals("Array should have the buffer size", 16, array.length);
+		assertEquals("First allocation is a miss", 1, cut.getMissCount());
+		assertEquals("Buffer should be outstanding", 1, cut.getOutstandingCount());
+
+		assertTrue("Last reference should have been released", buffer.release());
+		assertEquals("Array should be pooled", 1, cut.getPooledCount());
+		assertEquals("No buffers should be outstanding", 0, cut.reportLeaks());
+
+		BlockBuffer reusedBuffer = cut.allocate(16);
+		assertSame("Array should have been reused", array, reusedBuffer.getArray());
+		assertEquals("Second allocation is a hit", 1, cut.getHitCount());
+		assertEquals("Array should have been taken from the pool", 0, cut.getPooledCount());
+	}
+
+	@Test
+	public void testRetain() {
+		BlockBufferPool cut = new BlockBufferPool(16, 2);
+
+		BlockBuffer buffer = cut.allocate(16);
+		buffer.retain();
+
+		assertFalse("One reference should remain", buffer.release());
+		assertEquals("Buffer should not have been returned yet", 0, cut.getPooledCount());
+		assertTrue("Last reference should have been released", buffer.release());
+		assertEquals("Buffer should have been returned", 1, cut.getPooledCount());
+	}
+
+	@Test
+	public void testPoolIsBounded() {
+		BlockBufferPool cut = new BlockBufferPool(16, 1);
+
+		BlockBuffer bufferOne = cut.allocate(16);
+		BlockBuffer bufferTwo = cut.allocate(16);
+		bufferOne.release();
+		bufferTwo.release();
+
+		assertEquals("Only one array may be kept", 1, cut.getPooledCount());
+	}
+
+	@Test
+	public void testOversizedBufferIsNotPooled() {
+		BlockBufferPool cut = new BlockBufferPool(16, 1);
+
+		BlockBuffer buffer = cut.allocate(20);
+		byte[] array = buffer.getArray();
+		assertEquals("Array should fit the requested length", 20, array.length);
+		buffer.release();
+
+		assertEquals("Oversized array must not be pooled", 0, cut.getPooledCount());
+		assertNotSame("Oversized array must not be reused", array, cut.allocate(16).getArray());
+	}
+
+	@Test
+	public void testReportLeaks() {
+		BlockBufferPool cut = new BlockBufferPool(16, 1, true);
+
+		cut.allocate(16);
+		cut.allocate(16).release();
+
+		assertEquals("One buffer has leaked", 1, cut.reportLeaks());
+	}
+
+	@Test
+	public void testUseAfterRelease() {
+		thrown.expect(IllegalStateException.class);
+
+		BlockBuffer buffer = new BlockBufferPool(16, 1).allocate(16);
+		buffer.release();
+		buffer.getArray();
+	}
+
+	@Test
+	public void testDoubleRelease() {
+		thrown.expect(IllegalStateException.class);
+
+		BlockBuffer buffer = new BlockBufferPool(16, 1).allocate(16);
+		buffer.release();
+		buffer.release();
+	}
+
+	@Test
+	public void testWrap() {
+		byte[] data = new byte[] { 0x01, 0x02 };
+		BlockBuffer buffer = BlockBuffer.wrap(data);
+
+		assertSame("Wrapped array should be used", data, buffer.getArray());
+		assertEquals("Incorrect length", 2, buffer.getLength());
+		assertTrue("Last reference should have been released", buffer.release());
+	}
+}
@@ -1,15 +1,12 @@
 package org.johnnei.javatorrent.network;
 
-import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 
-import org.johnnei.javatorrent.internal.utils.CheckedRunnable;
-import org.johnnei.javatorrent.internal.utils.CheckedSupplier;
-
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.powermock.reflect.Whitebox;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -110,25 +107,25 @@ public class InStreamTest {
 	}
 
 	@Test
-	public void testExceptionDoUncheckedSupplier() throws Exception {
-		thrown.expect(RuntimeException.class);
-		thrown.expectMessage("IO Exception on in-memory byte array");
+	public void testByteBufferView() {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x1, 0x2, 0x3, 0x4 });
+		buffer.position(1);
+		buffer.limit(3);
 
-		CheckedSupplier<Integer, IOException> runnable = () -> { throw new IOException("Test exception path"); };
-		InStream cut = new InStream(new byte[0]);
+		InStream inStream = new InStream(buffer, Duration.ZERO);
 
-		Whitebox.invokeMethod(cut, "doUnchecked", runnable);
+		assertEquals("Incorrect starting size", 2, inStream.available());
+		assertEquals("Incorrect short value", 0x0203, inStream.readShort());
+		assertEquals("Position of the source buffer should not be modified", 1, buffer.position());
+		assertEquals("Limit of the source buffer should not be modified", 3, buffer.limit());
 	}
 
 	@Test
-	public void testExceptionDoUncheckedRunnable() throws Exception {
-		thrown.expect(RuntimeException.class);
-		thrown.expectMessage("IO Exception on in-memory byte array");
+	public void testReadBeyondEnd() {
+		thrown.expect(BufferUnderflowException.class);
 
-		CheckedRunnable<IOException> runnable = () -> { throw new IOException("Test exception path"); };
-		InStream cut = new InStream(new byte[0]);
-
-		Whitebox.invokeMethod(cut, "doUnchecked", runnable);
+		InStream inStream = new InStream(new byte[] { 0x1, 0x2 });
+		inStream.readInt();
 	}
 
-}
\ No newline at end of file
+}
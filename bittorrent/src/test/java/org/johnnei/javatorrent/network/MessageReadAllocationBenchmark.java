@@ -0,0 +1,181 @@
+package org.johnnei.javatorrent.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+
+import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.IMessage;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
+import org.johnnei.javatorrent.internal.network.socket.ISocket;
+
+/**
+ * Measures the amount of heap which is allocated by {@link BitTorrentSocket} to frame and decode received block messages.
+ *
+ * Usage: <code>MessageReadAllocationBenchmark [received megabytes] [bytes per socket read]</code>
+ *
+ * The socket is fed from an endless in-memory stream of 16 KiB PIECE messages which hands out at most the given amount of bytes per read, mimicking the
+ * segments in which data arrives from the network. The allocations of the stream itself are zero, so all reported bytes are caused by the framing and
+ * decoding. Received blocks are released right away, as if they were stored to disk, so that their buffers return to the {@link BlockBufferPool}.
+ */
+public class MessageReadAllocationBenchmark {
+
+	private static final int BLOCK_SIZE = 1 << 14;
+
+	private static final long MEGABYTE = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 1_024;
+		int segmentSize = args.length > 1 ? Integer.parseInt(args[1]) : 1_460;
+
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		// Warm up so that the measurement is not polluted by class loading and JIT compilation.
+		run(megabytes / 8, segmentSize, new BlockBufferPool(BLOCK_SIZE, 16));
+
+		long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		BlockBufferPool pool = new BlockBufferPool(BLOCK_SIZE, 16);
+		long received = run(megabytes, segmentSize, pool);
+		long duration = System.nanoTime() - start;
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		double receivedMegabytes = received / (double) MEGABYTE;
+		System.out.printf("received=%.0f MiB segment=%d bytes%n", receivedMegabytes, segmentSize);
+		System.out.printf("allocated=%.1f KiB per received MiB%n", allocated / 1024d / receivedMegabytes);
+		System.out.printf("throughput=%.0f MiB/s%n", receivedMegabytes / (duration / 1e9));
+		System.out.printf("pool hits=%d misses=%d%n", pool.getHitCount(), pool.getMissCount());
+	}
+
+	private static long run(int megabytes, int segmentSize, BlockBufferPool pool) throws IOException {
+		MessageFactory messageFactory = new MessageFactory.Builder().setBlockBufferPool(pool).build();
+		BlockStream blockStream = new BlockStream(segmentSize);
+		BitTorrentSocket socket = new BitTorrentSocket(messageFactory, new StreamSocket(blockStream));
+
+		long messageCount = (megabytes * MEGABYTE) / BLOCK_SIZE;
+		long readCount = 0;
+		while (readCount < messageCount) {
+			if (socket.canReadMessage()) {
+				IMessage message = socket.readMessage();
+				if (!(message instanceof MessageBlock)) {
+					throw new IllegalStateException("Unexpected message: " + message);
+				}
+				((MessageBlock) message).release();
+				readCount++;
+			}
+		}
+
+		return blockStream.getReadBytes();
+	}
+
+	/**
+	 * An endless stream of the same PIECE message.
+	 */
+	private static final class BlockStream extends InputStream {
+
+		private final byte[] message;
+
+		private final int segmentSize;
+
+		private int position;
+
+		private long readBytes;
+
+		BlockStream(int segmentSize) {
+			this.segmentSize = segmentSize;
+			message = new byte[4 + 9 + BLOCK_SIZE];
+			int length = 9 + BLOCK_SIZE;
+			message[0] = (byte) (length >>> 24);
+			message[1] = (byte) (length >>> 16);
+			message[2] = (byte) (length >>> 8);
+			message[3] = (byte) length;
+			message[4] = 7;
+		}
+
+		@Override
+		public int read() {
+			int b = message[position] & 0xFF;
+			advance(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			int count = Math.min(Math.min(len, segmentSize), message.length - position);
+			System.arraycopy(message, position, b, off, count);
+			advance(count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return Math.min(segmentSize, message.length - position);
+		}
+
+		private void advance(int count) {
+			position = (position + count) % message.length;
+			readBytes += count;
+		}
+
+		long getReadBytes() {
+			return readBytes;
+		}
+	}
+
+	private static final class StreamSocket implements ISocket {
+
+		private final InputStream inputStream;
+
+		StreamSocket(InputStream inputStream) {
+			this.inputStream = inputStream;
+		}
+
+		@Override
+		public void connect(InetSocketAddress endpoint) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return inputStream;
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new OutputStream() {
+				@Override
+				public void write(int b) {
+					/* Nothing is written in this benchmark */
+				}
+			};
+		}
+
+		@Override
+		public void close() {
+			/* Nothing to close */
+		}
+
+		@Override
+		public boolean isClosed() {
+			return false;
+		}
+
+		@Override
+		public boolean isInputShutdown() {
+			return false;
+		}
+
+		@Override
+		public boolean isOutputShutdown() {
+			return false;
+		}
+
+		@Override
+		public void flush() {
+			/* Nothing to flush */
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package org.johnnei.javatorrent.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageHave;
+import org.johnnei.javatorrent.internal.network.socket.NioTcpSocket;
+
+/**
+ * Measures the upload throughput of a single {@link BitTorrentSocket} over loopback. The send queue is kept filled with a mix of block and have messages
+ * which are either sent one message per call or in batches.
+ *
+ * Usage: <code>MessageWriteBenchmark [single|batched] [sent megabytes] [batch byte budget]</code>
+ */
+public class MessageWriteBenchmark {
+
+	private static final int BLOCK_SIZE = 1 << 14;
+
+	private static final long MEGABYTE = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		boolean batched = args.length == 0 || "batched".equals(args[0]);
+		int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 2_048;
+		int byteBudget = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 16;
+
+		try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			NioTcpSocket socket = new NioTcpSocket();
+			socket.connect((InetSocketAddress) serverSocket.getLocalSocketAddress());
+
+			try (Socket remote = serverSocket.accept()) {
+				Thread drain = new Thread(() -> drain(remote));
+				drain.setDaemon(true);
+				drain.start();
+
+				BitTorrentSocket bitTorrentSocket = new BitTorrentSocket(new MessageFactory.Builder().build(), socket);
+				// Warm up so that the measurement is not polluted by class loading and JIT compilation.
+				send(bitTorrentSocket, megabytes / 8, batched, byteBudget);
+
+				long start = System.nanoTime();
+				long calls = send(bitTorrentSocket, megabytes, batched, byteBudget);
+				long duration = System.nanoTime() - start;
+
+				System.out.printf("mode=%s budget=%d sent=%d MiB%n", batched ? "batched" : "single", byteBudget, megabytes);
+				System.out.printf("throughput=%.0f MiB/s, %.1f messages per write call%n",
+						megabytes / (duration / 1e9), (megabytes * MEGABYTE / BLOCK_SIZE * 2) / (double) calls);
+			} finally {
+				socket.close();
+			}
+		}
+	}
+
+	private static long send(BitTorrentSocket socket, int megabytes, boolean batched, int byteBudget) throws IOException {
+		byte[] block = new byte[BLOCK_SIZE];
+		long blockCount = megabytes * MEGABYTE / BLOCK_SIZE;
+		long calls = 0;
+		for (long i = 0; i < blockCount; i++) {
+			socket.enqueueMessage(new MessageBlock(0, 0, block));
+			socket.enqueueMessage(new MessageHave((int) i));
+
+			// Keep a small backlog of messages queued like a seeding peer would have.
+			if (i % 4 == 3) {
+				calls += drainQueue(socket, batched, byteBudget);
+			}
+		}
+		return calls + drainQueue(socket, batched, byteBudget);
+	}
+
+	private static long drainQueue(BitTorrentSocket socket, boolean batched, int byteBudget) throws IOException {
+		long calls = 0;
+		while (socket.hasOutboundMessages()) {
+			if (batched) {
+				socket.sendMessages(byteBudget);
+			} else {
+				socket.sendMessage();
+			}
+			calls++;
+		}
+		return calls;
+	}
+
+	private static void drain(Socket remote) {
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream inputStream = remote.getInputStream()) {
+			while (inputStream.read(buffer) != -1) {
+				// Discard
+			}
+		} catch (IOException e) {
+			// Benchmark has ended.
+		}
+	}
+}
@@ -1,14 +1,9 @@
 package org.johnnei.javatorrent.network;
 
-import java.io.IOException;
-
-import org.johnnei.javatorrent.internal.utils.CheckedRunnable;
+import java.io.ByteArrayOutputStream;
 
 import org.junit.Before;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.ExpectedException;
-import org.powermock.reflect.Whitebox;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -18,9 +13,6 @@ import static org.junit.Assert.assertEquals;
  */
 public class OutStreamTest {
 
-	@Rule
-	public ExpectedException thrown = ExpectedException.none();
-
 	private OutStream cut;
 
 	@Before
@@ -115,13 +107,28 @@ public class OutStreamTest {
 	}
 
 	@Test
-	public void testExceptionWriteUnchecked() throws Exception {
-		thrown.expect(RuntimeException.class);
-		thrown.expectMessage("IO Exception on in-memory byte array");
+	public void testWriteBeyondInitialCapacity() throws Exception {
+		OutStream cut = new OutStream(2);
+
+		cut.writeShort(0x0102);
+		cut.writeInt(0x03040506);
+		cut.write(new byte[] { 7, 8, 9 });
+
+		assertEquals("Incorrect amount of bytes written", 9, cut.size());
+		assertArrayEquals("Incorrect written bytes", new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, cut.toByteArray());
+	}
+
+	@Test
+	public void testWriteToAndReset() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
-		CheckedRunnable<IOException> runnable = () -> { throw new IOException("Test exception path"); };
-		OutStream cut = new OutStream();
+		cut.writeInt(5);
+		cut.writeTo(outputStream);
+		cut.reset();
+		cut.writeByte(6);
+		cut.writeTo(outputStream);
 
-		Whitebox.invokeMethod(cut, "writeUnchecked", runnable);
+		assertEquals("Incorrect amount of bytes after reset", 1, cut.size());
+		assertArrayEquals("Incorrect written bytes", new byte[] { 0, 0, 0, 5, 6 }, outputStream.toByteArray());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package org.johnnei.javatorrent.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.johnnei.javatorrent.bittorrent.protocol.MessageFactory;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageFileBlock;
+import org.johnnei.javatorrent.internal.network.socket.NioTcpSocket;
+import org.johnnei.javatorrent.torrent.AbstractFileSet;
+import org.johnnei.javatorrent.torrent.FileInfo;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+/**
+ * Measures the upload throughput and CPU time of serving blocks from a file over loopback. Blocks are either loaded into a pooled heap buffer and sent as
+ * {@link MessageBlock} or sent as {@link MessageFileBlock} which lets the kernel transfer the data straight from the file.
+ *
+ * Usage: <code>SeedingBenchmark [heap|file] [sent megabytes]</code>
+ *
+ * The file is 64 MiB and is served repeatedly so that it is read from the page cache, like a popular torrent on a seed-only node.
+ */
+public class SeedingBenchmark {
+
+	private static final int BLOCK_SIZE = 1 << 14;
+
+	private static final int PIECE_SIZE = 1 << 18;
+
+	private static final int FILE_SIZE = 1 << 26;
+
+	private static final long MEGABYTE = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		boolean fileTransfer = args.length == 0 || "file".equals(args[0]);
+		int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 4_096;
+
+		File file = File.createTempFile("seeding", ".bin");
+		file.deleteOnExit();
+		try (RandomAccessFile fileAccess = new RandomAccessFile(file, "rw")) {
+			fileAccess.setLength(FILE_SIZE);
+		}
+
+		BenchmarkFileSet fileSet = new BenchmarkFileSet(new FileInfo(FILE_SIZE, 0, file, FILE_SIZE / PIECE_SIZE));
+		BlockBufferPool pool = new BlockBufferPool(BLOCK_SIZE, 16);
+
+		try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			NioTcpSocket socket = new NioTcpSocket();
+			socket.connect((InetSocketAddress) serverSocket.getLocalSocketAddress());
+
+			try (Socket remote = serverSocket.accept()) {
+				Thread drain = new Thread(() -> drain(remote));
+				drain.setDaemon(true);
+				drain.start();
+
+				BitTorrentSocket bitTorrentSocket = new BitTorrentSocket(new MessageFactory.Builder().build(), socket);
+				// Warm up so that the measurement is not polluted by class loading, JIT compilation and a cold page cache.
+				send(bitTorrentSocket, fileSet, pool, megabytes / 8, fileTransfer);
+
+				long cpuBefore = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+				long start = System.nanoTime();
+				send(bitTorrentSocket, fileSet, pool, megabytes, fileTransfer);
+				long duration = System.nanoTime() - start;
+				long cpuTime = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - cpuBefore;
+
+				System.out.printf("mode=%s sent=%d MiB%n", fileTransfer ? "file" : "heap", megabytes);
+				System.out.printf("throughput=%.0f MiB/s, cpu=%.1f us per MiB%n", megabytes / (duration / 1e9), cpuTime / 1e3 / megabytes);
+			} finally {
+				socket.close();
+			}
+		}
+	}
+
+	private static void send(BitTorrentSocket socket, BenchmarkFileSet fileSet, BlockBufferPool pool, int megabytes, boolean fileTransfer)
+			throws IOException {
+		long blockCount = megabytes * MEGABYTE / BLOCK_SIZE;
+		int blocksPerPiece = PIECE_SIZE / BLOCK_SIZE;
+		for (long i = 0; i < blockCount; i++) {
+			Piece piece = fileSet.getPiece((int) ((i / blocksPerPiece) % fileSet.getPieceCount()));
+			int offset = (int) (i % blocksPerPiece) * BLOCK_SIZE;
+
+			if (fileTransfer) {
+				socket.enqueueMessage(new MessageFileBlock(piece, offset, BLOCK_SIZE));
+			} else {
+				// Equivalent of the disk job which loads the block before it gets queued.
+				BlockBuffer buffer = pool.allocate(BLOCK_SIZE);
+				piece.loadPiece(offset, buffer);
+				socket.enqueueMessage(new MessageBlock(piece.getIndex(), offset, buffer));
+			}
+
+			while (socket.hasOutboundMessages()) {
+				socket.sendMessages(1 << 16);
+			}
+		}
+	}
+
+	private static void drain(Socket remote) {
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream inputStream = remote.getInputStream()) {
+			while (inputStream.read(buffer) != -1) {
+				// Discard
+			}
+		} catch (IOException e) {
+			// Benchmark has ended.
+		}
+	}
+
+	private static final class BenchmarkFileSet extends AbstractFileSet {
+
+		BenchmarkFileSet(FileInfo fileInfo) {
+			super(BLOCK_SIZE);
+			fileInfos = Collections.singletonList(fileInfo);
+			pieces = new ArrayList<>();
+			for (int i = 0; i < FILE_SIZE / PIECE_SIZE; i++) {
+				pieces.add(new Piece(this, new byte[20], i, PIECE_SIZE, BLOCK_SIZE));
+			}
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
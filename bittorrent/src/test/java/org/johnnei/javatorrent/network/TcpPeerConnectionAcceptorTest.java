@@ -68,6 +68,7 @@ public class TcpPeerConnectionAcceptorTest extends EasyMockSupport {
 		byte[] peerId = createPeerId();
 
 		expect(serverSocketMock.accept()).andReturn(socketMock);
+		expect(socketMock.getChannel()).andReturn(null);
 		expect(bitTorrentSocketMock.readHandshake()).andReturn(handshake);
 		expect(torrentClientMock.getTorrentByHash(aryEq(handshake.getTorrentHash()))).andReturn(Optional.of(torrentMock));
 		expect(torrentClientMock.getExtensionBytes()).andReturn(extensionBytes);
@@ -94,6 +95,7 @@ public class TcpPeerConnectionAcceptorTest extends EasyMockSupport {
 		BitTorrentHandshake handshake = new BitTorrentHandshake(createRandomBytes(20), createRandomBytes(8), createPeerId());
 
 		expect(serverSocketMock.accept()).andReturn(socketMock);
+		expect(socketMock.getChannel()).andReturn(null);
 		expect(bitTorrentSocketMock.readHandshake()).andReturn(handshake);
 		expect(torrentClientMock.getTorrentByHash(aryEq(handshake.getTorrentHash()))).andReturn(Optional.empty());
 		bitTorrentSocketMock.close();
@@ -125,6 +127,7 @@ public class TcpPeerConnectionAcceptorTest extends EasyMockSupport {
 		Socket socketMock = createMock(Socket.class);
 
 		expect(serverSocketMock.accept()).andReturn(socketMock);
+		expect(socketMock.getChannel()).andReturn(null);
 		expect(bitTorrentSocketMock.readHandshake()).andThrow(new IOException("Test Exception case"));
 		socketMock.close();
 
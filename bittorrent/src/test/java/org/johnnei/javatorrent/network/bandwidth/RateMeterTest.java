@@ -0,0 +1,132 @@
+package org.johnnei.javatorrent.network.bandwidth;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.johnnei.javatorrent.test.TestClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link RateMeter}
+ */
+public class RateMeterTest {
+
+	private TestClock clock;
+
+	@Before
+	public void setUp() {
+		clock = new TestClock(Clock.fixed(Instant.ofEpochMilli(1_000_000), ZoneOffset.UTC));
+	}
+
+	private void advance(long millis) {
+		clock.setClock(Clock.fixed(clock.instant().plus(Duration.ofMillis(millis)), ZoneOffset.UTC));
+	}
+
+	@Test
+	public void testRatesBeforeFirstTick() {
+		RateMeter cut = new RateMeter(null, 0, clock);
+		cut.record(1_000);
+
+		assertEquals("Rate should only change on a tick", 0, cut.getRate(RateWindow.OneSecond));
+		assertEquals("Incorrect total", 1_000, cut.getTotal());
+	}
+
+	@Test
+	public void testConvergesToConstantRate() {
+		RateMeter cut = new RateMeter(null, 0, clock);
+
+		for (int i = 0; i < 1_200; i++) {
+			cut.record(50_000);
+			advance(1_000);
+		}
+
+		assertEquals("Short window should have converged", 50_000, cut.getRate(RateWindow.OneSecond));
+		assertEquals("Medium window should have converged", 50_000, cut.getRate(RateWindow.TenSeconds));
+		assertEquals("Long window should have converged", 50_000, cut.getRate(RateWindow.OneMinute));
+	}
+
+	@Test
+	public void testWindowsReactWithDifferentSpeed() {
+		RateMeter cut = new RateMeter(null, 0, clock);
+
+		cut.record(100_000);
+		advance(1_000);
+
+		long shortRate = cut.getRate(RateWindow.OneSecond);
+		long mediumRate = cut.getRate(RateWindow.TenSeconds);
+		long longRate = cut.getRate(RateWindow.OneMinute);
+
+		assertEquals("Incorrect short rate", 63_212, shortRate);
+		assertEquals("Incorrect medium rate", 9_516, mediumRate);
+		assertEquals("Incorrect long rate", 1_653, longRate);
+	}
+
+	@Test
+	public void testIdleMeterDecaysWithoutPolling() {
+		RateMeter cut = new RateMeter(null, 0, clock);
+		for (int i = 0; i < 600; i++) {
+			cut.record(50_000);
+			advance(1_000);
+		}
+		cut.getRate(RateWindow.OneSecond);
+
+		advance(10_000);
+
+		assertEquals("Short window should have decayed", 2, cut.getRate(RateWindow.OneSecond));
+		assertEquals("Medium window should be reduced by 1 - 1/e", 18_394, cut.getRate(RateWindow.TenSeconds));
+	}
+
+	@Test
+	public void testRecordPropagatesToParent() {
+		RateMeter root = new RateMeter(null, 0, clock);
+		RateMeter childOne = new RateMeter(root, 0, clock);
+		RateMeter childTwo = new RateMeter(root, 0, clock);
+
+		childOne.record(10);
+		childTwo.record(32);
+		childTwo.record(0);
+
+		assertEquals("Incorrect total", 10, childOne.getTotal());
+		assertEquals("Incorrect total", 32, childTwo.getTotal());
+		assertEquals("Parent should aggregate the children", 42, root.getTotal());
+	}
+
+	@Test
+	public void testHistory() {
+		RateMeter cut = new RateMeter(null, 3, clock);
+		assertEquals("History should start empty", 0, cut.getHistory().length);
+
+		cut.record(1_000);
+		advance(1_000);
+		cut.record(2_000);
+		advance(1_000);
+
+		assertArrayEquals("Incorrect history", new long[] { 1_000, 2_000 }, cut.getHistory());
+
+		cut.record(8_000);
+		advance(2_000);
+		cut.record(5_000);
+		advance(1_000);
+
+		assertArrayEquals("Idle ticks should be spread and the oldest samples dropped", new long[] { 4_000, 4_000, 5_000 }, cut.getHistory());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeHistorySize() {
+		new RateMeter(null, -1, clock);
+	}
+
+	@Test
+	public void testToString() {
+		assertTrue("Incorrect toString start", new RateMeter(null).toString().startsWith("RateMeter["));
+	}
+
+}
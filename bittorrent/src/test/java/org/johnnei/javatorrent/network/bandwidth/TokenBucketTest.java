@@ -0,0 +1,152 @@
+package org.johnnei.javatorrent.network.bandwidth;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.johnnei.javatorrent.test.TestClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TokenBucket}
+ */
+public class TokenBucketTest {
+
+	private static final Instant START = Instant.ofEpochMilli(1_000_000);
+
+	private TestClock clock;
+
+	@Before
+	public void setUp() {
+		clock = new TestClock(Clock.fixed(START, ZoneOffset.UTC));
+	}
+
+	private void advance(long millis) {
+		clock.setClock(Clock.fixed(clock.instant().plus(Duration.ofMillis(millis)), ZoneOffset.UTC));
+	}
+
+	@Test
+	public void testUnlimited() {
+		TokenBucket cut = new TokenBucket(null, clock);
+		cut.consume(1_000_000);
+
+		assertEquals("Unlimited bucket should never run out", Long.MAX_VALUE, cut.getAvailable());
+		assertEquals("Incorrect rate", TokenBucket.UNLIMITED, cut.getRate());
+	}
+
+	@Test
+	public void testLimitAndRefill() {
+		TokenBucket cut = new TokenBucket(null, clock);
+		cut.setRate(100_000);
+
+		assertEquals("Bucket should start with a full burst", 25_000, cut.getAvailable());
+
+		cut.consume(25_000);
+		assertEquals("Bucket should be empty", 0, cut.getAvailable());
+
+		advance(100);
+		assertEquals("Bucket should have refilled 100ms worth of tokens", 10_000, cut.getAvailable());
+
+		advance(10_000);
+		assertEquals("Bucket should not exceed its burst", 25_000, cut.getAvailable());
+	}
+
+	@Test
+	public void testMinimumBurst() {
+		TokenBucket cut = new TokenBucket(null, clock);
+		cut.setRate(1_000);
+
+		assertEquals("Slow bucket should hold at least a block", TokenBucket.MINIMUM_BURST, cut.getAvailable());
+	}
+
+	@Test
+	public void testDebt() {
+		TokenBucket cut = new TokenBucket(null, clock);
+		cut.setRate(40_000);
+
+		cut.consume(30_000);
+		assertEquals("Bucket should be in debt", -13_616, cut.getAvailable());
+
+		advance(300);
+		assertEquals("Debt should be paid off before transfers are allowed", -1_616, cut.getAvailable());
+
+		advance(100);
+		assertEquals("Debt should be paid off", 2_384, cut.getAvailable());
+	}
+
+	@Test
+	public void testHierarchy() {
+		TokenBucket root = new TokenBucket(null, clock);
+		TokenBucket child = new TokenBucket(root, clock);
+		root.setRate(80_000);
+
+		assertEquals("Child should be limited by the parent", 20_000, child.getAvailable());
+
+		child.consume(20_000);
+		assertEquals("Consumption should propagate to the parent", 0, root.getAvailable());
+		assertEquals("Child should be limited by the exhausted parent", 0, child.getAvailable());
+
+		advance(1_000);
+		child.setRate(1_000);
+		assertEquals("Child should be limited by its own rate", TokenBucket.MINIMUM_BURST, child.getAvailable());
+	}
+
+	@Test
+	public void testWeightedShare() {
+		TokenBucket root = new TokenBucket(null, clock);
+		TokenBucket low = new TokenBucket(root, clock);
+		TokenBucket high = new TokenBucket(root, clock);
+		root.setRate(120_000);
+		low.setWeight(BandwidthPriority.Low.getWeight());
+		high.setWeight(BandwidthPriority.High.getWeight());
+
+		// Both children register their demand in the current window.
+		low.getAvailable();
+		high.getAvailable();
+
+		assertEquals("Low priority should get a fifth of the tokens", 6_000, low.getAvailable());
+		assertEquals("High priority should get four fifths of the tokens", 24_000, high.getAvailable());
+	}
+
+	@Test
+	public void testIdleSiblingDoesNotReduceShare() {
+		TokenBucket root = new TokenBucket(null, clock);
+		TokenBucket active = new TokenBucket(root, clock);
+		TokenBucket idle = new TokenBucket(root, clock);
+		root.setRate(120_000);
+
+		idle.getAvailable();
+		advance(250);
+		root.consume(30_000);
+		advance(250);
+
+		assertEquals("Only the active child should share the tokens", 30_000, active.getAvailable());
+	}
+
+	@Test
+	public void testSetWeight() {
+		TokenBucket cut = new TokenBucket(null, clock);
+		assertEquals("Incorrect default weight", TokenBucket.DEFAULT_WEIGHT, cut.getWeight());
+
+		cut.setWeight(4);
+		assertEquals("Incorrect weight", 4, cut.getWeight());
+		assertTrue("Incorrect toString", cut.toString().startsWith("TokenBucket["));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetWeightTooLow() {
+		new TokenBucket(null, clock).setWeight(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetRateNegative() {
+		new TokenBucket(null, clock).setRate(-1);
+	}
+
+}
@@ -39,6 +39,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -91,6 +92,19 @@ public class PhaseDataTest {
 		assertTrue("Relevant peer is missing", relevantPeers.contains(peerFive));
 	}
 
+	@Test
+	public void testProcessWhileRechecking() {
+		TorrentClient torrentClientMock = mock(TorrentClient.class);
+		Torrent torrentMock = mock(Torrent.class);
+
+		when(torrentMock.isRechecking()).thenReturn(true);
+
+		PhaseData cut = new PhaseData(torrentClientMock, torrentMock);
+		cut.process();
+
+		verify(torrentMock, never()).getPeers();
+	}
+
 	private ITracker createTrackerExpectingSetCompleted(Torrent torrent) {
 		ITracker trackerMock = mock(ITracker.class);
 		TorrentInfo torrentInfoMock = mock(TorrentInfo.class);
@@ -126,7 +140,7 @@ public class PhaseDataTest {
 		PhaseData cut = new PhaseData(torrentClientMock, torrentMock);
 		cut.onPhaseEnter();
 
-		verify(torrentMock).checkProgress();
+		verify(torrentMock).startRecheck();
 		verify(torrentMock).setPieceSelector(isA(FullPieceSelect.class));
 	}
 
@@ -144,7 +158,7 @@ public class PhaseDataTest {
 		PhaseData cut = new PhaseData(torrentClientMock, torrentMock);
 		cut.onPhaseEnter();
 
-		verify(torrentMock).checkProgress();
+		verify(torrentMock).startRecheck();
 		verify(torrentMock).setPieceSelector(isA(FullPieceSelect.class));
 		assertTrue("Download folder should have been created.", file.exists());
 	}
@@ -169,7 +183,7 @@ public class PhaseDataTest {
 		PhaseData cut = new PhaseData(torrentClientMock, torrentMock);
 		cut.onPhaseEnter();
 
-		verify(torrentMock).checkProgress();
+		verify(torrentMock).startRecheck();
 		verify(torrentMock).setPieceSelector(isA(FullPieceSelect.class));
 	}
 
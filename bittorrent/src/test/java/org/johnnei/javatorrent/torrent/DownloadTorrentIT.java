@@ -109,12 +109,20 @@ public class DownloadTorrentIT {
 		}
 	}
 
+	/**
+	 * Creates the connection degradation which defines the sockets used for the outgoing connections.
+	 * @return The connection degradation.
+	 */
+	protected ConnectionDegradation createConnectionDegradation() {
+		return new ConnectionDegradation.Builder()
+				.registerDefaultConnectionType(TcpSocket.class, TcpSocket::new)
+				.build();
+	}
+
 	protected TorrentClient createTorrentClient(CountDownLatch latch) throws Exception {
 		return new TorrentClient.Builder()
 				.acceptIncomingConnections(true)
-				.setConnectionDegradation(new ConnectionDegradation.Builder()
-						.registerDefaultConnectionType(TcpSocket.class, TcpSocket::new)
-						.build())
+				.setConnectionDegradation(createConnectionDegradation())
 				.setDownloadPort(DummyEntity.findAvailableTcpPort())
 				.setExecutorService(Executors.newScheduledThreadPool(2))
 				.setPeerConnector(PeerConnector::new)
@@ -0,0 +1,18 @@
+package org.johnnei.javatorrent.torrent;
+
+import org.johnnei.javatorrent.internal.network.socket.NioTcpSocket;
+import org.johnnei.javatorrent.network.ConnectionDegradation;
+
+/**
+ * Tests the ability to cleanly download a torrent when the outgoing connections are multiplexed on the selector of the peer IO reactor.
+ */
+public class DownloadTorrentWithNioIT extends DownloadTorrentIT {
+
+	@Override
+	protected ConnectionDegradation createConnectionDegradation() {
+		return new ConnectionDegradation.Builder()
+				.registerDefaultConnectionType(NioTcpSocket.class, NioTcpSocket::new)
+				.build();
+	}
+
+}
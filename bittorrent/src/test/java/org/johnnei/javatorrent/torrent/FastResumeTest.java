@@ -0,0 +1,146 @@
+package org.johnnei.javatorrent.torrent;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.johnnei.javatorrent.bittorrent.encoding.BencodedInteger;
+import org.johnnei.javatorrent.bittorrent.encoding.BencodedMap;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link FastResume}
+ */
+public class FastResumeTest {
+
+	private static final byte[] INFO_HASH = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 };
+
+	private static final int PIECE_SIZE = 4;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private FileInfo fileOne;
+
+	private FileInfo fileTwo;
+
+	private TestFileSet fileSet;
+
+	@Before
+	public void setUp() throws Exception {
+		// Piece 1 spans both files.
+		fileOne = new FileInfo(6, 0, temporaryFolder.newFile(), 2);
+		fileTwo = new FileInfo(10, 6, temporaryFolder.newFile(), 3);
+		fileOne.write(ByteBuffer.wrap(new byte[6]), 0);
+		fileTwo.write(ByteBuffer.wrap(new byte[10]), 0);
+		fileSet = new TestFileSet(fileOne, fileTwo);
+	}
+
+	@Test
+	public void testRestoreUnchangedFiles() throws Exception {
+		fileSet.setHavingPiece(0);
+		fileSet.setHavingPiece(2);
+
+		File resumeFile = new File(temporaryFolder.getRoot(), "resume/torrent.resume");
+		FastResume.capture(INFO_HASH, fileSet).write(resumeFile);
+
+		FastResume cut = FastResume.read(resumeFile).get();
+		TestFileSet restoredFileSet = new TestFileSet(fileOne, fileTwo);
+
+		assertTrue("Record should be applicable", cut.isApplicable(INFO_HASH, restoredFileSet));
+		assertEquals("Incorrect verified pieces", 2, cut.countVerifiedPieces());
+
+		List<Piece> verifiedPieces = new ArrayList<>();
+		List<Piece> changedPieces = cut.restore(restoredFileSet, verifiedPieces::add);
+
+		assertTrue("No files changed", changedPieces.isEmpty());
+		assertEquals("Incorrect verified pieces", Arrays.asList(restoredFileSet.getPiece(0), restoredFileSet.getPiece(2)), verifiedPieces);
+	}
+
+	@Test
+	public void testRestoreChangedFile() throws Exception {
+		fileSet.setHavingPiece(0);
+		fileSet.setHavingPiece(1);
+		fileSet.setHavingPiece(3);
+
+		File resumeFile = temporaryFolder.newFile();
+		FastResume.capture(INFO_HASH, fileSet).write(resumeFile);
+
+		Files.setLastModifiedTime(fileOne.getFile().toPath(), FileTime.fromMillis(fileOne.getFile().lastModified() - 10_000));
+
+		List<Piece> verifiedPieces = new ArrayList<>();
+		List<Piece> changedPieces = FastResume.read(resumeFile).get().restore(fileSet = new TestFileSet(fileOne, fileTwo), verifiedPieces::add);
+
+		assertEquals("Pieces in the changed file must be verified", Arrays.asList(fileSet.getPiece(0), fileSet.getPiece(1)), changedPieces);
+		assertEquals("Pieces in unchanged files should be trusted", Arrays.asList(fileSet.getPiece(3)), verifiedPieces);
+	}
+
+	@Test
+	public void testNotApplicable() throws Exception {
+		File resumeFile = temporaryFolder.newFile();
+		FastResume.capture(INFO_HASH, fileSet).write(resumeFile);
+
+		byte[] otherHash = Arrays.copyOf(INFO_HASH, INFO_HASH.length);
+		otherHash[0] = 0;
+
+		assertFalse("Record of other torrent must not be applicable", FastResume.read(resumeFile).get().isApplicable(otherHash, fileSet));
+	}
+
+	@Test
+	public void testReadMissingOrCorrupt() throws Exception {
+		assertEquals("Missing file should be ignored", Optional.empty(), FastResume.read(new File(temporaryFolder.getRoot(), "missing")));
+
+		File corruptFile = temporaryFolder.newFile();
+		Files.write(corruptFile.toPath(), new byte[] { 'd', '1', ':' });
+		assertEquals("Corrupt file should be ignored", Optional.empty(), FastResume.read(corruptFile));
+
+		BencodedMap unsupportedVersion = new BencodedMap();
+		unsupportedVersion.put("version", new BencodedInteger(FastResume.FORMAT_VERSION + 1));
+		File versionFile = temporaryFolder.newFile();
+		Files.write(versionFile.toPath(), unsupportedVersion.serialize());
+		assertEquals("Unsupported version should be ignored", Optional.empty(), FastResume.read(versionFile));
+	}
+
+	private static final class TestFileSet extends AbstractFileSet {
+
+		TestFileSet(FileInfo... files) {
+			super(PIECE_SIZE);
+			fileInfos = Arrays.asList(files);
+			pieces = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				pieces.add(new Piece(this, new byte[20], i, PIECE_SIZE, PIECE_SIZE));
+			}
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
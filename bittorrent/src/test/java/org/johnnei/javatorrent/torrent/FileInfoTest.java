@@ -1,6 +1,8 @@
 package org.johnnei.javatorrent.torrent;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.johnnei.javatorrent.test.TestUtils;
 
@@ -8,6 +10,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -47,4 +50,28 @@ public class FileInfoTest {
 		assertTrue("toString didn't start with class name + [", base.toString().startsWith("FileInfo["));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testPositionalReadAndWrite() throws Exception {
+		FileInfo cut = new FileInfo(8, 0, temporaryFolder.newFile(), 1);
+
+		cut.write(ByteBuffer.wrap(new byte[] { 5, 6, 7 }), 4);
+		cut.write(ByteBuffer.wrap(new byte[] { 1, 2 }), 0);
+
+		assertEquals("Incorrect file length", 7, cut.length());
+		assertEquals("Positional writes must not move the file pointer", 0, cut.acquireChannel().position());
+		cut.releaseChannel();
+
+		ByteBuffer buffer = ByteBuffer.allocate(7);
+		cut.read(buffer, 0);
+		assertArrayEquals("Incorrect data has been read", new byte[] { 1, 2, 0, 0, 5, 6, 7 }, buffer.array());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testReadBeyondEnd() throws Exception {
+		FileInfo cut = new FileInfo(8, 0, temporaryFolder.newFile(), 1);
+		cut.write(ByteBuffer.wrap(new byte[] { 1, 2 }), 0);
+
+		cut.read(ByteBuffer.allocate(4), 0);
+	}
+
+}
@@ -0,0 +1,149 @@
+package org.johnnei.javatorrent.torrent;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.johnnei.javatorrent.torrent.files.BlockStatus;
+import org.johnnei.javatorrent.torrent.files.IFileSetRequestFactory;
+import org.johnnei.javatorrent.torrent.files.Piece;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link ResumeJournal}
+ */
+public class ResumeJournalTest {
+
+	private static final byte[] INFO_HASH = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 };
+
+	private static final int BLOCK_SIZE = 2;
+
+	private static final int PIECE_SIZE = 3 * BLOCK_SIZE;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testRestore() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "resume/torrent.journal");
+		TestFileSet fileSet = new TestFileSet();
+
+		try (ResumeJournal journal = ResumeJournal.open(file, INFO_HASH, fileSet.getPieceCount())) {
+			journal.append(fileSet.getPiece(0), 1);
+			journal.append(fileSet.getPiece(1), 0);
+			journal.append(fileSet.getPiece(1), 1);
+			journal.append(fileSet.getPiece(1), 2);
+		}
+
+		TestFileSet restoredFileSet = new TestFileSet();
+		try (ResumeJournal journal = ResumeJournal.open(file, INFO_HASH, restoredFileSet.getPieceCount())) {
+			assertEquals("Completed pieces must be verified", Collections.singletonList(restoredFileSet.getPiece(1)), journal.restore(restoredFileSet));
+		}
+
+		Piece piece = restoredFileSet.getPiece(0);
+		assertEquals("Unrecorded block should still be needed", BlockStatus.Needed, piece.getBlockStatus(0));
+		assertEquals("Recorded block should be stored", BlockStatus.Stored, piece.getBlockStatus(1));
+		assertEquals("Unrecorded block should still be needed", BlockStatus.Needed, piece.getBlockStatus(2));
+	}
+
+	@Test
+	public void testCompact() throws Exception {
+		File file = temporaryFolder.newFile();
+		TestFileSet fileSet = new TestFileSet();
+
+		try (ResumeJournal journal = ResumeJournal.open(file, INFO_HASH, fileSet.getPieceCount())) {
+			journal.append(fileSet.getPiece(0), 0);
+			journal.append(fileSet.getPiece(1), 0);
+			fileSet.getPiece(0).setBlockStatus(0, BlockStatus.Stored);
+			fileSet.getPiece(1).setBlockStatus(0, BlockStatus.Stored);
+			fileSet.getPiece(1).setBlockStatus(2, BlockStatus.Stored);
+			fileSet.setHavingPiece(0);
+
+			journal.compact(fileSet, null);
+			assertEquals("Only the stored blocks of incomplete pieces should remain", 32 + 2 * 8, file.length());
+		}
+
+		TestFileSet restoredFileSet = new TestFileSet();
+		try (ResumeJournal journal = ResumeJournal.open(file, INFO_HASH, restoredFileSet.getPieceCount())) {
+			journal.restore(restoredFileSet);
+		}
+
+		assertEquals("Verified piece should not be restored", 0, restoredFileSet.getPiece(0).countBlocksWithStatus(BlockStatus.Stored));
+		assertEquals("Stored blocks should be restored", 2, restoredFileSet.getPiece(1).countBlocksWithStatus(BlockStatus.Stored));
+	}
+
+	@Test
+	public void testIgnoreOtherTorrent() throws Exception {
+		File file = temporaryFolder.newFile();
+		TestFileSet fileSet = new TestFileSet();
+
+		try (ResumeJournal journal = ResumeJournal.open(file, INFO_HASH, fileSet.getPieceCount())) {
+			journal.append(fileSet.getPiece(0), 0);
+		}
+
+		byte[] otherHash = Arrays.copyOf(INFO_HASH, INFO_HASH.length);
+		otherHash[0] = 0;
+
+		try (ResumeJournal journal = ResumeJournal.open(file, otherHash, fileSet.getPieceCount())) {
+			journal.restore(fileSet);
+		}
+
+		assertEquals("Journal of other torrent must be ignored", BlockStatus.Needed, fileSet.getPiece(0).getBlockStatus(0));
+	}
+
+	@Test
+	public void testIgnoreTruncatedRecord() throws Exception {
+		File file = temporaryFolder.newFile();
+		TestFileSet fileSet = new TestFileSet();
+
+		try (ResumeJournal journal = ResumeJournal.open(file, INFO_HASH, fileSet.getPieceCount())) {
+			journal.append(fileSet.getPiece(0), 0);
+			journal.append(fileSet.getPiece(0), 1);
+		}
+
+		byte[] data = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(data, data.length - 3));
+
+		try (ResumeJournal journal = ResumeJournal.open(file, INFO_HASH, fileSet.getPieceCount())) {
+			journal.restore(fileSet);
+		}
+
+		assertEquals("Complete record should be restored", BlockStatus.Stored, fileSet.getPiece(0).getBlockStatus(0));
+		assertEquals("Truncated record should be ignored", BlockStatus.Needed, fileSet.getPiece(0).getBlockStatus(1));
+	}
+
+	private static final class TestFileSet extends AbstractFileSet {
+
+		TestFileSet() {
+			super(BLOCK_SIZE);
+			fileInfos = Collections.emptyList();
+			pieces = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				pieces.add(new Piece(this, new byte[20], i, PIECE_SIZE, BLOCK_SIZE));
+			}
+		}
+
+		@Override
+		public IFileSetRequestFactory getRequestFactory() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getPieceSize() {
+			return PIECE_SIZE;
+		}
+
+		@Override
+		public byte[] getBitfieldBytes() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -14,8 +14,11 @@ import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageHave;
 import org.johnnei.javatorrent.disk.DiskJobCheckHash;
 import org.johnnei.javatorrent.disk.DiskJobWriteBlock;
 import org.johnnei.javatorrent.disk.IDiskJob;
+import org.johnnei.javatorrent.disk.RecheckEngine;
+import org.johnnei.javatorrent.disk.StorageMode;
 import org.johnnei.javatorrent.module.IModule;
 import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.network.bandwidth.TokenBucket;
 import org.johnnei.javatorrent.test.DummyEntity;
 import org.johnnei.javatorrent.test.TestUtils;
 import org.johnnei.javatorrent.torrent.algos.pieceselector.IPieceSelector;
@@ -32,12 +35,15 @@ import org.powermock.reflect.Whitebox;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -99,10 +105,11 @@ public class TorrentTest {
 
 		when(fileSetMock.getNeededPieces()).thenReturn(Stream.of(pieceMockOne, pieceMockTwo, pieceMockThree));
 
-		when(pieceMockOne.checkHash()).thenReturn(true);
+		when(pieceMockOne.checkHashWithBuffer(any(byte[].class))).thenReturn(true);
 		when(pieceMockOne.getIndex()).thenReturn(0);
-		when(pieceMockTwo.checkHash()).thenReturn(false);
-		when(pieceMockThree.checkHash()).thenThrow(new IOException("Test Check For Progress IO Exception"));
+		when(pieceMockOne.getFileSet()).thenReturn(fileSetMock);
+		when(pieceMockTwo.checkHashWithBuffer(any(byte[].class))).thenReturn(false);
+		when(pieceMockThree.checkHashWithBuffer(any(byte[].class))).thenThrow(new IOException("Test Check For Progress IO Exception"));
 		when(pieceMockThree.getIndex()).thenReturn(2);
 
 		BitTorrentSocket socketMock = mock(BitTorrentSocket.class);
@@ -114,6 +121,7 @@ public class TorrentTest {
 
 		TorrentClient torrentClientMock = mock(TorrentClient.class);
 		when(torrentClientMock.getModules()).thenReturn(Collections.emptyList());
+		when(torrentClientMock.getRecheckEngine()).thenReturn(new RecheckEngine(1, TokenBucket.UNLIMITED));
 
 		Torrent cut = new Torrent.Builder()
 				.setTorrentClient(torrentClientMock)
@@ -126,6 +134,8 @@ public class TorrentTest {
 		cut.checkProgress();
 
 		verify(fileSetMock).setHavingPiece(eq(0));
+		verify(fileSetMock, never()).setHavingPiece(eq(1));
+		verify(fileSetMock, never()).setHavingPiece(eq(2));
 	}
 
 	@Test
@@ -291,6 +301,36 @@ public class TorrentTest {
 		assertEquals("Incorrect downloaded bytes, piece size should have been added.", 15, cut.getDownloadedBytes());
 	}
 
+	@Test
+	public void testOnReceivedBlockStoreFailure() throws Exception {
+		TorrentFileSet fileSetMock = mock(TorrentFileSet.class);
+		TorrentClient torrentClient = mock(TorrentClient.class);
+		Piece pieceMock = mock(Piece.class);
+
+		ArgumentCaptor<DiskJobWriteBlock> writeJobCapture = ArgumentCaptor.forClass(DiskJobWriteBlock.class);
+
+		when(fileSetMock.getBlockSize()).thenReturn(15);
+		when(fileSetMock.getPiece(eq(0))).thenReturn(pieceMock);
+		when(pieceMock.getBlockSize(eq(1))).thenReturn(15);
+
+		Torrent cut = new Torrent.Builder()
+				.setName("On Received Block Test")
+				.setMetadata(DummyEntity.createMetadata())
+				.setTorrentClient(torrentClient)
+				.build();
+		cut.setFileSet(fileSetMock);
+
+		cut.onReceivedBlock(fileSetMock, 0, 15, new byte[15]);
+
+		verify(torrentClient).addDiskJob(writeJobCapture.capture());
+		writeJobCapture.getValue().onFailure(new IOException("Stubbed IO Exception"));
+
+		// The block must be requested again instead of being considered stored.
+		verify(pieceMock).setBlockStatus(1, BlockStatus.Needed);
+		verify(pieceMock, never()).setBlockStatus(1, BlockStatus.Stored);
+		verify(torrentClient, times(1)).addDiskJob(any());
+	}
+
 	@Test
 	public void testOnReceivedBlockIncorrectSize() throws Exception {
 		TorrentFileSet fileSetMock = mock(TorrentFileSet.class);
@@ -610,6 +650,23 @@ public class TorrentTest {
 		assertEquals("Incorrect display name", "Test", cut.getDisplayName());
 	}
 
+	@Test
+	public void testSetFileSetMemoryMapped() throws Exception {
+		FileInfo fileInfo = new FileInfo(4, 0, temporaryFolder.newFile(), 1);
+		TorrentFileSet fileSetMock = mock(TorrentFileSet.class);
+		when(fileSetMock.getFiles()).thenReturn(Collections.singletonList(fileInfo));
+
+		Torrent cut = new Torrent.Builder()
+				.setName("Test")
+				.setMetadata(DummyEntity.createMetadata())
+				.setStorageMode(StorageMode.MemoryMapped)
+				.build();
+		cut.setFileSet(fileSetMock);
+
+		assertEquals("Incorrect storage mode", StorageMode.MemoryMapped, cut.getStorageMode());
+		assertNotNull("The files must be accessed through the mapped windows", fileInfo.getMappedRegions());
+	}
+
 	@Test
 	public void testGetUploadedBytes() {
 		Torrent cut = new Torrent.Builder()
@@ -0,0 +1,81 @@
+package org.johnnei.javatorrent.torrent.files;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+import org.johnnei.javatorrent.torrent.FileInfo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link MappedRegionCache}
+ */
+public class MappedRegionCacheTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndReadAcrossWindows() throws Exception {
+		MappedRegionCache cut = new MappedRegionCache(4, 8);
+		FileInfo file = new FileInfo(10, 0, temporaryFolder.newFile(), 1);
+		file.setMappedRegions(cut);
+
+		ByteBuffer data = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+		file.write(data, 2);
+
+		assertEquals("The buffer must be consumed", 0, data.remaining());
+		assertEquals("Incorrect amount of mapped windows", 3, cut.getMappedWindowCount());
+		assertEquals("The file must be grown up to the end of the last window", 10, file.length());
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		file.read(buffer, 0);
+		assertArrayEquals("Incorrect data has been read", new byte[] { 0, 0, 1, 2, 3, 4, 5, 6, 7, 0 }, buffer.array());
+
+		// The data must be visible to the file channel as well, which is used by the seeding transfers.
+		file.setMappedRegions(null);
+		buffer.clear();
+		file.read(buffer, 0);
+		assertArrayEquals("Incorrect data has been read without mapping", new byte[] { 0, 0, 1, 2, 3, 4, 5, 6, 7, 0 }, buffer.array());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws Exception {
+		MappedRegionCache cut = new MappedRegionCache(4, 2);
+		FileInfo file = new FileInfo(12, 0, temporaryFolder.newFile(), 1);
+		file.setMappedRegions(cut);
+
+		file.write(ByteBuffer.wrap(new byte[] { 1 }), 0);
+		file.write(ByteBuffer.wrap(new byte[] { 2 }), 4);
+		file.read(ByteBuffer.allocate(1), 0);
+		file.write(ByteBuffer.wrap(new byte[] { 3 }), 8);
+
+		assertEquals("Incorrect amount of mapped windows", 2, cut.getMappedWindowCount());
+
+		ByteBuffer buffer = ByteBuffer.allocate(12);
+		file.read(buffer, 0);
+		assertArrayEquals("Evicted windows must have kept their data", new byte[] { 1, 0, 0, 0, 2, 0, 0, 0, 3, 0, 0, 0 }, buffer.array());
+
+		cut.clear();
+		assertEquals("All windows must be unmapped", 0, cut.getMappedWindowCount());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testReadBeyondEnd() throws Exception {
+		MappedRegionCache cut = new MappedRegionCache(4, 2);
+		FileInfo file = new FileInfo(6, 0, temporaryFolder.newFile(), 1);
+
+		cut.read(file, ByteBuffer.allocate(8), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWindowSize() {
+		new MappedRegionCache(0, 2);
+	}
+
+}
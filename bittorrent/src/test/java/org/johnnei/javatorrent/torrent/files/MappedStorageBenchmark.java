@@ -0,0 +1,68 @@
+package org.johnnei.javatorrent.torrent.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.johnnei.javatorrent.torrent.FileInfo;
+
+/**
+ * Measures random block reads through {@link FileInfo#read(ByteBuffer, long)} with either positional reads on the file channel or the windows of a
+ * {@link MappedRegionCache}.
+ *
+ * Usage: <code>MappedStorageBenchmark [channel|mapped] [file megabytes] [reads]</code>
+ *
+ * The file is read once before the measurement so that it is served from the page cache, which isolates the cost of the system call per block.
+ */
+public class MappedStorageBenchmark {
+
+	private static final int BLOCK_SIZE = 1 << 14;
+
+	private static final long MEGABYTE = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		boolean mapped = args.length == 0 || "mapped".equals(args[0]);
+		int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+		int reads = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+
+		long fileSize = megabytes * MEGABYTE;
+		File file = File.createTempFile("storage", ".bin");
+		file.deleteOnExit();
+		try (RandomAccessFile fileAccess = new RandomAccessFile(file, "rw")) {
+			fileAccess.setLength(fileSize);
+		}
+
+		FileInfo fileInfo = new FileInfo(fileSize, 0, file, (int) (fileSize / BLOCK_SIZE));
+		if (mapped) {
+			fileInfo.setMappedRegions(new MappedRegionCache());
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+		long blockCount = fileSize / BLOCK_SIZE;
+		// Warm up so that the measurement is not polluted by class loading, JIT compilation and a cold page cache.
+		for (long block = 0; block < blockCount; block++) {
+			read(fileInfo, buffer, block);
+		}
+
+		Random random = new Random(0);
+		long cpuBefore = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+		long start = System.nanoTime();
+		for (int i = 0; i < reads; i++) {
+			read(fileInfo, buffer, (long) random.nextInt((int) blockCount));
+		}
+		long duration = System.nanoTime() - start;
+		long cpuTime = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - cpuBefore;
+
+		System.out.printf("mode=%s file=%d MiB reads=%d%n", mapped ? "mapped" : "channel", megabytes, reads);
+		System.out.printf("latency=%.0f ns per read, throughput=%.0f MiB/s, cpu=%.0f ns per read%n",
+				(double) duration / reads, reads * (double) BLOCK_SIZE / MEGABYTE / (duration / 1e9), (double) cpuTime / reads);
+	}
+
+	private static void read(FileInfo fileInfo, ByteBuffer buffer, long block) throws IOException {
+		buffer.clear();
+		fileInfo.read(buffer, block * BLOCK_SIZE);
+	}
+}
@@ -1,7 +1,21 @@
 package org.johnnei.javatorrent.torrent.files;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.bittorrent.encoding.SHA1;
 import org.johnnei.javatorrent.torrent.AbstractFileSet;
 import org.johnnei.javatorrent.torrent.FileInfo;
 
@@ -11,9 +25,12 @@ import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
 import static org.johnnei.javatorrent.test.TestUtils.assertEqualityMethods;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -82,6 +99,41 @@ public class PieceTest {
 		assertFalse("Should not have returned a piece after all pieces have been requested", piece.getRequestBlock().isPresent());
 	}
 
+	@Test
+	public void testGetRequestBlockConcurrently() throws Exception {
+		final int threadCount = 4;
+		Piece piece = new Piece(null, new byte[20], 0, 5000, 5);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+		CyclicBarrier barrier = new CyclicBarrier(threadCount);
+		List<Future<List<Integer>>> requestedBlocks = new ArrayList<>();
+		try {
+			for (int i = 0; i < threadCount; i++) {
+				requestedBlocks.add(executorService.submit(() -> {
+					barrier.await(5, TimeUnit.SECONDS);
+					List<Integer> blocks = new ArrayList<>();
+					Optional<Block> block;
+					while ((block = piece.getRequestBlock()).isPresent()) {
+						blocks.add(block.get().getIndex());
+					}
+					return blocks;
+				}));
+			}
+
+			Set<Integer> uniqueBlocks = new HashSet<>();
+			for (Future<List<Integer>> blocks : requestedBlocks) {
+				for (int blockIndex : blocks.get(5, TimeUnit.SECONDS)) {
+					assertTrue(String.format("Block %d has been requested more than once", blockIndex), uniqueBlocks.add(blockIndex));
+				}
+			}
+
+			assertEquals("All blocks should have been requested", piece.getBlockCount(), uniqueBlocks.size());
+			assertEquals("Incorrect amount of requested blocks", piece.getBlockCount(), piece.countBlocksWithStatus(BlockStatus.Requested));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
 	@Test
 	public void testOnHashFail() {
 		Piece piece = new Piece(null, new byte[20], 0, 50, 5);
@@ -186,11 +238,13 @@ public class PieceTest {
 		when(fileSetMock.getBlockSize()).thenReturn(5);
 		when(fileSetMock.getPieceSize()).thenReturn(20L);
 
-		FileInfo fileInfoOne = new FileInfo(10, 0, temporaryFolder.newFile(), 1);
+		File fileOne = temporaryFolder.newFile();
+		FileInfo fileInfoOne = new FileInfo(10, 0, fileOne, 1);
 
 		// Ensure that the first file passes the length requirement so the test could fail on the second file.
-		fileInfoOne.getFileAccess().seek(0);
-		fileInfoOne.getFileAccess().setLength(10);
+		try (RandomAccessFile access = new RandomAccessFile(fileOne, "rw")) {
+			access.setLength(10);
+		}
 
 		FileInfo fileInfoTwo = new FileInfo(10, 10, temporaryFolder.newFile(), 1);
 		when(fileSetMock.getFileForBytes(0, 0, 0)).thenReturn(fileInfoOne);
@@ -201,4 +255,79 @@ public class PieceTest {
 		assertFalse("Hash should not be matching, but also not throw an exception.", cut.checkHash());
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testStoreSectionSpanningMultipleFiles() throws Exception {
+		AbstractFileSet fileSetMock = mock(AbstractFileSet.class);
+		when(fileSetMock.getBlockSize()).thenReturn(5);
+		when(fileSetMock.getPieceSize()).thenReturn(20L);
+
+		FileInfo fileInfoOne = new FileInfo(10, 0, temporaryFolder.newFile(), 1);
+		FileInfo fileInfoTwo = new FileInfo(10, 10, temporaryFolder.newFile(), 1);
+		when(fileSetMock.getFileForBytes(0, 0, 3)).thenReturn(fileInfoOne);
+		when(fileSetMock.getFileForBytes(0, 2, 0)).thenReturn(fileInfoTwo);
+
+		Piece cut = new Piece(fileSetMock, new byte[20], 0, 20, 5);
+
+		ByteBuffer bufferOne = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+		ByteBuffer bufferTwo = ByteBuffer.wrap(new byte[] { 5, 6, 7, 8, 9, 10, 11, 12 });
+		cut.storeSection(3, bufferOne, bufferTwo);
+
+		assertEquals("First buffer should have been consumed", 0, bufferOne.remaining());
+		assertEquals("Second buffer should have been consumed", 0, bufferTwo.remaining());
+		assertEquals("Section should have been split at the file boundary", 10, fileInfoOne.length());
+		assertEquals("Section should have been split at the file boundary", 5, fileInfoTwo.length());
+		assertArrayEquals("Incorrect data has been stored", new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 }, cut.loadPiece(3, 12));
+	}
+
+	@Test
+	public void testCheckHashContinuesOnInOrderBlocks() throws Exception {
+		AbstractFileSet fileSetMock = mock(AbstractFileSet.class);
+		when(fileSetMock.getBlockSize()).thenReturn(5);
+		when(fileSetMock.getPieceSize()).thenReturn(20L);
+
+		FileInfo fileInfo = new FileInfo(20, 0, temporaryFolder.newFile(), 1);
+		when(fileSetMock.getFileForBytes(eq(0), anyInt(), anyInt())).thenReturn(fileInfo);
+
+		byte[] data = new byte[20];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+
+		Piece cut = new Piece(fileSetMock, SHA1.hash(data), 0, 20, 5);
+
+		cut.storeBlock(0, Arrays.copyOfRange(data, 0, 5));
+		cut.storeBlock(3, Arrays.copyOfRange(data, 15, 20));
+		cut.storeBlock(1, Arrays.copyOfRange(data, 5, 10));
+		assertEquals("Out of order block must not be hashed", 10, cut.getHashedBytes());
+
+		cut.storeBlock(2, Arrays.copyOfRange(data, 10, 15));
+		assertEquals("In order block should have been hashed", 15, cut.getHashedBytes());
+
+		assertTrue("Hash should have matched", cut.checkHash());
+		assertEquals("Digest should have been consumed", 0, cut.getHashedBytes());
+	}
+
+	@Test
+	public void testOverwritingHashedBlockResetsDigest() throws Exception {
+		AbstractFileSet fileSetMock = mock(AbstractFileSet.class);
+		when(fileSetMock.getBlockSize()).thenReturn(5);
+		when(fileSetMock.getPieceSize()).thenReturn(10L);
+
+		FileInfo fileInfo = new FileInfo(10, 0, temporaryFolder.newFile(), 1);
+		when(fileSetMock.getFileForBytes(eq(0), anyInt(), anyInt())).thenReturn(fileInfo);
+
+		byte[] data = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+		Piece cut = new Piece(fileSetMock, SHA1.hash(data), 0, 10, 5);
+
+		cut.storeBlock(0, new byte[5]);
+		cut.storeBlock(1, Arrays.copyOfRange(data, 5, 10));
+		assertEquals("Incorrect hashed bytes", 10, cut.getHashedBytes());
+
+		cut.storeBlock(1, Arrays.copyOfRange(data, 5, 10));
+		assertEquals("Overwriting a hashed block must reset the digest", 0, cut.getHashedBytes());
+
+		cut.storeBlock(0, Arrays.copyOfRange(data, 0, 5));
+		assertTrue("Hash should have matched", cut.checkHash());
+	}
+
+}
@@ -1,19 +1,24 @@
 package org.johnnei.javatorrent.torrent.peer;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageBlock;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageChoke;
+import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageFileBlock;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageInterested;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageKeepAlive;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUnchoke;
 import org.johnnei.javatorrent.bittorrent.protocol.messages.MessageUninterested;
+import org.johnnei.javatorrent.disk.AsyncDisk;
 import org.johnnei.javatorrent.disk.DiskJobReadBlock;
 import org.johnnei.javatorrent.disk.IDiskJob;
 import org.johnnei.javatorrent.internal.torrent.TorrentFileSetRequestFactory;
 import org.johnnei.javatorrent.network.BitTorrentSocket;
+import org.johnnei.javatorrent.network.BlockBuffer;
+import org.johnnei.javatorrent.network.BlockBufferPool;
 import org.johnnei.javatorrent.test.DummyEntity;
 import org.johnnei.javatorrent.test.TestUtils;
 import org.johnnei.javatorrent.torrent.AbstractFileSet;
@@ -33,13 +38,16 @@ import org.mockito.stubbing.Answer;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Matchers.isNotNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -372,6 +380,7 @@ public class PeerTest {
 		TorrentFileSet fileSetMock = mock(TorrentFileSet.class);
 		Piece pieceMock = mock(Piece.class);
 		when(torrentMock.getFileSet()).thenReturn(fileSetMock);
+		when(torrentMock.getDisk()).thenReturn(new AsyncDisk(torrentMock::addDiskJob));
 		when(fileSetMock.getBitfieldBytes()).thenReturn(new byte[1]);
 
 		Peer cut = new Peer.Builder()
@@ -398,9 +407,11 @@ public class PeerTest {
 		socketMock.enqueueMessage(isA(MessageBlock.class));
 		torrentMock.addUploadedBytes(15);
 		when(torrentMock.getFileSet()).thenReturn(fileSetMock);
+		when(torrentMock.getDisk()).thenReturn(new AsyncDisk(torrentMock::addDiskJob));
 		when(fileSetMock.getBitfieldBytes()).thenReturn(new byte[1]);
 		when(pieceMock.getIndex()).thenReturn(0);
-		when(pieceMock.loadPiece(eq(0), eq(15))).thenReturn(new byte[15]);
+		BlockBufferPool pool = new BlockBufferPool(16, 1, true);
+		when(torrentMock.getBlockBufferPool()).thenReturn(pool);
 
 		Peer cut = new Peer.Builder()
 				.setTorrent(torrentMock)
@@ -416,6 +427,119 @@ public class PeerTest {
 		verify(torrentMock).addDiskJob(diskJobCapture.capture());
 
 		diskJobCapture.getValue().process();
+
+		verify(pieceMock).loadPiece(eq(0), isA(BlockBuffer.class));
+		verify(torrentMock).addUploadedBytes(15);
+		assertEquals("The buffer should be owned by the queued message", 1, pool.getOutstandingCount());
+	}
+
+	@Test
+	public void testQueueNextPieceForSendingMergesAdjacentRequests() throws Exception {
+		Torrent torrentMock = mock(Torrent.class);
+		BitTorrentSocket socketMock = mock(BitTorrentSocket.class);
+		TorrentFileSet fileSetMock = mock(TorrentFileSet.class);
+		Piece pieceMock = mock(Piece.class);
+
+		when(torrentMock.getFileSet()).thenReturn(fileSetMock);
+		when(torrentMock.getDisk()).thenReturn(new AsyncDisk(torrentMock::addDiskJob));
+		when(fileSetMock.getBitfieldBytes()).thenReturn(new byte[1]);
+		when(pieceMock.getIndex()).thenReturn(0);
+		BlockBufferPool pool = new BlockBufferPool(16, 4, true);
+		when(torrentMock.getBlockBufferPool()).thenReturn(pool);
+
+		Peer cut = new Peer.Builder()
+				.setTorrent(torrentMock)
+				.setSocket(socketMock)
+				.setId(DummyEntity.createUniquePeerId())
+				.setExtensionBytes(DummyEntity.createRandomBytes(8))
+				.build();
+
+		cut.addBlockRequest(pieceMock, 0, 16, PeerDirection.Upload);
+		cut.addBlockRequest(pieceMock, 16, 16, PeerDirection.Upload);
+		cut.addBlockRequest(pieceMock, 64, 16, PeerDirection.Upload);
+		cut.queueNextPieceForSending();
+
+		ArgumentCaptor<DiskJobReadBlock> diskJobCapture = ArgumentCaptor.forClass(DiskJobReadBlock.class);
+		verify(torrentMock).addDiskJob(diskJobCapture.capture());
+
+		diskJobCapture.getValue().process();
+
+		ArgumentCaptor<BlockBuffer> bufferCapture = ArgumentCaptor.forClass(BlockBuffer.class);
+		verify(pieceMock).loadPiece(eq(0), bufferCapture.capture());
+		assertEquals("Adjacent requests should be read at once", 32, bufferCapture.getValue().getLength());
+		verify(socketMock, times(2)).enqueueMessage(isA(MessageBlock.class));
+		verify(torrentMock).addUploadedBytes(32);
+		assertEquals("The buffers should be owned by the queued messages", 2, pool.getOutstandingCount());
+		assertEquals("Non-adjacent request should remain queued", 1, cut.getWorkQueueSize(PeerDirection.Upload));
+	}
+
+	@Test
+	public void testQueueNextPieceForSendingReadFailure() throws Exception {
+		Torrent torrentMock = mock(Torrent.class);
+		BitTorrentSocket socketMock = mock(BitTorrentSocket.class);
+		TorrentFileSet fileSetMock = mock(TorrentFileSet.class);
+		Piece pieceMock = mock(Piece.class);
+
+		when(torrentMock.getFileSet()).thenReturn(fileSetMock);
+		when(torrentMock.getDisk()).thenReturn(new AsyncDisk(torrentMock::addDiskJob));
+		when(fileSetMock.getBitfieldBytes()).thenReturn(new byte[1]);
+		when(pieceMock.getIndex()).thenReturn(0);
+		BlockBufferPool pool = new BlockBufferPool(16, 1, true);
+		when(torrentMock.getBlockBufferPool()).thenReturn(pool);
+
+		Peer cut = new Peer.Builder()
+				.setTorrent(torrentMock)
+				.setSocket(socketMock)
+				.setId(DummyEntity.createUniquePeerId())
+				.setExtensionBytes(DummyEntity.createRandomBytes(8))
+				.build();
+
+		cut.addBlockRequest(pieceMock, 0, 15, PeerDirection.Upload);
+		cut.addBlockRequest(pieceMock, 32, 15, PeerDirection.Upload);
+		cut.queueNextPieceForSending();
+
+		ArgumentCaptor<DiskJobReadBlock> diskJobCapture = ArgumentCaptor.forClass(DiskJobReadBlock.class);
+		verify(torrentMock).addDiskJob(diskJobCapture.capture());
+		diskJobCapture.getValue().onFailure(new IOException("Stubbed IO Exception"));
+
+		verify(socketMock, never()).enqueueMessage(isA(MessageBlock.class));
+		verify(torrentMock, never()).addUploadedBytes(anyLong());
+
+		cut.queueNextPieceForSending();
+		verify(torrentMock, times(2)).addDiskJob(isA(DiskJobReadBlock.class));
+	}
+
+	@Test
+	public void testQueueNextPieceForSendingFileTransfer() {
+		Torrent torrentMock = mock(Torrent.class);
+		BitTorrentSocket socketMock = mock(BitTorrentSocket.class);
+		TorrentFileSet fileSetMock = mock(TorrentFileSet.class);
+		Piece pieceMock = mock(Piece.class);
+
+		when(torrentMock.getFileSet()).thenReturn(fileSetMock);
+		when(fileSetMock.getBitfieldBytes()).thenReturn(new byte[1]);
+		when(socketMock.supportsFileTransfer()).thenReturn(true);
+		when(pieceMock.isStoredInFiles()).thenReturn(true);
+
+		Peer cut = new Peer.Builder()
+				.setTorrent(torrentMock)
+				.setSocket(socketMock)
+				.setId(DummyEntity.createUniquePeerId())
+				.setExtensionBytes(DummyEntity.createRandomBytes(8))
+				.build();
+
+		cut.addBlockRequest(pieceMock, 0, 15, PeerDirection.Upload);
+		cut.queueNextPieceForSending();
+
+		ArgumentCaptor<MessageFileBlock> messageCapture = ArgumentCaptor.forClass(MessageFileBlock.class);
+		verify(socketMock).enqueueMessage(messageCapture.capture());
+		verify(torrentMock, never()).addDiskJob(any());
+		verify(torrentMock).addUploadedBytes(15);
+
+		MessageFileBlock message = messageCapture.getValue();
+		assertSame("Incorrect piece", pieceMock, message.getPiece());
+		assertEquals("Incorrect offset", 0, message.getOffset());
+		assertEquals("Incorrect length", 15, message.getBlockLength());
 	}
 
 	@Test
@@ -0,0 +1,99 @@
+package org.johnnei.javatorrent.tracker;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.johnnei.javatorrent.TorrentClient;
+import org.johnnei.javatorrent.network.PeerConnectInfo;
+import org.johnnei.javatorrent.torrent.Torrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link ThreadPerPeerConnector}
+ */
+public class ThreadPerPeerConnectorTest {
+
+	private TorrentClient torrentClient;
+
+	private IPeerDistributor peerDistributor;
+
+	private List<Thread> createdThreads;
+
+	private ThreadPerPeerConnector cut;
+
+	@Before
+	public void setUp() {
+		torrentClient = mock(TorrentClient.class);
+		peerDistributor = mock(IPeerDistributor.class);
+		when(torrentClient.getPeerDistributor()).thenReturn(peerDistributor);
+
+		createdThreads = new ArrayList<>();
+		// Threads are captured but not started to prevent actual connection attempts.
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable) {
+				@Override
+				public synchronized void start() {
+					/* Captured for assertion */
+				}
+			};
+			createdThreads.add(thread);
+			return thread;
+		};
+
+		cut = new ThreadPerPeerConnector(torrentClient, threadFactory);
+	}
+
+	@Test
+	public void testEnqueuePeerWhenStopped() throws Exception {
+		cut.enqueuePeer(new PeerConnectInfo(mock(Torrent.class), new InetSocketAddress(InetAddress.getLocalHost(), 27960)));
+
+		assertEquals("No thread should have been created", 0, createdThreads.size());
+		assertEquals("No peer should be connecting", 0, cut.getConnectingCount());
+	}
+
+	@Test
+	public void testEnqueuePeer() throws Exception {
+		Torrent torrent = mock(Torrent.class);
+		Torrent torrentTwo = mock(Torrent.class);
+
+		cut.start();
+		cut.enqueuePeer(new PeerConnectInfo(torrent, new InetSocketAddress(InetAddress.getLocalHost(), 27960)));
+		cut.enqueuePeer(new PeerConnectInfo(torrent, new InetSocketAddress(InetAddress.getLocalHost(), 27961)));
+		cut.enqueuePeer(null);
+
+		assertEquals("Each attempt should have its own thread", 2, createdThreads.size());
+		assertEquals("Incorrect connecting count", 2, cut.getConnectingCount());
+		assertEquals("Incorrect connecting count for torrent", 2, cut.getConnectingCountFor(torrent));
+		assertEquals("Incorrect connecting count for other torrent", 0, cut.getConnectingCountFor(torrentTwo));
+
+		cut.stop();
+	}
+
+	@Test
+	public void testEnqueuePeerLimitReached() throws Exception {
+		Torrent torrent = mock(Torrent.class);
+		ScheduledExecutorService executorService = mock(ScheduledExecutorService.class);
+		when(torrentClient.getExecutorService()).thenReturn(executorService);
+		when(peerDistributor.hasReachedPeerLimit(torrent)).thenReturn(true);
+
+		cut.start();
+		cut.enqueuePeer(new PeerConnectInfo(torrent, new InetSocketAddress(InetAddress.getLocalHost(), 27960)));
+
+		verify(executorService).schedule(any(Runnable.class), eq(10L), eq(TimeUnit.SECONDS));
+		assertEquals("No thread should have been created", 0, createdThreads.size());
+	}
+}